@@ -1,27 +1,28 @@
 package com.amazonaws.kinesisvideo.demoapp;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
+import com.amazonaws.kinesisvideo.java.mediasource.file.FrameCheckpoint;
+
 import java.io.IOException;
-import java.io.FileReader;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 public class Checkpointer {
-    private File checkpointFile;
+    private final FrameCheckpoint checkpoint;
 
     public Checkpointer(String checkpointDir) {
-        this.checkpointFile = new File(checkpointDir);
+        this.checkpoint = new FrameCheckpoint(Paths.get(checkpointDir));
     }
 
     public void saveNewIndex(int i) throws IOException {
-        FileWriter fileWriter = new FileWriter(checkpointFile);
-        fileWriter.write(String.valueOf(i) + "\n");
-        fileWriter.close();
+        checkpoint.commit(Collections.singletonList(String.valueOf(i)));
     }
 
     public int getCheckpoint() throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(checkpointFile));
-        String checkpoint = br.readLine();
-        return Integer.parseInt(checkpoint);
+        final List<String> lines = checkpoint.load();
+        if (lines.isEmpty()) {
+            throw new IOException("No checkpoint in " + checkpoint.getFile());
+        }
+        return Integer.parseInt(lines.get(0));
     }
 }
@@ -1,7 +1,6 @@
 package com.amazonaws.kinesisvideo.demoapp;
 
 import com.amazonaws.kinesisvideo.client.KinesisVideoClient;
-import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.demoapp.auth.AuthHelper;
 import com.amazonaws.kinesisvideo.java.client.KinesisVideoJavaClientFactory;
@@ -33,15 +32,16 @@ public final class DemoAppMain {
     public static void main(final String[] args) {
         System.out.println("Working Directory = " + System.getProperty("user.dir"));
         try {
-            // create Kinesis Video high level client
+            // create a media source. this class produces the data and pushes it into
+            // Kinesis Video Producer lower level components
+            final ImageFileMediaSource bytesMediaSource = createImageFileMediaSource();
+
+            // create Kinesis Video high level client, reporting the persisted fragments to the media source
             final KinesisVideoClient kinesisVideoClient = KinesisVideoJavaClientFactory
                     .createKinesisVideoClient(
                             Regions.US_WEST_2,
-                            AuthHelper.getSystemPropertiesCredentialsProvider());
-
-            // create a media source. this class produces the data and pushes it into
-            // Kinesis Video Producer lower level components
-            final MediaSource bytesMediaSource = createImageFileMediaSource();
+                            AuthHelper.getSystemPropertiesCredentialsProvider(),
+                            bytesMediaSource.getStreamCallbacks());
 
             // register media source with Kinesis Video Client
             kinesisVideoClient.registerMediaSource(STREAM_NAME, bytesMediaSource);
@@ -58,7 +58,7 @@ public final class DemoAppMain {
      *
      * @return a MediaSource backed by local H264 frame files
      */
-    private static MediaSource createImageFileMediaSource() {
+    private static ImageFileMediaSource createImageFileMediaSource() {
         final ImageFileMediaSourceConfiguration configuration =
                 new ImageFileMediaSourceConfiguration.Builder()
                         .fps(FPS_25)
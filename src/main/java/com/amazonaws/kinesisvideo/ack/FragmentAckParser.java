@@ -0,0 +1,540 @@
+package com.amazonaws.kinesisvideo.ack;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.charset.Charset;
+
+/**
+ * Incremental parser of the fragment ACK events in a PutMedia response body.
+ * <p>
+ * Bytes can be fed as they are read, in pieces of any size: chunked framing, and the JSON events themselves, can be
+ * split anywhere across reads. Each event is reported once its closing brace has been seen, with the same
+ * {@link AckEventData} instance refilled every time. Apart from the fragment number string of the reported ACK
+ * nothing is allocated per event.
+ * <p>
+ * Unknown keys and nested values are skipped. If the body turns out not to be chunk encoded, the parser falls back to
+ * picking the events out of the raw bytes.
+ */
+@NotThreadSafe
+public final class FragmentAckParser {
+    /**
+     * Receives the parsed events
+     */
+    public interface Listener {
+        /**
+         * @param eventData Parsed event, only valid for the duration of the call
+         * @param fragmentAck The event in the form expected by the producer stream
+         */
+        void onFragmentAck(@Nonnull AckEventData eventData, @Nonnull KinesisVideoFragmentAck fragmentAck);
+    }
+
+    /**
+     * What the parsed bytes start with
+     */
+    public enum Framing {
+        /**
+         * The response status line and headers, followed by the chunk encoded body
+         */
+        RESPONSE,
+        /**
+         * The chunk encoded body
+         */
+        CHUNKED,
+        /**
+         * The body with the chunked encoding already removed
+         */
+        RAW
+    }
+
+    public static final String EVENT_TYPE_BUFFERING = "BUFFERING";
+    public static final String EVENT_TYPE_RECEIVED = "RECEIVED";
+    public static final String EVENT_TYPE_PERSISTED = "PERSISTED";
+    public static final String EVENT_TYPE_ERROR = "ERROR";
+    public static final String EVENT_TYPE_IDLE = "IDLE";
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final int MAX_TOKEN_LENGTH = 256;
+    private static final int HEX_RADIX = 16;
+    private static final int DECIMAL_RADIX = 10;
+
+    private static final byte[] KEY_EVENT_TYPE = "EventType".getBytes(US_ASCII);
+    private static final byte[] KEY_FRAGMENT_TIMECODE = "FragmentTimecode".getBytes(US_ASCII);
+    private static final byte[] KEY_FRAGMENT_NUMBER = "FragmentNumber".getBytes(US_ASCII);
+    private static final byte[] KEY_ERROR_ID = "ErrorId".getBytes(US_ASCII);
+
+    private static final String[] EVENT_TYPES = {
+            EVENT_TYPE_BUFFERING, EVENT_TYPE_RECEIVED, EVENT_TYPE_PERSISTED, EVENT_TYPE_ERROR, EVENT_TYPE_IDLE
+    };
+    private static final int[] EVENT_ACK_TYPES = {
+            FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING,
+            FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED,
+            FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED,
+            FragmentAckType.FRAGMENT_ACK_TYPE_ERROR,
+            FragmentAckType.FRAGMENT_ACK_TYPE_IDLE
+    };
+    private static final byte[][] EVENT_TYPE_BYTES = new byte[EVENT_TYPES.length][];
+    private static final FragmentAckType[] ACK_TYPES = new FragmentAckType[FragmentAckType.FRAGMENT_ACK_TYPE_IDLE + 1];
+
+    static {
+        for (int i = 0; i < EVENT_TYPES.length; i++) {
+            EVENT_TYPE_BYTES[i] = EVENT_TYPES[i].getBytes(US_ASCII);
+        }
+
+        for (int i = 0; i < ACK_TYPES.length; i++) {
+            ACK_TYPES[i] = new FragmentAckType(i);
+        }
+    }
+
+    // Framing states
+    private static final int FRAMING_HEADERS = 0;
+    private static final int FRAMING_CHUNK_SIZE = 1;
+    private static final int FRAMING_CHUNK_EXTENSION = 2;
+    private static final int FRAMING_CHUNK_DATA = 3;
+    private static final int FRAMING_CHUNK_DATA_END = 4;
+    private static final int FRAMING_RAW = 5;
+    private static final int FRAMING_DONE = 6;
+
+    // JSON states
+    private static final int JSON_OUTSIDE = 0;
+    private static final int JSON_EXPECT_KEY = 1;
+    private static final int JSON_KEY = 2;
+    private static final int JSON_EXPECT_COLON = 3;
+    private static final int JSON_EXPECT_VALUE = 4;
+    private static final int JSON_STRING_VALUE = 5;
+    private static final int JSON_NUMBER_VALUE = 6;
+    private static final int JSON_LITERAL_VALUE = 7;
+    private static final int JSON_NESTED_VALUE = 8;
+    private static final int JSON_EXPECT_SEPARATOR = 9;
+
+    // Fields of interest
+    private static final int FIELD_OTHER = 0;
+    private static final int FIELD_EVENT_TYPE = 1;
+    private static final int FIELD_FRAGMENT_TIMECODE = 2;
+    private static final int FIELD_FRAGMENT_NUMBER = 3;
+    private static final int FIELD_ERROR_ID = 4;
+
+    private final Listener mListener;
+    private final AckEventData mEventData = new AckEventData();
+
+    private int mFramingState;
+    private long mChunkRemaining;
+    private int mChunkSizeDigits;
+    private int mHeaderLineLength;
+
+    private int mJsonState = JSON_OUTSIDE;
+    private final byte[] mToken = new byte[MAX_TOKEN_LENGTH];
+    private int mTokenLength;
+    private boolean mEscaped;
+    private boolean mInNestedString;
+    private int mNestedDepth;
+    private int mField;
+    private long mNumber;
+    private boolean mNegative;
+
+    // Event being parsed
+    private int mAckType;
+    private String mEventType;
+    private long mFragmentTimecode;
+    private String mFragmentNumber;
+    private int mErrorId;
+
+    private long mEventCount;
+
+    /**
+     * @param listener Receives the parsed events
+     * @param framing What the parsed bytes start with
+     */
+    public FragmentAckParser(@Nonnull final Listener listener, @Nonnull final Framing framing) {
+        mListener = Preconditions.checkNotNull(listener);
+        switch (Preconditions.checkNotNull(framing)) {
+            case RESPONSE:
+                mFramingState = FRAMING_HEADERS;
+                break;
+            case CHUNKED:
+                mFramingState = FRAMING_CHUNK_SIZE;
+                break;
+            default:
+                mFramingState = FRAMING_RAW;
+                break;
+        }
+    }
+
+    /**
+     * Parses the next bytes of the response.
+     */
+    public void parse(@Nonnull final byte[] buffer, final int offset, final int length) {
+        final int end = offset + length;
+        int index = offset;
+        while (index < end) {
+            switch (mFramingState) {
+                case FRAMING_HEADERS:
+                    index = skipHeaders(buffer, index, end);
+                    break;
+                case FRAMING_CHUNK_SIZE:
+                case FRAMING_CHUNK_EXTENSION:
+                case FRAMING_CHUNK_DATA_END:
+                    if (!parseFraming(buffer[index])) {
+                        // Not chunk encoded after all, pick the events out of the raw bytes from here on
+                        mFramingState = FRAMING_RAW;
+                        continue;
+                    }
+                    index++;
+                    break;
+                case FRAMING_CHUNK_DATA:
+                    final int dataEnd = (int) Math.min(end, index + mChunkRemaining);
+                    parseJson(buffer, index, dataEnd);
+                    mChunkRemaining -= dataEnd - index;
+                    index = dataEnd;
+                    if (mChunkRemaining == 0) {
+                        mFramingState = FRAMING_CHUNK_DATA_END;
+                    }
+                    break;
+                case FRAMING_RAW:
+                    parseJson(buffer, index, end);
+                    index = end;
+                    break;
+                default:
+                    // Nothing follows the last chunk
+                    return;
+            }
+        }
+    }
+
+    /**
+     * @return Number of events reported so far
+     */
+    public long getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * @return Whether the last chunk of the response has been parsed
+     */
+    public boolean isDone() {
+        return mFramingState == FRAMING_DONE;
+    }
+
+    private int skipHeaders(final byte[] buffer, final int start, final int end) {
+        for (int index = start; index < end; index++) {
+            final byte b = buffer[index];
+            if (b == '\n') {
+                if (mHeaderLineLength == 0) {
+                    // Empty line terminating the headers
+                    mFramingState = FRAMING_CHUNK_SIZE;
+                    return index + 1;
+                }
+                mHeaderLineLength = 0;
+            } else if (b != '\r') {
+                mHeaderLineLength++;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * @return Whether the byte is valid chunked framing
+     */
+    private boolean parseFraming(final byte b) {
+        if (mFramingState == FRAMING_CHUNK_DATA_END) {
+            // CRLF after the chunk data
+            if (b == '\r') {
+                return true;
+            }
+
+            if (b == '\n') {
+                mFramingState = FRAMING_CHUNK_SIZE;
+                return true;
+            }
+
+            return false;
+        }
+
+        if (b == '\n') {
+            if (mChunkSizeDigits == 0) {
+                // Tolerate empty lines between chunks
+                mFramingState = FRAMING_CHUNK_SIZE;
+                return true;
+            }
+
+            mChunkSizeDigits = 0;
+            if (mChunkRemaining == 0) {
+                mFramingState = FRAMING_DONE;
+            } else {
+                mFramingState = FRAMING_CHUNK_DATA;
+            }
+            return true;
+        }
+
+        if (b == '\r' || mFramingState == FRAMING_CHUNK_EXTENSION) {
+            return true;
+        }
+
+        if (b == ';') {
+            mFramingState = FRAMING_CHUNK_EXTENSION;
+            return mChunkSizeDigits > 0;
+        }
+
+        final int digit = Character.digit(b, HEX_RADIX);
+        if (digit < 0 || mChunkSizeDigits >= 8) {
+            return false;
+        }
+
+        mChunkRemaining = mChunkSizeDigits == 0 ? digit : mChunkRemaining * HEX_RADIX + digit;
+        mChunkSizeDigits++;
+        return true;
+    }
+
+    private void parseJson(final byte[] buffer, final int start, final int end) {
+        int index = start;
+        while (index < end) {
+            switch (mJsonState) {
+                case JSON_OUTSIDE:
+                    index = skipToEvent(buffer, index, end);
+                    break;
+                case JSON_KEY:
+                    index = scanString(buffer, index, end);
+                    if (index < end) {
+                        mField = keyField();
+                        mJsonState = JSON_EXPECT_COLON;
+                        index++;
+                    }
+                    break;
+                case JSON_STRING_VALUE:
+                    index = scanString(buffer, index, end);
+                    if (index < end) {
+                        stringValue();
+                        mJsonState = JSON_EXPECT_SEPARATOR;
+                        index++;
+                    }
+                    break;
+                case JSON_NUMBER_VALUE:
+                    index = scanNumber(buffer, index, end);
+                    break;
+                default:
+                    parseStructure(buffer[index++]);
+                    break;
+            }
+        }
+    }
+
+    private int skipToEvent(final byte[] buffer, final int start, final int end) {
+        for (int index = start; index < end; index++) {
+            if (buffer[index] == '{') {
+                startEvent();
+                mJsonState = JSON_EXPECT_KEY;
+                return index + 1;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Appends the string bytes to the token.
+     *
+     * @return Index of the closing quote or the end if the string continues in the next bytes
+     */
+    private int scanString(final byte[] buffer, final int start, final int end) {
+        final byte[] token = mToken;
+        int tokenLength = mTokenLength;
+        int index = start;
+        try {
+            for (; index < end; index++) {
+                final byte b = buffer[index];
+                if (mEscaped) {
+                    mEscaped = false;
+                } else if (b == '\\') {
+                    mEscaped = true;
+                    continue;
+                } else if (b == '"') {
+                    return index;
+                }
+
+                // Overlong strings are truncated, none of the ones of interest come close
+                if (tokenLength < token.length) {
+                    token[tokenLength++] = b;
+                }
+            }
+
+            return end;
+        } finally {
+            mTokenLength = tokenLength;
+        }
+    }
+
+    private int scanNumber(final byte[] buffer, final int start, final int end) {
+        long number = mNumber;
+        for (int index = start; index < end; index++) {
+            final byte b = buffer[index];
+            if (b >= '0' && b <= '9') {
+                number = number * DECIMAL_RADIX + (b - '0');
+            } else if (b != '.' && b != 'e' && b != 'E' && b != '+' && b != '-') {
+                mNumber = number;
+                numberValue();
+                mJsonState = JSON_EXPECT_SEPARATOR;
+                separator(b);
+                return index + 1;
+            }
+        }
+
+        mNumber = number;
+        return end;
+    }
+
+    private void parseStructure(final byte b) {
+        switch (mJsonState) {
+            case JSON_EXPECT_KEY:
+                if (b == '"') {
+                    mTokenLength = 0;
+                    mJsonState = JSON_KEY;
+                } else if (b == '}') {
+                    endEvent();
+                }
+                break;
+            case JSON_EXPECT_COLON:
+                if (b == ':') {
+                    mJsonState = JSON_EXPECT_VALUE;
+                }
+                break;
+            case JSON_EXPECT_VALUE:
+                startValue(b);
+                break;
+            case JSON_LITERAL_VALUE:
+                if (b < 'a' || b > 'z') {
+                    mJsonState = JSON_EXPECT_SEPARATOR;
+                    separator(b);
+                }
+                break;
+            case JSON_NESTED_VALUE:
+                skipNested(b);
+                break;
+            default:
+                separator(b);
+                break;
+        }
+    }
+
+    private void startValue(final byte b) {
+        if (b == '"') {
+            mTokenLength = 0;
+            mJsonState = JSON_STRING_VALUE;
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            mNegative = b == '-';
+            mNumber = mNegative ? 0 : b - '0';
+            mJsonState = JSON_NUMBER_VALUE;
+        } else if (b == '{' || b == '[') {
+            mNestedDepth = 1;
+            mInNestedString = false;
+            mJsonState = JSON_NESTED_VALUE;
+        } else if (b >= 'a' && b <= 'z') {
+            mJsonState = JSON_LITERAL_VALUE;
+        }
+    }
+
+    private void separator(final byte b) {
+        if (b == ',') {
+            mJsonState = JSON_EXPECT_KEY;
+        } else if (b == '}') {
+            endEvent();
+        }
+    }
+
+    private void skipNested(final byte b) {
+        if (mInNestedString) {
+            if (mEscaped) {
+                mEscaped = false;
+            } else if (b == '\\') {
+                mEscaped = true;
+            } else if (b == '"') {
+                mInNestedString = false;
+            }
+        } else if (b == '"') {
+            mInNestedString = true;
+        } else if (b == '{' || b == '[') {
+            mNestedDepth++;
+        } else if ((b == '}' || b == ']') && --mNestedDepth == 0) {
+            mJsonState = JSON_EXPECT_SEPARATOR;
+        }
+    }
+
+    private int keyField() {
+        if (tokenEquals(KEY_EVENT_TYPE)) {
+            return FIELD_EVENT_TYPE;
+        } else if (tokenEquals(KEY_FRAGMENT_TIMECODE)) {
+            return FIELD_FRAGMENT_TIMECODE;
+        } else if (tokenEquals(KEY_FRAGMENT_NUMBER)) {
+            return FIELD_FRAGMENT_NUMBER;
+        } else if (tokenEquals(KEY_ERROR_ID)) {
+            return FIELD_ERROR_ID;
+        }
+
+        return FIELD_OTHER;
+    }
+
+    private void stringValue() {
+        if (mField == FIELD_EVENT_TYPE) {
+            for (int i = 0; i < EVENT_TYPE_BYTES.length; i++) {
+                if (tokenEquals(EVENT_TYPE_BYTES[i])) {
+                    mEventType = EVENT_TYPES[i];
+                    mAckType = EVENT_ACK_TYPES[i];
+                    return;
+                }
+            }
+
+            mEventType = new String(mToken, 0, mTokenLength, US_ASCII);
+            mAckType = FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED;
+        } else if (mField == FIELD_FRAGMENT_NUMBER) {
+            mFragmentNumber = new String(mToken, 0, mTokenLength, US_ASCII);
+        }
+    }
+
+    private void numberValue() {
+        final long value = mNegative ? -mNumber : mNumber;
+        if (mField == FIELD_FRAGMENT_TIMECODE) {
+            mFragmentTimecode = value;
+        } else if (mField == FIELD_ERROR_ID) {
+            mErrorId = (int) value;
+        }
+    }
+
+    private boolean tokenEquals(final byte[] expected) {
+        if (mTokenLength != expected.length) {
+            return false;
+        }
+
+        for (int i = 0; i < mTokenLength; i++) {
+            if (mToken[i] != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void startEvent() {
+        mAckType = FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED;
+        mEventType = null;
+        mFragmentTimecode = 0;
+        mFragmentNumber = "";
+        mErrorId = 0;
+        mEscaped = false;
+    }
+
+    private void endEvent() {
+        mJsonState = JSON_OUTSIDE;
+        mEventCount++;
+
+        mEventData.setType(mEventType);
+        mEventData.setFragmentTimecode(mFragmentTimecode);
+        mEventData.setErrorCode(mErrorId);
+
+        // The timecode is passed on as received, like the native parser does
+        mListener.onFragmentAck(mEventData,
+                new KinesisVideoFragmentAck(ACK_TYPES[mAckType], mFragmentTimecode, mFragmentNumber, mErrorId));
+    }
+}
@@ -0,0 +1,105 @@
+package com.amazonaws.kinesisvideo.auth;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Credentials providers for the security tokens handed back by the native producer library, keyed by the token
+ * bytes, so that the service callbacks of a stream don't decode the same token over and over.
+ * <p>
+ * Tokens only change when the credentials are refreshed, so the cache stays small. Once it holds the maximum number
+ * of tokens it starts over.
+ */
+@ThreadSafe
+public class DecodedCredentialsCache {
+    private static final int DEFAULT_MAX_TOKENS = 64;
+
+    private static final class TokenKey {
+        private final byte[] mToken;
+        private final int mHashCode;
+
+        private TokenKey(@Nonnull final byte[] token) {
+            this(token, Arrays.hashCode(token));
+        }
+
+        private TokenKey(@Nonnull final byte[] token, final int hashCode) {
+            mToken = token;
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof TokenKey && Arrays.equals(mToken, ((TokenKey) other).mToken);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] mToken;
+        private final KinesisVideoCredentialsProvider mProvider;
+
+        private Entry(@Nonnull final byte[] token, @Nonnull final KinesisVideoCredentialsProvider provider) {
+            mToken = token;
+            mProvider = provider;
+        }
+    }
+
+    private final int mMaxTokens;
+    private final ConcurrentMap<TokenKey, KinesisVideoCredentialsProvider> mProviders =
+            new ConcurrentHashMap<TokenKey, KinesisVideoCredentialsProvider>();
+
+    // Nearly all calls pass the latest token, which a plain comparison finds faster than hashing it
+    private volatile Entry mLastEntry;
+
+    public DecodedCredentialsCache() {
+        this(DEFAULT_MAX_TOKENS);
+    }
+
+    public DecodedCredentialsCache(final int maxTokens) {
+        mMaxTokens = maxTokens;
+    }
+
+    /**
+     * @param token Credentials encoded by {@link KinesisVideoCredentialsCodec}
+     * @return The same provider for equal tokens, as long as the token stays cached
+     * @throws IOException if the token can't be decoded
+     */
+    @Nonnull
+    public KinesisVideoCredentialsProvider getCredentialsProvider(@Nonnull final byte[] token) throws IOException {
+        final Entry lastEntry = mLastEntry;
+        if (lastEntry != null && Arrays.equals(lastEntry.mToken, token)) {
+            return lastEntry.mProvider;
+        }
+
+        final TokenKey key = new TokenKey(token);
+        KinesisVideoCredentialsProvider provider = mProviders.get(key);
+        if (provider == null) {
+            provider = new StaticCredentialsProvider(KinesisVideoCredentialsCodec.decode(token));
+            if (mProviders.size() >= mMaxTokens) {
+                mProviders.clear();
+            }
+
+            // Keep a copy as the caller owns the token array
+            final KinesisVideoCredentialsProvider racingProvider =
+                    mProviders.putIfAbsent(new TokenKey(token.clone(), key.mHashCode), provider);
+            if (racingProvider != null) {
+                provider = racingProvider;
+            }
+        }
+
+        mLastEntry = new Entry(token.clone(), provider);
+        return provider;
+    }
+
+    public int size() {
+        return mProviders.size();
+    }
+}
@@ -7,11 +7,11 @@ import com.amazonaws.kinesisvideo.producer.AuthCallbacks;
 import com.amazonaws.kinesisvideo.producer.AuthInfo;
 import com.amazonaws.kinesisvideo.producer.AuthInfoType;
 import com.amazonaws.kinesisvideo.producer.Time;
+import com.amazonaws.kinesisvideo.service.ServiceCallExecutor;
 
 import javax.annotation.Nullable;
 import javax.annotation.Nonnull;
 
-import java.io.*;
 import java.util.concurrent.*;
 
 /**
@@ -36,7 +36,7 @@ public class DefaultAuthCallbacks implements AuthCallbacks {
     /**
      * Executor service to use as the calls can come in on the main thread.
      */
-    private final ScheduledExecutorService executor;
+    private final ServiceCallExecutor executor;
 
     /**
      * Used for logging
@@ -56,6 +56,12 @@ public class DefaultAuthCallbacks implements AuthCallbacks {
     public DefaultAuthCallbacks(@Nonnull KinesisVideoCredentialsProvider credentialsProvider,
                                 @Nonnull final ScheduledExecutorService executor,
                                 @Nonnull Log log) {
+        this(credentialsProvider, new ServiceCallExecutor(executor, log), log);
+    }
+
+    public DefaultAuthCallbacks(@Nonnull KinesisVideoCredentialsProvider credentialsProvider,
+                                @Nonnull final ServiceCallExecutor executor,
+                                @Nonnull Log log) {
         this.credentialsProvider = Preconditions.checkNotNull(credentialsProvider);
         this.executor = Preconditions.checkNotNull(executor);
         this.log = Preconditions.checkNotNull(log);
@@ -74,40 +80,20 @@ public class DefaultAuthCallbacks implements AuthCallbacks {
             @Override
             public void run() {
                 // Get the updated credentials and serialize it
-
-                final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
                 try {
                     final KinesisVideoCredentials credentials = credentialsProvider.getUpdatedCredentials();
                     expiration = credentials.getExpiration().getTime() * Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
-
-                    final ObjectOutput outputStream = new ObjectOutputStream(byteArrayOutputStream);
-                    outputStream.writeObject(credentials);
-                    outputStream.flush();
-                    serializedCredentials = byteArrayOutputStream.toByteArray();
-                    outputStream.close();
-                } catch (final IOException e) {
-                    // return null
-                    serializedCredentials = null;
-                    expiration = 0;
-                    log.exception(e, "Exception was thrown trying to get updated credentials");
+                    serializedCredentials = KinesisVideoCredentialsCodec.encode(credentials);
                 } catch (final KinesisVideoException e) {
                     // return null
                     serializedCredentials = null;
                     expiration = 0;
                     log.exception(e, "Exception was thrown trying to get updated credentials");
-                } finally {
-                    try {
-                        byteArrayOutputStream.close();
-                    }
-                    catch(final IOException e) {
-                        // Do nothing
-                        log.exception(e, "Closing the byte array stream threw an exception");
-                    }
                 }
             }
         };
 
-        final ScheduledFuture<?> future = executor.schedule(task, 0, TimeUnit.NANOSECONDS);
+        final Future<?> future = executor.submit(task);
 
         // Await for the future to complete
         try {
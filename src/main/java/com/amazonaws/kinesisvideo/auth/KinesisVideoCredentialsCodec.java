@@ -0,0 +1,108 @@
+package com.amazonaws.kinesisvideo.auth;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+/**
+ * Fixed layout binary encoding of {@link KinesisVideoCredentials}, used to hand credentials to the native producer
+ * library as opaque security tokens and to get them back in the service callbacks.
+ * <p>
+ * The layout is a format version byte, the access key, secret key and session token each as a 32 bit big endian
+ * byte count followed by the UTF-8 bytes, with a count of -1 for a missing session token, and the expiration as a
+ * 64 bit big endian number of milliseconds since the epoch.
+ */
+public final class KinesisVideoCredentialsCodec {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte FORMAT_VERSION = 1;
+    private static final int NULL_FIELD_LENGTH = -1;
+    private static final int HEADER_SIZE = 1;
+    private static final int FIELD_LENGTH_SIZE = 4;
+    private static final int EXPIRATION_SIZE = 8;
+
+    private KinesisVideoCredentialsCodec() {
+        // no-op
+    }
+
+    @Nonnull
+    public static byte[] encode(@Nonnull final KinesisVideoCredentials credentials) {
+        final byte[] accessKey = credentials.getAccessKey().getBytes(UTF_8);
+        final byte[] secretKey = credentials.getSecretKey().getBytes(UTF_8);
+        final byte[] sessionToken = credentials.getSessionToken() == null
+                ? null
+                : credentials.getSessionToken().getBytes(UTF_8);
+
+        final int size = HEADER_SIZE
+                + FIELD_LENGTH_SIZE + accessKey.length
+                + FIELD_LENGTH_SIZE + secretKey.length
+                + FIELD_LENGTH_SIZE + (sessionToken == null ? 0 : sessionToken.length)
+                + EXPIRATION_SIZE;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        putField(buffer, accessKey);
+        putField(buffer, secretKey);
+        putField(buffer, sessionToken);
+        buffer.putLong(credentials.getExpiration().getTime());
+        return buffer.array();
+    }
+
+    /**
+     * @throws IOException if the bytes are not credentials encoded by {@link #encode(KinesisVideoCredentials)}
+     */
+    @Nonnull
+    public static KinesisVideoCredentials decode(@Nonnull final byte[] encoded) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        try {
+            final byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported credentials format version " + version);
+            }
+
+            final String accessKey = getField(buffer);
+            final String secretKey = getField(buffer);
+            final String sessionToken = getField(buffer);
+            final long expiration = buffer.getLong();
+            if (accessKey == null || secretKey == null) {
+                throw new IOException("Missing access key or secret key");
+            }
+
+            if (buffer.hasRemaining()) {
+                throw new IOException("Trailing bytes after the encoded credentials");
+            }
+
+            return new KinesisVideoCredentials(accessKey, secretKey, sessionToken, new Date(expiration));
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated credentials", e);
+        }
+    }
+
+    private static void putField(@Nonnull final ByteBuffer buffer, @Nullable final byte[] field) {
+        if (field == null) {
+            buffer.putInt(NULL_FIELD_LENGTH);
+        } else {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+    }
+
+    @Nullable
+    private static String getField(@Nonnull final ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length == NULL_FIELD_LENGTH) {
+            return null;
+        }
+
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid credentials field length " + length);
+        }
+
+        final String field = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return field;
+    }
+}
@@ -1,8 +1,11 @@
 package com.amazonaws.kinesisvideo.client;
 
 import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
+import com.amazonaws.kinesisvideo.client.ratecontrol.RateController;
 import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
 import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+import com.amazonaws.kinesisvideo.producer.jni.NativeLockingMode;
+import com.amazonaws.kinesisvideo.stream.throttling.HierarchicalBandwidthScheduler;
 
 /**
  * Configuration for KinesisVideoClient.
@@ -13,6 +16,23 @@ public final class KinesisVideoClientConfiguration {
     private final StorageCallbacks storageCallbacks;
     private final String endpoint;
     private final OutputChannel logChannel;
+    private final int putMediaEventLoopThreads;
+    private final NativeLockingMode nativeLockingMode;
+    private final long serviceCallCacheTtlInMillis;
+    private final long serviceCallCacheNegativeTtlInMillis;
+    private final HierarchicalBandwidthScheduler bandwidthScheduler;
+    private final RateController.Factory rateControllerFactory;
+    private final long rateControlIntervalInMillis;
+    private final long metricsSamplingIntervalInMillis;
+    private final int metricsHistorySize;
+    private final boolean fragmentLatencyTracking;
+    private final long fragmentLatencyReportIntervalInMillis;
+    private final int serviceCallTimerThreads;
+    private final int serviceCallThreads;
+    private final int putMediaConnectThreads;
+    private final int serviceCallQueueCapacity;
+    private final boolean virtualServiceCallThreads;
+    private final boolean overlappedUploadRotation;
 
     private KinesisVideoClientConfiguration(final Builder builder) {
         this.region = builder.region;
@@ -20,6 +40,23 @@ public final class KinesisVideoClientConfiguration {
         this.storageCallbacks = builder.storageCallbacks;
         this.endpoint = builder.endpoint;
         this.logChannel = builder.logChannel;
+        this.putMediaEventLoopThreads = builder.putMediaEventLoopThreads;
+        this.nativeLockingMode = builder.nativeLockingMode;
+        this.serviceCallCacheTtlInMillis = builder.serviceCallCacheTtlInMillis;
+        this.serviceCallCacheNegativeTtlInMillis = builder.serviceCallCacheNegativeTtlInMillis;
+        this.bandwidthScheduler = builder.bandwidthScheduler;
+        this.rateControllerFactory = builder.rateControllerFactory;
+        this.rateControlIntervalInMillis = builder.rateControlIntervalInMillis;
+        this.metricsSamplingIntervalInMillis = builder.metricsSamplingIntervalInMillis;
+        this.metricsHistorySize = builder.metricsHistorySize;
+        this.fragmentLatencyTracking = builder.fragmentLatencyTracking;
+        this.fragmentLatencyReportIntervalInMillis = builder.fragmentLatencyReportIntervalInMillis;
+        this.serviceCallTimerThreads = builder.serviceCallTimerThreads;
+        this.serviceCallThreads = builder.serviceCallThreads;
+        this.putMediaConnectThreads = builder.putMediaConnectThreads;
+        this.serviceCallQueueCapacity = builder.serviceCallQueueCapacity;
+        this.virtualServiceCallThreads = builder.virtualServiceCallThreads;
+        this.overlappedUploadRotation = builder.overlappedUploadRotation;
     }
 
     public static Builder builder() {
@@ -73,6 +110,127 @@ public final class KinesisVideoClientConfiguration {
         return this.logChannel;
     }
 
+    /**
+     * @return Number of event loop threads shared by the PutMedia uploads or 0 to use dedicated threads per upload
+     */
+    public int getPutMediaEventLoopThreads() {
+        return this.putMediaEventLoopThreads;
+    }
+
+    /**
+     * @return How the calls into the native producer library are serialized
+     */
+    public NativeLockingMode getNativeLockingMode() {
+        return this.nativeLockingMode;
+    }
+
+    /**
+     * @return How long successful describe stream and get data endpoint results are reused, 0 if they aren't
+     */
+    public long getServiceCallCacheTtlInMillis() {
+        return this.serviceCallCacheTtlInMillis;
+    }
+
+    /**
+     * @return How long describe stream and get data endpoint errors are reused, 0 if they aren't
+     */
+    public long getServiceCallCacheNegativeTtlInMillis() {
+        return this.serviceCallCacheNegativeTtlInMillis;
+    }
+
+    /**
+     * @return Scheduler sharing the upload limit of the host between the PutMedia uploads, or null if there is none
+     */
+    public HierarchicalBandwidthScheduler getBandwidthScheduler() {
+        return this.bandwidthScheduler;
+    }
+
+    /**
+     * @return Factory of the controllers adapting the rate of the media sources to the uploads, or null if the rates
+     * aren't adapted
+     */
+    public RateController.Factory getRateControllerFactory() {
+        return this.rateControllerFactory;
+    }
+
+    /**
+     * @return How often the rate controllers are given a new sample of their stream
+     */
+    public long getRateControlIntervalInMillis() {
+        return this.rateControlIntervalInMillis;
+    }
+
+    /**
+     * @return How often the client and stream metrics are sampled, 0 if they aren't
+     */
+    public long getMetricsSamplingIntervalInMillis() {
+        return this.metricsSamplingIntervalInMillis;
+    }
+
+    /**
+     * @return Number of metrics samples kept for the client and for each stream
+     */
+    public int getMetricsHistorySize() {
+        return this.metricsHistorySize;
+    }
+
+    /**
+     * @return Whether the latency from the put of each fragment to its acks is measured
+     */
+    public boolean isFragmentLatencyTracking() {
+        return this.fragmentLatencyTracking;
+    }
+
+    /**
+     * @return How often the fragment latencies are logged, 0 if they aren't
+     */
+    public long getFragmentLatencyReportIntervalInMillis() {
+        return this.fragmentLatencyReportIntervalInMillis;
+    }
+
+    /**
+     * @return Number of threads of the pool waiting out the delays of the service calls and running periodic tasks
+     */
+    public int getServiceCallTimerThreads() {
+        return this.serviceCallTimerThreads;
+    }
+
+    /**
+     * @return Number of threads running the service calls other than the PutMedia connects
+     */
+    public int getServiceCallThreads() {
+        return this.serviceCallThreads;
+    }
+
+    /**
+     * @return Number of threads running the PutMedia connects, each blocked until the response headers arrive
+     */
+    public int getPutMediaConnectThreads() {
+        return this.putMediaConnectThreads;
+    }
+
+    /**
+     * @return Number of calls waiting for a thread in each pool before they are rejected and retried
+     */
+    public int getServiceCallQueueCapacity() {
+        return this.serviceCallQueueCapacity;
+    }
+
+    /**
+     * @return Whether the service calls run on virtual threads when the JVM has them
+     */
+    public boolean isVirtualServiceCallThreads() {
+        return this.virtualServiceCallThreads;
+    }
+
+    /**
+     * @return Whether the data switches to the next upload session as soon as the previous one has sent its last
+     * fragment, rather than once its upload has completed
+     */
+    public boolean isOverlappedUploadRotation() {
+        return this.overlappedUploadRotation;
+    }
+
     public static class Builder {
         private String region;
         private KinesisVideoCredentialsProvider credentialsProvider;
@@ -80,6 +238,29 @@ public final class KinesisVideoClientConfiguration {
                 KinesisVideoClientConfigurationDefaults.NO_OP_STORAGE_CALLBACKS;
         private String endpoint;
         private OutputChannel logChannel;
+        private int putMediaEventLoopThreads;
+        private NativeLockingMode nativeLockingMode = NativeLockingMode.GLOBAL;
+        private long serviceCallCacheTtlInMillis =
+                KinesisVideoClientConfigurationDefaults.DEFAULT_SERVICE_CALL_CACHE_TTL_IN_MILLIS;
+        private long serviceCallCacheNegativeTtlInMillis =
+                KinesisVideoClientConfigurationDefaults.DEFAULT_SERVICE_CALL_CACHE_NEGATIVE_TTL_IN_MILLIS;
+        private HierarchicalBandwidthScheduler bandwidthScheduler;
+        private RateController.Factory rateControllerFactory;
+        private long rateControlIntervalInMillis =
+                KinesisVideoClientConfigurationDefaults.DEFAULT_RATE_CONTROL_INTERVAL_IN_MILLIS;
+        private long metricsSamplingIntervalInMillis =
+                KinesisVideoClientConfigurationDefaults.DEFAULT_METRICS_SAMPLING_INTERVAL_IN_MILLIS;
+        private int metricsHistorySize = KinesisVideoClientConfigurationDefaults.DEFAULT_METRICS_HISTORY_SIZE;
+        private boolean fragmentLatencyTracking;
+        private long fragmentLatencyReportIntervalInMillis =
+                KinesisVideoClientConfigurationDefaults.DEFAULT_FRAGMENT_LATENCY_REPORT_INTERVAL_IN_MILLIS;
+        private int serviceCallTimerThreads = KinesisVideoClientConfigurationDefaults.DEFAULT_SERVICE_CALL_TIMER_THREADS;
+        private int serviceCallThreads = KinesisVideoClientConfigurationDefaults.DEFAULT_SERVICE_CALL_THREADS;
+        private int putMediaConnectThreads = KinesisVideoClientConfigurationDefaults.DEFAULT_PUT_MEDIA_CONNECT_THREADS;
+        private int serviceCallQueueCapacity =
+                KinesisVideoClientConfigurationDefaults.DEFAULT_SERVICE_CALL_QUEUE_CAPACITY;
+        private boolean virtualServiceCallThreads;
+        private boolean overlappedUploadRotation;
 
         public Builder withRegion(final String region) {
             this.region = region;
@@ -106,6 +287,180 @@ public final class KinesisVideoClientConfiguration {
             return this;
         }
 
+        /**
+         * Multiplexes the PutMedia uploads of all streams on the given number of non-blocking event loop threads
+         * instead of running a sender and a receiver thread per upload. Zero, the default, keeps the latter.
+         */
+        public Builder withPutMediaEventLoopThreads(final int putMediaEventLoopThreads) {
+            if (putMediaEventLoopThreads < 0) {
+                throw new IllegalArgumentException("Number of event loop threads should not be negative.");
+            }
+            this.putMediaEventLoopThreads = putMediaEventLoopThreads;
+            return this;
+        }
+
+        /**
+         * Lets calls for different streams into the native producer library run in parallel with
+         * {@link NativeLockingMode#PER_STREAM}. Defaults to {@link NativeLockingMode#GLOBAL}.
+         */
+        public Builder withNativeLockingMode(final NativeLockingMode nativeLockingMode) {
+            if (nativeLockingMode == null) {
+                throw new NullPointerException("nativeLockingMode");
+            }
+            this.nativeLockingMode = nativeLockingMode;
+            return this;
+        }
+
+        /**
+         * Reuses the successful describe stream and get data endpoint results of a stream for the given time when
+         * it restarts. Zero turns the caching off.
+         */
+        public Builder withServiceCallCacheTtlInMillis(final long serviceCallCacheTtlInMillis) {
+            if (serviceCallCacheTtlInMillis < 0) {
+                throw new IllegalArgumentException("Service call cache TTL should not be negative.");
+            }
+            this.serviceCallCacheTtlInMillis = serviceCallCacheTtlInMillis;
+            return this;
+        }
+
+        /**
+         * Reuses describe stream and get data endpoint errors which retrying right away won't fix, like the stream
+         * not existing, for the given time. Zero turns the caching of errors off.
+         */
+        public Builder withServiceCallCacheNegativeTtlInMillis(final long serviceCallCacheNegativeTtlInMillis) {
+            if (serviceCallCacheNegativeTtlInMillis < 0) {
+                throw new IllegalArgumentException("Service call cache negative TTL should not be negative.");
+            }
+            this.serviceCallCacheNegativeTtlInMillis = serviceCallCacheNegativeTtlInMillis;
+            return this;
+        }
+
+        /**
+         * Paces the PutMedia uploads of all streams within the upload limit of the scheduler, by the weights and
+         * guarantees set on it. Uploads on the event loops wait for their share on a timer rather than blocking the
+         * loop, while the others wait on their own threads.
+         */
+        public Builder withBandwidthScheduler(final HierarchicalBandwidthScheduler bandwidthScheduler) {
+            this.bandwidthScheduler = bandwidthScheduler;
+            return this;
+        }
+
+        /**
+         * Lowers and raises the bitrate and frame rate of the media sources implementing
+         * {@link com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource} as decided by a controller
+         * per stream, so that a congested upload doesn't make the streams drop fragments.
+         */
+        public Builder withRateControllerFactory(final RateController.Factory rateControllerFactory) {
+            this.rateControllerFactory = rateControllerFactory;
+            return this;
+        }
+
+        public Builder withRateControlIntervalInMillis(final long rateControlIntervalInMillis) {
+            if (rateControlIntervalInMillis <= 0) {
+                throw new IllegalArgumentException("Rate control interval should be positive.");
+            }
+            this.rateControlIntervalInMillis = rateControlIntervalInMillis;
+            return this;
+        }
+
+        /**
+         * Samples the client and stream metrics in the background at the given interval, see
+         * {@link com.amazonaws.kinesisvideo.client.metrics.MetricsSampler}. Zero turns the sampling off.
+         */
+        public Builder withMetricsSamplingIntervalInMillis(final long metricsSamplingIntervalInMillis) {
+            if (metricsSamplingIntervalInMillis < 0) {
+                throw new IllegalArgumentException("Metrics sampling interval should not be negative.");
+            }
+            this.metricsSamplingIntervalInMillis = metricsSamplingIntervalInMillis;
+            return this;
+        }
+
+        public Builder withMetricsHistorySize(final int metricsHistorySize) {
+            if (metricsHistorySize <= 0) {
+                throw new IllegalArgumentException("Metrics history size should be positive.");
+            }
+            this.metricsHistorySize = metricsHistorySize;
+            return this;
+        }
+
+        /**
+         * Measures the latency from the put of the key frame of each fragment to its buffering, received and
+         * persisted acks, see {@link com.amazonaws.kinesisvideo.client.metrics.FragmentLatencyTracker}.
+         */
+        public Builder withFragmentLatencyTracking(final boolean fragmentLatencyTracking) {
+            this.fragmentLatencyTracking = fragmentLatencyTracking;
+            return this;
+        }
+
+        /**
+         * Logs the fragment latency percentiles at the given interval when they are tracked. Zero turns the reports
+         * off.
+         */
+        public Builder withFragmentLatencyReportIntervalInMillis(final long fragmentLatencyReportIntervalInMillis) {
+            if (fragmentLatencyReportIntervalInMillis < 0) {
+                throw new IllegalArgumentException("Fragment latency report interval should not be negative.");
+            }
+            this.fragmentLatencyReportIntervalInMillis = fragmentLatencyReportIntervalInMillis;
+            return this;
+        }
+
+        public Builder withServiceCallTimerThreads(final int serviceCallTimerThreads) {
+            if (serviceCallTimerThreads <= 0) {
+                throw new IllegalArgumentException("Service call timer threads should be positive.");
+            }
+            this.serviceCallTimerThreads = serviceCallTimerThreads;
+            return this;
+        }
+
+        /**
+         * Sizes the pool running the service calls and credential refreshes, apart from the PutMedia connects.
+         */
+        public Builder withServiceCallThreads(final int serviceCallThreads) {
+            if (serviceCallThreads <= 0) {
+                throw new IllegalArgumentException("Service call threads should be positive.");
+            }
+            this.serviceCallThreads = serviceCallThreads;
+            return this;
+        }
+
+        /**
+         * Sizes the pool running the PutMedia connects, which bounds how many streams connect at once.
+         */
+        public Builder withPutMediaConnectThreads(final int putMediaConnectThreads) {
+            if (putMediaConnectThreads <= 0) {
+                throw new IllegalArgumentException("PutMedia connect threads should be positive.");
+            }
+            this.putMediaConnectThreads = putMediaConnectThreads;
+            return this;
+        }
+
+        public Builder withServiceCallQueueCapacity(final int serviceCallQueueCapacity) {
+            if (serviceCallQueueCapacity <= 0) {
+                throw new IllegalArgumentException("Service call queue capacity should be positive.");
+            }
+            this.serviceCallQueueCapacity = serviceCallQueueCapacity;
+            return this;
+        }
+
+        /**
+         * Runs the service calls and PutMedia connects on virtual threads on JDK 21 and later, platform threads
+         * are used otherwise.
+         */
+        public Builder withVirtualServiceCallThreads(final boolean virtualServiceCallThreads) {
+            this.virtualServiceCallThreads = virtualServiceCallThreads;
+            return this;
+        }
+
+        /**
+         * Switches the data to the next upload session, which the producer connects ahead of a token rotation, as
+         * soon as the previous one has sent its last fragment. The previous connection stays open for the acks of
+         * its last fragments, instead of being closed before the next session may send.
+         */
+        public Builder withOverlappedUploadRotation(final boolean overlappedUploadRotation) {
+            this.overlappedUploadRotation = overlappedUploadRotation;
+            return this;
+        }
+
         public KinesisVideoClientConfiguration build() {
             sanitizeBuilder(this);
             return new KinesisVideoClientConfiguration(this);
@@ -15,6 +15,16 @@ public final class KinesisVideoClientConfigurationDefaults {
     static final int STORAGE_SIZE_256_MEGS = 256 * 1024 * 1024;
 
     public static final int DEFAULT_SERVICE_CALL_TIMEOUT_IN_MILLIS = 5000;
+    public static final long DEFAULT_SERVICE_CALL_CACHE_TTL_IN_MILLIS = 5 * 60 * 1000;
+    public static final long DEFAULT_SERVICE_CALL_CACHE_NEGATIVE_TTL_IN_MILLIS = 5000;
+    public static final long DEFAULT_RATE_CONTROL_INTERVAL_IN_MILLIS = 1000;
+    public static final long DEFAULT_METRICS_SAMPLING_INTERVAL_IN_MILLIS = 1000;
+    public static final int DEFAULT_METRICS_HISTORY_SIZE = 300;
+    public static final long DEFAULT_FRAGMENT_LATENCY_REPORT_INTERVAL_IN_MILLIS = 60 * 1000;
+    public static final int DEFAULT_SERVICE_CALL_TIMER_THREADS = 1;
+    public static final int DEFAULT_SERVICE_CALL_THREADS = 4;
+    public static final int DEFAULT_PUT_MEDIA_CONNECT_THREADS = 8;
+    public static final int DEFAULT_SERVICE_CALL_QUEUE_CAPACITY = 256;
 
     static final StorageCallbacks NO_OP_STORAGE_CALLBACKS = new DefaultStorageCallbacks();
 
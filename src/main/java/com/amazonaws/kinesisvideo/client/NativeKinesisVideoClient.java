@@ -3,6 +3,12 @@ package com.amazonaws.kinesisvideo.client;
 import com.amazonaws.kinesisvideo.auth.DefaultAuthCallbacks;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource;
+import com.amazonaws.kinesisvideo.client.metrics.FragmentLatencyReporter;
+import com.amazonaws.kinesisvideo.client.metrics.FragmentLatencyTracker;
+import com.amazonaws.kinesisvideo.client.metrics.MetricsSampler;
+import com.amazonaws.kinesisvideo.client.ratecontrol.RateController;
+import com.amazonaws.kinesisvideo.client.ratecontrol.StreamRateMonitor;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
@@ -10,18 +16,28 @@ import com.amazonaws.kinesisvideo.mediasource.ProducerStreamSink;
 import com.amazonaws.kinesisvideo.producer.*;
 import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
 import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.producer.jni.NativeLockingMode;
 import com.amazonaws.kinesisvideo.service.DefaultServiceCallbacksImpl;
+import com.amazonaws.kinesisvideo.service.ServiceCallExecutor;
 import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
+import com.amazonaws.kinesisvideo.streaming.ForwardingStreamCallbacks;
 import com.amazonaws.kinesisvideo.util.ProducerStreamUtil;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implement Kinesis Video Client interface for Android.
@@ -41,6 +57,8 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
      * Logging tag
      */
     private static final String TAG = "NativeKinesisVideoClient";
+    private static final String SERVICE_CALL_THREAD_NAME = "KinesisVideoServiceCall";
+    private static final String PUT_MEDIA_CONNECT_THREAD_NAME = "KinesisVideoPutMediaConnect";
 
     /**
      * Kinesis Video producer callbacks
@@ -50,6 +68,24 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
     private final StreamCallbacks streamCallbacks;
     private final DefaultServiceCallbacksImpl defaultServiceCallbacks;
     private final List<MediaSource> mediaSources;
+    private final NativeLockingMode nativeLockingMode;
+
+    /**
+     * Rate control of the media sources and metrics sampling, only set up when the client is created from a
+     * configuration
+     */
+    private RateController.Factory rateControllerFactory;
+    private long rateControlIntervalInMillis;
+    private long metricsSamplingIntervalInMillis;
+    private int metricsHistorySize;
+    private boolean fragmentLatencyTracking;
+    private long fragmentLatencyReportIntervalInMillis;
+    private ScheduledExecutorService executor;
+    private ServiceCallExecutor serviceCallExecutor;
+    private KinesisVideoServiceClient serviceClient;
+    private final List<ScheduledFuture<?>> scheduledTasks = new CopyOnWriteArrayList<ScheduledFuture<?>>();
+    private volatile MetricsSampler metricsSampler;
+    private volatile FragmentLatencyReporter fragmentLatencyReporter;
 
     /**
      * Underlying Kinesis Video producer object.
@@ -71,13 +107,66 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
             @Nonnull final KinesisVideoClientConfiguration configuration,
             @Nonnull final KinesisVideoServiceClient serviceClient,
             @Nonnull final ScheduledExecutorService executor) {
+        this(log, configuration, serviceClient, executor, new DefaultStreamCallbacks());
+    }
+
+    /**
+     * The executor is the timer of the service calls and runs the periodic tasks, the calls themselves run on the
+     * pools sized by the configuration.
+     */
+    public NativeKinesisVideoClient(
+            @Nonnull final Log log,
+            @Nonnull final KinesisVideoClientConfiguration configuration,
+            @Nonnull final KinesisVideoServiceClient serviceClient,
+            @Nonnull final ScheduledExecutorService executor,
+            @Nonnull final StreamCallbacks streamCallbacks) {
+        this(log, configuration, serviceClient, createServiceCallExecutor(log, configuration, executor),
+                streamCallbacks);
+    }
+
+    private NativeKinesisVideoClient(
+            @Nonnull final Log log,
+            @Nonnull final KinesisVideoClientConfiguration configuration,
+            @Nonnull final KinesisVideoServiceClient serviceClient,
+            @Nonnull final ServiceCallExecutor serviceCallExecutor,
+            @Nonnull final StreamCallbacks streamCallbacks) {
         this(log,
                 new DefaultAuthCallbacks(configuration.getCredentialsProvider(),
-                        executor,
+                        serviceCallExecutor,
                         log),
                 configuration.getStorageCallbacks(),
-                new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient),
-                new DefaultStreamCallbacks());
+                new DefaultServiceCallbacksImpl(log, serviceCallExecutor, configuration, serviceClient),
+                streamCallbacks,
+                configuration.getNativeLockingMode());
+
+        rateControllerFactory = configuration.getRateControllerFactory();
+        rateControlIntervalInMillis = configuration.getRateControlIntervalInMillis();
+        metricsSamplingIntervalInMillis = configuration.getMetricsSamplingIntervalInMillis();
+        metricsHistorySize = configuration.getMetricsHistorySize();
+        fragmentLatencyTracking = configuration.isFragmentLatencyTracking();
+        fragmentLatencyReportIntervalInMillis = configuration.getFragmentLatencyReportIntervalInMillis();
+        this.serviceCallExecutor = serviceCallExecutor;
+        this.executor = serviceCallExecutor.getTimer();
+        this.serviceClient = serviceClient;
+    }
+
+    @Nonnull
+    private static ServiceCallExecutor createServiceCallExecutor(
+            @Nonnull final Log log,
+            @Nonnull final KinesisVideoClientConfiguration configuration,
+            @Nonnull final ScheduledExecutorService timer) {
+        return new ServiceCallExecutor(timer,
+                ServiceCallExecutor.newBoundedExecutor(SERVICE_CALL_THREAD_NAME,
+                        configuration.getServiceCallThreads(),
+                        configuration.getServiceCallQueueCapacity(),
+                        configuration.isVirtualServiceCallThreads(),
+                        log),
+                ServiceCallExecutor.newBoundedExecutor(PUT_MEDIA_CONNECT_THREAD_NAME,
+                        configuration.getPutMediaConnectThreads(),
+                        configuration.getServiceCallQueueCapacity(),
+                        configuration.isVirtualServiceCallThreads(),
+                        log),
+                log);
     }
 
     public NativeKinesisVideoClient(
@@ -86,6 +175,16 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
             @Nonnull final StorageCallbacks storageCallbacks,
             @Nonnull final ServiceCallbacks serviceCallbacks,
             @Nonnull final StreamCallbacks streamCallbacks) {
+        this(log, authCallbacks, storageCallbacks, serviceCallbacks, streamCallbacks, NativeLockingMode.GLOBAL);
+    }
+
+    public NativeKinesisVideoClient(
+            @Nonnull final Log log,
+            @Nonnull final AuthCallbacks authCallbacks,
+            @Nonnull final StorageCallbacks storageCallbacks,
+            @Nonnull final ServiceCallbacks serviceCallbacks,
+            @Nonnull final StreamCallbacks streamCallbacks,
+            @Nonnull final NativeLockingMode nativeLockingMode) {
 
         super(log);
 
@@ -93,6 +192,7 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
         this.storageCallbacks = checkNotNull(storageCallbacks);
         defaultServiceCallbacks = (DefaultServiceCallbacksImpl) checkNotNull(serviceCallbacks);
         this.streamCallbacks = checkNotNull(streamCallbacks);
+        this.nativeLockingMode = checkNotNull(nativeLockingMode);
 
         mediaSources = new ArrayList<MediaSource>();
     }
@@ -107,21 +207,127 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
                 authCallbacks,
                 storageCallbacks,
                 defaultServiceCallbacks,
-                mLog);
+                mLog,
+                new CountDownLatch(1),
+                nativeLockingMode);
 
         kinesisVideoProducer.createSync(deviceInfo);
 
+        if (executor != null && metricsSamplingIntervalInMillis > 0) {
+            metricsSampler = new MetricsSampler(kinesisVideoProducer, metricsHistorySize, mLog);
+            scheduledTasks.add(executor.scheduleAtFixedRate(metricsSampler,
+                    metricsSamplingIntervalInMillis, metricsSamplingIntervalInMillis, TimeUnit.MILLISECONDS));
+        }
+
+        if (fragmentLatencyTracking) {
+            fragmentLatencyReporter = new FragmentLatencyReporter(mLog);
+            if (executor != null && fragmentLatencyReportIntervalInMillis > 0) {
+                scheduledTasks.add(executor.scheduleAtFixedRate(fragmentLatencyReporter,
+                        fragmentLatencyReportIntervalInMillis, fragmentLatencyReportIntervalInMillis,
+                        TimeUnit.MILLISECONDS));
+            }
+        }
+
         super.initialize(deviceInfo);
     }
 
+    /**
+     * @return Sampler holding the recent client and stream metrics, or null if they aren't sampled
+     */
+    @Nullable
+    public MetricsSampler getMetricsSampler() {
+        return metricsSampler;
+    }
+
+    /**
+     * @return Executor of the service calls with its queue and rejection counts, or null if the client wasn't
+     * created from a configuration
+     */
+    @Nullable
+    public ServiceCallExecutor getServiceCallExecutor() {
+        return serviceCallExecutor;
+    }
+
+    /**
+     * @return Reporter holding the fragment latencies of each stream, or null if they aren't tracked
+     */
+    @Nullable
+    public FragmentLatencyReporter getFragmentLatencyReporter() {
+        return fragmentLatencyReporter;
+    }
+
     @Override
     public void registerMediaSource(final String streamName,
                                     final MediaSource mediaSource) throws KinesisVideoException {
         final StreamInfo streamInfo = ProducerStreamUtil.toStreamInfo(streamName, mediaSource.getConfiguration());
-        final KinesisVideoProducerStream producerStream = kinesisVideoProducer.createStreamSync(streamInfo, streamCallbacks);
+        final StreamRateMonitor rateMonitor = createRateMonitor(streamName, streamInfo, mediaSource);
+        StreamCallbacks callbacks = rateMonitor == null ? streamCallbacks : rateMonitor;
+        final FragmentLatencyReporter latencyReporter = fragmentLatencyReporter;
+        final FragmentLatencyTracker latencyTracker =
+                latencyReporter == null ? null : latencyReporter.addStream(streamName);
+        if (latencyTracker != null) {
+            callbacks = latencyTracker.wrap(callbacks);
+        }
+
+        // Closed streams are dropped from the service callbacks, the metrics and the rate control rather than piling
+        // up until the client is freed
+        final AtomicLong streamHandle = new AtomicLong(NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE);
+        final AtomicReference<ScheduledFuture<?>> rateMonitorTask = new AtomicReference<ScheduledFuture<?>>();
+        callbacks = new ForwardingStreamCallbacks(callbacks) {
+            @Override
+            public void streamClosed(final long uploadHandle) throws ProducerException {
+                defaultServiceCallbacks.removeStream(streamHandle.get());
+                final MetricsSampler sampler = metricsSampler;
+                if (sampler != null) {
+                    sampler.removeStream(streamName);
+                }
+                final ScheduledFuture<?> task = rateMonitorTask.getAndSet(null);
+                if (task != null) {
+                    task.cancel(false);
+                    scheduledTasks.remove(task);
+                }
+                super.streamClosed(uploadHandle);
+            }
+        };
+
+        final KinesisVideoProducerStream producerStream = kinesisVideoProducer.createStreamSync(streamInfo,
+                callbacks);
+        streamHandle.set(producerStream.getStreamHandle());
         mediaSources.add(mediaSource);
-        mediaSource.initialize(new ProducerStreamSink(producerStream));
+        mediaSource.initialize(new ProducerStreamSink(producerStream, latencyTracker));
         defaultServiceCallbacks.addStream(producerStream);
+
+        final MetricsSampler sampler = metricsSampler;
+        if (sampler != null) {
+            sampler.addStream(producerStream);
+        }
+
+        if (rateMonitor != null) {
+            rateMonitor.attach(producerStream);
+            final ScheduledFuture<?> task = executor.scheduleAtFixedRate(rateMonitor,
+                    rateControlIntervalInMillis, rateControlIntervalInMillis, TimeUnit.MILLISECONDS);
+            rateMonitorTask.set(task);
+            scheduledTasks.add(task);
+        }
+    }
+
+    /**
+     * @return Monitor standing in for the stream callbacks, or null if the rate of the media source isn't controlled
+     */
+    @Nullable
+    private StreamRateMonitor createRateMonitor(@Nonnull final String streamName,
+                                                @Nonnull final StreamInfo streamInfo,
+                                                @Nonnull final MediaSource mediaSource) {
+        if (rateControllerFactory == null || !(mediaSource instanceof RateControlledMediaSource)) {
+            return null;
+        }
+
+        return new StreamRateMonitor(streamName,
+                streamCallbacks,
+                rateControllerFactory.create(streamName),
+                (RateControlledMediaSource) mediaSource,
+                streamInfo.getBufferDuration() / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                mLog);
     }
 
     @Override
@@ -147,9 +353,19 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
         if (isInitialized()) {
             super.free();
 
+            for (final ScheduledFuture<?> task : scheduledTasks) {
+                task.cancel(false);
+            }
+            scheduledTasks.clear();
+            metricsSampler = null;
+            fragmentLatencyReporter = null;
+
             defaultServiceCallbacks.free();
             kinesisVideoProducer.stopStreams();
             kinesisVideoProducer.free();
+            if (serviceClient != null) {
+                serviceClient.free();
+            }
 
             mIsInitialized = false;
         }
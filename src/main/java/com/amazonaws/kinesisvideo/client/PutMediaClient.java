@@ -1,14 +1,19 @@
 package com.amazonaws.kinesisvideo.client;
 
 import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.io.NotifyingByteChannel;
 import com.amazonaws.kinesisvideo.common.logging.Log;
-import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.common.tracing.ProducerEvents;
+import com.amazonaws.kinesisvideo.encoding.ChunkedOutputStream;
+import com.amazonaws.kinesisvideo.http.HttpClient;
+import com.amazonaws.kinesisvideo.http.HttpResponseListener;
+import com.amazonaws.kinesisvideo.http.NioEventLoopGroup;
+import com.amazonaws.kinesisvideo.http.NioPutMediaHttpClient;
 import com.amazonaws.kinesisvideo.http.ParallelSimpleHttpClient;
 import com.amazonaws.kinesisvideo.signing.KinesisVideoSigner;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthMeasuringOutputStream;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottledOutputStream;
-import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
-import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
+import com.amazonaws.kinesisvideo.stream.throttling.HierarchicalBandwidthScheduler;
 import com.amazonaws.kinesisvideo.stream.throttling.OpsPerSecondMeasurer;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -17,6 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
@@ -27,7 +33,6 @@ import static com.amazonaws.kinesisvideo.http.HttpMethodName.POST;
  */
 public final class PutMediaClient {
     private static final double BYTES_IN_MB = 1024.0 * 1024.0;
-    private static final long BITS_IN_A_KILOBIT = 1024L;
     private static final String STREAM_NAME_HEADER = "x-amzn-stream-name";
     private static final String FRAGMENT_TIME_CODE_TYPE_HEADER = "x-amzn-fragment-timecode-type";
     private static final String PRODUCER_START_TIMESTAMP_HEADER = "x-amzn-producer-start-timestamp";
@@ -38,8 +43,9 @@ public final class PutMediaClient {
     private static final int BUFFER_SIZE = 128 * 128; //16kb
     private static final double MILLI_TO_SEC = 1000;
     private static final int LOGGING_INTERVAL = 250; // Rougly every 10 seconds in 25 fps
+    private static final ProducerEvents EVENTS = ProducerEvents.getInstance();
     private final Builder mBuilder;
-    private ParallelSimpleHttpClient httpClient;
+    private HttpClient httpClient;
     private final Log log;
 
     private PutMediaClient(final Builder builder) {
@@ -52,31 +58,88 @@ public final class PutMediaClient {
     }
 
     public void putMediaInBackground() {
-        final ParallelSimpleHttpClient.Builder clientBuilder = ParallelSimpleHttpClient.builder().uri(mBuilder.mUri).method(POST).log(log).header(STREAM_NAME_HEADER, mBuilder.mStreamName).header(TRANSFER_ENCODING, CHUNKED).header(CONNECTION, KEEP_ALIVE);
+        if (canUseEventLoop()) {
+            putMediaOnEventLoop();
+            return;
+        }
+
+        final ParallelSimpleHttpClient.Builder clientBuilder = ParallelSimpleHttpClient.builder().uri(mBuilder.mUri).method(POST).log(log);
+        for (final Map.Entry<String, String> header : getPutMediaHeaders().entrySet()) {
+            clientBuilder.header(header.getKey(), header.getValue());
+        }
         clientBuilder.setReceiverCallback(mBuilder.mAcksReceiver);
-        clientBuilder.header(PRODUCER_START_TIMESTAMP_HEADER, String.format(Locale.US, "%.3f", mBuilder.mTimestamp / MILLI_TO_SEC));
-        clientBuilder.header(FRAGMENT_TIME_CODE_TYPE_HEADER, mBuilder.mFragmentTimecodeType);
         clientBuilder.completionCallback(mBuilder.mCompletion);
         clientBuilder.setSenderCallback(sendChunkEncodedMvkStream());
         // Timeout if no response is received from the server for put(i.e., acks)
         // Socket will/should be closed by the consumer by throwing the SocketTimeoutException
         clientBuilder.setTimeout(mBuilder.mReceiveTimeout);
-        httpClient = clientBuilder.build();
+        final ParallelSimpleHttpClient parallelSimpleHttpClient = clientBuilder.build();
+        httpClient = parallelSimpleHttpClient;
         sign(httpClient);
+        addUnsignedHeaders(httpClient);
+        parallelSimpleHttpClient.connectAndProcessInBackground();
+    }
+
+    private boolean canUseEventLoop() {
+        if (mBuilder.mEventLoopGroup == null) {
+            return false;
+        }
+
+        if (mBuilder.mLogUsedBandwidth || mBuilder.mFileOutputPath != null
+                || !(mBuilder.mMkvStream instanceof NotifyingByteChannel)
+                || !(mBuilder.mAcksReceiver instanceof HttpResponseListener)) {
+            log.warn("PutMedia for stream %s can't run on the event loop, falling back to the blocking client",
+                    mBuilder.mStreamName);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void putMediaOnEventLoop() {
+        final NioPutMediaHttpClient.Builder clientBuilder = NioPutMediaHttpClient.builder()
+                .uri(mBuilder.mUri)
+                .method(POST)
+                .log(log)
+                .streamName(mBuilder.mStreamName)
+                .eventLoopGroup(mBuilder.mEventLoopGroup)
+                .payload((NotifyingByteChannel) mBuilder.mMkvStream)
+                .responseListener((HttpResponseListener) mBuilder.mAcksReceiver)
+                .completionCallback(mBuilder.mCompletion)
+                .setTimeout(mBuilder.mReceiveTimeout)
+                .throttler(createThrottler());
+        for (final Map.Entry<String, String> header : getPutMediaHeaders().entrySet()) {
+            clientBuilder.header(header.getKey(), header.getValue());
+        }
+        final NioPutMediaHttpClient nioHttpClient = clientBuilder.build();
+        httpClient = nioHttpClient;
+        sign(httpClient);
+        addUnsignedHeaders(httpClient);
+        nioHttpClient.connectAndProcessInBackground();
+    }
+
+    private Map<String, String> getPutMediaHeaders() {
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put(STREAM_NAME_HEADER, mBuilder.mStreamName);
+        headers.put(TRANSFER_ENCODING, CHUNKED);
+        headers.put(CONNECTION, KEEP_ALIVE);
+        headers.put(PRODUCER_START_TIMESTAMP_HEADER, String.format(Locale.US, "%.3f", mBuilder.mTimestamp / MILLI_TO_SEC));
+        headers.put(FRAGMENT_TIME_CODE_TYPE_HEADER, mBuilder.mFragmentTimecodeType);
+        return headers;
+    }
+
+    private void addUnsignedHeaders(final HttpClient client) {
         // add additional unsigned headers
         if (mBuilder.unsignedHeaders != null) {
-            for (final String headerName : mBuilder.unsignedHeaders.keySet()) {
-                clientBuilder.header(headerName, mBuilder.unsignedHeaders.get(headerName));
-            }
+            client.getHeaders().putAll(mBuilder.unsignedHeaders);
         }
-        httpClient.connectAndProcessInBackground();
     }
 
     public void close() throws IOException {
         this.httpClient.close();
     }
 
-    private void sign(final ParallelSimpleHttpClient client) {
+    private void sign(final HttpClient client) {
         if (mBuilder.mSigner != null) {
             mBuilder.mSigner.sign(client);
         }
@@ -87,8 +150,10 @@ public final class PutMediaClient {
             @Override
             public void accept(final OutputStream rawOutputStream) {
                 FileOutputStream outputFileStream = null;
+                final HierarchicalBandwidthScheduler.StreamThrottler throttler = createThrottler();
                 try {
-                    final OutputStream throttledOutputStream = throttleAndMeasureOutput(rawOutputStream);
+                    final ChunkedOutputStream chunkedOutputStream =
+                            new ChunkedOutputStream(throttleAndMeasureOutput(rawOutputStream, throttler), BUFFER_SIZE);
                     outputFileStream = createOutputFileStream();
                     final byte[] buffer = new byte[BUFFER_SIZE];
                     int mkvBytesRead;
@@ -104,11 +169,16 @@ public final class PutMediaClient {
                             log.info("End-of-stream is reported. Terminating...");
                             continueLoop = false;
                         } else {
-                            throttledOutputStream.write(ChunkEncoder.encode(buffer, mkvBytesRead));
+                            final Object event = EVENTS.beginChunkWrite();
+                            try {
+                                chunkedOutputStream.write(buffer, 0, mkvBytesRead);
+                            } finally {
+                                EVENTS.endChunkWrite(event, mBuilder.mStreamName, mkvBytesRead);
+                            }
                             tryWriteToFile(outputFileStream, buffer, mkvBytesRead);
                         }
                     }
-                    throttledOutputStream.write(ChunkEncoder.encode(buffer, 0));
+                    chunkedOutputStream.finish();
                     rawOutputStream.flush();
                     log.debug("Data sent. counter : " + counter);
                 } catch (final IOException e) {
@@ -116,22 +186,40 @@ public final class PutMediaClient {
                     throw new RuntimeException("Exception while sending encoded chunk in MKV stream ! ", e);
                 } finally {
                     tryCloseOutputFileStream(outputFileStream);
+                    if (throttler != null) {
+                        throttler.close();
+                    }
                 }
             }
         };
     }
 
-    private OutputStream throttleAndMeasureOutput(final OutputStream rawOutputStream) {
-        final OutputStream throttledOutputStream = throttleStream(rawOutputStream);
+    private OutputStream throttleAndMeasureOutput(final OutputStream rawOutputStream,
+                                                  final HierarchicalBandwidthScheduler.StreamThrottler throttler) {
+        final OutputStream throttledOutputStream = throttler == null
+                ? rawOutputStream
+                : new BandwidthThrottledOutputStream(rawOutputStream, throttler);
         return mBuilder.mLogUsedBandwidth ? logBytesPerSecond(throttledOutputStream) : throttledOutputStream;
     }
 
-    private OutputStream throttleStream(final OutputStream rawOutputStream) {
+    /**
+     * @return Bucket of this upload in the shared scheduler, or in one of its own if only a limit is set, or null
+     */
+    private HierarchicalBandwidthScheduler.StreamThrottler createThrottler() {
+        if (mBuilder.mBandwidthScheduler != null) {
+            final HierarchicalBandwidthScheduler.StreamThrottler throttler =
+                    mBuilder.mBandwidthScheduler.register(mBuilder.mStreamName);
+            if (mBuilder.upstreamKbps != null) {
+                throttler.setUpstreamKbps(mBuilder.upstreamKbps);
+            }
+            return throttler;
+        }
+
         if (mBuilder.upstreamKbps != null) {
-            final BandwidthThrottler throttler = new BandwidthThrottlerImpl(mBuilder.upstreamKbps * BITS_IN_A_KILOBIT);
-            return new BandwidthThrottledOutputStream(rawOutputStream, throttler);
+            return new HierarchicalBandwidthScheduler(mBuilder.upstreamKbps).register(mBuilder.mStreamName);
         }
-        return rawOutputStream;
+
+        return null;
     }
 
     private OutputStream logBytesPerSecond(final OutputStream outputStream) {
@@ -197,10 +285,12 @@ public final class PutMediaClient {
         private boolean mLogUsedBandwidth;
         private String mFileOutputPath;
         private Long upstreamKbps;
+        private HierarchicalBandwidthScheduler mBandwidthScheduler;
         private Consumer<Exception> mCompletion;
         // TODO: Set to correct output channel
         private Log mLog = new Log(Log.SYSTEM_OUT);
         private Map<String, String> unsignedHeaders;
+        private NioEventLoopGroup mEventLoopGroup;
 
         public Builder putMediaDestinationUri(final URI uri) {
             mUri = uri;
@@ -222,6 +312,10 @@ public final class PutMediaClient {
             return this;
         }
 
+        /**
+         * Invoked twice: once the media has been sent or failed to be, and again once the response has ended, whether
+         * the upload runs on its own threads or on an event loop.
+         */
         public Builder receiveCompletion(final Consumer<Exception> completion) {
             mCompletion = completion;
             return this;
@@ -267,6 +361,27 @@ public final class PutMediaClient {
             return this;
         }
 
+        /**
+         * Shares the given upload limit with the uploads of other streams. A limit set with
+         * {@link #upstreamKbps(long)} caps this upload within it.
+         */
+        public Builder bandwidthScheduler(final HierarchicalBandwidthScheduler bandwidthScheduler) {
+            mBandwidthScheduler = bandwidthScheduler;
+            return this;
+        }
+
+        /**
+         * Runs the upload on the given event loops instead of dedicated sender and receiver threads.
+         * <p>
+         * Requires the MKV stream to be a {@link NotifyingByteChannel} and the ACKs receiver to be a
+         * {@link HttpResponseListener}, and doesn't support logging the used bandwidth or writing the stream to a file.
+         * Falls back to the blocking client otherwise.
+         */
+        public Builder eventLoopGroup(final NioEventLoopGroup eventLoopGroup) {
+            mEventLoopGroup = eventLoopGroup;
+            return this;
+        }
+
         public Builder log(final Log log) {
             if (log == null) {
                 throw new NullPointerException("log");
@@ -0,0 +1,16 @@
+package com.amazonaws.kinesisvideo.client.mediasource;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.kinesisvideo.client.ratecontrol.RateTarget;
+
+/**
+ * Media source which can lower its bitrate or frame rate when the stream can't keep up with it.
+ */
+public interface RateControlledMediaSource extends MediaSource {
+    /**
+     * Asks the media source to produce the given share of its configured bitrate and frame rate.
+     * Called on the rate control thread, only when the target changes.
+     */
+    void onTargetRateChanged(@Nonnull final RateTarget target);
+}
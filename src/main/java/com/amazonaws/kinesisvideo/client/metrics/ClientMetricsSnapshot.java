@@ -0,0 +1,97 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.amazonaws.kinesisvideo.producer.KinesisVideoMetrics;
+
+/**
+ * Client metrics at one point in time, see {@link KinesisVideoMetrics}.
+ */
+@Immutable
+public final class ClientMetricsSnapshot {
+    private final long mTimestampMillis;
+    private final long mContentStoreSize;
+    private final long mContentStoreAvailableSize;
+    private final long mContentStoreAllocatedSize;
+    private final long mTotalContentViewSize;
+    private final long mTotalFrameRate;
+    private final long mTotalTransferRate;
+
+    public ClientMetricsSnapshot(final long timestampMillis,
+                                 final long contentStoreSize,
+                                 final long contentStoreAvailableSize,
+                                 final long contentStoreAllocatedSize,
+                                 final long totalContentViewSize,
+                                 final long totalFrameRate,
+                                 final long totalTransferRate) {
+        mTimestampMillis = timestampMillis;
+        mContentStoreSize = contentStoreSize;
+        mContentStoreAvailableSize = contentStoreAvailableSize;
+        mContentStoreAllocatedSize = contentStoreAllocatedSize;
+        mTotalContentViewSize = totalContentViewSize;
+        mTotalFrameRate = totalFrameRate;
+        mTotalTransferRate = totalTransferRate;
+    }
+
+    /**
+     * Copies the metrics, which the native code fills while holding their lock.
+     */
+    @Nonnull
+    public static ClientMetricsSnapshot of(final long timestampMillis, @Nonnull final KinesisVideoMetrics metrics) {
+        synchronized (metrics) {
+            return new ClientMetricsSnapshot(timestampMillis,
+                    metrics.getContentStoreSize(),
+                    metrics.getContentStoreAvailableSize(),
+                    metrics.getContentStoreAllocatedSize(),
+                    metrics.getTotalContentViewSize(),
+                    metrics.getTotalFrameRate(),
+                    metrics.getTotalTransferRate());
+        }
+    }
+
+    /**
+     * @return Wall clock time the metrics were sampled at
+     */
+    public long getTimestampMillis() {
+        return mTimestampMillis;
+    }
+
+    public long getContentStoreSize() {
+        return mContentStoreSize;
+    }
+
+    public long getContentStoreAvailableSize() {
+        return mContentStoreAvailableSize;
+    }
+
+    public long getContentStoreAllocatedSize() {
+        return mContentStoreAllocatedSize;
+    }
+
+    public long getTotalContentViewSize() {
+        return mTotalContentViewSize;
+    }
+
+    public long getTotalFrameRate() {
+        return mTotalFrameRate;
+    }
+
+    /**
+     * @return Bytes per second uploaded by all the streams
+     */
+    public long getTotalTransferRate() {
+        return mTotalTransferRate;
+    }
+
+    @Override
+    public String toString() {
+        return "Kinesis Video client metrics"
+                + "\n\t>> Overall storage size: " + mContentStoreSize
+                + "\n\t>> Available storage size: " + mContentStoreAvailableSize
+                + "\n\t>> Allocated storage size: " + mContentStoreAllocatedSize
+                + "\n\t>> Total view allocation size: " + mTotalContentViewSize
+                + "\n\t>> Total streams frame rate: " + mTotalFrameRate
+                + "\n\t>> Total streams transfer rate: " + mTotalTransferRate;
+    }
+}
@@ -0,0 +1,62 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Holds the {@link FragmentLatencyTracker} of each stream and logs their percentiles each time it runs.
+ */
+@ThreadSafe
+public final class FragmentLatencyReporter implements Runnable {
+    private final Log mLog;
+    private final ConcurrentMap<String, FragmentLatencyTracker> mTrackers =
+            new ConcurrentHashMap<String, FragmentLatencyTracker>();
+
+    public FragmentLatencyReporter(@Nonnull final Log log) {
+        mLog = Preconditions.checkNotNull(log);
+    }
+
+    /**
+     * @return Tracker of the stream, created on the first call
+     */
+    @Nonnull
+    public FragmentLatencyTracker addStream(@Nonnull final String streamName) {
+        final FragmentLatencyTracker tracker = new FragmentLatencyTracker(streamName);
+        final FragmentLatencyTracker existing = mTrackers.putIfAbsent(streamName, tracker);
+        return existing == null ? tracker : existing;
+    }
+
+    @Nullable
+    public FragmentLatencyTracker getTracker(@Nonnull final String streamName) {
+        return mTrackers.get(streamName);
+    }
+
+    @Nonnull
+    public List<String> getStreamNames() {
+        final List<String> streamNames = new ArrayList<String>(mTrackers.keySet());
+        Collections.sort(streamNames);
+        return streamNames;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (final String streamName : getStreamNames()) {
+                mLog.info(mTrackers.get(streamName).toString());
+            }
+        } catch (final RuntimeException e) {
+            // Thrown out of a scheduled task, it would cancel the reports for good
+            mLog.exception(e, "Reporting the fragment latencies failed");
+        }
+    }
+}
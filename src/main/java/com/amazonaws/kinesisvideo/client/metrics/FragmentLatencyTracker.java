@@ -0,0 +1,177 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
+import com.amazonaws.kinesisvideo.streaming.ForwardingStreamCallbacks;
+
+/**
+ * Measures how long the fragments of a stream take from the put of their key frame to each of their acks.
+ * <p>
+ * Key frames are matched with the acks by timestamp, which works when the acks carry the timestamps of the frames,
+ * as with absolute fragment timecodes. The submit times wait in a {@link LongLongHashMap} until the persisted or
+ * error ack of their fragment arrives, and are dropped after {@link #MAX_AGE_MINUTES} otherwise.
+ */
+@ThreadSafe
+public final class FragmentLatencyTracker {
+    /**
+     * Acks measured by the tracker
+     */
+    public enum AckStage {
+        BUFFERING,
+        RECEIVED,
+        PERSISTED
+    }
+
+    static final int MAX_PENDING_FRAGMENTS = 4096;
+    static final long MAX_AGE_MINUTES = 5;
+
+    private final String mStreamName;
+    private final LongLongHashMap mSubmitNanos = new LongLongHashMap(MAX_PENDING_FRAGMENTS);
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[AckStage.values().length];
+    private final AtomicLong mUnmatchedAcks = new AtomicLong();
+    private final AtomicLong mExpiredFragments = new AtomicLong();
+
+    public FragmentLatencyTracker(@Nonnull final String streamName) {
+        mStreamName = Preconditions.checkNotNull(streamName);
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    @Nonnull
+    public String getStreamName() {
+        return mStreamName;
+    }
+
+    /**
+     * Records the time the key frame starting a fragment was put.
+     */
+    public void recordKeyFrame(final long timestamp, final long nowNanos) {
+        if (timestamp == LongLongHashMap.EMPTY_KEY) {
+            return;
+        }
+
+        synchronized (mSubmitNanos) {
+            if (!mSubmitNanos.put(timestamp, nowNanos)) {
+                mExpiredFragments.addAndGet(
+                        mSubmitNanos.removeValuesBelow(nowNanos - TimeUnit.MINUTES.toNanos(MAX_AGE_MINUTES)));
+                if (!mSubmitNanos.put(timestamp, nowNanos)) {
+                    mExpiredFragments.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the latency of the fragment up to the ack.
+     *
+     * @param ackType One of {@link FragmentAckType}
+     */
+    public void recordAck(final int ackType, final long timestamp, final long nowNanos) {
+        final AckStage stage;
+        final long submitNanos;
+        switch (ackType) {
+            case FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING:
+                stage = AckStage.BUFFERING;
+                submitNanos = getSubmitNanos(timestamp, false);
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED:
+                stage = AckStage.RECEIVED;
+                submitNanos = getSubmitNanos(timestamp, false);
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED:
+                stage = AckStage.PERSISTED;
+                submitNanos = getSubmitNanos(timestamp, true);
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_ERROR:
+                // No more acks are coming for the fragment
+                getSubmitNanos(timestamp, true);
+                return;
+            default:
+                return;
+        }
+
+        if (submitNanos == LongLongHashMap.EMPTY_KEY) {
+            mUnmatchedAcks.incrementAndGet();
+            return;
+        }
+        mHistograms[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nowNanos - submitNanos));
+    }
+
+    private long getSubmitNanos(final long timestamp, final boolean remove) {
+        synchronized (mSubmitNanos) {
+            return remove
+                    ? mSubmitNanos.remove(timestamp, LongLongHashMap.EMPTY_KEY)
+                    : mSubmitNanos.get(timestamp, LongLongHashMap.EMPTY_KEY);
+        }
+    }
+
+    /**
+     * @return Latencies from the put of the key frame to the ack, in microseconds
+     */
+    @Nonnull
+    public LatencyHistogram getHistogram(@Nonnull final AckStage stage) {
+        return mHistograms[stage.ordinal()];
+    }
+
+    /**
+     * @return Number of fragments waiting for their persisted ack
+     */
+    public int getPendingFragments() {
+        synchronized (mSubmitNanos) {
+            return mSubmitNanos.size();
+        }
+    }
+
+    /**
+     * @return Number of acks without a matching key frame
+     */
+    public long getUnmatchedAcks() {
+        return mUnmatchedAcks.get();
+    }
+
+    /**
+     * @return Number of key frames given up on before their persisted ack, or not tracked because too many were
+     * pending
+     */
+    public long getExpiredFragments() {
+        return mExpiredFragments.get();
+    }
+
+    /**
+     * @return Callbacks recording the acks before handing them on to the given ones
+     */
+    @Nonnull
+    public StreamCallbacks wrap(@Nonnull final StreamCallbacks streamCallbacks) {
+        return new ForwardingStreamCallbacks(streamCallbacks) {
+            @Override
+            public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck)
+                    throws ProducerException {
+                recordAck(fragmentAck.getAckType().getIntType(), fragmentAck.getTimestamp(), System.nanoTime());
+                super.fragmentAckReceived(fragmentAck);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder report = new StringBuilder("Fragment latency of stream ").append(mStreamName);
+        for (final AckStage stage : AckStage.values()) {
+            report.append("\n\t>> ").append(stage).append(": ").append(mHistograms[stage.ordinal()]);
+        }
+        return report.append("\n\t>> Pending: ").append(getPendingFragments())
+                .append(", unmatched acks: ").append(getUnmatchedAcks())
+                .append(", expired: ").append(getExpiredFragments())
+                .toString();
+    }
+}
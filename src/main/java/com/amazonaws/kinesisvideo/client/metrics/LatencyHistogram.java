@@ -0,0 +1,113 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Lock-free histogram of latencies in microseconds, with a precision of about 3% over the whole range.
+ * <p>
+ * Buckets are laid out as in HdrHistogram: values below {@link #LINEAR_BUCKETS} have a bucket each, and every power
+ * of two above that is split into {@link #SUB_BUCKETS} buckets of equal width. Recording is a couple of atomic
+ * increments, so it can be done from any thread. Reads aren't atomic with respect to concurrent recording and may
+ * be off by the values being recorded at the time.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 1 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    public void record(final long micros) {
+        final long value = Math.max(0, micros);
+        mCounts.incrementAndGet(indexOf(value));
+        mSum.addAndGet(value);
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // Retry
+        }
+        mCount.incrementAndGet();
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public double getMean() {
+        final long count = mCount.get();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * @param percentile Within [0, 100]
+     * @return Upper bound of the bucket holding the value at the percentile, 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "Percentile should be within [0, 100]");
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += mCounts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int indexOf(final long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(final int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+
+        final int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        final long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        // The last bucket ends at Long.MIN_VALUE - 1, which is Long.MAX_VALUE
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count %d, mean %.1f ms, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms",
+                getCount(),
+                getMean() / 1000,
+                getValueAtPercentile(50) / 1000.0,
+                getValueAtPercentile(90) / 1000.0,
+                getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0,
+                getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,154 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import java.util.Arrays;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Map from long to long with open addressing and linear probing, so that neither keys nor values are boxed.
+ * It grows up to a maximum capacity, beyond which puts are refused.
+ */
+@NotThreadSafe
+final class LongLongHashMap {
+    /**
+     * Marks the empty slots, it can't be used as a key
+     */
+    static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int mMaxCapacity;
+    private long[] mKeys;
+    private long[] mValues;
+    private int mSize;
+
+    /**
+     * @param maxSize Largest number of entries, the table is at most twice as large
+     */
+    LongLongHashMap(final int maxSize) {
+        Preconditions.checkArgument(maxSize > 0, "Max size should be positive");
+        mMaxCapacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(maxSize - 1) << 2);
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return Whether the entry has been stored, false if the map is full
+     */
+    boolean put(final long key, final long value) {
+        Preconditions.checkArgument(key != EMPTY_KEY, "Key is reserved");
+        int slot = slotOf(key);
+        while (mKeys[slot] != EMPTY_KEY) {
+            if (mKeys[slot] == key) {
+                mValues[slot] = value;
+                return true;
+            }
+            slot = (slot + 1) & (mKeys.length - 1);
+        }
+
+        // Kept at most half full
+        if (2 * (mSize + 1) > mKeys.length) {
+            if (mKeys.length >= mMaxCapacity) {
+                return false;
+            }
+            rehash(mKeys.length * 2, Long.MIN_VALUE);
+            return put(key, value);
+        }
+
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return Value of the key, or the given default if there is none
+     */
+    long get(final long key, final long defaultValue) {
+        final int slot = find(key);
+        return slot < 0 ? defaultValue : mValues[slot];
+    }
+
+    /**
+     * @return Value the key had, or the given default if there was none
+     */
+    long remove(final long key, final long defaultValue) {
+        int slot = find(key);
+        if (slot < 0) {
+            return defaultValue;
+        }
+
+        final long value = mValues[slot];
+        mSize--;
+        // Shift the following entries of the cluster back so that lookups don't stop at the hole
+        final int mask = mKeys.length - 1;
+        int next = (slot + 1) & mask;
+        while (mKeys[next] != EMPTY_KEY) {
+            final int home = slotOf(mKeys[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                mKeys[slot] = mKeys[next];
+                mValues[slot] = mValues[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mKeys[slot] = EMPTY_KEY;
+        return value;
+    }
+
+    /**
+     * Removes the entries with a value below the given one.
+     *
+     * @return Number of entries removed
+     */
+    int removeValuesBelow(final long minValue) {
+        final int size = mSize;
+        rehash(mKeys.length, minValue);
+        return size - mSize;
+    }
+
+    private int find(final long key) {
+        int slot = slotOf(key);
+        while (mKeys[slot] != EMPTY_KEY) {
+            if (mKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & (mKeys.length - 1);
+        }
+        return -1;
+    }
+
+    private int slotOf(final long key) {
+        // Finalizer of MurmurHash3, timestamps are multiples of large powers of ten
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & (mKeys.length - 1);
+    }
+
+    private void rehash(final int capacity, final long minValue) {
+        final long[] keys = mKeys;
+        final long[] values = mValues;
+        allocate(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY && values[i] >= minValue) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        mKeys = new long[capacity];
+        mValues = new long[capacity];
+        Arrays.fill(mKeys, EMPTY_KEY);
+        mSize = 0;
+    }
+}
@@ -0,0 +1,77 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Ring buffer keeping the latest snapshots, oldest first. Adding overwrites the oldest snapshot once it is full.
+ */
+@ThreadSafe
+public final class MetricsHistory<T> {
+    private final Object[] mSnapshots;
+    private int mNext;
+    private int mSize;
+
+    public MetricsHistory(final int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Capacity should be positive");
+        mSnapshots = new Object[capacity];
+    }
+
+    public synchronized void add(@Nonnull final T snapshot) {
+        mSnapshots[mNext] = Preconditions.checkNotNull(snapshot);
+        mNext = (mNext + 1) % mSnapshots.length;
+        mSize = Math.min(mSize + 1, mSnapshots.length);
+    }
+
+    /**
+     * @return The latest snapshot, or null if there is none yet
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized T getLatest() {
+        return mSize == 0 ? null : (T) mSnapshots[(mNext - 1 + mSnapshots.length) % mSnapshots.length];
+    }
+
+    /**
+     * @return Copy of the snapshots, oldest first
+     */
+    @Nonnull
+    public List<T> getSnapshots() {
+        return getLatest(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return Copy of up to the given number of the latest snapshots, oldest first
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> getLatest(final int count) {
+        Preconditions.checkArgument(count >= 0, "Count should not be negative");
+        final int size = Math.min(count, mSize);
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        final List<T> snapshots = new ArrayList<T>(size);
+        final int first = mNext - size + mSnapshots.length;
+        for (int i = 0; i < size; i++) {
+            snapshots.add((T) mSnapshots[(first + i) % mSnapshots.length]);
+        }
+        return snapshots;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public int getCapacity() {
+        return mSnapshots.length;
+    }
+}
@@ -0,0 +1,121 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoProducer;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+/**
+ * Samples the client metrics and the metrics of each stream into a {@link MetricsHistory} each time it runs.
+ * <p>
+ * Reading the metrics takes the native locks, so it is done here, at a fixed interval off the frame path, rather than
+ * by every caller interested in them. The metrics are also logged at debug level.
+ */
+@ThreadSafe
+public final class MetricsSampler implements Runnable {
+    private final KinesisVideoProducer mProducer;
+    private final int mHistorySize;
+    private final Log mLog;
+    private final MetricsHistory<ClientMetricsSnapshot> mClientHistory;
+    private final ConcurrentMap<String, KinesisVideoProducerStream> mStreams =
+            new ConcurrentHashMap<String, KinesisVideoProducerStream>();
+    private final ConcurrentMap<String, MetricsHistory<StreamMetricsSnapshot>> mStreamHistories =
+            new ConcurrentHashMap<String, MetricsHistory<StreamMetricsSnapshot>>();
+
+    /**
+     * @param historySize Number of snapshots kept for the client and for each stream
+     */
+    public MetricsSampler(@Nonnull final KinesisVideoProducer producer, final int historySize,
+                          @Nonnull final Log log) {
+        Preconditions.checkArgument(historySize > 0, "History size should be positive");
+        mProducer = Preconditions.checkNotNull(producer);
+        mHistorySize = historySize;
+        mLog = Preconditions.checkNotNull(log);
+        mClientHistory = new MetricsHistory<ClientMetricsSnapshot>(historySize);
+    }
+
+    public void addStream(@Nonnull final KinesisVideoProducerStream stream) {
+        final String streamName = stream.getStreamName();
+        mStreamHistories.putIfAbsent(streamName, new MetricsHistory<StreamMetricsSnapshot>(mHistorySize));
+        mStreams.put(streamName, stream);
+    }
+
+    /**
+     * Stops sampling the stream. Its history stays available.
+     */
+    public void removeStream(@Nonnull final String streamName) {
+        mStreams.remove(streamName);
+    }
+
+    @Override
+    public void run() {
+        try {
+            sample(System.currentTimeMillis());
+        } catch (final RuntimeException e) {
+            // Thrown out of a scheduled task, it would cancel the sampling for good
+            mLog.exception(e, "Sampling the metrics failed");
+        }
+    }
+
+    void sample(final long timestampMillis) {
+        final boolean logMetrics = mLog.isEnabled(LogLevel.DEBUG);
+        try {
+            final ClientMetricsSnapshot snapshot = ClientMetricsSnapshot.of(timestampMillis, mProducer.getMetrics());
+            mClientHistory.add(snapshot);
+            if (logMetrics) {
+                mLog.debug(snapshot.toString());
+            }
+        } catch (final ProducerException e) {
+            mLog.warn("Could not sample the client metrics: %s", e.getMessage());
+        }
+
+        for (final Map.Entry<String, KinesisVideoProducerStream> stream : mStreams.entrySet()) {
+            try {
+                final StreamMetricsSnapshot snapshot =
+                        StreamMetricsSnapshot.of(timestampMillis, stream.getValue().getMetrics());
+                mStreamHistories.get(stream.getKey()).add(snapshot);
+                if (logMetrics) {
+                    mLog.debug("%s of %s", snapshot, stream.getKey());
+                }
+            } catch (final ProducerException e) {
+                mLog.warn("Could not sample the metrics of stream %s: %s", stream.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @Nonnull
+    public MetricsHistory<ClientMetricsSnapshot> getClientMetrics() {
+        return mClientHistory;
+    }
+
+    /**
+     * @return History of the stream, or null if it has never been sampled
+     */
+    @Nullable
+    public MetricsHistory<StreamMetricsSnapshot> getStreamMetrics(@Nonnull final String streamName) {
+        return mStreamHistories.get(streamName);
+    }
+
+    /**
+     * @return Names of the streams with a history
+     */
+    @Nonnull
+    public List<String> getStreamNames() {
+        final List<String> streamNames = new ArrayList<String>(mStreamHistories.keySet());
+        Collections.sort(streamNames);
+        return streamNames;
+    }
+}
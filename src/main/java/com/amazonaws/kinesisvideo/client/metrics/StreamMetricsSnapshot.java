@@ -0,0 +1,115 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.amazonaws.kinesisvideo.producer.KinesisVideoStreamMetrics;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+
+/**
+ * Stream metrics at one point in time, see {@link KinesisVideoStreamMetrics}.
+ */
+@Immutable
+public final class StreamMetricsSnapshot {
+    private final long mTimestampMillis;
+    private final long mCurrentViewDuration;
+    private final long mOverallViewDuration;
+    private final long mCurrentViewSize;
+    private final long mOverallViewSize;
+    private final double mCurrentFrameRate;
+    private final long mCurrentTransferRate;
+
+    /**
+     * @param currentViewDuration Duration from current to head in 100ns
+     * @param overallViewDuration Duration of the content view in 100ns
+     */
+    public StreamMetricsSnapshot(final long timestampMillis,
+                                 final long currentViewDuration,
+                                 final long overallViewDuration,
+                                 final long currentViewSize,
+                                 final long overallViewSize,
+                                 final double currentFrameRate,
+                                 final long currentTransferRate) {
+        mTimestampMillis = timestampMillis;
+        mCurrentViewDuration = currentViewDuration;
+        mOverallViewDuration = overallViewDuration;
+        mCurrentViewSize = currentViewSize;
+        mOverallViewSize = overallViewSize;
+        mCurrentFrameRate = currentFrameRate;
+        mCurrentTransferRate = currentTransferRate;
+    }
+
+    /**
+     * Copies the metrics, which the native code fills while holding their lock.
+     */
+    @Nonnull
+    public static StreamMetricsSnapshot of(final long timestampMillis,
+                                           @Nonnull final KinesisVideoStreamMetrics metrics) {
+        synchronized (metrics) {
+            return new StreamMetricsSnapshot(timestampMillis,
+                    metrics.getCurrentViewDurationInTimeUnits(),
+                    metrics.getOverallViewDurationInTimeUnits(),
+                    metrics.getCurrentViewSize(),
+                    metrics.getOverallViewSize(),
+                    metrics.getCurrentFrameRate(),
+                    metrics.getCurrentTransferRate());
+        }
+    }
+
+    /**
+     * @return Wall clock time the metrics were sampled at
+     */
+    public long getTimestampMillis() {
+        return mTimestampMillis;
+    }
+
+    public long getCurrentViewDurationInTimeUnits() {
+        return mCurrentViewDuration;
+    }
+
+    /**
+     * @return Duration of the content which hasn't been uploaded yet
+     */
+    public long getCurrentViewDurationInMillis() {
+        return mCurrentViewDuration / HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+    }
+
+    public long getOverallViewDurationInTimeUnits() {
+        return mOverallViewDuration;
+    }
+
+    public long getOverallViewDurationInMillis() {
+        return mOverallViewDuration / HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+    }
+
+    public long getCurrentViewSize() {
+        return mCurrentViewSize;
+    }
+
+    public long getOverallViewSize() {
+        return mOverallViewSize;
+    }
+
+    public double getCurrentFrameRate() {
+        return mCurrentFrameRate;
+    }
+
+    /**
+     * @return Bytes per second uploaded by the stream
+     */
+    public long getCurrentTransferRate() {
+        return mCurrentTransferRate;
+    }
+
+    @Override
+    public String toString() {
+        return "Kinesis Video stream metrics"
+                + "\n\t>> Current view duration: " + mCurrentViewDuration
+                + "\n\t>> Overall view duration: " + mOverallViewDuration
+                + "\n\t>> Current view size: " + mCurrentViewSize
+                + "\n\t>> Overall view size: " + mOverallViewSize
+                + "\n\t>> Current frame rate: " + mCurrentFrameRate
+                + "\n\t>> Current transfer rate: " + mCurrentTransferRate;
+    }
+}
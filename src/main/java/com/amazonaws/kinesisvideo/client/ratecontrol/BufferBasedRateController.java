@@ -0,0 +1,101 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Keeps the content waiting to be uploaded around a target duration, well below what the stream buffers before it
+ * drops fragments.
+ * <p>
+ * The output is cut in proportion to how fast the buffer grows whenever it is above the target and not draining, or
+ * above half the target and growing, or whenever the stream reports latency pressure or drops fragments. It is raised again in small steps once the buffer
+ * is below half the target. The bitrate is lowered first, down to {@link #MIN_BITRATE_FACTOR}, and the frame rate
+ * after that.
+ */
+@NotThreadSafe
+public final class BufferBasedRateController implements RateController {
+    /**
+     * Default duration of content waiting to be uploaded the controller aims for
+     */
+    public static final long DEFAULT_TARGET_BUFFER_MILLIS = 4000L;
+
+    static final double MIN_BITRATE_FACTOR = 0.25;
+    static final double MIN_FACTOR = 0.05;
+    static final double INCREASE_STEP = 0.05;
+    private static final double MIN_DECREASE = 0.5;
+    private static final double MAX_DECREASE = 0.85;
+    private static final double DRAIN_MARGIN = 0.9;
+    private static final int HOLD_SAMPLES_AFTER_DECREASE = 3;
+
+    private final long mTargetBufferMillis;
+    private double mFactor = 1.0;
+    private long mLastBufferMillis = -1;
+    private int mHoldSamples;
+
+    public BufferBasedRateController() {
+        this(DEFAULT_TARGET_BUFFER_MILLIS);
+    }
+
+    public BufferBasedRateController(final long targetBufferMillis) {
+        Preconditions.checkArgument(targetBufferMillis > 0, "Target buffer duration should be positive");
+        mTargetBufferMillis = targetBufferMillis;
+    }
+
+    /**
+     * @return Factory creating a controller with the given target for each stream
+     */
+    @Nonnull
+    public static RateController.Factory factory(final long targetBufferMillis) {
+        Preconditions.checkArgument(targetBufferMillis > 0, "Target buffer duration should be positive");
+        return new RateController.Factory() {
+            @Nonnull
+            @Override
+            public RateController create(@Nonnull final String streamName) {
+                return new BufferBasedRateController(targetBufferMillis);
+            }
+        };
+    }
+
+    @Nonnull
+    @Override
+    public RateTarget update(@Nonnull final StreamRateSample sample) {
+        final long bufferMillis = sample.getBufferDurationMillis();
+        // Milliseconds of content gained by the buffer per millisecond
+        final double growth = mLastBufferMillis < 0 || sample.getElapsedMillis() <= 0
+                ? 0
+                : (double) (bufferMillis - mLastBufferMillis) / sample.getElapsedMillis();
+        final boolean draining = mLastBufferMillis >= 0 && bufferMillis < mLastBufferMillis;
+        mLastBufferMillis = bufferMillis;
+
+        final boolean behind = bufferMillis > mTargetBufferMillis
+                || sample.getAckLatencyMillis() > mTargetBufferMillis
+                || (bufferMillis > mTargetBufferMillis / 2 && growth > 0);
+        if (sample.isLatencyPressure() || sample.getDroppedFragments() > 0 || (behind && !draining)) {
+            // The upload kept up with 1 - growth of the content, leave some room for the backlog to drain
+            final double decrease = Math.max(MIN_DECREASE, Math.min(MAX_DECREASE, (1 - growth) * DRAIN_MARGIN));
+            mFactor = Math.max(MIN_FACTOR, mFactor * decrease);
+            mHoldSamples = HOLD_SAMPLES_AFTER_DECREASE;
+        } else if (mHoldSamples > 0) {
+            mHoldSamples--;
+        } else if (sample.isUnderflow() || bufferMillis < mTargetBufferMillis / 2) {
+            mFactor = Math.min(1.0, mFactor + INCREASE_STEP);
+        }
+
+        return toTarget(mFactor);
+    }
+
+    static RateTarget toTarget(final double factor) {
+        if (factor >= 1.0) {
+            return RateTarget.NOMINAL;
+        }
+
+        return new RateTarget(Math.max(factor, MIN_BITRATE_FACTOR), Math.min(1.0, factor / MIN_BITRATE_FACTOR));
+    }
+
+    @Override
+    public String toString() {
+        return "BufferBasedRateController{target " + mTargetBufferMillis + " ms, factor " + mFactor + "}";
+    }
+}
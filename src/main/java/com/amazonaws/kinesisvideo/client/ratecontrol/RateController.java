@@ -0,0 +1,24 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Decides how much a media source should produce from what the stream has been able to upload.
+ * <p>
+ * Each stream gets its own controller, which is called with a new sample at a fixed interval on a single thread.
+ */
+public interface RateController {
+    /**
+     * Creates the controller of each rate controlled stream.
+     */
+    interface Factory {
+        @Nonnull
+        RateController create(@Nonnull final String streamName);
+    }
+
+    /**
+     * @return Target for the media source, only passed on when it differs from the previous one
+     */
+    @Nonnull
+    RateTarget update(@Nonnull final StreamRateSample sample);
+}
@@ -0,0 +1,62 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Share of the configured bitrate and frame rate a media source should produce.
+ */
+@Immutable
+public final class RateTarget {
+    /**
+     * The configured bitrate and frame rate
+     */
+    public static final RateTarget NOMINAL = new RateTarget(1.0, 1.0);
+
+    private final double mBitrateFactor;
+    private final double mFrameRateFactor;
+
+    /**
+     * @param bitrateFactor Share of the configured bitrate, within (0, 1]
+     * @param frameRateFactor Share of the configured frame rate, within (0, 1]
+     */
+    public RateTarget(final double bitrateFactor, final double frameRateFactor) {
+        Preconditions.checkArgument(bitrateFactor > 0 && bitrateFactor <= 1, "Bitrate factor should be within (0, 1]");
+        Preconditions.checkArgument(frameRateFactor > 0 && frameRateFactor <= 1,
+                "Frame rate factor should be within (0, 1]");
+        mBitrateFactor = bitrateFactor;
+        mFrameRateFactor = frameRateFactor;
+    }
+
+    public double getBitrateFactor() {
+        return mBitrateFactor;
+    }
+
+    public double getFrameRateFactor() {
+        return mFrameRateFactor;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RateTarget)) {
+            return false;
+        }
+        final RateTarget target = (RateTarget) other;
+        return Double.compare(mBitrateFactor, target.mBitrateFactor) == 0
+                && Double.compare(mFrameRateFactor, target.mFrameRateFactor) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.valueOf(mBitrateFactor).hashCode() + Double.valueOf(mFrameRateFactor).hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("bitrate x%.2f, frame rate x%.2f", mBitrateFactor, mFrameRateFactor);
+    }
+}
@@ -0,0 +1,181 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
+import com.amazonaws.kinesisvideo.streaming.ForwardingStreamCallbacks;
+
+/**
+ * Feeds the {@link RateController} of a stream and passes its targets on to the media source.
+ * <p>
+ * The monitor is the stream callbacks of the stream: it records latency pressure, underflows, dropped fragments and
+ * the time between the buffering and received acks of each fragment, then hands the callbacks on to the client
+ * callbacks. Each run samples the stream metrics together with what was recorded since the previous run.
+ */
+@ThreadSafe
+public final class StreamRateMonitor extends ForwardingStreamCallbacks implements Runnable {
+    private static final int MAX_PENDING_ACKS = 64;
+
+    private final String mStreamName;
+    private final RateController mController;
+    private final RateControlledMediaSource mMediaSource;
+    private final long mBufferCapacityMillis;
+    private final Log mLog;
+
+    /**
+     * Arrival of the buffering ack by fragment timestamp
+     */
+    private final Map<Long, Long> mBufferingAckNanos = new LinkedHashMap<Long, Long>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Long> eldest) {
+            return size() > MAX_PENDING_ACKS;
+        }
+    };
+
+    private volatile KinesisVideoProducerStream mStream;
+    private boolean mLatencyPressure;
+    private boolean mUnderflow;
+    private int mDroppedFragments;
+    private long mAckLatencyNanos = -1;
+    private long mLastSampleNanos;
+    private RateTarget mTarget = RateTarget.NOMINAL;
+
+    public StreamRateMonitor(@Nonnull final String streamName,
+                             @Nonnull final StreamCallbacks delegate,
+                             @Nonnull final RateController controller,
+                             @Nonnull final RateControlledMediaSource mediaSource,
+                             final long bufferCapacityMillis,
+                             @Nonnull final Log log) {
+        super(delegate);
+        mStreamName = Preconditions.checkNotNull(streamName);
+        mController = Preconditions.checkNotNull(controller);
+        mMediaSource = Preconditions.checkNotNull(mediaSource);
+        mBufferCapacityMillis = bufferCapacityMillis;
+        mLog = Preconditions.checkNotNull(log);
+        mLastSampleNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts sampling the metrics of the stream the monitor is the callbacks of.
+     */
+    public void attach(@Nonnull final KinesisVideoProducerStream stream) {
+        mStream = Preconditions.checkNotNull(stream);
+    }
+
+    @Override
+    public void run() {
+        final KinesisVideoProducerStream stream = mStream;
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            final KinesisVideoStreamMetrics metrics = stream.getMetrics();
+            update(takeSample(metrics.getCurrentViewDurationInMillis(), metrics.getCurrentTransferRate(),
+                    System.nanoTime()));
+        } catch (final ProducerException e) {
+            mLog.warn("Could not sample the metrics of stream %s: %s", mStreamName, e.getMessage());
+        } catch (final RuntimeException e) {
+            // Thrown out of a scheduled task, it would cancel the sampling for good
+            mLog.exception(e, "Rate control of stream %s failed", mStreamName);
+        }
+    }
+
+    /**
+     * @return The target last passed on to the media source
+     */
+    @Nonnull
+    public synchronized RateTarget getTarget() {
+        return mTarget;
+    }
+
+    synchronized StreamRateSample takeSample(final long bufferDurationMillis, final long transferRate,
+                                             final long nowNanos) {
+        final StreamRateSample sample = new StreamRateSample(
+                TimeUnit.NANOSECONDS.toMillis(nowNanos - mLastSampleNanos),
+                bufferDurationMillis,
+                mBufferCapacityMillis,
+                transferRate,
+                mAckLatencyNanos < 0 ? StreamRateSample.NO_ACK_LATENCY
+                        : TimeUnit.NANOSECONDS.toMillis(mAckLatencyNanos),
+                mLatencyPressure,
+                mUnderflow,
+                mDroppedFragments);
+
+        mLastSampleNanos = nowNanos;
+        mLatencyPressure = false;
+        mUnderflow = false;
+        mDroppedFragments = 0;
+        mAckLatencyNanos = -1;
+        return sample;
+    }
+
+    void update(@Nonnull final StreamRateSample sample) {
+        // Only the sampling thread changes the target
+        final RateTarget target = mController.update(sample);
+        final RateTarget previous;
+        synchronized (this) {
+            previous = mTarget;
+            mTarget = target;
+        }
+
+        if (!target.equals(previous)) {
+            mLog.info("Stream %s: %s, moving to %s", mStreamName, sample, target);
+            mMediaSource.onTargetRateChanged(target);
+        }
+    }
+
+    synchronized void recordAck(final int ackType, final long timestamp, final long nowNanos) {
+        if (ackType == FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING) {
+            mBufferingAckNanos.put(timestamp, nowNanos);
+        } else if (ackType == FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED) {
+            final Long bufferingNanos = mBufferingAckNanos.remove(timestamp);
+            if (bufferingNanos != null) {
+                mAckLatencyNanos = Math.max(mAckLatencyNanos, nowNanos - bufferingNanos);
+            }
+        }
+    }
+
+    @Override
+    public void streamUnderflowReport() throws ProducerException {
+        synchronized (this) {
+            mUnderflow = true;
+        }
+        super.streamUnderflowReport();
+    }
+
+    @Override
+    public void streamLatencyPressure(final long duration) throws ProducerException {
+        synchronized (this) {
+            mLatencyPressure = true;
+        }
+        super.streamLatencyPressure(duration);
+    }
+
+    @Override
+    public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck) throws ProducerException {
+        recordAck(fragmentAck.getAckType().getIntType(), fragmentAck.getTimestamp(), System.nanoTime());
+        super.fragmentAckReceived(fragmentAck);
+    }
+
+    @Override
+    public void droppedFragmentReport(final long fragmentTimecode) throws ProducerException {
+        synchronized (this) {
+            mDroppedFragments++;
+        }
+        super.droppedFragmentReport(fragmentTimecode);
+    }
+}
@@ -0,0 +1,93 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * State of the upload of a stream, sampled by {@link StreamRateMonitor}.
+ */
+@Immutable
+public final class StreamRateSample {
+    /**
+     * Ack latency when no fragment has been received since the previous sample
+     */
+    public static final long NO_ACK_LATENCY = -1;
+
+    private final long mElapsedMillis;
+    private final long mBufferDurationMillis;
+    private final long mBufferCapacityMillis;
+    private final long mTransferRateBytesPerSecond;
+    private final long mAckLatencyMillis;
+    private final boolean mLatencyPressure;
+    private final boolean mUnderflow;
+    private final int mDroppedFragments;
+
+    /**
+     * @param elapsedMillis Time since the previous sample
+     * @param bufferDurationMillis Duration of the content which hasn't been uploaded yet
+     * @param bufferCapacityMillis Duration the stream buffers before it starts dropping fragments
+     * @param transferRateBytesPerSecond Current upload rate
+     * @param ackLatencyMillis Longest time between the buffering and received acks of a fragment since the
+     *                         previous sample, or {@link #NO_ACK_LATENCY}
+     * @param latencyPressure Whether the stream reported latency pressure since the previous sample
+     * @param underflow Whether the stream reported running out of content since the previous sample
+     * @param droppedFragments Fragments dropped since the previous sample
+     */
+    public StreamRateSample(final long elapsedMillis,
+                            final long bufferDurationMillis,
+                            final long bufferCapacityMillis,
+                            final long transferRateBytesPerSecond,
+                            final long ackLatencyMillis,
+                            final boolean latencyPressure,
+                            final boolean underflow,
+                            final int droppedFragments) {
+        mElapsedMillis = elapsedMillis;
+        mBufferDurationMillis = bufferDurationMillis;
+        mBufferCapacityMillis = bufferCapacityMillis;
+        mTransferRateBytesPerSecond = transferRateBytesPerSecond;
+        mAckLatencyMillis = ackLatencyMillis;
+        mLatencyPressure = latencyPressure;
+        mUnderflow = underflow;
+        mDroppedFragments = droppedFragments;
+    }
+
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
+    public long getBufferDurationMillis() {
+        return mBufferDurationMillis;
+    }
+
+    public long getBufferCapacityMillis() {
+        return mBufferCapacityMillis;
+    }
+
+    public long getTransferRateBytesPerSecond() {
+        return mTransferRateBytesPerSecond;
+    }
+
+    public long getAckLatencyMillis() {
+        return mAckLatencyMillis;
+    }
+
+    public boolean isLatencyPressure() {
+        return mLatencyPressure;
+    }
+
+    public boolean isUnderflow() {
+        return mUnderflow;
+    }
+
+    public int getDroppedFragments() {
+        return mDroppedFragments;
+    }
+
+    @Override
+    public String toString() {
+        return "buffer " + mBufferDurationMillis + "/" + mBufferCapacityMillis + " ms, "
+                + mTransferRateBytesPerSecond + " B/s, ack latency " + mAckLatencyMillis + " ms"
+                + (mLatencyPressure ? ", latency pressure" : "")
+                + (mUnderflow ? ", underflow" : "")
+                + (mDroppedFragments > 0 ? ", " + mDroppedFragments + " dropped fragments" : "");
+    }
+}
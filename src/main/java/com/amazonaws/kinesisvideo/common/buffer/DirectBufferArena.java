@@ -0,0 +1,305 @@
+package com.amazonaws.kinesisvideo.common.buffer;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct buffers for frame payloads, leased in power of two size classes and handed back once the frame has been
+ * put, so that producing frames doesn't allocate native memory.
+ * <p>
+ * All buffers allocated by the arena, leased or free, count against a global budget of direct memory. When a lease
+ * would exceed the budget, free buffers of other size classes are dropped first; if that isn't enough the lease is
+ * refused. Dropped buffers are only freed once collected, so the budget bounds the buffers the arena holds on to
+ * rather than the direct memory in use at any instant.
+ * <p>
+ * Leases which become unreachable without having been released are reported as leaks and their bytes are given
+ * back to the budget. Set {@link #LEAK_TRACKING_PROPERTY} to record where each leaked buffer was leased.
+ */
+@ThreadSafe
+public final class DirectBufferArena {
+    /**
+     * System property which enables recording the call site of every lease, to be logged when it leaks.
+     */
+    public static final String LEAK_TRACKING_PROPERTY = "com.amazonaws.kinesisvideo.buffer.trackLeaks";
+
+    /**
+     * Default budget of the shared arena.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String TAG = "DirectBufferArena";
+    private static final int MIN_SIZE_CLASS_SHIFT = 10;
+    private static final int MAX_SIZE_CLASS_SHIFT = 24;
+    private static final int SIZE_CLASS_COUNT = MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1;
+    private static final int UNPOOLED = -1;
+
+    private static volatile DirectBufferArena sDefaultArena;
+
+    private final long mMaxBytes;
+    private final Log mLog;
+    private final boolean mTrackLeaseSites;
+    private final Queue<ByteBuffer>[] mFreeBuffers;
+    private final AtomicLong mAllocatedBytes = new AtomicLong();
+    private final AtomicLong mAllocations = new AtomicLong();
+    private final AtomicLong mReuses = new AtomicLong();
+    private final AtomicLong mRejections = new AtomicLong();
+    private final AtomicLong mLeaks = new AtomicLong();
+    private final ReferenceQueue<Lease> mCollectedLeases = new ReferenceQueue<Lease>();
+    private final ConcurrentHashMap<LeaseTracker, Boolean> mOutstandingLeases =
+            new ConcurrentHashMap<LeaseTracker, Boolean>();
+
+    /**
+     * Buffer leased from the arena. The buffer must not be touched after {@link #release()}.
+     */
+    @NotThreadSafe
+    public final class Lease {
+        private final ByteBuffer mBuffer;
+        private final LeaseTracker mTracker;
+
+        private Lease(@Nonnull final ByteBuffer buffer, final int sizeClass) {
+            mBuffer = buffer;
+            mTracker = new LeaseTracker(this, buffer.capacity(), sizeClass);
+        }
+
+        /**
+         * @return Direct buffer with the leased size between its position and limit
+         */
+        @Nonnull
+        public ByteBuffer getBuffer() {
+            return mBuffer;
+        }
+
+        /**
+         * Hands the buffer back to the arena.
+         */
+        public void release() {
+            Preconditions.checkState(mOutstandingLeases.remove(mTracker) != null, "Lease has already been released");
+            mTracker.clear();
+            recycle(mBuffer, mTracker.mSizeClass);
+        }
+    }
+
+    private final class LeaseTracker extends WeakReference<Lease> {
+        private final int mCapacity;
+        private final int mSizeClass;
+        private final Throwable mLeaseSite;
+
+        private LeaseTracker(@Nonnull final Lease lease, final int capacity, final int sizeClass) {
+            super(lease, mCollectedLeases);
+            mCapacity = capacity;
+            mSizeClass = sizeClass;
+            mLeaseSite = mTrackLeaseSites ? new Throwable("Buffer leased here") : null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public DirectBufferArena(final long maxBytes, @Nonnull final Log log) {
+        Preconditions.checkArgument(maxBytes > 0, "Max bytes should be positive");
+
+        mMaxBytes = maxBytes;
+        mLog = Preconditions.checkNotNull(log);
+        mTrackLeaseSites = Boolean.getBoolean(LEAK_TRACKING_PROPERTY);
+        mFreeBuffers = new Queue[SIZE_CLASS_COUNT];
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            mFreeBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    /**
+     * @return Arena shared by the media sources, with a budget of {@link #DEFAULT_MAX_BYTES}
+     */
+    @Nonnull
+    public static DirectBufferArena getDefault() {
+        DirectBufferArena arena = sDefaultArena;
+        if (arena == null) {
+            synchronized (DirectBufferArena.class) {
+                arena = sDefaultArena;
+                if (arena == null) {
+                    arena = new DirectBufferArena(DEFAULT_MAX_BYTES, new Log(Log.SYSTEM_OUT, LogLevel.WARN, TAG));
+                    sDefaultArena = arena;
+                }
+            }
+        }
+
+        return arena;
+    }
+
+    /**
+     * Leases a direct buffer of at least the given size.
+     *
+     * @return Lease with the buffer positioned at 0 and limited to the size, or null if it would exceed the budget
+     */
+    @Nullable
+    public Lease tryLease(final int size) {
+        Preconditions.checkArgument(size >= 0, "Size should not be negative");
+        reclaimLeaks();
+
+        final int sizeClass = sizeClass(size);
+        ByteBuffer buffer = sizeClass == UNPOOLED ? null : mFreeBuffers[sizeClass].poll();
+        if (buffer != null) {
+            mReuses.incrementAndGet();
+        } else {
+            final int capacity = sizeClass == UNPOOLED ? size : 1 << (sizeClass + MIN_SIZE_CLASS_SHIFT);
+            if (!reserve(capacity)) {
+                mRejections.incrementAndGet();
+                return null;
+            }
+
+            try {
+                buffer = ByteBuffer.allocateDirect(capacity);
+            } catch (final OutOfMemoryError e) {
+                mAllocatedBytes.addAndGet(-capacity);
+                mRejections.incrementAndGet();
+                return null;
+            }
+
+            mAllocations.incrementAndGet();
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        final Lease lease = new Lease(buffer, sizeClass);
+        mOutstandingLeases.put(lease.mTracker, Boolean.TRUE);
+        return lease;
+    }
+
+    /**
+     * Drops all free buffers.
+     */
+    public void trim() {
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            dropFreeBuffers(i, Long.MAX_VALUE);
+        }
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * @return Bytes of all buffers allocated by the arena and not dropped yet, leased or free
+     */
+    public long getAllocatedBytes() {
+        return mAllocatedBytes.get();
+    }
+
+    /**
+     * @return Number of direct buffers allocated
+     */
+    public long getAllocationCount() {
+        return mAllocations.get();
+    }
+
+    /**
+     * @return Number of leases served with a free buffer
+     */
+    public long getReuseCount() {
+        return mReuses.get();
+    }
+
+    /**
+     * @return Number of leases refused as they would have exceeded the budget
+     */
+    public long getRejectionCount() {
+        return mRejections.get();
+    }
+
+    /**
+     * @return Number of leases which were never released
+     */
+    public long getLeakCount() {
+        reclaimLeaks();
+        return mLeaks.get();
+    }
+
+    /**
+     * @return Number of leases not released yet
+     */
+    public int getOutstandingLeaseCount() {
+        return mOutstandingLeases.size();
+    }
+
+    private static int sizeClass(final int size) {
+        if (size > 1 << MAX_SIZE_CLASS_SHIFT) {
+            return UNPOOLED;
+        }
+
+        final int shift = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_SIZE_CLASS_SHIFT) - MIN_SIZE_CLASS_SHIFT;
+    }
+
+    private boolean reserve(final int capacity) {
+        while (true) {
+            final long allocated = mAllocatedBytes.get();
+            if (allocated + capacity <= mMaxBytes) {
+                if (mAllocatedBytes.compareAndSet(allocated, allocated + capacity)) {
+                    return true;
+                }
+                continue;
+            }
+
+            // Make room by dropping free buffers, largest first
+            long needed = allocated + capacity - mMaxBytes;
+            for (int i = SIZE_CLASS_COUNT - 1; i >= 0 && needed > 0; i--) {
+                needed -= dropFreeBuffers(i, needed);
+            }
+
+            if (needed > 0 && mAllocatedBytes.get() + capacity > mMaxBytes) {
+                return false;
+            }
+        }
+    }
+
+    private long dropFreeBuffers(final int sizeClass, final long bytes) {
+        long dropped = 0;
+        ByteBuffer buffer;
+        while (dropped < bytes && (buffer = mFreeBuffers[sizeClass].poll()) != null) {
+            dropped += buffer.capacity();
+        }
+
+        mAllocatedBytes.addAndGet(-dropped);
+        return dropped;
+    }
+
+    private void recycle(@Nonnull final ByteBuffer buffer, final int sizeClass) {
+        if (sizeClass == UNPOOLED) {
+            mAllocatedBytes.addAndGet(-buffer.capacity());
+        } else {
+            mFreeBuffers[sizeClass].add(buffer);
+        }
+    }
+
+    private void reclaimLeaks() {
+        Reference<? extends Lease> reference;
+        while ((reference = mCollectedLeases.poll()) != null) {
+            final LeaseTracker tracker = (LeaseTracker) reference;
+            if (mOutstandingLeases.remove(tracker) == null) {
+                continue;
+            }
+
+            // The buffer may still be in use by whoever dropped the lease, so it can't be pooled again
+            mLeaks.incrementAndGet();
+            mAllocatedBytes.addAndGet(-tracker.mCapacity);
+            if (tracker.mLeaseSite != null) {
+                mLog.exception(tracker.mLeaseSite, "Direct buffer of %d bytes was never released", tracker.mCapacity);
+            } else {
+                mLog.warn("Direct buffer of %d bytes was never released. Set the %s system property to true "
+                        + "to find where it was leased", tracker.mCapacity, LEAK_TRACKING_PROPERTY);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.amazonaws.kinesisvideo.common.buffer;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized direct buffers.
+ * <p>
+ * Direct buffers are expensive to allocate and are only reclaimed by the garbage collector, so buffers which are
+ * needed over and over are handed back to the pool instead. At most {@code maxPooledBuffers} buffers are retained;
+ * buffers released above that are left to the garbage collector.
+ */
+@ThreadSafe
+public final class DirectBufferPool {
+    private final int mBufferSize;
+    private final int mMaxPooledBuffers;
+    private final Queue<ByteBuffer> mFreeBuffers;
+    private final AtomicInteger mFreeBufferCount;
+
+    public DirectBufferPool(final int bufferSize, final int maxPooledBuffers) {
+        Preconditions.checkArgument(bufferSize > 0, "Buffer size should be positive");
+        Preconditions.checkArgument(maxPooledBuffers >= 0, "Max pooled buffers should not be negative");
+
+        mBufferSize = bufferSize;
+        mMaxPooledBuffers = maxPooledBuffers;
+        mFreeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        mFreeBufferCount = new AtomicInteger();
+    }
+
+    /**
+     * @return Cleared buffer of {@link #getBufferSize()} bytes, either pooled or newly allocated
+     */
+    @Nonnull
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = mFreeBuffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(mBufferSize);
+        }
+
+        mFreeBufferCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Hands a buffer obtained from {@link #acquire()} back to the pool. The caller must not touch it afterwards.
+     */
+    public void release(@Nonnull final ByteBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+        Preconditions.checkArgument(buffer.isDirect() && buffer.capacity() == mBufferSize,
+                "Buffer does not belong to the pool");
+
+        if (mFreeBufferCount.incrementAndGet() > mMaxPooledBuffers) {
+            mFreeBufferCount.decrementAndGet();
+            return;
+        }
+
+        mFreeBuffers.add(buffer);
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * @return Number of buffers currently retained by the pool
+     */
+    public int getFreeBufferCount() {
+        return mFreeBufferCount.get();
+    }
+}
@@ -0,0 +1,233 @@
+package com.amazonaws.kinesisvideo.common.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Map from the stream and upload handles of the native producer to the objects serving them, with open addressing
+ * and linear probing so that the handles aren't boxed.
+ * <p>
+ * Lookups don't lock and can run from the native callbacks while entries are added and removed. Updates are
+ * serialized. A slot keeps its handle once taken and removal only marks it, so a lookup never misses an entry
+ * because of a concurrent update of another handle. The marked slots are dropped when the table is rebuilt, which
+ * happens once half of the slots are taken.
+ *
+ * @param <V> Type of the values
+ */
+@ThreadSafe
+public final class ConcurrentHandleMap<V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Value of the slots whose entry has been removed
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * The handle of a slot is written before its value is set, and never changes once it has been
+     */
+    private static final class Table {
+        private final long[] mKeys;
+        private final AtomicReferenceArray<Object> mValues;
+
+        private Table(final int capacity) {
+            mKeys = new long[capacity];
+            mValues = new AtomicReferenceArray<Object>(capacity);
+        }
+    }
+
+    private volatile Table mTable;
+    private volatile int mSize;
+
+    /**
+     * Number of slots holding a handle, including the removed ones
+     */
+    private int mUsedSlots;
+
+    public ConcurrentHandleMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize Number of entries the map holds without being rebuilt
+     */
+    public ConcurrentHandleMap(final int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "Expected size can't be negative");
+        mTable = new Table(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return Value of the handle, or null if there is none
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(final long handle) {
+        final Table table = mTable;
+        final int mask = table.mKeys.length - 1;
+        int slot = slotOf(handle, mask);
+        Object value;
+        while ((value = table.mValues.get(slot)) != null) {
+            if (table.mKeys[slot] == handle) {
+                return value == REMOVED ? null : (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Value the handle had, or null if there was none
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized V put(final long handle, @Nonnull final V value) {
+        Preconditions.checkNotNull(value);
+        Table table = mTable;
+        int slot = find(table, handle);
+        final Object previous = table.mValues.get(slot);
+        if (previous == null) {
+            // Kept at most half full, the removed entries included
+            if (2 * (mUsedSlots + 1) > table.mKeys.length) {
+                table = rebuild(table);
+                slot = find(table, handle);
+            }
+
+            table.mKeys[slot] = handle;
+            mUsedSlots++;
+        }
+
+        table.mValues.set(slot, value);
+        if (previous == null || previous == REMOVED) {
+            mSize++;
+            return null;
+        }
+
+        return (V) previous;
+    }
+
+    /**
+     * @return Value the handle had, or null if there was none
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(final long handle) {
+        final Table table = mTable;
+        final int slot = find(table, handle);
+        final Object previous = table.mValues.get(slot);
+        if (previous == null || previous == REMOVED) {
+            return null;
+        }
+
+        table.mValues.set(slot, REMOVED);
+        mSize--;
+        return (V) previous;
+    }
+
+    /**
+     * Removes the entry of the handle only if it still has the given value
+     *
+     * @return Whether the entry has been removed
+     */
+    public synchronized boolean remove(final long handle, @Nonnull final V value) {
+        if (get(handle) != value) {
+            return false;
+        }
+
+        remove(handle);
+        return true;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return Copy of the values, in no particular order
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        final Table table = mTable;
+        final List<V> values = new ArrayList<V>(mSize);
+        for (int slot = 0; slot < table.mKeys.length; slot++) {
+            final Object value = table.mValues.get(slot);
+            if (value != null && value != REMOVED) {
+                values.add((V) value);
+            }
+        }
+
+        return values;
+    }
+
+    public synchronized void clear() {
+        mTable = new Table(MIN_CAPACITY);
+        mUsedSlots = 0;
+        mSize = 0;
+    }
+
+    /**
+     * @return Slot of the handle, or the empty slot ending its probe if it has never been added
+     */
+    private static int find(final Table table, final long handle) {
+        final int mask = table.mKeys.length - 1;
+        int slot = slotOf(handle, mask);
+        while (table.mValues.get(slot) != null && table.mKeys[slot] != handle) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Copies the entries to a table sized for one more, which the lookups see once it is complete
+     */
+    private Table rebuild(final Table table) {
+        final Table rebuilt = new Table(capacityFor(mSize + 1));
+        int usedSlots = 0;
+        for (int slot = 0; slot < table.mKeys.length; slot++) {
+            final Object value = table.mValues.get(slot);
+            if (value != null && value != REMOVED) {
+                final int rebuiltSlot = find(rebuilt, table.mKeys[slot]);
+                rebuilt.mKeys[rebuiltSlot] = table.mKeys[slot];
+                rebuilt.mValues.set(rebuiltSlot, value);
+                usedSlots++;
+            }
+        }
+
+        mUsedSlots = usedSlots;
+        mTable = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * @return Capacity between four and eight times the size, so that a few more entries fit before rebuilding
+     */
+    private static int capacityFor(final int size) {
+        Preconditions.checkState(size <= MAX_CAPACITY / 8, "Too many handles");
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(size) << 3);
+    }
+
+    private static int slotOf(final long handle, final int mask) {
+        // Finalizer of MurmurHash3, upload handles are sequential and stream handles are aligned pointers
+        long hash = handle;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,15 @@
+package com.amazonaws.kinesisvideo.common.io;
+
+import javax.annotation.Nullable;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Non-blocking {@link ReadableByteChannel} which tells its reader when a read that returned 0 is worth retrying.
+ */
+public interface NotifyingByteChannel extends ReadableByteChannel {
+    /**
+     * Sets the listener run whenever data may have become available or the channel may have ended. The listener can
+     * be run on any thread and must not block.
+     */
+    void setReadyListener(@Nullable Runnable listener);
+}
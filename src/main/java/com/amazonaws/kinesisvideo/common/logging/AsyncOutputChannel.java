@@ -0,0 +1,254 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import java.io.Closeable;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * Output channel which hands the messages to a background thread printing them to another channel.
+ *
+ * The messages wait in a bounded ring buffer. Once it is full, the drop policy decides which message is lost,
+ * the callers never block on the output. The number of dropped messages is reported to the channel with the
+ * next message printed.
+ */
+public class AsyncOutputChannel implements OutputChannel, Closeable {
+    /**
+     * Which message to lose when the buffer is full
+     */
+    public enum DropPolicy {
+        /**
+         * Keep the buffered messages and drop the one being logged
+         */
+        DROP_NEWEST,
+
+        /**
+         * Make room for the message being logged by dropping the oldest buffered one
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Default number of buffered messages
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final String TAG = "KinesisVideoStreams.logging";
+    private static final String WRITER_THREAD_NAME = "KinesisVideoLogWriter";
+
+    private final OutputChannel mOutputChannel;
+    private final DropPolicy mDropPolicy;
+    private final Object mLock = new Object();
+    private final int[] mLevels;
+    private final String[] mTags;
+    private final String[] mMessages;
+    private final Thread mWriterThread;
+
+    private int mHead;
+    private int mCount;
+    private long mDroppedCount;
+    private long mUnreportedDroppedCount;
+    private boolean mWriterWaiting;
+    private boolean mWriting;
+    private int mFlushWaiters;
+    private boolean mClosed;
+
+    /**
+     * Creates the channel with the default capacity, dropping the newest messages
+     *
+     * @param outputChannel
+     *         Channel doing the actual output
+     */
+    public AsyncOutputChannel(final @Nonnull OutputChannel outputChannel) {
+        this(outputChannel, DEFAULT_CAPACITY, DropPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Creates the channel and starts its writer thread
+     *
+     * @param outputChannel
+     *         Channel doing the actual output
+     * @param capacity
+     *         Number of messages buffered before dropping
+     * @param dropPolicy
+     *         Which message to drop when the buffer is full
+     */
+    public AsyncOutputChannel(final @Nonnull OutputChannel outputChannel, final int capacity,
+                              final @Nonnull DropPolicy dropPolicy) {
+        Preconditions.checkArgument(capacity > 0);
+        mOutputChannel = Preconditions.checkNotNull(outputChannel);
+        mDropPolicy = Preconditions.checkNotNull(dropPolicy);
+        mLevels = new int[capacity];
+        mTags = new String[capacity];
+        mMessages = new String[capacity];
+
+        mWriterThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeMessages();
+            }
+        }, WRITER_THREAD_NAME);
+        mWriterThread.setDaemon(true);
+        mWriterThread.start();
+    }
+
+    @Override
+    public void print(final int level, final @Nonnull String tag, final @Nonnull String message) {
+        synchronized (mLock) {
+            if (mClosed) {
+                // Nothing is buffered anymore, print on the caller thread rather than losing the message
+                mOutputChannel.print(level, tag, message);
+                return;
+            }
+
+            if (mCount == mLevels.length) {
+                mDroppedCount++;
+                mUnreportedDroppedCount++;
+                if (mDropPolicy == DropPolicy.DROP_NEWEST) {
+                    return;
+                }
+
+                mTags[mHead] = null;
+                mMessages[mHead] = null;
+                mHead = (mHead + 1) % mLevels.length;
+                mCount--;
+            }
+
+            final int tail = (mHead + mCount) % mLevels.length;
+            mLevels[tail] = level;
+            mTags[tail] = tag;
+            mMessages[tail] = message;
+            mCount++;
+
+            if (mWriterWaiting) {
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until the messages logged so far have been printed
+     *
+     * @throws InterruptedException
+     *         If interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        synchronized (mLock) {
+            mFlushWaiters++;
+            try {
+                while ((mCount > 0 || mWriting) && mWriterThread.isAlive()) {
+                    mLock.wait();
+                }
+            } finally {
+                mFlushWaiters--;
+            }
+        }
+    }
+
+    /**
+     * Prints the buffered messages and stops the writer thread. Messages logged afterwards are printed
+     * on the calling thread.
+     */
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            mClosed = true;
+            mLock.notifyAll();
+        }
+
+        boolean interrupted = false;
+        while (mWriterThread.isAlive()) {
+            try {
+                mWriterThread.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Number of messages dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        synchronized (mLock) {
+            return mDroppedCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "asynchronous " + mOutputChannel;
+    }
+
+    private void writeMessages() {
+        final int[] levels = new int[mLevels.length];
+        final String[] tags = new String[mLevels.length];
+        final String[] messages = new String[mLevels.length];
+
+        while (true) {
+            final int count;
+            final long dropped;
+            synchronized (mLock) {
+                mWriting = false;
+                if (mFlushWaiters > 0) {
+                    mLock.notifyAll();
+                }
+
+                while (mCount == 0 && !mClosed) {
+                    mWriterWaiting = true;
+                    try {
+                        mLock.wait();
+                    } catch (final InterruptedException e) {
+                        // Only close() stops the writer
+                    }
+                    mWriterWaiting = false;
+                }
+
+                if (mCount == 0) {
+                    mLock.notifyAll();
+                    return;
+                }
+
+                // Take the whole batch, so that the loggers don't wait on the output
+                count = mCount;
+                for (int i = 0; i < count; i++) {
+                    final int index = (mHead + i) % mLevels.length;
+                    levels[i] = mLevels[index];
+                    tags[i] = mTags[index];
+                    messages[i] = mMessages[index];
+                    mTags[index] = null;
+                    mMessages[index] = null;
+                }
+                mHead = (mHead + count) % mLevels.length;
+                mCount = 0;
+                dropped = mUnreportedDroppedCount;
+                mUnreportedDroppedCount = 0;
+                mWriting = true;
+            }
+
+            if (dropped > 0) {
+                printQuietly(LogLevel.WARN.getLogLevel(), TAG,
+                        "Dropped " + dropped + " log messages, the output is too slow");
+            }
+
+            for (int i = 0; i < count; i++) {
+                printQuietly(levels[i], tags[i], messages[i]);
+                tags[i] = null;
+                messages[i] = null;
+            }
+        }
+    }
+
+    private void printQuietly(final int level, final String tag, final String message) {
+        try {
+            mOutputChannel.print(level, tag, message);
+        } catch (final RuntimeException e) {
+            // A failing channel must not stop the writer thread
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.amazonaws.kinesisvideo.common.logging;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Formatter;
 
 import javax.annotation.Nonnull;
 
@@ -14,6 +15,10 @@ import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
  * Logging class for Kinesis Video Streams codebase. The underlying logger can be different for
  * different platforms - i.e. LogCat for Android.
  *
+ * The level is checked before any formatting, so disabled calls cost a comparison and the varargs array.
+ * Messages are built in per-thread buffers, the instance can be shared between threads. Wrap the channel
+ * in an {@link AsyncOutputChannel} to keep its I/O off the calling threads.
+ *
  */
 public class Log {
     /**
@@ -36,6 +41,28 @@ public class Log {
      */
     private static final int DEFAULT_MESSAGE_BUFFER = 1024;
 
+    /**
+     * Builders grown past this size are not kept around for the next message
+     */
+    private static final int MAX_RETAINED_MESSAGE_BUFFER = 16 * DEFAULT_MESSAGE_BUFFER;
+
+    /**
+     * Date prefix format of the composed messages
+     */
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm'Z' ";
+
+    private static final long MILLIS_IN_MINUTE = 60 * 1000;
+
+    /**
+     * Per-thread message buffers, neither builders nor date formats are thread safe
+     */
+    private static final ThreadLocal<MessageBuffer> MESSAGE_BUFFER = new ThreadLocal<MessageBuffer>() {
+        @Override
+        protected MessageBuffer initialValue() {
+            return new MessageBuffer();
+        }
+    };
+
     /**
      * OutputChannel implementation based on System.out. This can be useful in JUnit tests, since they run in an
      * environment that lacks a working implementation of actual logging mechanism.
@@ -58,11 +85,6 @@ public class Log {
      */
     private final OutputChannel mOutputChannel;
 
-    /**
-     * Used to build the log message
-     */
-    private final StringBuilder mStringBuilder;
-
     /**
      * Current tag value
      */
@@ -97,7 +119,6 @@ public class Log {
         mOutputChannel = Preconditions.checkNotNull(outputChannel);
         mTag = Preconditions.checkNotNull(tag);
         mCurrentLogLevel = currentLogLevel;
-        mStringBuilder = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
     }
 
     /**
@@ -110,6 +131,13 @@ public class Log {
         mCurrentLogLevel = logLevel;
     }
 
+    /**
+     * @return Whether messages of the level are logged, to skip gathering what only goes into them
+     */
+    public boolean isEnabled(final LogLevel logLevel) {
+        return logLevel.getLogLevel() >= mCurrentLogLevel.getLogLevel();
+    }
+
     /**
      * Sets the tag with the package name prefix
      */
@@ -145,7 +173,9 @@ public class Log {
      *         Arguments
      */
     public void log(final LogLevel logLevel, final String template, final Object... args) {
-        log(logLevel, String.format(template, args));
+        if (isEnabled(logLevel)) {
+            mOutputChannel.print(logLevel.getLogLevel(), mTag, MESSAGE_BUFFER.get().format(template, args));
+        }
     }
 
     /**
@@ -287,13 +317,28 @@ public class Log {
      *         Exception to log
      */
     public void exception(final Throwable e) {
-        log(LogLevel.ERROR,
-                createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER, e.getMessage()));
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR,
+                    createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER, e.getMessage()));
+        }
     }
 
+    /**
+     * Logs an exception with a parameterized description
+     *
+     * @param e
+     *         Exception to log
+     * @param template
+     *         Parameterized string
+     * @param args
+     *         Arguments
+     */
     public void exception(final Throwable e, final String template, final Object... args) {
-        log(LogLevel.ERROR, createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER,
-                String.format(template, args), MESSAGE_DELIMITER, e.getMessage()));
+        if (isEnabled(LogLevel.ERROR)) {
+            final String description = MESSAGE_BUFFER.get().format(template, args);
+            log(LogLevel.ERROR, createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER,
+                    description, MESSAGE_DELIMITER, e.getMessage()));
+        }
     }
 
     /**
@@ -303,60 +348,126 @@ public class Log {
      *         Object array to log
      * @return Formatted string
      */
-    private String createMessage(final Object... args) {
+    private static String createMessage(final Object... args) {
         // Fast path with single object
         if (args.length == 1 && args[0] instanceof String) {
-            //return String.valueOf(args[0]);
             return (String) args[0];
         }
 
-        // Clear the buffer
-        mStringBuilder.setLength(0);
+        return MESSAGE_BUFFER.get().compose(args);
+    }
 
-        // Add the date
-        mStringBuilder.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z' ").format(new Date()));
+    /**
+     * Message building state of a thread
+     */
+    private static final class MessageBuffer {
+        private StringBuilder mStringBuilder = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
+        private Formatter mFormatter = new Formatter(mStringBuilder);
+        private final SimpleDateFormat mDateFormat = new SimpleDateFormat(DATE_FORMAT);
+        private long mDateMinute = -1;
+        private String mDate;
+
+        /**
+         * Set while a message is built, an argument logging from its toString() must not reuse the buffer
+         */
+        private boolean mBusy;
+
+        /**
+         * Same output as {@link String#format(String, Object...)}, without allocating the builder and formatter
+         */
+        String format(final String template, final Object... args) {
+            if (mBusy) {
+                return String.format(template, args);
+            }
 
-        // Add the thread
-        mStringBuilder.append("T").append(Thread.currentThread().getId()).append(MESSAGE_DELIMITER);
+            mBusy = true;
+            try {
+                reset();
+                mFormatter.format(template, args);
+                return mStringBuilder.toString();
+            } finally {
+                mBusy = false;
+            }
+        }
 
-        // Append the rest
-        addFlattenedArray(args);
+        /**
+         * Date and thread prefix followed by the flattened arguments
+         */
+        String compose(final Object[] args) {
+            if (mBusy) {
+                return new MessageBuffer().compose(args);
+            }
 
-        return mStringBuilder.toString();
-    }
+            mBusy = true;
+            try {
+                return composeInto(args);
+            } finally {
+                mBusy = false;
+            }
+        }
 
-    /**
-     * Converts an Object array to a flat string representation, recursively expanding subarrays,
-     * and appends the result to the StringBuilder.
-     */
-    private void addFlattenedArray(final Object[] args) {
-        for (final Object item : args) {
-            if (null == item) {
-                mStringBuilder.append("null");
-            } else if (item instanceof byte[]) {
-                addHexString((byte[]) item);
-            } else if (item instanceof Object[]) {
-                addFlattenedArray((Object[]) item);
+        private String composeInto(final Object[] args) {
+            reset();
+
+            // Add the date, which only changes every minute
+            final long now = System.currentTimeMillis();
+            if (now / MILLIS_IN_MINUTE != mDateMinute) {
+                mDateMinute = now / MILLIS_IN_MINUTE;
+                mDate = mDateFormat.format(new Date(now));
+            }
+            mStringBuilder.append(mDate);
+
+            // Add the thread
+            mStringBuilder.append("T").append(Thread.currentThread().getId()).append(MESSAGE_DELIMITER);
+
+            // Append the rest
+            addFlattenedArray(args);
+
+            return mStringBuilder.toString();
+        }
+
+        private void reset() {
+            if (mStringBuilder.capacity() > MAX_RETAINED_MESSAGE_BUFFER) {
+                mStringBuilder = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
+                mFormatter = new Formatter(mStringBuilder);
             } else {
-                mStringBuilder.append(item.toString());
+                mStringBuilder.setLength(0);
             }
         }
-    }
 
-    /**
-     * Converts a byte array to hex string representation and appends it to the StringBuilder.
-     *
-     * @param bytes
-     *         Array of types to represent
-     */
-    private void addHexString(final byte[] bytes) {
-        for (int i = 0; i < bytes.length; i++) {
-            final int unsignedByte = bytes[i] & 0xff; // Need to cast up to int to preserve unsignedness of each byte
-            if (unsignedByte < 16) {
-                mStringBuilder.append('0'); // so we have two characters per digit
+        /**
+         * Converts an Object array to a flat string representation, recursively expanding subarrays,
+         * and appends the result to the StringBuilder.
+         */
+        private void addFlattenedArray(final Object[] args) {
+            for (final Object item : args) {
+                if (null == item) {
+                    mStringBuilder.append("null");
+                } else if (item instanceof byte[]) {
+                    addHexString((byte[]) item);
+                } else if (item instanceof Object[]) {
+                    addFlattenedArray((Object[]) item);
+                } else {
+                    mStringBuilder.append(item.toString());
+                }
             }
+        }
 
-            mStringBuilder.append(Integer.toHexString(unsignedByte));
+        /**
+         * Converts a byte array to hex string representation and appends it to the StringBuilder.
+         *
+         * @param bytes
+         *         Array of types to represent
+         */
+        private void addHexString(final byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                final int unsignedByte = bytes[i] & 0xff; // Need to cast up to int to preserve unsignedness of each byte
+                if (unsignedByte < 16) {
+                    mStringBuilder.append('0'); // so we have two characters per digit
+                }
+
+                mStringBuilder.append(Integer.toHexString(unsignedByte));
+            }
         }
     }
-}
\ No newline at end of file
+}
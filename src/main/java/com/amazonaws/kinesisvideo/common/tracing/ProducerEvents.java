@@ -0,0 +1,146 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import javax.annotation.Nullable;
+
+/**
+ * Timed events of the producer hot paths, recorded with Java Flight Recorder when the JVM supports it.
+ * <p>
+ * Every section is bracketed by a {@code begin} call returning an opaque event, or null when the event type is not
+ * recorded, and an {@code end} call taking it back along with the details. Nothing is allocated or measured for
+ * event types which aren't enabled in a running recording, so the calls can stay in production code.
+ * <p>
+ * The Flight Recorder implementation is loaded reflectively and only if {@code jdk.jfr} is available. Setting the
+ * {@value #DISABLED_PROPERTY} system property to {@code true} keeps it from being loaded.
+ */
+public class ProducerEvents {
+    /**
+     * System property disabling the events
+     */
+    public static final String DISABLED_PROPERTY = "com.amazonaws.kinesisvideo.events.disabled";
+
+    /**
+     * Events which are never recorded
+     */
+    public static final ProducerEvents NONE = new ProducerEvents();
+
+    private static final String FLIGHT_RECORDER_EVENT_CLASS = "jdk.jfr.Event";
+    private static final String FLIGHT_RECORDER_EVENTS_CLASS =
+            "com.amazonaws.kinesisvideo.common.tracing.JfrProducerEvents";
+
+    private static final ProducerEvents INSTANCE = load();
+
+    protected ProducerEvents() {
+    }
+
+    /**
+     * @return Flight Recorder events if available, {@link #NONE} otherwise
+     */
+    public static ProducerEvents getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Whether the events are recorded when enabled, false on JVMs without Flight Recorder
+     */
+    public boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Starts timing a frame put into the native producer, including the wait for the native lock
+     */
+    @Nullable
+    public Object beginPutFrame() {
+        return null;
+    }
+
+    public void endPutFrame(@Nullable final Object event, final String streamName, final long streamHandle,
+                            final int bytes, final boolean keyFrame) {
+    }
+
+    /**
+     * Ends timing a batch of frames put with one call, begun with {@link #beginPutFrame()}
+     *
+     * @param keyFrame Whether any of the frames is a key frame
+     */
+    public void endPutFrames(@Nullable final Object event, final String streamName, final long streamHandle,
+                             final int frames, final int bytes, final boolean keyFrame) {
+    }
+
+    /**
+     * Starts timing a read of the upload data, including the wait for the data availability
+     */
+    @Nullable
+    public Object beginStreamRead() {
+        return null;
+    }
+
+    public void endStreamRead(@Nullable final Object event, final String streamName, final long uploadHandle,
+                              final int bytes, final long waitNanos) {
+    }
+
+    /**
+     * Starts timing a chunk write of the PutMedia body, including the bandwidth throttling of blocking uploads.
+     * Uploads on the event loops wait for their share before writing, so only the socket write is timed for them.
+     */
+    @Nullable
+    public Object beginChunkWrite() {
+        return null;
+    }
+
+    public void endChunkWrite(@Nullable final Object event, final String streamName, final int bytes) {
+    }
+
+    /**
+     * Starts timing the parsing of received ACK bytes, including the handling of the ACKs they complete
+     */
+    @Nullable
+    public Object beginAckParse() {
+        return null;
+    }
+
+    public void endAckParse(@Nullable final Object event, final String streamName, final long uploadHandle,
+                            final int bytes) {
+    }
+
+    /**
+     * Starts timing the handling of a fragment ACK by the native producer
+     */
+    @Nullable
+    public Object beginFragmentAck() {
+        return null;
+    }
+
+    public void endFragmentAck(@Nullable final Object event, final String streamName, final long uploadHandle,
+                               final int ackType, final long timestamp) {
+    }
+
+    /**
+     * Starts timing a service call made for the native producer
+     */
+    @Nullable
+    public Object beginServiceCall() {
+        return null;
+    }
+
+    public void endServiceCall(@Nullable final Object event, final String operation, final String streamName,
+                               final int statusCode) {
+    }
+
+    private static ProducerEvents load() {
+        if (Boolean.getBoolean(DISABLED_PROPERTY)) {
+            return NONE;
+        }
+
+        try {
+            Class.forName(FLIGHT_RECORDER_EVENT_CLASS);
+            return (ProducerEvents) Class.forName(FLIGHT_RECORDER_EVENTS_CLASS).getDeclaredConstructor()
+                    .newInstance();
+        } catch (final Exception e) {
+            // No Flight Recorder, or built without it
+            return NONE;
+        } catch (final LinkageError e) {
+            return NONE;
+        }
+    }
+}
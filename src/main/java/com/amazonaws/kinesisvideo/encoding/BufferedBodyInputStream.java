@@ -0,0 +1,118 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Response body which isn't chunk encoded: the bytes read together with the headers followed by the rest of the
+ * underlying stream, up to the content length if there is one.
+ */
+@NotThreadSafe
+final class BufferedBodyInputStream extends FilterInputStream {
+    static final long UNKNOWN_LENGTH = -1;
+
+    private final byte[] mBuffered;
+    private final byte[] mSingleByte = new byte[1];
+    private int mPosition;
+    private final int mLimit;
+    private long mRemaining;
+
+    /**
+     * @param contentLength Length of the body, or {@link #UNKNOWN_LENGTH} to read until the end of the stream
+     */
+    BufferedBodyInputStream(@Nonnull final InputStream in, @Nonnull final byte[] buffered, final int offset,
+                            final int length, final long contentLength) {
+        super(in);
+        if (offset < 0 || length < 0 || length > buffered.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        mBuffered = Arrays.copyOfRange(buffered, offset, offset + length);
+        mLimit = length;
+        mRemaining = contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int bytesRead = read(mSingleByte, 0, 1);
+        return bytesRead < 0 ? -1 : mSingleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (mRemaining == 0) {
+            return -1;
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        final int count = mRemaining == UNKNOWN_LENGTH ? len : (int) Math.min(len, mRemaining);
+        final int bytesRead;
+        if (mPosition < mLimit) {
+            bytesRead = Math.min(count, mLimit - mPosition);
+            System.arraycopy(mBuffered, mPosition, b, off, bytesRead);
+            mPosition += bytesRead;
+        } else {
+            bytesRead = in.read(b, off, count);
+            if (bytesRead < 0) {
+                if (mRemaining != UNKNOWN_LENGTH) {
+                    throw new EOFException("Unexpected end of stream, " + mRemaining + " body bytes missing");
+                }
+                return -1;
+            }
+        }
+
+        if (mRemaining != UNKNOWN_LENGTH) {
+            mRemaining -= bytesRead;
+        }
+
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final byte[] skipBuffer = new byte[(int) Math.min(4 * 1024, Math.max(n, 0))];
+        long remaining = n;
+        while (remaining > 0) {
+            final int bytesRead = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, remaining));
+            if (bytesRead < 0) {
+                break;
+            }
+            remaining -= bytesRead;
+        }
+
+        return n - Math.max(remaining, 0);
+    }
+
+    @Override
+    public int available() throws IOException {
+        final long available = mPosition < mLimit ? mLimit - mPosition : in.available();
+        return mRemaining == UNKNOWN_LENGTH ? (int) available : (int) Math.min(available, mRemaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+        // Not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark is not supported");
+    }
+}
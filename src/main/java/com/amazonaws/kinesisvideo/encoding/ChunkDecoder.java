@@ -10,13 +10,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 public final class ChunkDecoder {
     private static final int HEX_RADIX = 16;
     private static final int MAX_BUFFER_BYTES = 128 * 128;
-    private static final int BUFFER_SIZE = 4 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_LINE_BYTES = 16 * 1024;
     private static final String LINE_DELIMITER = "\r\n";
     private static final String PAYLOAD_DELIMITER = "\r\n\r\n";
     // TODO: Set to correct output channel
@@ -85,15 +87,35 @@ public final class ChunkDecoder {
         return builder.toString();
     }
 
+    /**
+     * Reads up to and including the delimiter. The stream is read a byte at a time so that nothing past the
+     * delimiter is consumed; use {@link HttpResponseParser} to read responses from a stream in bulk.
+     */
     private static String readInputStream(final InputStream inputStream, final byte[] delimiter)
             throws IOException {
 
-        final byte[] buffer = new byte[BUFFER_SIZE];
-        int result = 0, offset = 0;
-        do {
-            result = inputStream.read(buffer, offset++, 1);
-        } while (result > -1 && arrayIndexOf(buffer, 0, offset, delimiter) == -1);
-        return new String(buffer, 0 , offset, StandardCharsets.UTF_8);
+        byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        int offset = 0;
+        int matched = 0;
+        int result;
+        while (matched < delimiter.length && (result = inputStream.read()) > -1) {
+            if (offset == buffer.length) {
+                if (buffer.length >= MAX_LINE_BYTES) {
+                    throw new IOException("No delimiter within " + MAX_LINE_BYTES + " bytes");
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            buffer[offset++] = (byte) result;
+
+            // A partial match of the CRLF delimiters can only restart at the mismatched byte
+            if (result == (delimiter[matched] & 0xff)) {
+                matched++;
+            } else {
+                matched = result == (delimiter[0] & 0xff) ? 1 : 0;
+            }
+        }
+        return new String(buffer, 0, offset, StandardCharsets.UTF_8);
     }
 
     public static int arrayIndexOf(final byte[] haystack, final int tail, final int head, final byte[] needle) {
@@ -130,12 +152,15 @@ public final class ChunkDecoder {
         return Integer.parseInt(new String(tmp, 0, tmp.length, StandardCharsets.UTF_8).trim(), HEX_RADIX);
     }
 
+    /**
+     * @return The response, with a payload stream positioned at the start of the body
+     */
     public static Response parseStatusLineAndHeaders(final InputStream inputStream) {
-        return Response.builder()
-                .responseStatus(parseStatusLine(inputStream))
-                .responseHeaders(parseHeaders(inputStream))
-                .responsePayload(inputStream)
-                .build();
+        try {
+            return HttpResponseParser.readResponse(inputStream);
+        } catch (final Throwable e) {
+            throw new RuntimeException("Exception while reading the response ! ", e);
+        }
     }
 
     public static Response parseEntireTextResponse(final InputStream inputStream) {
@@ -2,9 +2,23 @@ package com.amazonaws.kinesisvideo.encoding;
 
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 public final class ChunkEncoder {
+    /**
+     * Maximal size of a chunk size line: eight hex digits followed by CRLF.
+     */
+    public static final int MAX_CHUNK_HEADER_SIZE = Integer.SIZE / 4 + 2;
+
+    /**
+     * Size of the CRLF which terminates the chunk payload.
+     */
+    public static final int CHUNK_TRAILER_SIZE = 2;
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+    private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
 
     public static byte[] encode(final byte[] bytes, final int count) {
         try {
@@ -21,6 +35,92 @@ public final class ChunkEncoder {
         }
     }
 
+    /**
+     * Writes the chunk size line for a payload of the given size so that it ends right before the payload.
+     *
+     * @param frame Buffer holding the chunk
+     * @param payloadOffset Offset of the payload in the buffer. Must be at least {@link #MAX_CHUNK_HEADER_SIZE}
+     * @param count Size of the payload
+     * @return Offset in the buffer at which the chunk starts
+     */
+    public static int writeChunkHeader(final byte[] frame, final int payloadOffset, final int count) {
+        final int digits = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(count) + 3) / 4);
+        final int start = payloadOffset - CHUNK_TRAILER_SIZE - digits;
+        int position = start;
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            frame[position++] = HEX_DIGITS[(count >>> shift) & 0xF];
+        }
+
+        frame[position++] = '\r';
+        frame[position] = '\n';
+        return start;
+    }
+
+    /**
+     * Writes the CRLF terminating the chunk payload.
+     *
+     * @return Offset right after the chunk
+     */
+    public static int writeChunkTrailer(final byte[] frame, final int offset) {
+        frame[offset] = '\r';
+        frame[offset + 1] = '\n';
+        return offset + CHUNK_TRAILER_SIZE;
+    }
+
+    /**
+     * Writes the zero-length chunk terminating the chunked body.
+     *
+     * @return Offset right after the last chunk
+     */
+    public static int writeLastChunk(final byte[] frame, final int offset) {
+        System.arraycopy(LAST_CHUNK, 0, frame, offset, LAST_CHUNK.length);
+        return offset + LAST_CHUNK.length;
+    }
+
+    /**
+     * Same as {@link #writeChunkHeader(byte[], int, int)} for buffers without an accessible array, such as direct
+     * buffers. Uses absolute puts, leaving the position and limit of the buffer untouched.
+     */
+    public static int writeChunkHeader(final ByteBuffer frame, final int payloadOffset, final int count) {
+        final int digits = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(count) + 3) / 4);
+        final int start = payloadOffset - CHUNK_TRAILER_SIZE - digits;
+        int position = start;
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            frame.put(position++, HEX_DIGITS[(count >>> shift) & 0xF]);
+        }
+
+        frame.put(position++, (byte) '\r');
+        frame.put(position, (byte) '\n');
+        return start;
+    }
+
+    /**
+     * Same as {@link #writeChunkTrailer(byte[], int)} using absolute puts.
+     */
+    public static int writeChunkTrailer(final ByteBuffer frame, final int offset) {
+        frame.put(offset, (byte) '\r');
+        frame.put(offset + 1, (byte) '\n');
+        return offset + CHUNK_TRAILER_SIZE;
+    }
+
+    /**
+     * Same as {@link #writeLastChunk(byte[], int)} using absolute puts.
+     */
+    public static int writeLastChunk(final ByteBuffer frame, final int offset) {
+        for (int i = 0; i < LAST_CHUNK.length; i++) {
+            frame.put(offset + i, LAST_CHUNK[i]);
+        }
+
+        return offset + LAST_CHUNK.length;
+    }
+
+    /**
+     * @return Size of the zero-length chunk terminating the chunked body
+     */
+    public static int lastChunkSize() {
+        return LAST_CHUNK.length;
+    }
+
     private static void writeChunkSize(final OutputStream socketWrite, final int count) throws Exception {
         final String hexCount = Integer.toHexString(count);
         socketWrite.write(hexCount.getBytes(StandardCharsets.US_ASCII));
@@ -0,0 +1,261 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Input stream which removes the HTTP/1.1 chunked transfer encoding from the bytes read from the underlying stream.
+ * <p>
+ * The underlying stream is read in bulk into a buffer which is scanned once for the chunk size lines. Chunk data
+ * is served from the buffer and, once the buffer has been drained, read straight into the caller's array. A read
+ * returns as soon as some chunk data is available, so the stream can be used for long running responses.
+ * Chunk extensions and trailers are skipped.
+ */
+@NotThreadSafe
+public final class ChunkedInputStream extends FilterInputStream {
+    private static final int BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_LINE_LENGTH = 16 * 1024;
+    private static final int MAX_CHUNK_SIZE_DIGITS = 15;
+    private static final int HEX_RADIX = 16;
+
+    private static final int STATE_CHUNK_SIZE = 0;
+    private static final int STATE_CHUNK_DATA = 1;
+    private static final int STATE_CHUNK_DATA_END = 2;
+    private static final int STATE_TRAILER = 3;
+    private static final int STATE_DONE = 4;
+
+    private final byte[] mSingleByte = new byte[1];
+    private byte[] mBuffer;
+    private int mPosition;
+    private int mLimit;
+    private int mScanPosition;
+    private int mState = STATE_CHUNK_SIZE;
+    private long mChunkRemaining;
+    private boolean mClosed;
+
+    public ChunkedInputStream(@Nonnull final InputStream in) {
+        this(in, new byte[0], 0, 0);
+    }
+
+    /**
+     * @param in Stream the rest of the chunked body is read from
+     * @param buffered Start of the chunked body, already read from the stream together with the response headers
+     */
+    public ChunkedInputStream(@Nonnull final InputStream in, @Nonnull final byte[] buffered, final int offset,
+                              final int length) {
+        super(in);
+        if (offset < 0 || length < 0 || length > buffered.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        mBuffer = new byte[Math.max(BUFFER_SIZE, length)];
+        System.arraycopy(buffered, offset, mBuffer, 0, length);
+        mLimit = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int bytesRead = read(mSingleByte, 0, 1);
+        return bytesRead < 0 ? -1 : mSingleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (mClosed) {
+            throw new IOException("Stream closed");
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        while (true) {
+            switch (mState) {
+                case STATE_CHUNK_SIZE:
+                    mChunkRemaining = parseChunkSize(nextLineEnd());
+                    mState = mChunkRemaining == 0 ? STATE_TRAILER : STATE_CHUNK_DATA;
+                    break;
+                case STATE_CHUNK_DATA:
+                    return readChunkData(b, off, len);
+                case STATE_CHUNK_DATA_END:
+                    if (nextLineEnd() != mPosition) {
+                        throw new IOException("Missing CRLF after the chunk data");
+                    }
+                    mState = STATE_CHUNK_SIZE;
+                    break;
+                case STATE_TRAILER:
+                    if (nextLineEnd() == mPosition) {
+                        mState = STATE_DONE;
+                    }
+                    break;
+                default:
+                    return -1;
+            }
+
+            consumeLine();
+        }
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final byte[] skipBuffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 0))];
+        long remaining = n;
+        while (remaining > 0) {
+            final int bytesRead = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, remaining));
+            if (bytesRead < 0) {
+                break;
+            }
+            remaining -= bytesRead;
+        }
+
+        return n - Math.max(remaining, 0);
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (mState != STATE_CHUNK_DATA) {
+            return 0;
+        }
+
+        return (int) Math.min(mLimit - mPosition, mChunkRemaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+        // Not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark is not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        mClosed = true;
+        in.close();
+    }
+
+    /**
+     * @return Whether the last chunk and the trailer have been read
+     */
+    public boolean isDone() {
+        return mState == STATE_DONE;
+    }
+
+    private int readChunkData(final byte[] b, final int off, final int len) throws IOException {
+        final int count = (int) Math.min(len, mChunkRemaining);
+        final int buffered = mLimit - mPosition;
+        final int bytesRead;
+        if (buffered > 0) {
+            bytesRead = Math.min(count, buffered);
+            System.arraycopy(mBuffer, mPosition, b, off, bytesRead);
+            mPosition += bytesRead;
+            mScanPosition = mPosition;
+        } else {
+            bytesRead = in.read(b, off, count);
+            if (bytesRead < 0) {
+                throw new EOFException("Unexpected end of stream in the chunk data");
+            }
+        }
+
+        mChunkRemaining -= bytesRead;
+        if (mChunkRemaining == 0) {
+            mState = STATE_CHUNK_DATA_END;
+        }
+
+        return bytesRead;
+    }
+
+    /**
+     * Makes sure a complete line is buffered, reading from the underlying stream as needed.
+     *
+     * @return Index of the end of the line, without the line terminator
+     */
+    private int nextLineEnd() throws IOException {
+        while (true) {
+            for (int index = mScanPosition; index < mLimit; index++) {
+                if (mBuffer[index] == '\n') {
+                    mScanPosition = index;
+                    return index > mPosition && mBuffer[index - 1] == '\r' ? index - 1 : index;
+                }
+            }
+
+            mScanPosition = mLimit;
+            fill();
+        }
+    }
+
+    private void consumeLine() {
+        // Skip past the LF found by nextLineEnd
+        mPosition = mScanPosition + 1;
+        mScanPosition = mPosition;
+    }
+
+    private void fill() throws IOException {
+        if (mPosition > 0) {
+            System.arraycopy(mBuffer, mPosition, mBuffer, 0, mLimit - mPosition);
+            mLimit -= mPosition;
+            mScanPosition -= mPosition;
+            mPosition = 0;
+        }
+
+        if (mLimit == mBuffer.length) {
+            if (mBuffer.length >= MAX_LINE_LENGTH) {
+                throw new IOException("Chunk framing line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            mBuffer = Arrays.copyOf(mBuffer, Math.min(mBuffer.length * 2, MAX_LINE_LENGTH));
+        }
+
+        final int bytesRead = in.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (bytesRead < 0) {
+            throw new EOFException("Unexpected end of stream in the chunk framing");
+        }
+
+        mLimit += bytesRead;
+    }
+
+    private long parseChunkSize(final int lineEnd) throws IOException {
+        long chunkSize = 0;
+        int index = mPosition;
+        while (index < lineEnd) {
+            final int digit = Character.digit(mBuffer[index], HEX_RADIX);
+            if (digit < 0) {
+                break;
+            }
+
+            chunkSize = chunkSize * HEX_RADIX + digit;
+            index++;
+        }
+
+        final int digits = index - mPosition;
+        if (digits == 0 || digits > MAX_CHUNK_SIZE_DIGITS) {
+            throw new IOException("Invalid chunk size line");
+        }
+
+        // Only whitespace and chunk extensions may follow the size
+        while (index < lineEnd && (mBuffer[index] == ' ' || mBuffer[index] == '\t')) {
+            index++;
+        }
+
+        if (index < lineEnd && mBuffer[index] != ';') {
+            throw new IOException("Invalid chunk size line");
+        }
+
+        return chunkSize;
+    }
+}
@@ -0,0 +1,115 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream which applies HTTP/1.1 chunked transfer encoding to everything written to it.
+ * <p>
+ * Unlike {@link ChunkEncoder}, the chunk framing is assembled in a single buffer allocated up-front and
+ * reused for every chunk, so no garbage is produced on the upload path. Each chunk is handed to the
+ * underlying stream with one write call to avoid splitting the size line, payload and trailer into
+ * separate socket writes or TLS records.
+ */
+@NotThreadSafe
+public final class ChunkedOutputStream extends FilterOutputStream {
+    /**
+     * Default maximal payload size of a single chunk.
+     */
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 128 * 128;
+
+    private static final int PAYLOAD_OFFSET = ChunkEncoder.MAX_CHUNK_HEADER_SIZE;
+
+    private final byte[] mFrame;
+    private final int mMaxChunkSize;
+    private boolean mFinished;
+
+    public ChunkedOutputStream(@Nonnull final OutputStream out) {
+        this(out, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    public ChunkedOutputStream(@Nonnull final OutputStream out, final int maxChunkSize) {
+        super(out);
+        if (maxChunkSize <= 0) {
+            throw new IllegalArgumentException("Max chunk size should be positive.");
+        }
+
+        mMaxChunkSize = maxChunkSize;
+        mFrame = new byte[PAYLOAD_OFFSET + Math.max(maxChunkSize + ChunkEncoder.CHUNK_TRAILER_SIZE,
+                ChunkEncoder.lastChunkSize())];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        mFrame[PAYLOAD_OFFSET] = (byte) b;
+        writeChunk(mFrame, PAYLOAD_OFFSET, 1);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final int chunkSize = Math.min(remaining, mMaxChunkSize);
+            writeChunk(b, offset, chunkSize);
+            offset += chunkSize;
+            remaining -= chunkSize;
+        }
+    }
+
+    /**
+     * Writes the terminating zero-length chunk and flushes the underlying stream without closing it.
+     * Subsequent calls are no-ops.
+     */
+    public void finish() throws IOException {
+        if (mFinished) {
+            return;
+        }
+
+        mFinished = true;
+        final int end = ChunkEncoder.writeLastChunk(mFrame, PAYLOAD_OFFSET);
+        out.write(mFrame, PAYLOAD_OFFSET, end - PAYLOAD_OFFSET);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChunk(final byte[] payload, final int offset, final int count) throws IOException {
+        if (mFinished) {
+            throw new IOException("Chunked stream has already been finished");
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        // The size line is right-aligned against the payload area so that a single-byte write can store
+        // its byte in place and skip the copy.
+        final int start = ChunkEncoder.writeChunkHeader(mFrame, PAYLOAD_OFFSET, count);
+        if (payload != mFrame || offset != PAYLOAD_OFFSET) {
+            System.arraycopy(payload, offset, mFrame, PAYLOAD_OFFSET, count);
+        }
+
+        final int end = ChunkEncoder.writeChunkTrailer(mFrame, PAYLOAD_OFFSET + count);
+        out.write(mFrame, start, end - start);
+    }
+}
@@ -0,0 +1,331 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import com.amazonaws.kinesisvideo.model.Response;
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental parser of the status line and headers of an HTTP/1.1 response.
+ * <p>
+ * Bytes can be fed as they are received, in pieces of any size. Each byte is looked at once while searching for the
+ * line ends, and lines are only copied when they are split across pieces. Parsing stops right after the empty line
+ * terminating the headers, so the caller knows where the body starts.
+ * <p>
+ * {@link #readResponse(InputStream)} reads a blocking stream in bulk and returns the response with a body stream
+ * positioned at the start of the body, which removes the chunked transfer encoding if needed.
+ */
+@NotThreadSafe
+public final class HttpResponseParser {
+    /**
+     * Default maximal size of the status line and headers.
+     */
+    public static final int DEFAULT_MAX_HEAD_SIZE = 16 * 1024;
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final int BUFFER_SIZE = 4 * 1024;
+    private static final int INITIAL_LINE_SIZE = 256;
+    private static final int STATUS_CODE_LENGTH = 3;
+    private static final String PROTOCOL_PREFIX = "HTTP/";
+    private static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CHUNKED = "chunked";
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final int mMaxHeadSize;
+    private final Map<String, String> mHeaders = new HashMap<String, String>();
+    private byte[] mLine;
+    private int mLineLength;
+    private int mHeadLength;
+    private ResponseStatus mResponseStatus;
+    private boolean mComplete;
+
+    public HttpResponseParser() {
+        this(DEFAULT_MAX_HEAD_SIZE);
+    }
+
+    public HttpResponseParser(final int maxHeadSize) {
+        if (maxHeadSize <= 0) {
+            throw new IllegalArgumentException("Max head size should be positive.");
+        }
+
+        mMaxHeadSize = maxHeadSize;
+    }
+
+    /**
+     * Reads the status line and headers from the stream and returns the response, with the rest of the stream as the
+     * payload.
+     *
+     * @throws IOException if the stream ends or fails before the end of the headers, or the response is malformed
+     */
+    @Nonnull
+    public static Response readResponse(@Nonnull final InputStream inputStream) throws IOException {
+        return readResponse(inputStream, DEFAULT_MAX_HEAD_SIZE);
+    }
+
+    @Nonnull
+    public static Response readResponse(@Nonnull final InputStream inputStream, final int maxHeadSize)
+            throws IOException {
+        final HttpResponseParser parser = new HttpResponseParser(maxHeadSize);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int bytesRead;
+        int consumed;
+        do {
+            bytesRead = inputStream.read(buffer);
+            if (bytesRead < 0) {
+                throw new EOFException("Unexpected end of stream in the response headers");
+            }
+
+            consumed = parser.parse(buffer, 0, bytesRead);
+        } while (!parser.isComplete());
+
+        return Response.builder()
+                .responseStatus(parser.getResponseStatus())
+                .responseHeaders(parser.getHeaders())
+                .responsePayload(parser.createBodyStream(inputStream, buffer, consumed, bytesRead - consumed))
+                .build();
+    }
+
+    /**
+     * Parses the next bytes of the response head.
+     *
+     * @return Number of bytes consumed, less than the length if the head ended within the bytes
+     * @throws IOException if the head is malformed or too large
+     */
+    public int parse(@Nonnull final byte[] buffer, final int offset, final int length) throws IOException {
+        if (offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final int end = offset + length;
+        int index = offset;
+        while (index < end && !mComplete) {
+            int lineEnd = index;
+            while (lineEnd < end && buffer[lineEnd] != '\n') {
+                lineEnd++;
+            }
+
+            checkHeadSize(mHeadLength + lineEnd - index);
+            if (lineEnd == end) {
+                // Keep the start of the line for the next bytes
+                appendLine(buffer, index, end - index);
+                mHeadLength += end - index;
+                return length;
+            }
+
+            if (mLineLength == 0) {
+                parseLine(buffer, index, lineEnd);
+            } else {
+                appendLine(buffer, index, lineEnd - index);
+                parseLine(mLine, 0, mLineLength);
+                mLineLength = 0;
+            }
+
+            mHeadLength += lineEnd + 1 - index;
+            index = lineEnd + 1;
+        }
+
+        return index - offset;
+    }
+
+    /**
+     * @return Whether the empty line terminating the headers has been parsed
+     */
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    @Nullable
+    public ResponseStatus getResponseStatus() {
+        return mResponseStatus;
+    }
+
+    /**
+     * @return Headers parsed so far. Values of repeated headers are joined with commas.
+     */
+    @Nonnull
+    public Map<String, String> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * @return Value of the header, matching the name case-insensitively, or null
+     */
+    @Nullable
+    public String getHeader(@Nonnull final String name) {
+        final String value = mHeaders.get(name);
+        if (value != null) {
+            return value;
+        }
+
+        for (final Map.Entry<String, String> header : mHeaders.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Whether the body is chunk encoded
+     */
+    public boolean isChunked() {
+        final String transferEncoding = getHeader(TRANSFER_ENCODING);
+        if (transferEncoding == null) {
+            return false;
+        }
+
+        // Chunked is always the last coding applied
+        final int lastCoding = transferEncoding.lastIndexOf(',');
+        return transferEncoding.substring(lastCoding + 1).trim().equalsIgnoreCase(CHUNKED);
+    }
+
+    /**
+     * Creates the stream of the response body once the head is complete.
+     *
+     * @param inputStream Stream the rest of the response is read from
+     * @param buffered Bytes following the head which have already been read from the stream
+     */
+    @Nonnull
+    public InputStream createBodyStream(@Nonnull final InputStream inputStream, @Nonnull final byte[] buffered,
+                                        final int offset, final int length) throws IOException {
+        if (!mComplete) {
+            throw new IllegalStateException("Response headers have not been parsed yet");
+        }
+
+        if (isChunked()) {
+            return new ChunkedInputStream(inputStream, buffered, offset, length);
+        }
+
+        return new BufferedBodyInputStream(inputStream, buffered, offset, length, getContentLength());
+    }
+
+    private long getContentLength() throws IOException {
+        final int statusCode = mResponseStatus.getStatusCode();
+        if (statusCode == HTTP_NO_CONTENT || statusCode == HTTP_NOT_MODIFIED || statusCode / 100 == 1) {
+            return 0;
+        }
+
+        final String contentLength = getHeader(CONTENT_LENGTH);
+        if (contentLength == null) {
+            return BufferedBodyInputStream.UNKNOWN_LENGTH;
+        }
+
+        try {
+            final long length = Long.parseLong(contentLength);
+            if (length < 0) {
+                throw new IOException("Invalid content length " + contentLength);
+            }
+            return length;
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid content length " + contentLength, e);
+        }
+    }
+
+    private void checkHeadSize(final int headSize) throws IOException {
+        if (headSize > mMaxHeadSize) {
+            throw new IOException("Response headers exceed " + mMaxHeadSize + " bytes");
+        }
+    }
+
+    private void appendLine(final byte[] buffer, final int offset, final int count) {
+        if (mLine == null) {
+            mLine = new byte[Math.max(INITIAL_LINE_SIZE, count)];
+        } else if (mLineLength + count > mLine.length) {
+            mLine = Arrays.copyOf(mLine, Math.max(mLine.length * 2, mLineLength + count));
+        }
+
+        System.arraycopy(buffer, offset, mLine, mLineLength, count);
+        mLineLength += count;
+    }
+
+    private void parseLine(final byte[] buffer, final int start, final int lineEnd) throws IOException {
+        final int end = lineEnd > start && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        if (mResponseStatus == null) {
+            // Empty lines ahead of the status line are ignored
+            if (end > start) {
+                mResponseStatus = parseStatusLine(buffer, start, end);
+            }
+        } else if (end == start) {
+            mComplete = true;
+        } else {
+            parseHeader(buffer, start, end);
+        }
+    }
+
+    private static ResponseStatus parseStatusLine(final byte[] buffer, final int start, final int end)
+            throws IOException {
+        int protocolEnd = start;
+        while (protocolEnd < end && buffer[protocolEnd] != ' ') {
+            protocolEnd++;
+        }
+
+        final String protocol = new String(buffer, start, protocolEnd - start, ISO_8859_1);
+        if (!protocol.startsWith(PROTOCOL_PREFIX)) {
+            throw new IOException("Invalid status line, unknown protocol " + protocol);
+        }
+
+        final int codeStart = protocolEnd + 1;
+        final int codeEnd = codeStart + STATUS_CODE_LENGTH;
+        if (codeEnd > end || (codeEnd < end && buffer[codeEnd] != ' ')) {
+            throw new IOException("Invalid status line, missing status code");
+        }
+
+        int statusCode = 0;
+        for (int index = codeStart; index < codeEnd; index++) {
+            final int digit = buffer[index] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Invalid status line, malformed status code");
+            }
+            statusCode = statusCode * 10 + digit;
+        }
+
+        final int reasonStart = Math.min(codeEnd + 1, end);
+        return ResponseStatus.builder()
+                .protocol(protocol)
+                .statusCode(statusCode)
+                .reason(new String(buffer, reasonStart, end - reasonStart, ISO_8859_1))
+                .build();
+    }
+
+    private void parseHeader(final byte[] buffer, final int start, final int end) throws IOException {
+        int colon = start;
+        while (colon < end && buffer[colon] != ':') {
+            final byte b = buffer[colon];
+            if (b == ' ' || b == '\t') {
+                throw new IOException("Invalid header, whitespace in the name");
+            }
+            colon++;
+        }
+
+        if (colon == start || colon == end) {
+            throw new IOException("Invalid header line");
+        }
+
+        int valueStart = colon + 1;
+        while (valueStart < end && (buffer[valueStart] == ' ' || buffer[valueStart] == '\t')) {
+            valueStart++;
+        }
+
+        int valueEnd = end;
+        while (valueEnd > valueStart && (buffer[valueEnd - 1] == ' ' || buffer[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+
+        final String name = new String(buffer, start, colon - start, ISO_8859_1);
+        final String value = new String(buffer, valueStart, valueEnd - valueStart, ISO_8859_1);
+        final String previous = mHeaders.get(name);
+        mHeaders.put(name, previous == null ? value : previous + ", " + value);
+    }
+}
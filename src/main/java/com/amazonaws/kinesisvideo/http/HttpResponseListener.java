@@ -0,0 +1,36 @@
+package com.amazonaws.kinesisvideo.http;
+
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+
+/**
+ * Push-style receiver of an HTTP response used by the non-blocking clients.
+ * <p>
+ * All of the callbacks are invoked on the event loop thread driving the connection and must not block.
+ */
+public interface HttpResponseListener {
+    /**
+     * Invoked once the connection has been established.
+     *
+     * @param connection Closing it aborts the exchange
+     */
+    void onConnected(@Nonnull final Closeable connection);
+
+    /**
+     * Invoked once the status line and headers of the response have been received.
+     */
+    void onResponseStatus(@Nonnull final ResponseStatus responseStatus);
+
+    /**
+     * Invoked with the raw bytes of the response body as they arrive. The buffer is reused after the call returns.
+     */
+    void onResponseBody(@Nonnull final byte[] buffer, final int offset, final int length);
+
+    /**
+     * Invoked once when the response has ended, either normally or with an error.
+     */
+    void onResponseEnd(@Nullable final Exception exception);
+}
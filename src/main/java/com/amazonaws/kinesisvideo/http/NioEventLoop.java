@@ -0,0 +1,240 @@
+package com.amazonaws.kinesisvideo.http;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single thread driving a {@link Selector} for a set of connections.
+ * <p>
+ * Handlers are only ever touched from the event loop thread. Other threads hand work over through
+ * {@link #execute(Runnable)}.
+ */
+@ThreadSafe
+final class NioEventLoop {
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 1000;
+    private static final long HOUSEKEEPING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(HOUSEKEEPING_INTERVAL_MILLIS);
+
+    /**
+     * Connection driven by the event loop.
+     */
+    interface Handler {
+        /**
+         * Invoked when the selection key of the handler has been selected.
+         */
+        void onReady(@Nonnull SelectionKey key);
+
+        /**
+         * Invoked at the housekeeping interval to let the handler check for timeouts.
+         */
+        void onTick(long nowNanos);
+
+        /**
+         * Invoked when the event loop is shutting down.
+         */
+        void onShutdown();
+    }
+
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        private final Runnable mTask;
+        private final long mDeadlineNanos;
+        private final long mSequence;
+
+        private ScheduledTask(final Runnable task, final long deadlineNanos, final long sequence) {
+            mTask = task;
+            mDeadlineNanos = deadlineNanos;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final ScheduledTask other) {
+            final long difference = mDeadlineNanos - other.mDeadlineNanos;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    private final Selector mSelector;
+    private final Thread mThread;
+    private final Queue<Runnable> mTasks;
+    private final List<Handler> mHandlers;
+    private final PriorityQueue<ScheduledTask> mScheduledTasks;
+    private final Log mLog;
+    private volatile boolean mRunning;
+    private long mScheduledSequence;
+
+    NioEventLoop(@Nonnull final String name, @Nonnull final Log log)
+            throws IOException {
+        mSelector = Selector.open();
+        mTasks = new ConcurrentLinkedQueue<Runnable>();
+        mHandlers = new ArrayList<Handler>();
+        mScheduledTasks = new PriorityQueue<ScheduledTask>();
+        mLog = log;
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, name);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    void execute(@Nonnull final Runnable task) {
+        mTasks.add(task);
+        if (!inEventLoop()) {
+            mSelector.wakeup();
+        }
+    }
+
+    /**
+     * Runs the task on the event loop once the delay has passed. Only to be called from the event loop thread.
+     */
+    void schedule(@Nonnull final Runnable task, final long delayNanos) {
+        mScheduledTasks.add(new ScheduledTask(task, System.nanoTime() + Math.max(0, delayNanos),
+                mScheduledSequence++));
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == mThread;
+    }
+
+    @Nonnull
+    Selector selector() {
+        return mSelector;
+    }
+
+    void addHandler(@Nonnull final Handler handler) {
+        mHandlers.add(handler);
+    }
+
+    void removeHandler(@Nonnull final Handler handler) {
+        mHandlers.remove(handler);
+    }
+
+    void shutdown() {
+        mRunning = false;
+        mSelector.wakeup();
+    }
+
+    void awaitTermination(final long timeoutMillis) throws InterruptedException {
+        mThread.join(timeoutMillis);
+    }
+
+    private void runLoop() {
+        long lastTickNanos = System.nanoTime();
+        while (mRunning) {
+            try {
+                final long timeoutMillis = selectTimeoutMillis();
+                if (timeoutMillis < 0) {
+                    mSelector.selectNow();
+                } else {
+                    mSelector.select(timeoutMillis);
+                }
+            } catch (final IOException e) {
+                mLog.exception(e, "Selecting ready connections threw an exception. Continuing...");
+            }
+
+            final Iterator<SelectionKey> selectedKeys = mSelector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                final SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+                if (key.isValid()) {
+                    ((Handler) key.attachment()).onReady(key);
+                }
+            }
+
+            runTasks();
+
+            final long nowNanos = System.nanoTime();
+            runScheduledTasks(nowNanos);
+            if (nowNanos - lastTickNanos >= HOUSEKEEPING_INTERVAL_NANOS) {
+                lastTickNanos = nowNanos;
+                // Handlers may remove themselves while being ticked
+                for (int i = mHandlers.size() - 1; i >= 0; i--) {
+                    if (i < mHandlers.size()) {
+                        mHandlers.get(i).onTick(nowNanos);
+                    }
+                }
+            }
+        }
+
+        runTasks();
+        mScheduledTasks.clear();
+        for (int i = mHandlers.size() - 1; i >= 0; i--) {
+            if (i < mHandlers.size()) {
+                mHandlers.get(i).onShutdown();
+            }
+        }
+
+        try {
+            mSelector.close();
+        } catch (final IOException e) {
+            mLog.exception(e, "Closing the selector threw an exception");
+        }
+    }
+
+    /**
+     * @return Milliseconds to wait for ready connections, 0 to wait until one is ready or a task is submitted, and
+     * negative not to wait
+     */
+    private long selectTimeoutMillis() {
+        if (!mTasks.isEmpty()) {
+            return -1;
+        }
+
+        // Zero blocks until a connection is ready or a task is submitted
+        final long idleTimeoutMillis = mHandlers.isEmpty() ? 0 : HOUSEKEEPING_INTERVAL_MILLIS;
+        final ScheduledTask nextScheduled = mScheduledTasks.peek();
+        if (nextScheduled == null) {
+            return idleTimeoutMillis;
+        }
+
+        final long untilDeadlineNanos = nextScheduled.mDeadlineNanos - System.nanoTime();
+        if (untilDeadlineNanos <= 0) {
+            return -1;
+        }
+
+        // Rounded up, so that the task is due once the select returns
+        final long untilDeadlineMillis = (untilDeadlineNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1)
+                / TimeUnit.MILLISECONDS.toNanos(1);
+        return idleTimeoutMillis == 0 ? untilDeadlineMillis : Math.min(untilDeadlineMillis, idleTimeoutMillis);
+    }
+
+    private void runScheduledTasks(final long nowNanos) {
+        ScheduledTask scheduled;
+        while ((scheduled = mScheduledTasks.peek()) != null && scheduled.mDeadlineNanos - nowNanos <= 0) {
+            mScheduledTasks.poll();
+            try {
+                scheduled.mTask.run();
+            } catch (final RuntimeException e) {
+                mLog.exception(e, "Scheduled event loop task threw an exception");
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = mTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                mLog.exception(e, "Event loop task threw an exception");
+            }
+        }
+    }
+}
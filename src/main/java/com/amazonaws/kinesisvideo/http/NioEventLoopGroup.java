@@ -0,0 +1,89 @@
+package com.amazonaws.kinesisvideo.http;
+
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferPool;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of selector threads shared by the connections of {@link NioPutMediaHttpClient}.
+ * <p>
+ * Connections are assigned to the event loops round-robin and stay on their loop for their whole life.
+ */
+@ThreadSafe
+public final class NioEventLoopGroup implements Closeable {
+    private static final String THREAD_NAME_PREFIX = "kinesis-video-event-loop-";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_POOLED_CHUNK_BUFFERS_PER_THREAD = 64;
+
+    private final NioEventLoop[] mEventLoops;
+    private final AtomicInteger mNextEventLoop;
+    private final DirectBufferPool mChunkBufferPool;
+
+    public NioEventLoopGroup(final int threads, @Nonnull final Log log) {
+        Preconditions.checkArgument(threads > 0, "Event loop group needs at least one thread");
+        Preconditions.checkNotNull(log);
+
+        mEventLoops = new NioEventLoop[threads];
+        mNextEventLoop = new AtomicInteger();
+        mChunkBufferPool = new DirectBufferPool(NioPutMediaHttpClient.CHUNK_BUFFER_SIZE,
+                threads * MAX_POOLED_CHUNK_BUFFERS_PER_THREAD);
+        try {
+            for (int i = 0; i < threads; i++) {
+                mEventLoops[i] = new NioEventLoop(THREAD_NAME_PREFIX + i, log);
+            }
+        } catch (final IOException e) {
+            close();
+            throw new RuntimeException("Exception while opening selectors ! ", e);
+        }
+    }
+
+    /**
+     * @return Number of event loop threads in the group
+     */
+    public int getThreadCount() {
+        return mEventLoops.length;
+    }
+
+    @Nonnull
+    NioEventLoop next() {
+        final int index = (mNextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % mEventLoops.length;
+        return mEventLoops[index];
+    }
+
+    /**
+     * @return Pool of the direct buffers the connections chunk-encode their payload in
+     */
+    @Nonnull
+    DirectBufferPool chunkBufferPool() {
+        return mChunkBufferPool;
+    }
+
+    /**
+     * Stops the event loops, terminating any connection still in progress.
+     */
+    @Override
+    public void close() {
+        for (final NioEventLoop eventLoop : mEventLoops) {
+            if (eventLoop != null) {
+                eventLoop.shutdown();
+            }
+        }
+
+        for (final NioEventLoop eventLoop : mEventLoops) {
+            if (eventLoop != null && !eventLoop.inEventLoop()) {
+                try {
+                    eventLoop.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package com.amazonaws.kinesisvideo.http;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferPool;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.io.NotifyingByteChannel;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.tracing.ProducerEvents;
+import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.encoding.HttpResponseParser;
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+import com.amazonaws.kinesisvideo.socket.SocketFactory;
+import com.amazonaws.kinesisvideo.stream.throttling.HierarchicalBandwidthScheduler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking counterpart of {@link ParallelSimpleHttpClient} for long running chunked uploads.
+ * <p>
+ * Instead of a sender and a receiver thread per connection, the request is driven by one of the threads of a shared
+ * {@link NioEventLoopGroup}. The payload is pulled from a {@link NotifyingByteChannel} which returns 0 when no data is
+ * available yet and wakes the event loop once there is, is chunk-encoded on the fly and the response is pushed to a
+ * {@link HttpResponseListener}.
+ * <p>
+ * As with {@link ParallelSimpleHttpClient}, the completion callback is invoked once the payload has been sent and
+ * once more when the response has ended.
+ */
+public final class NioPutMediaHttpClient implements HttpClient {
+    private static final String SPACE = " ";
+    private static final String CLRF = "\r\n";
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HEADER_FORMAT = "%s: %s";
+    private static final String HOST_HEADER = "Host";
+    private static final int MAX_CHUNK_SIZE = 128 * 128;
+
+    /**
+     * Size of the buffers a chunk, including its size line and trailer, is assembled in.
+     */
+    static final int CHUNK_BUFFER_SIZE = ChunkEncoder.MAX_CHUNK_HEADER_SIZE
+            + Math.max(MAX_CHUNK_SIZE + ChunkEncoder.CHUNK_TRAILER_SIZE, ChunkEncoder.lastChunkSize());
+    private static final int RESPONSE_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_RESPONSE_HEAD_SIZE = 16 * 1024;
+    private static final ProducerEvents EVENTS = ProducerEvents.getInstance();
+    private static final Consumer<Exception> NO_OP_COMPLETION = new Consumer<Exception>() {
+        @Override
+        public void accept(final Exception object) {
+            // No op;
+        }
+    };
+
+    public static final class Builder {
+        private final Map<String, String> mHeaders;
+        private URI mUri;
+        private HttpMethodName mMethod;
+        private NotifyingByteChannel mPayload;
+        private HttpResponseListener mResponseListener;
+        private Integer mTimeout;
+        private Consumer<Exception> mCompletion;
+        private NioEventLoopGroup mEventLoopGroup;
+        private HierarchicalBandwidthScheduler.StreamThrottler mThrottler;
+        private String mStreamName;
+        private Log mLog = new Log(Log.SYSTEM_OUT);
+
+        private Builder() {
+            mHeaders = new HashMap<String, String>();
+            mCompletion = NO_OP_COMPLETION;
+        }
+
+        public Builder uri(final URI uri) {
+            mUri = uri;
+            mHeaders.put(HOST_HEADER, uri.getHost());
+            return this;
+        }
+
+        public Builder method(final HttpMethodName method) {
+            mMethod = method;
+            return this;
+        }
+
+        public Builder header(final String key, final String value) {
+            mHeaders.put(key, value);
+            return this;
+        }
+
+        /**
+         * Invoked twice: once the payload has been sent or failed to be, and again once the response has ended. Each
+         * invocation gets the exception which failed that part of the upload, or null.
+         */
+        public Builder completionCallback(final Consumer<Exception> completion) {
+            // Make sure we don't override the default no-op
+            if (completion != null) {
+                mCompletion = completion;
+            }
+            return this;
+        }
+
+        /**
+         * Payload to be sent with chunked transfer encoding. Reads must not block.
+         */
+        public Builder payload(final NotifyingByteChannel payload) {
+            mPayload = payload;
+            return this;
+        }
+
+        public Builder responseListener(final HttpResponseListener responseListener) {
+            mResponseListener = responseListener;
+            return this;
+        }
+
+        /**
+         * Timeout in milliseconds after which the connection is terminated if nothing has been received.
+         */
+        public Builder setTimeout(final Integer timeout) {
+            mTimeout = timeout;
+            return this;
+        }
+
+        public Builder eventLoopGroup(final NioEventLoopGroup eventLoopGroup) {
+            mEventLoopGroup = eventLoopGroup;
+            return this;
+        }
+
+        /**
+         * Paces the payload with the given bucket, which is closed once the payload has been sent.
+         */
+        public Builder throttler(final HierarchicalBandwidthScheduler.StreamThrottler throttler) {
+            mThrottler = throttler;
+            return this;
+        }
+
+        /**
+         * Name of the stream the payload belongs to, for the recorded events.
+         */
+        public Builder streamName(final String streamName) {
+            mStreamName = streamName;
+            return this;
+        }
+
+        public Builder log(final Log log) {
+            if (log == null) {
+                throw new NullPointerException("log");
+            }
+            mLog = log;
+            return this;
+        }
+
+        public NioPutMediaHttpClient build() {
+            checkNotNull(mUri);
+            checkNotNull(mEventLoopGroup);
+            return new NioPutMediaHttpClient(this);
+        }
+    }
+
+    private final Builder mBuilder;
+    private final Log log;
+    private volatile Session mSession;
+
+    private NioPutMediaHttpClient(final Builder builder) {
+        mBuilder = builder;
+        log = mBuilder.mLog;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public void connectAndProcessInBackground() {
+        checkNotNull(mBuilder.mPayload, "No payload set for the request!");
+        checkNotNull(mBuilder.mResponseListener, "No listener set for the response!");
+
+        SocketChannel channel = null;
+        try {
+            final SocketFactory socketFactory = new SocketFactory();
+            final InetSocketAddress address = socketFactory.getSocketAddress(mBuilder.mUri);
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            final NioTransport transport = socketFactory.isSecure(mBuilder.mUri)
+                    ? NioTransport.secure(channel, socketFactory.createSslEngine(mBuilder.mUri))
+                    : NioTransport.plain(channel);
+
+            final Session session = new Session(mBuilder.mEventLoopGroup.next(),
+                    mBuilder.mEventLoopGroup.chunkBufferPool(), channel, transport, getRequestHead());
+            mSession = session;
+            session.mEventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    session.start(address);
+                }
+            });
+        } catch (final Throwable e) {
+            closeQuietly(channel);
+            closeQuietly(mBuilder.mThrottler);
+            throw new RuntimeException("Exception while connecting to the server ! ", e);
+        }
+    }
+
+    @Override
+    public HttpMethodName getMethod() {
+        return mBuilder.mMethod;
+    }
+
+    @Override
+    public URI getUri() {
+        return mBuilder.mUri;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return mBuilder.mHeaders;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Session session = mSession;
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    private byte[] getRequestHead() {
+        final StringBuilder builder = new StringBuilder()
+                .append(mBuilder.mMethod).append(SPACE).append(mBuilder.mUri.getPath()).append(SPACE)
+                .append(HTTP_1_1).append(CLRF);
+        for (final Map.Entry<String, String> header : mBuilder.mHeaders.entrySet()) {
+            builder.append(String.format(HEADER_FORMAT, header.getKey(), header.getValue())).append(CLRF);
+        }
+
+        final String requestHead = builder.append(CLRF).toString();
+        if (log.isEnabled(LogLevel.DEBUG)) {
+            log.debug("Request: %s", requestHead);
+        }
+        return requestHead.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void closeQuietly(@Nullable final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (final IOException e) {
+            // Nothing more can be done at this point
+        }
+    }
+
+    /**
+     * State of the connection. Apart from {@link #close()}, only accessed from the event loop thread.
+     */
+    private final class Session implements NioEventLoop.Handler, Closeable {
+        private final NioEventLoop mEventLoop;
+        private final DirectBufferPool mChunkBufferPool;
+        private final SocketChannel mChannel;
+        private final NioTransport mTransport;
+        private final ByteBuffer mRequestHead;
+        private final ByteBuffer mChunk;
+        private final ByteBuffer mResponse;
+        private final long mTimeoutNanos;
+        private final AtomicBoolean mPayloadReadyPending;
+        private final Runnable mOnPayloadReady;
+        private SelectionKey mKey;
+        private ByteBuffer mOutbound;
+        private HttpResponseParser mResponseHeadParser;
+        private boolean mConnected;
+        private boolean mHandshakeDone;
+        private boolean mPayloadStarved;
+        private boolean mThrottleRetryScheduled;
+        private boolean mPayloadDone;
+        private boolean mSenderCompleted;
+        private boolean mResponseStarted;
+        private boolean mClosed;
+        private long mLastReceivedNanos;
+        private long mBytesSent;
+
+        Session(final NioEventLoop eventLoop,
+                final DirectBufferPool chunkBufferPool,
+                final SocketChannel channel,
+                final NioTransport transport,
+                final byte[] requestHead) {
+            mEventLoop = eventLoop;
+            mChunkBufferPool = chunkBufferPool;
+            mChannel = channel;
+            mTransport = transport;
+            mRequestHead = ByteBuffer.wrap(requestHead);
+            mOutbound = mRequestHead;
+            // Direct, so that the payload is read straight into native memory and written to the socket from there
+            mChunk = chunkBufferPool.acquire();
+            mResponse = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+            mTimeoutNanos = mBuilder.mTimeout == null ? 0 : TimeUnit.MILLISECONDS.toNanos(mBuilder.mTimeout);
+            mPayloadReadyPending = new AtomicBoolean();
+            mOnPayloadReady = new Runnable() {
+                @Override
+                public void run() {
+                    mPayloadReadyPending.set(false);
+                    onPayloadReady();
+                }
+            };
+        }
+
+        void start(final InetSocketAddress address) {
+            try {
+                mEventLoop.addHandler(this);
+                mBuilder.mPayload.setReadyListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Notifications arriving before the event loop gets to the payload are coalesced
+                        if (mPayloadReadyPending.compareAndSet(false, true)) {
+                            mEventLoop.execute(mOnPayloadReady);
+                        }
+                    }
+                });
+                mLastReceivedNanos = System.nanoTime();
+                mKey = mChannel.register(mEventLoop.selector(), SelectionKey.OP_CONNECT, this);
+                if (mChannel.connect(address)) {
+                    process(true);
+                }
+            } catch (final IOException e) {
+                terminate(e);
+            }
+        }
+
+        @Override
+        public void onReady(@Nonnull final SelectionKey key) {
+            try {
+                if (key.isConnectable() && !mChannel.finishConnect()) {
+                    return;
+                }
+
+                process(key.isReadable());
+            } catch (final IOException | RuntimeException e) {
+                terminate(e);
+            }
+        }
+
+        @Override
+        public void onTick(final long nowNanos) {
+            if (mTimeoutNanos > 0 && nowNanos - mLastReceivedNanos > mTimeoutNanos) {
+                terminate(new SocketTimeoutException("No response received for " + mBuilder.mTimeout + " ms"));
+            }
+        }
+
+        @Override
+        public void onShutdown() {
+            terminate(new IOException("Event loop has been shut down"));
+        }
+
+        @Override
+        public void close() {
+            if (mEventLoop.inEventLoop()) {
+                terminate(null);
+            } else {
+                mEventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        terminate(null);
+                    }
+                });
+            }
+        }
+
+        private void process(final boolean readable) throws IOException {
+            if (!mConnected) {
+                mConnected = true;
+                log.debug("Connected to %s", mBuilder.mUri);
+            }
+
+            if (!mHandshakeDone) {
+                if (!mTransport.handshake()) {
+                    updateInterest();
+                    return;
+                }
+
+                mHandshakeDone = true;
+                mBuilder.mResponseListener.onConnected(this);
+            }
+
+            // TLS may have buffered application data while handshaking or writing
+            if (readable || mTransport.isSecure()) {
+                receive();
+            }
+
+            if (!mClosed) {
+                send();
+            }
+
+            updateInterest();
+        }
+
+        private void send() throws IOException {
+            while (!mClosed) {
+                if (mOutbound.hasRemaining() || mTransport.hasPendingOutput()) {
+                    final Object event = EVENTS.beginChunkWrite();
+                    final int remaining = mOutbound.remaining();
+                    try {
+                        mTransport.write(mOutbound);
+                    } finally {
+                        EVENTS.endChunkWrite(event, mBuilder.mStreamName, remaining - mOutbound.remaining());
+                    }
+                    if (mOutbound.hasRemaining() || mTransport.hasPendingOutput()) {
+                        // Wait for the socket to become writable
+                        return;
+                    }
+                }
+
+                if (mPayloadDone) {
+                    completeSender(null);
+                    return;
+                }
+
+                if (!readNextChunk()) {
+                    return;
+                }
+            }
+        }
+
+        private boolean readNextChunk() throws IOException {
+            mChunk.clear();
+            mChunk.position(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+            mChunk.limit(ChunkEncoder.MAX_CHUNK_HEADER_SIZE + MAX_CHUNK_SIZE);
+            mOutbound = mChunk;
+
+            final HierarchicalBandwidthScheduler.StreamThrottler throttler = mBuilder.mThrottler;
+            int allowedBytes = MAX_CHUNK_SIZE;
+            if (throttler != null) {
+                allowedBytes = throttler.tryGetAllowedBytes(MAX_CHUNK_SIZE);
+                if (allowedBytes == 0) {
+                    mPayloadStarved = false;
+                    mChunk.limit(0);
+                    retryAfter(throttler.getNanosUntilAvailable(MAX_CHUNK_SIZE));
+                    return false;
+                }
+                mChunk.limit(ChunkEncoder.MAX_CHUNK_HEADER_SIZE + allowedBytes);
+            }
+
+            final int bytesRead = mBuilder.mPayload.read(mChunk);
+            // Room for the trailer
+            mChunk.limit(mChunk.capacity());
+            if (throttler != null && bytesRead < allowedBytes) {
+                throttler.release(allowedBytes - Math.max(0, bytesRead));
+            }
+
+            if (bytesRead == 0) {
+                mPayloadStarved = true;
+                mChunk.limit(0);
+                return false;
+            }
+
+            mPayloadStarved = false;
+            if (bytesRead < 0) {
+                log.info("End-of-stream is reported. Terminating...");
+                final int end = ChunkEncoder.writeLastChunk(mChunk, ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+                mChunk.limit(end);
+                mChunk.position(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+                mPayloadDone = true;
+            } else {
+                final int start = ChunkEncoder.writeChunkHeader(mChunk, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, bytesRead);
+                final int end = ChunkEncoder.writeChunkTrailer(mChunk, ChunkEncoder.MAX_CHUNK_HEADER_SIZE + bytesRead);
+                mChunk.limit(end);
+                mChunk.position(start);
+                mBytesSent += bytesRead;
+            }
+
+            return true;
+        }
+
+        /**
+         * Resumes sending once the throttler is expected to grant bytes again
+         */
+        private void retryAfter(final long delayNanos) {
+            if (mThrottleRetryScheduled) {
+                return;
+            }
+
+            mThrottleRetryScheduled = true;
+            mEventLoop.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mThrottleRetryScheduled = false;
+                    if (mClosed) {
+                        return;
+                    }
+
+                    try {
+                        process(false);
+                    } catch (final IOException | RuntimeException e) {
+                        terminate(e);
+                    }
+                }
+            }, delayNanos);
+        }
+
+        private void onPayloadReady() {
+            if (mClosed || !mPayloadStarved) {
+                return;
+            }
+
+            try {
+                process(false);
+            } catch (final IOException | RuntimeException e) {
+                terminate(e);
+            }
+        }
+
+        private void receive() throws IOException {
+            while (!mClosed) {
+                mResponse.clear();
+                final int bytesRead = mTransport.read(mResponse);
+                if (bytesRead == 0) {
+                    return;
+                }
+
+                if (bytesRead < 0) {
+                    log.debug("Received all data, close");
+                    terminate(null);
+                    return;
+                }
+
+                mLastReceivedNanos = System.nanoTime();
+                if (mResponseStarted) {
+                    mBuilder.mResponseListener.onResponseBody(mResponse.array(), 0, bytesRead);
+                } else {
+                    receiveResponseHead(mResponse.array(), bytesRead);
+                }
+            }
+        }
+
+        private void receiveResponseHead(final byte[] bytes, final int count) throws IOException {
+            if (mResponseHeadParser == null) {
+                mResponseHeadParser = new HttpResponseParser(MAX_RESPONSE_HEAD_SIZE);
+            }
+
+            final int bodyStart = mResponseHeadParser.parse(bytes, 0, count);
+            if (!mResponseHeadParser.isComplete()) {
+                return;
+            }
+
+            final ResponseStatus responseStatus = mResponseHeadParser.getResponseStatus();
+            log.debug("Response status %d for %s", responseStatus.getStatusCode(), mBuilder.mUri);
+            mResponseStarted = true;
+            mResponseHeadParser = null;
+            mBuilder.mResponseListener.onResponseStatus(responseStatus);
+
+            if (!mClosed && bodyStart < count) {
+                mBuilder.mResponseListener.onResponseBody(bytes, bodyStart, count - bodyStart);
+            }
+        }
+
+        private void updateInterest() {
+            if (mClosed || mKey == null || !mKey.isValid()) {
+                return;
+            }
+
+            int interestOps = SelectionKey.OP_READ;
+            if (!mChannel.isConnected()) {
+                interestOps = SelectionKey.OP_CONNECT;
+            } else if (mOutbound.hasRemaining() || mTransport.hasPendingOutput()) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+
+            if (mKey.interestOps() != interestOps) {
+                mKey.interestOps(interestOps);
+            }
+        }
+
+        private void completeSender(@Nullable final Exception exception) {
+            if (mSenderCompleted) {
+                return;
+            }
+
+            mSenderCompleted = true;
+            mPayloadStarved = false;
+            if (mBuilder.mThrottler != null) {
+                mBuilder.mThrottler.close();
+            }
+            if (exception == null) {
+                log.debug("End sending data. Sent %d bytes.", mBytesSent);
+            } else {
+                log.exception(exception, "Exception thrown while sending data");
+            }
+
+            notifyCompletion(exception);
+        }
+
+        private void terminate(@Nullable final Exception exception) {
+            if (mClosed) {
+                return;
+            }
+
+            mClosed = true;
+            mBuilder.mPayload.setReadyListener(null);
+            mEventLoop.removeHandler(this);
+            if (mKey != null) {
+                mKey.cancel();
+            }
+
+            closeQuietly(mChannel);
+            mOutbound = mRequestHead;
+            mChunkBufferPool.release(mChunk);
+            completeSender(exception);
+
+            try {
+                mBuilder.mResponseListener.onResponseEnd(exception);
+            } catch (final RuntimeException e) {
+                log.exception(e, "Response listener threw an exception");
+            }
+
+            notifyCompletion(exception);
+        }
+
+        private void notifyCompletion(@Nullable final Exception exception) {
+            try {
+                mBuilder.mCompletion.accept(exception);
+            } catch (final RuntimeException e) {
+                log.exception(e, "Completion callback threw an exception");
+            }
+        }
+    }
+}
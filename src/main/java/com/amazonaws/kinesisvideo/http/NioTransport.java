@@ -0,0 +1,316 @@
+package com.amazonaws.kinesisvideo.http;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Byte transport over a non-blocking {@link SocketChannel}, either in plain text or through an {@link SSLEngine}.
+ * <p>
+ * None of the operations block. Callers are expected to retry on the corresponding selector readiness.
+ */
+@NotThreadSafe
+abstract class NioTransport {
+    protected final SocketChannel mChannel;
+
+    NioTransport(@Nonnull final SocketChannel channel) {
+        mChannel = channel;
+    }
+
+    static NioTransport plain(@Nonnull final SocketChannel channel) {
+        return new PlainTransport(channel);
+    }
+
+    static NioTransport secure(@Nonnull final SocketChannel channel, @Nonnull final SSLEngine engine) {
+        return new TlsTransport(channel, engine);
+    }
+
+    /**
+     * Advances the handshake.
+     *
+     * @return Whether the transport is ready to carry application data
+     */
+    abstract boolean handshake() throws IOException;
+
+    /**
+     * Writes as much of the given plain text as possible.
+     */
+    abstract void write(@Nonnull ByteBuffer src) throws IOException;
+
+    /**
+     * Reads the available plain text.
+     *
+     * @return Number of bytes read, 0 if nothing is available or -1 on end-of-stream
+     */
+    abstract int read(@Nonnull ByteBuffer dst) throws IOException;
+
+    /**
+     * @return Whether encoded bytes are waiting for the socket to become writable
+     */
+    abstract boolean hasPendingOutput();
+
+    /**
+     * @return Whether the transport is encrypted and may hold decoded bytes the socket no longer signals
+     */
+    abstract boolean isSecure();
+
+    private static final class PlainTransport extends NioTransport {
+        PlainTransport(final SocketChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        boolean handshake() {
+            return true;
+        }
+
+        @Override
+        void write(final ByteBuffer src) throws IOException {
+            mChannel.write(src);
+        }
+
+        @Override
+        int read(final ByteBuffer dst) throws IOException {
+            return mChannel.read(dst);
+        }
+
+        @Override
+        boolean hasPendingOutput() {
+            return false;
+        }
+
+        @Override
+        boolean isSecure() {
+            return false;
+        }
+    }
+
+    private static final class TlsTransport extends NioTransport {
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+        private final SSLEngine mEngine;
+
+        // Encoded bytes waiting for the socket, kept in read mode
+        private final ByteBuffer mNetOut;
+
+        // Encoded bytes read from the socket, kept in write mode
+        private ByteBuffer mNetIn;
+
+        // Decoded bytes which did not fit into the caller's buffer, kept in read mode
+        private ByteBuffer mAppIn;
+
+        private boolean mHandshakeStarted;
+
+        TlsTransport(final SocketChannel channel, final SSLEngine engine) {
+            super(channel);
+            mEngine = engine;
+            mNetOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            mNetOut.flip();
+            mNetIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            mAppIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+            mAppIn.flip();
+        }
+
+        @Override
+        boolean handshake() throws IOException {
+            if (!mHandshakeStarted) {
+                mEngine.beginHandshake();
+                mHandshakeStarted = true;
+            }
+
+            final boolean handshakeDone = advanceHandshake();
+            return flushNetOut() && handshakeDone;
+        }
+
+        @Override
+        void write(final ByteBuffer src) throws IOException {
+            while (flushNetOut() && src.hasRemaining()) {
+                wrap(src);
+            }
+
+            advanceHandshake();
+        }
+
+        @Override
+        int read(final ByteBuffer dst) throws IOException {
+            if (mAppIn.hasRemaining()) {
+                return drainAppIn(dst);
+            }
+
+            boolean endOfStream = false;
+            while (true) {
+                mNetIn.flip();
+                mAppIn.compact();
+                final SSLEngineResult result;
+                try {
+                    result = mEngine.unwrap(mNetIn, mAppIn);
+                } finally {
+                    mAppIn.flip();
+                    mNetIn.compact();
+                }
+
+                switch (result.getStatus()) {
+                    case OK:
+                        final boolean handshakeDone = advanceHandshake();
+                        if (mAppIn.hasRemaining()) {
+                            return drainAppIn(dst);
+                        }
+
+                        if (!handshakeDone && result.bytesConsumed() == 0) {
+                            // The engine is waiting for the socket to drain before it can make progress
+                            return 0;
+                        }
+
+                        break;
+                    case BUFFER_OVERFLOW:
+                        mAppIn = grow(mAppIn, mEngine.getSession().getApplicationBufferSize(), true);
+                        break;
+                    case BUFFER_UNDERFLOW:
+                        if (endOfStream) {
+                            return -1;
+                        }
+
+                        if (!mNetIn.hasRemaining()) {
+                            mNetIn = grow(mNetIn, mEngine.getSession().getPacketBufferSize(), false);
+                        }
+
+                        final int bytesRead = mChannel.read(mNetIn);
+                        if (bytesRead == 0) {
+                            return 0;
+                        }
+
+                        endOfStream = bytesRead < 0;
+                        break;
+                    case CLOSED:
+                    default:
+                        return -1;
+                }
+            }
+        }
+
+        @Override
+        boolean hasPendingOutput() {
+            return mNetOut.hasRemaining();
+        }
+
+        @Override
+        boolean isSecure() {
+            return true;
+        }
+
+        private boolean advanceHandshake() throws IOException {
+            while (true) {
+                switch (mEngine.getHandshakeStatus()) {
+                    case NEED_TASK:
+                        Runnable task;
+                        while ((task = mEngine.getDelegatedTask()) != null) {
+                            task.run();
+                        }
+
+                        break;
+                    case NEED_WRAP:
+                        if (!flushNetOut()) {
+                            return false;
+                        }
+
+                        wrap(EMPTY);
+                        break;
+                    case NEED_UNWRAP:
+                        // The peer only answers once it has received everything wrapped so far
+                        if (!flushNetOut() || !unwrapHandshake()) {
+                            return false;
+                        }
+
+                        break;
+                    default:
+                        return true;
+                }
+            }
+        }
+
+        private boolean unwrapHandshake() throws IOException {
+            mNetIn.flip();
+            mAppIn.compact();
+            final SSLEngineResult result;
+            try {
+                result = mEngine.unwrap(mNetIn, mAppIn);
+            } finally {
+                mAppIn.flip();
+                mNetIn.compact();
+            }
+
+            switch (result.getStatus()) {
+                case OK:
+                    return true;
+                case BUFFER_OVERFLOW:
+                    mAppIn = grow(mAppIn, mEngine.getSession().getApplicationBufferSize(), true);
+                    return true;
+                case BUFFER_UNDERFLOW:
+                    if (!mNetIn.hasRemaining()) {
+                        mNetIn = grow(mNetIn, mEngine.getSession().getPacketBufferSize(), false);
+                    }
+
+                    final int bytesRead = mChannel.read(mNetIn);
+                    if (bytesRead < 0) {
+                        throw new EOFException("Connection closed during TLS handshake");
+                    }
+
+                    return bytesRead > 0;
+                default:
+                    throw new SSLException("TLS engine closed during handshake");
+            }
+        }
+
+        private void wrap(final ByteBuffer src) throws IOException {
+            mNetOut.compact();
+            final SSLEngineResult result;
+            try {
+                result = mEngine.wrap(src, mNetOut);
+            } finally {
+                mNetOut.flip();
+            }
+
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("TLS engine has been closed");
+            }
+        }
+
+        private boolean flushNetOut() throws IOException {
+            while (mNetOut.hasRemaining()) {
+                if (mChannel.write(mNetOut) == 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private int drainAppIn(final ByteBuffer dst) {
+            final int count = Math.min(mAppIn.remaining(), dst.remaining());
+            final int limit = mAppIn.limit();
+            mAppIn.limit(mAppIn.position() + count);
+            dst.put(mAppIn);
+            mAppIn.limit(limit);
+            return count;
+        }
+
+        private static ByteBuffer grow(final ByteBuffer buffer, final int minimumExtra, final boolean readMode) {
+            final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() + minimumExtra);
+            if (readMode) {
+                grown.put(buffer);
+                grown.flip();
+            } else {
+                buffer.flip();
+                grown.put(buffer);
+            }
+
+            return grown;
+        }
+    }
+}
@@ -1,12 +1,10 @@
 package com.amazonaws.kinesisvideo.java.client;
 
-import com.amazonaws.kinesisvideo.auth.DefaultAuthCallbacks;
 import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
 import com.amazonaws.kinesisvideo.client.NativeKinesisVideoClient;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
 import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
-import com.amazonaws.kinesisvideo.service.DefaultServiceCallbacksImpl;
 
 import javax.annotation.Nonnull;
 import java.util.concurrent.ScheduledExecutorService;
@@ -44,11 +42,9 @@ public final class JavaKinesisVideoClient extends NativeKinesisVideoClient {
             @Nonnull final ScheduledExecutorService executor,
             @Nonnull final StreamCallbacks streamCallbacks) {
         super(log,
-                new DefaultAuthCallbacks(configuration.getCredentialsProvider(),
-                        executor,
-                        log),
-                configuration.getStorageCallbacks(),
-                new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient),
+                configuration,
+                serviceClient,
+                executor,
                 streamCallbacks);
     }
 }
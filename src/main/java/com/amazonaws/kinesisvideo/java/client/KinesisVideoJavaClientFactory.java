@@ -16,6 +16,7 @@ import com.amazonaws.kinesisvideo.producer.StorageInfo;
 import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
 import com.amazonaws.kinesisvideo.producer.Tag;
 import com.amazonaws.kinesisvideo.storage.DefaultStorageCallbacks;
+import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
 import com.amazonaws.regions.Regions;
 
 import javax.annotation.Nonnull;
@@ -29,7 +30,6 @@ public final class KinesisVideoJavaClientFactory {
     private static final int STORAGE_SIZE_64_MEGS = 1024 * 1024 * 1024;
     private static final String DEVICE_NAME = "java-demo-application";
     private static final String STORAGE_PATH = "/tmp";
-    private static final int NUMBER_OF_THREADS_IN_POOL = 2;
 
     private KinesisVideoJavaClientFactory() {
         throw new UnsupportedOperationException();
@@ -62,8 +62,27 @@ public final class KinesisVideoJavaClientFactory {
             @Nonnull final Regions regions,
             @Nonnull final AWSCredentialsProvider awsCredentialsProvider)
             throws KinesisVideoException {
+        return createKinesisVideoClient(regions, awsCredentialsProvider, new DefaultStreamCallbacks());
+    }
+
+    /**
+     * Create Kinesis Video client.
+     *
+     * @param regions Regions object
+     * @param awsCredentialsProvider Credentials provider
+     * @param streamCallbacks Callbacks of the streams of the media sources
+     * @return
+     * @throws KinesisVideoException
+     */
+    @Nonnull
+    public static KinesisVideoClient createKinesisVideoClient(
+            @Nonnull final Regions regions,
+            @Nonnull final AWSCredentialsProvider awsCredentialsProvider,
+            @Nonnull final StreamCallbacks streamCallbacks)
+            throws KinesisVideoException {
         Preconditions.checkNotNull(regions);
         Preconditions.checkNotNull(awsCredentialsProvider);
+        Preconditions.checkNotNull(streamCallbacks);
 
         final KinesisVideoCredentialsProvider kinesisVideoCredentialsProvider =
                 new JavaCredentialsProviderImpl(awsCredentialsProvider);
@@ -75,11 +94,14 @@ public final class KinesisVideoJavaClientFactory {
                 .withStorageCallbacks(new DefaultStorageCallbacks())
                 .build();
 
-        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(NUMBER_OF_THREADS_IN_POOL);
+        // Only waits out the delays and runs the periodic tasks, the service calls run on bounded pools of their own
+        final ScheduledExecutorService executor =
+                Executors.newScheduledThreadPool(configuration.getServiceCallTimerThreads());
 
         return createKinesisVideoClient(configuration,
                 getDeviceInfo(),
-                executor);
+                executor,
+                streamCallbacks);
     }
 
     /**
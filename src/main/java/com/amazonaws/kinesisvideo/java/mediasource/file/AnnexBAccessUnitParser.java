@@ -0,0 +1,193 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Incremental splitter of an H.264 Annex-B byte stream into access units, one per encoded picture.
+ * <p>
+ * Bytes can be fed as they are read, in pieces of any size. An access unit starts with an access unit delimiter,
+ * SPS, PPS or SEI NAL unit following the slices of the previous picture, or with the first slice of a new picture.
+ * As the end of an access unit is only known once the next one starts, each access unit is reported when the
+ * first NAL unit of the next one has been seen, or on {@link #finish()}.
+ * <p>
+ * Access units are reported as they appear in the stream, start codes included.
+ */
+@NotThreadSafe
+public final class AnnexBAccessUnitParser {
+    /**
+     * Receives the access units
+     */
+    public interface Listener {
+        /**
+         * @param buffer Access unit bytes, only valid for the duration of the call
+         * @param keyFrame Whether the access unit holds an IDR picture
+         */
+        void onAccessUnit(@Nonnull byte[] buffer, int offset, int length, boolean keyFrame);
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int NAL_TYPE_MASK = 0x1f;
+    private static final int NAL_TYPE_SLICE = 1;
+    private static final int NAL_TYPE_IDR_SLICE = 5;
+    private static final int NAL_TYPE_SEI = 6;
+    private static final int NAL_TYPE_SPS = 7;
+    private static final int NAL_TYPE_PPS = 8;
+    private static final int NAL_TYPE_AUD = 9;
+    private static final int NAL_TYPE_PREFIX_FIRST = 14;
+    private static final int NAL_TYPE_PREFIX_LAST = 18;
+    private static final int FIRST_MB_IS_ZERO = 0x80;
+
+    private final Listener mListener;
+    private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+    private int mLength;
+    private int mScanPosition;
+
+    // Start of the start code of the NAL unit whose header hasn't been looked at yet, or -1
+    private int mPendingNalStart = -1;
+    private int mPendingNalHeader;
+    private boolean mHasSlices;
+    private boolean mKeyFrame;
+    private long mAccessUnitCount;
+
+    public AnnexBAccessUnitParser(@Nonnull final Listener listener) {
+        mListener = Preconditions.checkNotNull(listener);
+    }
+
+    /**
+     * Parses the next bytes of the stream.
+     */
+    public void parse(@Nonnull final byte[] buffer, final int offset, final int length) {
+        if (offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        append(buffer, offset, length);
+        scan();
+    }
+
+    /**
+     * Reports the access unit in progress, at the end of the stream.
+     */
+    public void finish() {
+        if (mPendingNalStart >= 0) {
+            final int nalStart = mPendingNalStart;
+            mPendingNalStart = -1;
+            // A NAL unit cut short before its slice header stays with the access unit in progress
+            if (mPendingNalHeader + 1 < mLength) {
+                addNal(mPendingNalHeader, nalStart);
+            }
+        }
+
+        if (mHasSlices) {
+            emit(mLength);
+        }
+
+        mLength = 0;
+        mScanPosition = 0;
+        mPendingNalStart = -1;
+        mHasSlices = false;
+        mKeyFrame = false;
+    }
+
+    /**
+     * @return Number of access units reported so far
+     */
+    public long getAccessUnitCount() {
+        return mAccessUnitCount;
+    }
+
+    private void append(final byte[] buffer, final int offset, final int length) {
+        if (mLength + length > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mLength + length));
+        }
+
+        System.arraycopy(buffer, offset, mBuffer, mLength, length);
+        mLength += length;
+    }
+
+    private void scan() {
+        while (true) {
+            if (mPendingNalStart >= 0) {
+                // The header byte and the byte after it decide whether the NAL unit starts a new access unit
+                final int headerPosition = mPendingNalHeader;
+                if (headerPosition + 1 >= mLength) {
+                    return;
+                }
+
+                final int nalStart = mPendingNalStart;
+                mPendingNalStart = -1;
+                addNal(headerPosition, nalStart);
+                continue;
+            }
+
+            final int startCode = findStartCode();
+            if (startCode < 0) {
+                return;
+            }
+
+            // Include the leading zero byte of a four byte start code
+            final int start = startCode > 0 && mBuffer[startCode - 1] == 0 ? startCode - 1 : startCode;
+            mPendingNalStart = start;
+            mPendingNalHeader = startCode + 3;
+            mScanPosition = startCode + 3;
+        }
+    }
+
+    /**
+     * @return Position of the next three byte start code, or -1 if there is none yet
+     */
+    private int findStartCode() {
+        final byte[] buffer = mBuffer;
+        final int end = mLength - 2;
+        for (int i = mScanPosition; i < end; i++) {
+            if ((buffer[i + 2] & 0xff) > 1) {
+                // Neither of the three bytes starting here or at the next position can end a start code
+                i += 2;
+            } else if (buffer[i] == 0 && buffer[i + 1] == 0 && buffer[i + 2] == 1) {
+                return i;
+            }
+        }
+
+        mScanPosition = Math.max(mScanPosition, end);
+        return -1;
+    }
+
+    private void addNal(final int headerPosition, final int nalStart) {
+        final int nalType = mBuffer[headerPosition] & NAL_TYPE_MASK;
+        final boolean slice = nalType == NAL_TYPE_SLICE || nalType == NAL_TYPE_IDR_SLICE;
+        final boolean newPicture = slice && (mBuffer[headerPosition + 1] & FIRST_MB_IS_ZERO) != 0;
+        final boolean startsAccessUnit = newPicture
+                || nalType == NAL_TYPE_AUD
+                || nalType == NAL_TYPE_SPS
+                || nalType == NAL_TYPE_PPS
+                || nalType == NAL_TYPE_SEI
+                || (nalType >= NAL_TYPE_PREFIX_FIRST && nalType <= NAL_TYPE_PREFIX_LAST);
+
+        if (startsAccessUnit && mHasSlices) {
+            emit(nalStart);
+
+            // Move the start of the next access unit to the front of the buffer
+            final int shift = nalStart;
+            System.arraycopy(mBuffer, shift, mBuffer, 0, mLength - shift);
+            mLength -= shift;
+            mScanPosition -= shift;
+
+            mHasSlices = false;
+            mKeyFrame = false;
+        }
+
+        if (slice) {
+            mHasSlices = true;
+            mKeyFrame |= nalType == NAL_TYPE_IDR_SLICE;
+        }
+    }
+
+    private void emit(final int length) {
+        mAccessUnitCount++;
+        mListener.onAccessUnit(mBuffer, 0, length, mKeyFrame);
+    }
+}
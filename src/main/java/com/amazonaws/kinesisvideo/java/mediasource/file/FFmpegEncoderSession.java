@@ -0,0 +1,303 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Long-lived ffmpeg process encoding a sequence of images to H.264.
+ * <p>
+ * Images are written one after the other to the standard input of a single ffmpeg process, and the Annex-B stream it
+ * writes to its standard output is split into access units by a reader thread. B-frames are disabled so that the
+ * access units come out in the order the images went in, which is how each one is matched with its source. Because
+ * an access unit is only complete once the next one starts, each image is reported when the following image has been
+ * encoded, or when the session is closed.
+ */
+@ThreadSafe
+public final class FFmpegEncoderSession implements Closeable {
+    /**
+     * Receives the encoded frames, on the reader thread of the session.
+     */
+    public interface Listener {
+        /**
+         * @param buffer Access unit bytes, only valid for the duration of the call
+         * @param keyFrame Whether the access unit holds an IDR picture
+         * @param sourceName Name the image was submitted with
+         */
+        void onEncodedFrame(@Nonnull byte[] buffer, int offset, int length, boolean keyFrame,
+                            @Nullable String sourceName);
+    }
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_MS = 5000L;
+
+    private final Log log = LogFactory.getLog(FFmpegEncoderSession.class);
+    private final List<String> mCommand;
+    private final Queue<String> mPendingSources = new ConcurrentLinkedQueue<String>();
+    private final Object mInputLock = new Object();
+    private final byte[] mCopyBuffer = new byte[WRITE_BUFFER_SIZE];
+    private Process mProcess;
+    private OutputStream mInput;
+    private Thread mReaderThread;
+    private volatile IOException mFailure;
+    private volatile boolean mClosed;
+    private volatile long mSubmittedCount;
+    private volatile long mEncodedCount;
+
+    /**
+     * @param ffmpegPath Path of the ffmpeg executable
+     * @param fps Frame rate, which is also the key frame interval
+     */
+    public FFmpegEncoderSession(@Nonnull final String ffmpegPath, final int fps, final int width, final int height) {
+        this(ffmpegPath, fps, width, height, 0);
+    }
+
+    /**
+     * @param maxBitrate Bits per second the encoder is held under, or 0 to leave the bitrate to the encoder
+     */
+    public FFmpegEncoderSession(@Nonnull final String ffmpegPath, final int fps, final int width, final int height,
+                                final int maxBitrate) {
+        this(buildCommand(ffmpegPath, fps, width, height, maxBitrate));
+    }
+
+    FFmpegEncoderSession(@Nonnull final List<String> command) {
+        Preconditions.checkArgument(!command.isEmpty(), "Command should not be empty");
+        mCommand = new ArrayList<String>(command);
+    }
+
+    static List<String> buildCommand(@Nonnull final String ffmpegPath, final int fps, final int width,
+                                     final int height, final int maxBitrate) {
+        Preconditions.checkNotNull(ffmpegPath);
+        Preconditions.checkArgument(fps > 0, "Fps should be positive");
+        Preconditions.checkArgument(width > 0 && height > 0, "Resolution should be positive");
+        Preconditions.checkArgument(maxBitrate >= 0, "Max bitrate should not be negative");
+
+        final String frameRate = Integer.toString(fps);
+        final List<String> command = new ArrayList<String>(Arrays.asList(ffmpegPath,
+                "-hide_banner", "-loglevel", "error",
+                "-f", "image2pipe", "-framerate", frameRate, "-i", "pipe:0",
+                "-an",
+                "-c:v", "libx264", "-preset", "ultrafast", "-tune", "zerolatency",
+                "-bf", "0", "-g", frameRate, "-sc_threshold", "0",
+                "-pix_fmt", "yuv420p", "-s", width + "x" + height));
+        if (maxBitrate > 0) {
+            // A one second rate control buffer keeps every fragment under the cap
+            final String bitrate = Integer.toString(maxBitrate);
+            command.addAll(Arrays.asList("-b:v", bitrate, "-maxrate", bitrate, "-bufsize", bitrate));
+        }
+        command.addAll(Arrays.asList("-flush_packets", "1",
+                "-f", "h264", "pipe:1"));
+        return command;
+    }
+
+    /**
+     * Starts the ffmpeg process and the reader thread.
+     *
+     * @throws IOException if the process can't be started
+     */
+    public void start(@Nonnull final Listener listener) throws IOException {
+        Preconditions.checkNotNull(listener);
+        Preconditions.checkState(mProcess == null, "Encoder session has already been started");
+
+        mProcess = new ProcessBuilder(mCommand)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        mInput = new BufferedOutputStream(mProcess.getOutputStream(), WRITE_BUFFER_SIZE);
+
+        final InputStream output = mProcess.getInputStream();
+        final AnnexBAccessUnitParser parser = new AnnexBAccessUnitParser(new AnnexBAccessUnitParser.Listener() {
+            @Override
+            public void onAccessUnit(@Nonnull final byte[] buffer, final int offset, final int length,
+                                     final boolean keyFrame) {
+                mEncodedCount++;
+                listener.onEncodedFrame(buffer, offset, length, keyFrame, mPendingSources.poll());
+            }
+        });
+
+        mReaderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readOutput(output, parser);
+            }
+        }, "ffmpeg-encoder-reader");
+        mReaderThread.setDaemon(true);
+        mReaderThread.start();
+    }
+
+    /**
+     * Writes the image to the encoder. The file is opened before anything is written, so a missing file leaves the
+     * session usable.
+     *
+     * @throws java.nio.file.NoSuchFileException if the image doesn't exist
+     * @throws IOException if the image can't be read, or the encoder has failed or been closed
+     */
+    public void submit(@Nonnull final Path image, @Nullable final String sourceName) throws IOException {
+        Preconditions.checkState(mProcess != null, "Encoder session has not been started");
+
+        final InputStream imageStream = Files.newInputStream(image);
+        try {
+            synchronized (mInputLock) {
+                checkUsable();
+                mPendingSources.add(sourceName == null ? image.toString() : sourceName);
+                try {
+                    copy(imageStream, mInput);
+                    mInput.flush();
+                    mSubmittedCount++;
+                } catch (final IOException e) {
+                    // A partly written image corrupts the stream for good
+                    fail(e);
+                    throw e;
+                }
+            }
+        } finally {
+            imageStream.close();
+        }
+    }
+
+    /**
+     * Writes an image which has already been read to the encoder.
+     *
+     * @throws IOException if the encoder has failed or been closed
+     */
+    public void submit(@Nonnull final byte[] image, final int offset, final int length,
+                       @Nullable final String sourceName) throws IOException {
+        Preconditions.checkState(mProcess != null, "Encoder session has not been started");
+        if (offset < 0 || length < 0 || length > image.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        synchronized (mInputLock) {
+            checkUsable();
+            mPendingSources.add(sourceName == null ? "" : sourceName);
+            try {
+                // Large images bypass the buffer
+                mInput.write(image, offset, length);
+                mInput.flush();
+                mSubmittedCount++;
+            } catch (final IOException e) {
+                fail(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return Whether images can still be submitted
+     */
+    public boolean isUsable() {
+        return mProcess != null && !mClosed && mFailure == null;
+    }
+
+    public long getSubmittedCount() {
+        return mSubmittedCount;
+    }
+
+    public long getEncodedCount() {
+        return mEncodedCount;
+    }
+
+    /**
+     * Ends the input, waits for the last frames to be reported and stops the process.
+     */
+    @Override
+    public void close() {
+        synchronized (mInputLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+
+            if (mProcess == null) {
+                return;
+            }
+
+            try {
+                mInput.close();
+            } catch (final IOException e) {
+                log.debug("Closing the encoder input failed", e);
+            }
+        }
+
+        try {
+            mReaderThread.join(CLOSE_TIMEOUT_MS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        mProcess.destroy();
+    }
+
+    private void readOutput(final InputStream output, final AnnexBAccessUnitParser parser) {
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try {
+            int bytesRead;
+            while ((bytesRead = output.read(buffer)) >= 0) {
+                parser.parse(buffer, 0, bytesRead);
+            }
+
+            parser.finish();
+            if (!mClosed) {
+                fail(new IOException("Encoder output ended unexpectedly"));
+            }
+        } catch (final IOException e) {
+            fail(e);
+        } catch (final RuntimeException e) {
+            log.error("Encoded frame listener failed", e);
+            fail(new IOException("Encoded frame listener failed", e));
+        } finally {
+            try {
+                output.close();
+            } catch (final IOException e) {
+                log.debug("Closing the encoder output failed", e);
+            }
+        }
+    }
+
+    private void checkUsable() throws IOException {
+        if (mClosed) {
+            throw new IOException("Encoder session is closed");
+        }
+
+        final IOException failure = mFailure;
+        if (failure != null) {
+            throw new IOException("Encoder session has failed", failure);
+        }
+    }
+
+    private void fail(final IOException e) {
+        if (mFailure == null) {
+            mFailure = e;
+            if (!mClosed) {
+                log.error("Encoder session failed", e);
+            }
+        }
+
+        if (mProcess != null) {
+            mProcess.destroy();
+        }
+    }
+
+    private void copy(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+        int bytesRead;
+        while ((bytesRead = inputStream.read(mCopyBuffer)) >= 0) {
+            outputStream.write(mCopyBuffer, 0, bytesRead);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Small checkpoint file replaced atomically, so that a crash leaves either the previous or the new content.
+ * <p>
+ * The content is written to a temporary file next to the checkpoint, synced, and renamed over it. The directory is
+ * synced as well where the platform allows it, which makes the rename itself durable.
+ */
+@NotThreadSafe
+public final class FrameCheckpoint {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path mFile;
+    private final Path mTempFile;
+
+    public FrameCheckpoint(@Nonnull final Path file) {
+        mFile = Preconditions.checkNotNull(file).toAbsolutePath();
+        mTempFile = mFile.resolveSibling(mFile.getFileName() + TEMP_SUFFIX);
+    }
+
+    @Nonnull
+    public Path getFile() {
+        return mFile;
+    }
+
+    /**
+     * @return Lines of the last committed checkpoint, or an empty list if there is none
+     */
+    @Nonnull
+    public List<String> load() throws IOException {
+        try {
+            final List<String> lines = new ArrayList<String>();
+            for (final String line : Files.readAllLines(mFile, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        } catch (final NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Replaces the checkpoint with the given lines, returning once they are on disk.
+     */
+    public void commit(@Nonnull final List<String> lines) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        for (final String line : lines) {
+            Preconditions.checkArgument(line.indexOf('\n') < 0, "Checkpoint lines should not contain line breaks");
+            content.append(line).append('\n');
+        }
+
+        final FileChannel channel = FileChannel.open(mTempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final ByteBuffer buffer = StandardCharsets.UTF_8.encode(content.toString());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+
+        try {
+            Files.move(mTempFile, mFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(mTempFile, mFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+    }
+
+    private void syncDirectory() {
+        final Path directory = mFile.getParent();
+        if (directory == null) {
+            return;
+        }
+
+        try {
+            final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (final IOException e) {
+            // Directories can't be opened or synced on every platform, the rename is still atomic there
+        }
+    }
+}
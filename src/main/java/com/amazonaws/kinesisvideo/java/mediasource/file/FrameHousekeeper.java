@@ -0,0 +1,251 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deletes the image files of frames once the fragment holding them has been persisted, and records the last durable
+ * file in a checkpoint, away from the frame thread.
+ * <p>
+ * Frames are recorded in the order they are put, and persisted fragments are reported by their start timestamp. A
+ * fragment starts with a key frame and ends before the next key frame, so every frame recorded before the first key
+ * frame following the persisted fragment is durable. Frames the producer refused are released along with them.
+ * <p>
+ * Durable frames are handled in batches, once per commit interval. The checkpoint is committed first with the name
+ * of the last durable file followed by the names about to be deleted, then the files are deleted. A crash can only
+ * leave the files of the last batch behind, and those are deleted on {@link #start()}.
+ */
+@ThreadSafe
+final class FrameHousekeeper implements Closeable {
+    private static final long NO_FRAGMENT = Long.MIN_VALUE;
+    private static final long CLOSE_TIMEOUT_MS = 5000L;
+
+    private final Log log = LogFactory.getLog(FrameHousekeeper.class);
+    private final Path mDirectory;
+    private final FrameCheckpoint mCheckpoint;
+    private final long mCommitIntervalNanos;
+    private final Queue<RecordedFrame> mRecordedFrames = new ConcurrentLinkedQueue<RecordedFrame>();
+    private final AtomicLong mPersistedFragment = new AtomicLong(NO_FRAGMENT);
+
+    // Only used by the housekeeping thread once started
+    private final ArrayDeque<RecordedFrame> mFrames = new ArrayDeque<RecordedFrame>();
+
+    private Thread mThread;
+    private volatile boolean mClosed;
+    private volatile String mDurableFileName;
+    private volatile long mDeletedCount;
+    private volatile long mCommitCount;
+
+    private static final class RecordedFrame {
+        private final long mTimestamp;
+        private final boolean mKeyFrame;
+        private final String mFileName;
+
+        private RecordedFrame(final long timestamp, final boolean keyFrame, final String fileName) {
+            mTimestamp = timestamp;
+            mKeyFrame = keyFrame;
+            mFileName = fileName;
+        }
+    }
+
+    /**
+     * @param checkpoint Checkpoint of the last durable file, or null to only delete the files
+     */
+    FrameHousekeeper(@Nonnull final Path directory, @Nullable final FrameCheckpoint checkpoint,
+                     final long commitIntervalMs) {
+        Preconditions.checkArgument(commitIntervalMs > 0, "Commit interval should be positive");
+
+        mDirectory = Preconditions.checkNotNull(directory);
+        mCheckpoint = checkpoint;
+        mCommitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMs);
+    }
+
+    /**
+     * Finishes the batch a previous run may have left, and starts the housekeeping thread.
+     *
+     * @return Name of the last durable file, or null if there is no checkpoint yet
+     * @throws IOException if the checkpoint can't be read
+     */
+    @Nullable
+    String start() throws IOException {
+        Preconditions.checkState(mThread == null, "Housekeeper has already been started");
+
+        if (mCheckpoint != null) {
+            final List<String> lines = mCheckpoint.load();
+            if (!lines.isEmpty()) {
+                mDurableFileName = lines.get(0);
+                deleteFiles(lines.subList(1, lines.size()));
+            }
+        }
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mClosed) {
+                    LockSupport.parkNanos(FrameHousekeeper.this, mCommitIntervalNanos);
+                    housekeep();
+                }
+
+                // Acks received while closing are not lost
+                housekeep();
+            }
+        }, "image-frame-housekeeper");
+        mThread.setDaemon(true);
+        mThread.start();
+        return mDurableFileName;
+    }
+
+    /**
+     * Records a frame about to be put. Called on the frame thread, and does no file system work.
+     *
+     * @param timestamp Presentation timestamp of the frame, in the unit of the fragment timestamps
+     * @param fileName Image file of the frame, or null if there is none to delete
+     */
+    void recordFrame(final long timestamp, final boolean keyFrame, @Nullable final String fileName) {
+        mRecordedFrames.add(new RecordedFrame(timestamp, keyFrame, fileName));
+    }
+
+    /**
+     * Reports a persisted fragment by its start timestamp. The files are deleted with the next batch.
+     */
+    void onFragmentPersisted(final long fragmentTimestamp) {
+        long persisted;
+        do {
+            persisted = mPersistedFragment.get();
+            if (fragmentTimestamp <= persisted) {
+                return;
+            }
+        } while (!mPersistedFragment.compareAndSet(persisted, fragmentTimestamp));
+    }
+
+    /**
+     * @return Name of the last file whose frame is durable, or null if there is none yet
+     */
+    @Nullable
+    String getDurableFileName() {
+        return mDurableFileName;
+    }
+
+    long getDeletedCount() {
+        return mDeletedCount;
+    }
+
+    long getCommitCount() {
+        return mCommitCount;
+    }
+
+    /**
+     * Stops the housekeeping thread after a last batch. Files of frames which are not durable yet are kept.
+     */
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+
+        final Thread thread = mThread;
+        if (thread == null) {
+            return;
+        }
+
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "durable=" + mDurableFileName + " deleted=" + mDeletedCount + " commits=" + mCommitCount;
+    }
+
+    private void housekeep() {
+        RecordedFrame recorded;
+        while ((recorded = mRecordedFrames.poll()) != null) {
+            mFrames.add(recorded);
+        }
+
+        // Read after draining: a fragment persisted by now was closed by a key frame recorded after these frames,
+        // if not by one of them
+        final long persisted = mPersistedFragment.get();
+        if (persisted == NO_FRAGMENT) {
+            return;
+        }
+
+        int durableCount = 0;
+        String durableFileName = null;
+        final List<String> batch = new ArrayList<String>();
+        for (final RecordedFrame frame : mFrames) {
+            if (frame.mKeyFrame && frame.mTimestamp > persisted) {
+                break;
+            }
+
+            durableCount++;
+            if (frame.mFileName != null) {
+                durableFileName = frame.mFileName;
+                batch.add(frame.mFileName);
+            }
+        }
+
+        if (durableCount == 0) {
+            return;
+        }
+
+        if (mCheckpoint != null && durableFileName != null) {
+            final List<String> lines = new ArrayList<String>(batch.size() + 1);
+            lines.add(durableFileName);
+            lines.addAll(batch);
+            try {
+                mCheckpoint.commit(lines);
+                mCommitCount++;
+            } catch (final IOException e) {
+                // The frames stay queued and are committed with the next batch
+                log.error("Could not commit the checkpoint " + mCheckpoint.getFile(), e);
+                return;
+            }
+        }
+
+        for (int i = 0; i < durableCount; i++) {
+            mFrames.poll();
+        }
+        if (durableFileName != null) {
+            mDurableFileName = durableFileName;
+        }
+        deleteFiles(batch);
+    }
+
+    private void deleteFiles(final List<String> fileNames) {
+        long deleted = 0;
+        for (final String fileName : fileNames) {
+            try {
+                if (Files.deleteIfExists(mDirectory.resolve(fileName))) {
+                    deleted++;
+                }
+            } catch (final IOException e) {
+                log.warn("Could not delete " + fileName, e);
+            }
+        }
+
+        mDeletedCount += deleted;
+    }
+}
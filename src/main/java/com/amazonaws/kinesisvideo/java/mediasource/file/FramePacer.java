@@ -0,0 +1,84 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Schedules frames at a fixed interval of {@link System#nanoTime()}, applying a {@link LateFramePolicy} to the
+ * frames which are late by more than one interval.
+ * <p>
+ * Deadlines are computed from the start of the schedule rather than from the previous frame, so the time spent
+ * producing a frame doesn't accumulate as drift.
+ */
+@NotThreadSafe
+final class FramePacer {
+    /**
+     * Returned by {@link #schedule(long, boolean)} for a frame which should be dropped.
+     */
+    static final long DROP = Long.MIN_VALUE;
+
+    private final long mIntervalNanos;
+    private final LateFramePolicy mPolicy;
+    private final FramePipelineMetrics mMetrics;
+    private boolean mStarted;
+    private long mStartNanos;
+    private long mFrameIndex;
+    private boolean mSkippingToKeyFrame;
+
+    FramePacer(final long intervalNanos, @Nonnull final LateFramePolicy policy,
+               @Nonnull final FramePipelineMetrics metrics) {
+        Preconditions.checkArgument(intervalNanos > 0, "Frame interval should be positive");
+        mIntervalNanos = intervalNanos;
+        mPolicy = Preconditions.checkNotNull(policy);
+        mMetrics = Preconditions.checkNotNull(metrics);
+    }
+
+    /**
+     * Schedules the next frame.
+     *
+     * @param now Current {@link System#nanoTime()}
+     * @return Time at which to emit the frame, which may be in the past, or {@link #DROP}
+     */
+    long schedule(final long now, final boolean keyFrame) {
+        if (!mStarted) {
+            mStarted = true;
+            mStartNanos = now;
+            mFrameIndex = 0;
+        }
+
+        long deadline = mStartNanos + mFrameIndex * mIntervalNanos;
+        mFrameIndex++;
+
+        final boolean late = now - deadline > mIntervalNanos;
+        if (late) {
+            mMetrics.recordLateFrame();
+            mSkippingToKeyFrame |= mPolicy == LateFramePolicy.SKIP_TO_KEY_FRAME;
+        }
+
+        if (mSkippingToKeyFrame) {
+            if (!keyFrame) {
+                // The frame keeps its slot in the schedule, which lets the following frames catch up
+                mMetrics.recordDroppedFrame();
+                return DROP;
+            }
+            mSkippingToKeyFrame = false;
+        }
+
+        if (late && mPolicy != LateFramePolicy.CATCH_UP) {
+            mStartNanos = now - (mFrameIndex - 1) * mIntervalNanos;
+            deadline = now;
+        }
+
+        return deadline;
+    }
+
+    /**
+     * Starts a new schedule with the next frame, after a gap in the input.
+     */
+    void reset() {
+        mStarted = false;
+        mSkippingToKeyFrame = false;
+    }
+}
@@ -0,0 +1,198 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage latencies and queue occupancy of the {@link ImageFrameSource} pipeline.
+ * <p>
+ * Images are read ahead in parallel, encoded in order, then emitted at the frame rate. When reading is the
+ * bottleneck, few reads are complete when the encoder asks for the next image; when encoding is, the emit queue runs
+ * empty while the reads are complete. With neither, the emit queue stays full and frames wait for their deadline.
+ */
+@ThreadSafe
+public final class FramePipelineMetrics {
+    /**
+     * Latency of one stage of the pipeline
+     */
+    @ThreadSafe
+    public static final class Stage {
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        void record(final long nanos) {
+            mCount.incrementAndGet();
+            mTotalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = mMaxNanos.get()) && !mMaxNanos.compareAndSet(max, nanos)) {
+                // Retry until the max is at least the latency
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getAverageNanos() {
+            final long count = mCount.get();
+            return count == 0 ? 0 : mTotalNanos.get() / count;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "avg %.2f ms, max %.2f ms", toMillis(getAverageNanos()),
+                    toMillis(getMaxNanos()));
+        }
+    }
+
+    /**
+     * Occupancy of a queue between two stages, sampled each time an element is taken from it
+     */
+    @ThreadSafe
+    public static final class Occupancy {
+        private final int mCapacity;
+        private final AtomicLong mSamples = new AtomicLong();
+        private final AtomicLong mTotal = new AtomicLong();
+        private volatile int mLast;
+
+        Occupancy(final int capacity) {
+            mCapacity = capacity;
+        }
+
+        void record(final int size) {
+            mSamples.incrementAndGet();
+            mTotal.addAndGet(size);
+            mLast = size;
+        }
+
+        public int getCapacity() {
+            return mCapacity;
+        }
+
+        public double getAverage() {
+            final long samples = mSamples.get();
+            return samples == 0 ? 0 : (double) mTotal.get() / samples;
+        }
+
+        public int getLast() {
+            return mLast;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "avg %.1f of %d", getAverage(), mCapacity);
+        }
+    }
+
+    private final Stage mRead = new Stage();
+    private final Stage mEncode = new Stage();
+    private final Stage mEmitWait = new Stage();
+    private final Occupancy mReadQueue;
+    private final Occupancy mEmitQueue;
+    private final AtomicLong mEmittedFrames = new AtomicLong();
+    private final AtomicLong mLateFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mSkippedImages = new AtomicLong();
+
+    FramePipelineMetrics(final int readQueueCapacity, final int emitQueueCapacity) {
+        mReadQueue = new Occupancy(readQueueCapacity);
+        mEmitQueue = new Occupancy(emitQueueCapacity);
+    }
+
+    /**
+     * @return Time to read an image file
+     */
+    public Stage getRead() {
+        return mRead;
+    }
+
+    /**
+     * @return Time from handing an image to the encoder to getting its frame back
+     */
+    public Stage getEncode() {
+        return mEncode;
+    }
+
+    /**
+     * @return Time from a frame being queued for emission to it being emitted, including the wait for its deadline
+     */
+    public Stage getEmitWait() {
+        return mEmitWait;
+    }
+
+    /**
+     * @return Reads already complete when the encoder takes the next image
+     */
+    public Occupancy getReadQueue() {
+        return mReadQueue;
+    }
+
+    /**
+     * @return Encoded frames waiting when the emitter takes the next one
+     */
+    public Occupancy getEmitQueue() {
+        return mEmitQueue;
+    }
+
+    public long getEmittedFrameCount() {
+        return mEmittedFrames.get();
+    }
+
+    /**
+     * @return Frames which were more than one frame interval behind their deadline
+     */
+    public long getLateFrameCount() {
+        return mLateFrames.get();
+    }
+
+    public long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * @return Images which were never read, as the watched directory's backlog was full or they came too late
+     */
+    public long getSkippedImageCount() {
+        return mSkippedImages.get();
+    }
+
+    void recordEmittedFrame() {
+        mEmittedFrames.incrementAndGet();
+    }
+
+    void recordLateFrame() {
+        mLateFrames.incrementAndGet();
+    }
+
+    void recordDroppedFrame() {
+        mDroppedFrames.incrementAndGet();
+    }
+
+    void recordSkippedImage() {
+        mSkippedImages.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "read " + mRead
+                + ", encode " + mEncode
+                + ", emit wait " + mEmitWait
+                + ", read queue " + mReadQueue
+                + ", emit queue " + mEmitQueue
+                + ", emitted " + getEmittedFrameCount()
+                + ", late " + getLateFrameCount()
+                + ", dropped " + getDroppedFrameCount()
+                + ", skipped images " + getSkippedImageCount();
+    }
+
+    private static double toMillis(final long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,327 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hands out the image files of a directory as they are written, without polling the file system.
+ * <p>
+ * Java reports files being created and modified but not closed, so a file is taken as complete once a later file
+ * appears, as writers produce one image after the other, or once it has seen no event for the settle time. Complete
+ * files are released by index or modification time. In index order, a file following a gap waits for the missing
+ * one up to the gap timeout.
+ * <p>
+ * Files waiting to be released or taken are bounded by the backlog. When it's full the oldest file is skipped, which
+ * keeps the source live when the consumer falls behind.
+ */
+@ThreadSafe
+final class ImageDirectoryWatcher implements Closeable {
+    private static final Pattern INDEX_CONVERSION = Pattern.compile("%0?\\d*d");
+
+    private final Log log = LogFactory.getLog(ImageDirectoryWatcher.class);
+    private final Path mDirectory;
+    private final Pattern mFileNamePattern;
+    private final boolean mIndexOrder;
+    private final int mBacklog;
+    private final long mSettleNanos;
+    private final long mGapTimeoutNanos;
+    private final FramePipelineMetrics mMetrics;
+    private final BlockingQueue<String> mReleased;
+
+    // Only used by the watcher thread
+    private final TreeSet<PendingFile> mPending = new TreeSet<PendingFile>(new Comparator<PendingFile>() {
+        @Override
+        public int compare(final PendingFile first, final PendingFile second) {
+            final int byKey = Long.compare(first.mKey, second.mKey);
+            return byKey != 0 ? byKey : first.mName.compareTo(second.mName);
+        }
+    });
+    private final Map<String, PendingFile> mPendingByName = new HashMap<String, PendingFile>();
+    private final Set<String> mRecentlyHandled = new LinkedHashSet<String>();
+    private long mNextIndex = -1;
+
+    private WatchService mWatchService;
+    private Thread mThread;
+    private volatile boolean mClosed;
+
+    private static final class PendingFile {
+        private final String mName;
+        private final long mKey;
+        private final long mFirstEventNanos;
+        private long mLastEventNanos;
+
+        private PendingFile(final String name, final long key, final long now) {
+            mName = name;
+            mKey = key;
+            mFirstEventNanos = now;
+            mLastEventNanos = now;
+        }
+    }
+
+    /**
+     * @param fileNameFormat File name pattern with at most one integer conversion, which is required in index order
+     */
+    ImageDirectoryWatcher(@Nonnull final Path directory, @Nonnull final String fileNameFormat,
+                          final boolean indexOrder, final int backlog, final long settleMs, final long gapTimeoutMs,
+                          @Nonnull final FramePipelineMetrics metrics) {
+        Preconditions.checkArgument(backlog > 0, "Backlog should be positive");
+        Preconditions.checkArgument(settleMs >= 0 && gapTimeoutMs >= 0, "Timeouts should not be negative");
+
+        mDirectory = Preconditions.checkNotNull(directory);
+        mFileNamePattern = toPattern(Preconditions.checkNotNull(fileNameFormat), indexOrder);
+        mIndexOrder = indexOrder;
+        mBacklog = backlog;
+        mSettleNanos = TimeUnit.MILLISECONDS.toNanos(settleMs);
+        mGapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMs);
+        mMetrics = Preconditions.checkNotNull(metrics);
+        mReleased = new ArrayBlockingQueue<String>(backlog);
+    }
+
+    /**
+     * Starts watching, taking the files already in the directory as the first ones.
+     */
+    void start() throws IOException {
+        Preconditions.checkState(mWatchService == null, "Watcher has already been started");
+
+        mWatchService = mDirectory.getFileSystem().newWatchService();
+        mDirectory.register(mWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        scanDirectory(System.nanoTime());
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "image-directory-watcher");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * @return Name of the next file, or null if there is none within the timeout
+     */
+    @Nullable
+    String poll(final long timeout, @Nonnull final TimeUnit unit) throws InterruptedException {
+        return mReleased.poll(timeout, unit);
+    }
+
+    /**
+     * @return Name of the next file, or null if there is none yet
+     */
+    @Nullable
+    String poll() {
+        return mReleased.poll();
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        if (mWatchService != null) {
+            try {
+                mWatchService.close();
+            } catch (final IOException e) {
+                log.debug("Closing the watch service failed", e);
+            }
+        }
+    }
+
+    static Pattern toPattern(final String fileNameFormat, final boolean indexRequired) {
+        final Matcher conversion = INDEX_CONVERSION.matcher(fileNameFormat);
+        if (!conversion.find()) {
+            Preconditions.checkArgument(!indexRequired, "File name format has no index to order the files by");
+            return Pattern.compile(Pattern.quote(fileNameFormat));
+        }
+
+        return Pattern.compile(Pattern.quote(fileNameFormat.substring(0, conversion.start())) + "(\\d+)"
+                + Pattern.quote(fileNameFormat.substring(conversion.end())));
+    }
+
+    private void watch() {
+        try {
+            while (!mClosed) {
+                final long wait = releaseFiles(System.nanoTime());
+                final WatchKey key = wait < 0
+                        ? mWatchService.take()
+                        : mWatchService.poll(wait, TimeUnit.NANOSECONDS);
+                if (key == null) {
+                    continue;
+                }
+
+                final long now = System.nanoTime();
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost, look at the directory itself
+                        scanDirectory(now);
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        onFileDeleted(event.context().toString());
+                    } else {
+                        onFileEvent(event.context().toString(), now);
+                    }
+                }
+
+                if (!key.reset()) {
+                    log.error("Watched directory " + mDirectory + " is no longer accessible");
+                    return;
+                }
+            }
+        } catch (final ClosedWatchServiceException e) {
+            // Closed
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final IOException e) {
+            log.error("Watching " + mDirectory + " failed", e);
+        }
+    }
+
+    private void scanDirectory(final long now) throws IOException {
+        final DirectoryStream<Path> files = Files.newDirectoryStream(mDirectory);
+        try {
+            for (final Path file : files) {
+                onFileEvent(file.getFileName().toString(), now);
+            }
+        } finally {
+            files.close();
+        }
+    }
+
+    private void onFileEvent(final String name, final long now) {
+        final PendingFile pending = mPendingByName.get(name);
+        if (pending != null) {
+            pending.mLastEventNanos = now;
+            return;
+        }
+
+        final Matcher matcher = mFileNamePattern.matcher(name);
+        if (!matcher.matches() || mRecentlyHandled.contains(name)) {
+            return;
+        }
+
+        final long key;
+        try {
+            key = mIndexOrder
+                    ? Long.parseLong(matcher.group(1))
+                    : Files.getLastModifiedTime(mDirectory.resolve(name)).toMillis();
+        } catch (final NumberFormatException e) {
+            return;
+        } catch (final IOException e) {
+            // Gone already
+            return;
+        }
+
+        if (mIndexOrder && key < mNextIndex && mNextIndex - key <= mBacklog) {
+            // Written too late, its turn has passed
+            remember(name);
+            mMetrics.recordSkippedImage();
+            return;
+        }
+
+        final PendingFile file = new PendingFile(name, key, now);
+        mPending.add(file);
+        mPendingByName.put(name, file);
+
+        while (mPending.size() + mReleased.size() > mBacklog) {
+            if (mReleased.poll() == null) {
+                final PendingFile oldest = mPending.first();
+                removePending(oldest);
+                remember(oldest.mName);
+            }
+            mMetrics.recordSkippedImage();
+        }
+    }
+
+    private void onFileDeleted(final String name) {
+        // The name can be written again, typically once the index wraps around
+        mRecentlyHandled.remove(name);
+        final PendingFile pending = mPendingByName.get(name);
+        if (pending != null) {
+            removePending(pending);
+        }
+    }
+
+    /**
+     * @return Nanoseconds until a pending file may be released, or -1 if there is none
+     */
+    private long releaseFiles(final long now) {
+        while (!mPending.isEmpty()) {
+            final PendingFile first = mPending.first();
+            final long settledAt = first.mLastEventNanos + mSettleNanos;
+            final long gapGivenUpAt = first.mFirstEventNanos + mGapTimeoutNanos;
+            final boolean complete = mPending.size() > 1 || now - settledAt >= 0;
+            final boolean inOrder = !mIndexOrder || mNextIndex < 0 || first.mKey == mNextIndex
+                    || now - gapGivenUpAt >= 0;
+
+            if (!complete || !inOrder) {
+                long wait = Long.MAX_VALUE;
+                if (!complete) {
+                    wait = settledAt - now;
+                }
+                if (!inOrder) {
+                    wait = Math.min(wait, gapGivenUpAt - now);
+                }
+                return Math.max(wait, 1);
+            }
+
+            removePending(first);
+            release(first);
+        }
+
+        return -1;
+    }
+
+    private void release(final PendingFile file) {
+        if (mIndexOrder) {
+            mNextIndex = file.mKey + 1;
+        }
+
+        remember(file.mName);
+        while (!mReleased.offer(file.mName)) {
+            mReleased.poll();
+            mMetrics.recordSkippedImage();
+        }
+    }
+
+    /**
+     * Ignores the later events of a file which was released or skipped, until it's deleted.
+     */
+    private void remember(final String name) {
+        mRecentlyHandled.add(name);
+        if (mRecentlyHandled.size() > mBacklog * 2) {
+            final Iterator<String> oldest = mRecentlyHandled.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void removePending(final PendingFile file) {
+        mPending.remove(file);
+        mPendingByName.remove(file.mName);
+    }
+}
@@ -1,42 +1,68 @@
 package com.amazonaws.kinesisvideo.java.mediasource.file;
 
-import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource;
+import com.amazonaws.kinesisvideo.client.ratecontrol.RateTarget;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
-import com.amazonaws.kinesisvideo.demoapp.Checkpointer;
-import com.amazonaws.kinesisvideo.demoapp.FrameDeleter;
-import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
+import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
 
 /**
  * MediaSource based on local image files. Currently, this MediaSource expects
  * a series of H264 frames.
+ * <p>
+ * Image files are deleted once the fragment holding their frame has been persisted, which requires the stream to be
+ * created with the callbacks of {@link #getStreamCallbacks()}. With a checkpoint configured, a restart resumes after
+ * the last durable image.
+ * <p>
+ * Rate control caps the bitrate of the encoder. The frame rate is left alone: the images set it, and dropping
+ * encoded frames would break the group of pictures they belong to.
  */
-public class ImageFileMediaSource implements MediaSource {
+public class ImageFileMediaSource implements RateControlledMediaSource {
     private static final long HUNDREDS_OF_NANOS_IN_MS = 10 * 1000;
     private static final int FRAME_FLAG_KEY_FRAME = 1;
     private static final int FRAME_FLAG_NONE = 0;
     private static final long FRAME_DURATION_20_MS = 20L;
     private static final int FRAGMENT_DURATION_SECONDS = 2;
-    private FrameDeleter frameDeleter;
     private final Log log = LogFactory.getLog(ImageFileMediaSource.class);
 
     private ImageFileMediaSourceConfiguration imageFileMediaSourceConfiguration;
     private MediaSourceState mediaSourceState;
     private MediaSourceSink mediaSourceSink;
-    private ImageFrameSource imageFrameSource;
+    private volatile ImageFrameSource imageFrameSource;
+    private volatile FrameHousekeeper frameHousekeeper;
+    private volatile int maxBitrate;
     private int frameIndex;
     private long currentTimeMs;
     private long timeToIncrement;
 
+    private final StreamCallbacks streamCallbacks = new DefaultStreamCallbacks() {
+        @Override
+        public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck)
+                throws ProducerException {
+            final FrameHousekeeper housekeeper = frameHousekeeper;
+            if (housekeeper != null
+                    && fragmentAck.getAckType().getIntType() == FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED) {
+                housekeeper.onFragmentPersisted(fragmentAck.getTimestamp());
+            }
+        }
+    };
+
     @Override
     public MediaSourceState getMediaSourceState() {
         return mediaSourceState;
@@ -47,6 +73,25 @@ public class ImageFileMediaSource implements MediaSource {
         return imageFileMediaSourceConfiguration;
     }
 
+    /**
+     * @return Stream callbacks which let the media source delete the images of persisted fragments
+     */
+    @Nonnull
+    public StreamCallbacks getStreamCallbacks() {
+        return streamCallbacks;
+    }
+
+    @Override
+    public void onTargetRateChanged(@Nonnull final RateTarget target) {
+        maxBitrate = target.getBitrateFactor() < 1.0
+                ? (int) (ImageFileMediaSourceConfiguration.DEFAULT_BITRATE * target.getBitrateFactor())
+                : 0;
+        final ImageFrameSource frameSource = imageFrameSource;
+        if (frameSource != null) {
+            frameSource.setMaxBitrate(maxBitrate);
+        }
+    }
+
     @Override
     public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
         this.mediaSourceSink = mediaSourceSink;
@@ -71,10 +116,11 @@ public class ImageFileMediaSource implements MediaSource {
             e.printStackTrace();
             throw new RuntimeException("ffmpeg not installed");
         }
-        this.frameDeleter = new FrameDeleter();
+        imageFrameSource.setMaxBitrate(maxBitrate);
+        startHousekeeper();
         this.currentTimeMs = System.currentTimeMillis();
         this.timeToIncrement = 1000L / imageFileMediaSourceConfiguration.getFps();
-        imageFrameSource.onBytesAvailable(createKinesisVideoFrameAndPushToProducer());
+        imageFrameSource.onEncodedFrameAvailable(createKinesisVideoFrameAndPushToProducer());
         imageFrameSource.start();
     }
 
@@ -82,6 +128,13 @@ public class ImageFileMediaSource implements MediaSource {
     public void stop() throws KinesisVideoException {
         if (imageFrameSource != null) {
             imageFrameSource.stop();
+            log.info("Image frame pipeline: " + imageFrameSource.getPipelineMetrics());
+        }
+
+        final FrameHousekeeper housekeeper = frameHousekeeper;
+        if (housekeeper != null) {
+            housekeeper.close();
+            log.info("Image housekeeping: " + housekeeper);
         }
 
         mediaSourceState = MediaSourceState.STOPPED;
@@ -101,13 +154,41 @@ public class ImageFileMediaSource implements MediaSource {
         return this.currentTimeMs;
     }
 
-    private OnFrameDataAvailable createKinesisVideoFrameAndPushToProducer() {
-        return new OnFrameDataAvailable() {
+    private void startHousekeeper() throws KinesisVideoException {
+        final String checkpointFile = imageFileMediaSourceConfiguration.getCheckpointDir();
+        final FrameHousekeeper housekeeper = new FrameHousekeeper(
+                Paths.get(imageFileMediaSourceConfiguration.getDir()),
+                checkpointFile == null ? null : new FrameCheckpoint(Paths.get(checkpointFile)),
+                imageFileMediaSourceConfiguration.getCheckpointIntervalMs());
+
+        final String durableFileName;
+        try {
+            durableFileName = housekeeper.start();
+        } catch (final IOException e) {
+            throw new KinesisVideoException("Could not read the checkpoint " + checkpointFile, e);
+        }
+        frameHousekeeper = housekeeper;
+
+        // Watched directories still hold every image which isn't durable, polling by index needs to skip ahead
+        if (durableFileName != null
+                && imageFileMediaSourceConfiguration.getIngestionMode() == ImageIngestionMode.INDEX_POLLING) {
+            final Matcher matcher = ImageDirectoryWatcher.toPattern(
+                    imageFileMediaSourceConfiguration.getFilenameFormat(), false).matcher(durableFileName);
+            if (matcher.matches() && matcher.groupCount() > 0) {
+                imageFrameSource.resumeAfter(Long.parseLong(matcher.group(1)));
+                log.info("Resuming after the durable image " + durableFileName);
+            }
+        }
+    }
+
+    private ImageFrameSource.OnEncodedFrameAvailable createKinesisVideoFrameAndPushToProducer() {
+        return new ImageFrameSource.OnEncodedFrameAvailable() {
             @Override
-            public void onFrameDataAvailable(final ByteBuffer data) {
+            public void onEncodedFrameAvailable(@Nonnull final ByteBuffer data, final boolean keyFrame,
+                                                @Nullable final String fileName) {
                 final long currentTimeMs = getCurrentTimeMs();
 
-                final int flags = isKeyFrame()
+                final int flags = keyFrame
                         ? FRAME_FLAG_KEY_FRAME
                         : FRAME_FLAG_NONE;
 
@@ -124,7 +205,7 @@ public class ImageFileMediaSource implements MediaSource {
                     return;
                 }
 
-                putFrame(frame);
+                putFrame(frame, keyFrame, fileName);
             }
         };
     }
@@ -133,19 +214,15 @@ public class ImageFileMediaSource implements MediaSource {
         this.currentTimeMs = System.currentTimeMillis();
     }
 
-    private boolean isKeyFrame() {
-        return frameIndex % imageFileMediaSourceConfiguration.getFps() == 0;
-    }
-
-    private void putFrame(final KinesisVideoFrame kinesisVideoFrame) {
+    private void putFrame(final KinesisVideoFrame kinesisVideoFrame, final boolean keyFrame,
+                          final String frameFileName) {
+        // Recorded before the put, so that the frame is known by the time its fragment can be acked
+        frameHousekeeper.recordFrame(kinesisVideoFrame.getPresentationTs(), keyFrame, frameFileName);
         try {
             mediaSourceSink.onFrame(kinesisVideoFrame);
         } catch (final KinesisVideoException ex) {
             log.error("Failed to put frame with Exception", ex);
         }
-        final String frameFileName = imageFrameSource.getFileName();
-        frameDeleter.deleteFrame(imageFileMediaSourceConfiguration.getDir(), frameFileName);
         currentTimeMs += this.timeToIncrement;
-        System.out.println("Frame supposed to be ended, frame file name: " + frameFileName);
     }
 }
@@ -12,6 +12,35 @@ import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SE
 import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_AN_HOUR;
 
 public class ImageFileMediaSourceConfiguration implements MediaSourceConfiguration {
+    /**
+     * Default number of threads reading image files ahead.
+     */
+    public static final int DEFAULT_READER_THREADS = 2;
+
+    /**
+     * Default number of images read ahead of the encoder.
+     */
+    public static final int DEFAULT_READ_QUEUE_DEPTH = 8;
+
+    /**
+     * Default number of encoded frames waiting for their deadline.
+     */
+    public static final int DEFAULT_EMIT_QUEUE_DEPTH = 8;
+
+    /**
+     * Default number of files of a watched directory waiting to be read.
+     */
+    public static final int DEFAULT_WATCH_BACKLOG = 64;
+
+    /**
+     * Default time without events after which a file of a watched directory is taken as complete.
+     */
+    public static final long DEFAULT_WATCH_SETTLE_MS = 20L;
+
+    /**
+     * Default interval between commits of the checkpoint and deletions of the durable image files.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MS = 500L;
 
     private final int fps;
     private final String dir;
@@ -23,6 +52,15 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
     private final int retries;
     private final String ffmpegPath;
     private final String ffprobePath;
+    private final boolean oneShotEncoder;
+    private final int readerThreads;
+    private final int readQueueDepth;
+    private final int emitQueueDepth;
+    private final LateFramePolicy lateFramePolicy;
+    private final ImageIngestionMode ingestionMode;
+    private final int watchBacklog;
+    private final long watchSettleMs;
+    private final long checkpointIntervalMs;
 
     public ImageFileMediaSourceConfiguration(final Builder builder) {
         this.fps = builder.fps;
@@ -35,6 +73,15 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         this.retries = builder.retries;
         this.ffmpegPath = builder.ffmpegPath;
         this.ffprobePath = builder.ffprobePath;
+        this.oneShotEncoder = builder.oneShotEncoder;
+        this.readerThreads = builder.readerThreads;
+        this.readQueueDepth = builder.readQueueDepth;
+        this.emitQueueDepth = builder.emitQueueDepth;
+        this.lateFramePolicy = builder.lateFramePolicy;
+        this.ingestionMode = builder.ingestionMode;
+        this.watchBacklog = builder.watchBacklog;
+        this.watchSettleMs = builder.watchSettleMs;
+        this.checkpointIntervalMs = builder.checkpointIntervalMs;
     }
 
     public int getFps() {
@@ -77,6 +124,48 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         return ffprobePath;
     }
 
+    /**
+     * @return Whether each image is encoded by an ffmpeg process of its own rather than by a long-lived one
+     */
+    public boolean isOneShotEncoder() {
+        return oneShotEncoder;
+    }
+
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    public int getReadQueueDepth() {
+        return readQueueDepth;
+    }
+
+    public int getEmitQueueDepth() {
+        return emitQueueDepth;
+    }
+
+    public LateFramePolicy getLateFramePolicy() {
+        return lateFramePolicy;
+    }
+
+    public ImageIngestionMode getIngestionMode() {
+        return ingestionMode;
+    }
+
+    public int getWatchBacklog() {
+        return watchBacklog;
+    }
+
+    public long getWatchSettleMs() {
+        return watchSettleMs;
+    }
+
+    /**
+     * @return Interval at which the files of persisted frames are deleted and the checkpoint is committed
+     */
+    public long getCheckpointIntervalMs() {
+        return checkpointIntervalMs;
+    }
+
     @Override
     public String getMediaSourceType() {
         return null;
@@ -98,6 +187,15 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         private int retries;
         private String ffmpegPath;
         private String ffprobePath;
+        private boolean oneShotEncoder;
+        private int readerThreads = DEFAULT_READER_THREADS;
+        private int readQueueDepth = DEFAULT_READ_QUEUE_DEPTH;
+        private int emitQueueDepth = DEFAULT_EMIT_QUEUE_DEPTH;
+        private LateFramePolicy lateFramePolicy = LateFramePolicy.CATCH_UP;
+        private ImageIngestionMode ingestionMode = ImageIngestionMode.INDEX_POLLING;
+        private int watchBacklog = DEFAULT_WATCH_BACKLOG;
+        private long watchSettleMs = DEFAULT_WATCH_SETTLE_MS;
+        private long checkpointIntervalMs = DEFAULT_CHECKPOINT_INTERVAL_MS;
 
         public Builder fps(final int fps) {
             this.fps = fps;
@@ -152,6 +250,75 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
             return this;
         }
 
+        public Builder oneShotEncoder(final boolean oneShotEncoder) {
+            this.oneShotEncoder = oneShotEncoder;
+            return this;
+        }
+
+        public Builder readerThreads(final int readerThreads) {
+            if (readerThreads <= 0) {
+                throw new IllegalArgumentException("Reader threads should be positive.");
+            }
+            this.readerThreads = readerThreads;
+            return this;
+        }
+
+        public Builder readQueueDepth(final int readQueueDepth) {
+            if (readQueueDepth <= 0) {
+                throw new IllegalArgumentException("Read queue depth should be positive.");
+            }
+            this.readQueueDepth = readQueueDepth;
+            return this;
+        }
+
+        public Builder emitQueueDepth(final int emitQueueDepth) {
+            if (emitQueueDepth <= 0) {
+                throw new IllegalArgumentException("Emit queue depth should be positive.");
+            }
+            this.emitQueueDepth = emitQueueDepth;
+            return this;
+        }
+
+        public Builder lateFramePolicy(final LateFramePolicy lateFramePolicy) {
+            if (lateFramePolicy == null) {
+                throw new IllegalArgumentException("Late frame policy should not be null.");
+            }
+            this.lateFramePolicy = lateFramePolicy;
+            return this;
+        }
+
+        public Builder ingestionMode(final ImageIngestionMode ingestionMode) {
+            if (ingestionMode == null) {
+                throw new IllegalArgumentException("Ingestion mode should not be null.");
+            }
+            this.ingestionMode = ingestionMode;
+            return this;
+        }
+
+        public Builder watchBacklog(final int watchBacklog) {
+            if (watchBacklog <= 0) {
+                throw new IllegalArgumentException("Watch backlog should be positive.");
+            }
+            this.watchBacklog = watchBacklog;
+            return this;
+        }
+
+        public Builder watchSettleMs(final long watchSettleMs) {
+            if (watchSettleMs < 0) {
+                throw new IllegalArgumentException("Watch settle time should not be negative.");
+            }
+            this.watchSettleMs = watchSettleMs;
+            return this;
+        }
+
+        public Builder checkpointIntervalMs(final long checkpointIntervalMs) {
+            if (checkpointIntervalMs <= 0) {
+                throw new IllegalArgumentException("Checkpoint interval should be positive.");
+            }
+            this.checkpointIntervalMs = checkpointIntervalMs;
+            return this;
+        }
+
         @Override
         public ImageFileMediaSourceConfiguration build() {
             return new ImageFileMediaSourceConfiguration(this);
@@ -169,7 +336,7 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
     private static final boolean REQUEST_FRAGMENT_ACKS = true;
     private static final boolean RECOVER_ON_FAILURE = true;
     private static final long DEFAULT_GOP_DURATION = 2000L * HUNDREDS_OF_NANOS_IN_A_SECOND;
-    private static final int DEFAULT_BITRATE = 2_000_000;
+    static final int DEFAULT_BITRATE = 2_000_000;
     private static final int DEFAULT_TIMESCALE = 10_000;
     private static final int FRAMERATE_30 = 30;
     private static final int FRAME_RATE_25 = 25;
@@ -1,43 +1,153 @@
 package com.amazonaws.kinesisvideo.java.mediasource.file;
 
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferArena;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import com.amazonaws.kinesisvideo.demoapp.FFmpegConverter;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Frame source backed by local image files.
+ * <p>
+ * Frames go through a bounded pipeline: image files are read ahead in parallel, encoded in order, and emitted at the
+ * frame rate against {@link System#nanoTime()} deadlines, so a slow read or encode is absorbed by the queues instead
+ * of delaying every following frame. Frames which are late anyway are handled by the configured
+ * {@link LateFramePolicy}. See {@link FramePipelineMetrics} for telling which stage is the bottleneck.
+ * <p>
+ * Images are encoded by a single long-lived ffmpeg process, see {@link FFmpegEncoderSession}, and the frames are
+ * reported with the key frame flags of the encoded stream. If the process can't be started or fails, or the
+ * configuration asks for it, each image is encoded on its own by {@link FFmpegConverter} instead.
+ * <p>
+ * Images are found by formatting the file name pattern with an incrementing index, or, in the watch
+ * {@link ImageIngestionMode}s, taken from the directory as soon as they are written. In the watch modes the files
+ * set the pace: the schedule of the emit stage restarts whenever it had to wait for a frame, so frames are only held
+ * back when they arrive in a burst.
+ * <p>
+ * {@link #setMaxBitrate(int)} caps the bitrate of the encoder session, which is restarted with the new cap between two
+ * images. Its first frame is a key frame, so the stream stays decodable across the restart.
  */
 @NotThreadSafe
 public class ImageFrameSource {
     public static final int DISCRETENESS_HZ = 25;
-    private final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private static final int FRAME_WIDTH = 1280;
+    private static final int FRAME_HEIGHT = 720;
+    private static final long EMIT_POLL_MS = 100L;
+    private ExecutorService executor;
+    private ExecutorService readExecutor;
+    private ExecutorService emitExecutor;
     private final int fps;
     private final ImageFileMediaSourceConfiguration configuration;
 
+    /**
+     * Receives the encoded frames along with their key frame flag and the name of their image file.
+     */
+    public interface OnEncodedFrameAvailable {
+        /**
+         * @param data Frame data, only valid for the duration of the call. Empty when an image is missing.
+         */
+        void onEncodedFrameAvailable(@Nonnull ByteBuffer data, boolean keyFrame, @Nullable String fileName);
+    }
+
+    /**
+     * Image file read ahead of the encoder
+     */
+    private static final class ImageRead {
+        private final String fileName;
+        private final Path path;
+        private byte[] data;
+        private int length;
+        private IOException failure;
+
+        private ImageRead(final String fileName, final Path path) {
+            this.fileName = fileName;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Encoded frame waiting for its deadline
+     */
+    private static final class EncodedFrame {
+        private final ByteBuffer data;
+        private final DirectBufferArena.Lease lease;
+        private final boolean keyFrame;
+        private final String fileName;
+        private final long queuedNanos = System.nanoTime();
+
+        private EncodedFrame(final ByteBuffer data, final DirectBufferArena.Lease lease, final boolean keyFrame,
+                             final String fileName) {
+            this.data = data;
+            this.lease = lease;
+            this.keyFrame = keyFrame;
+            this.fileName = fileName;
+        }
+
+        private void release() {
+            if (lease != null) {
+                lease.release();
+            }
+        }
+    }
+
     private final int totalFiles;
     private OnFrameDataAvailable onFrameDataAvailable;
-    private boolean isRunning = false;
+    private OnEncodedFrameAvailable onEncodedFrameAvailable;
+    private volatile boolean isRunning = false;
     private long frameCounter;
+    private long oneShotFrameCounter;
     private final Log log = LogFactory.getLog(ImageFrameSource.class);
     private final FFmpegConverter converter;
+    private final DirectBufferArena bufferArena;
+    private final FramePipelineMetrics metrics;
+    private final BlockingQueue<EncodedFrame> emitQueue;
+    private final Queue<byte[]> imageBuffers = new ConcurrentLinkedQueue<byte[]>();
+    private final Queue<Long> encodeStartTimes = new ConcurrentLinkedQueue<Long>();
+    private volatile FFmpegEncoderSession encoderSession;
+    private volatile int maxBitrate;
+    private int encoderMaxBitrate;
+    private volatile ImageDirectoryWatcher directoryWatcher;
+    private Path oneShotOutput;
 
     public ImageFrameSource(final ImageFileMediaSourceConfiguration configuration) throws IOException {
+        this(configuration, DirectBufferArena.getDefault());
+    }
+
+    public ImageFrameSource(final ImageFileMediaSourceConfiguration configuration,
+                            final DirectBufferArena bufferArena) throws IOException {
         this.configuration = configuration;
+        this.bufferArena = Preconditions.checkNotNull(bufferArena);
         this.totalFiles = getTotalFiles();
         this.fps = configuration.getFps();
         this.converter = new FFmpegConverter(configuration.getFFmpegPath(), configuration.getFFprobePath());
+        this.metrics = new FramePipelineMetrics(configuration.getReadQueueDepth(), configuration.getEmitQueueDepth());
+        this.emitQueue = new ArrayBlockingQueue<EncodedFrame>(configuration.getEmitQueueDepth());
     }
 
     private int getTotalFiles() {
@@ -52,12 +162,30 @@ public class ImageFrameSource {
         return (configuration.getStartFileIndex() + frameCounter) % totalFiles;
     }
 
+    /**
+     * Makes the images polled by index start after the given one. Must be called before {@link #start()}.
+     */
+    public void resumeAfter(final long fileIndex) {
+        if (isRunning) {
+            throw new IllegalStateException("Frame source is already running");
+        }
+
+        final long counter = (fileIndex + 1 - configuration.getStartFileIndex()) % totalFiles;
+        this.frameCounter = counter < 0 ? counter + totalFiles : counter;
+    }
+
     public void start() {
         if (isRunning) {
             throw new IllegalStateException("Frame source is already running");
         }
 
         isRunning = true;
+        if (!configuration.isOneShotEncoder()) {
+            startEncoderSession();
+        }
+        if (configuration.getIngestionMode() != ImageIngestionMode.INDEX_POLLING) {
+            startDirectoryWatcher();
+        }
         startFrameGenerator();
     }
 
@@ -70,7 +198,41 @@ public class ImageFrameSource {
         this.onFrameDataAvailable = onFrameDataAvailable;
     }
 
+    public void onEncodedFrameAvailable(final OnEncodedFrameAvailable onEncodedFrameAvailable) {
+        this.onEncodedFrameAvailable = onEncodedFrameAvailable;
+    }
+
+    /**
+     * @return Whether images are encoded by the long-lived ffmpeg process
+     */
+    public boolean isUsingEncoderSession() {
+        return encoderSession != null;
+    }
+
+    /**
+     * Holds the encoder session under the given bits per second from the next image on, 0 lifts the cap.
+     * Images encoded one by one aren't capped.
+     */
+    public void setMaxBitrate(final int maxBitrate) {
+        Preconditions.checkArgument(maxBitrate >= 0, "Max bitrate should not be negative");
+        this.maxBitrate = maxBitrate;
+    }
+
+    @Nonnull
+    public FramePipelineMetrics getPipelineMetrics() {
+        return metrics;
+    }
+
     private void startFrameGenerator() {
+        executor = Executors.newFixedThreadPool(1);
+        readExecutor = Executors.newFixedThreadPool(configuration.getReaderThreads());
+        emitExecutor = Executors.newFixedThreadPool(1);
+        emitExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                emitFrames();
+            }
+        });
         executor.execute(new Runnable() {
             @Override
             public void run() {
@@ -79,19 +241,193 @@ public class ImageFrameSource {
         });
     }
 
+    private void startEncoderSession() {
+        encoderMaxBitrate = maxBitrate;
+        final FFmpegEncoderSession session = new FFmpegEncoderSession(configuration.getFFmpegPath(), fps,
+                FRAME_WIDTH, FRAME_HEIGHT, encoderMaxBitrate);
+        try {
+            session.start(new FFmpegEncoderSession.Listener() {
+                @Override
+                public void onEncodedFrame(@Nonnull final byte[] buffer, final int offset, final int length,
+                                           final boolean keyFrame, @Nullable final String sourceName) {
+                    final Long encodeStart = encodeStartTimes.poll();
+                    if (encodeStart != null) {
+                        metrics.getEncode().record(System.nanoTime() - encodeStart);
+                    }
+                    queueEncodedFrame(buffer, offset, length, keyFrame, sourceName);
+                }
+            });
+            encoderSession = session;
+        } catch (final IOException e) {
+            log.warn("Could not start the ffmpeg encoder session, encoding each image separately", e);
+        }
+    }
+
+    private void startDirectoryWatcher() {
+        final ImageDirectoryWatcher watcher = new ImageDirectoryWatcher(Paths.get(configuration.getDir()),
+                configuration.getFilenameFormat(),
+                configuration.getIngestionMode() == ImageIngestionMode.WATCH_BY_INDEX,
+                configuration.getWatchBacklog(),
+                configuration.getWatchSettleMs(),
+                // A missing image is given up on after two frame intervals
+                2 * Duration.ofSeconds(1L).toMillis() / fps,
+                metrics);
+        try {
+            watcher.start();
+            directoryWatcher = watcher;
+        } catch (final IOException e) {
+            log.error("Could not watch " + configuration.getDir() + ", polling the images by index instead", e);
+            watcher.close();
+        }
+    }
+
+    /**
+     * Keeps the reads ahead of the encoder and hands the images to it in order.
+     */
     private void generateFrameAndNotifyListener() {
+        final ArrayDeque<Future<ImageRead>> reads = new ArrayDeque<Future<ImageRead>>();
         while (isRunning) {
-            if (onFrameDataAvailable != null) {
-//                onFrameDataAvailable.onFrameDataAvailable(createKinesisVideoFrameFromImage(frameCounter));
-                onFrameDataAvailable.onFrameDataAvailable(createKinesisVideoFrameFromImagePNG(frameCounter));
+            while (isRunning && reads.size() < configuration.getReadQueueDepth()) {
+                final String filename;
+                try {
+                    filename = nextFileName(reads.isEmpty());
+                } catch (final InterruptedException e) {
+                    log.error("Image wait interrupted by Exception ", e);
+                    cancelReads(reads);
+                    return;
+                }
+
+                if (filename == null) {
+                    break;
+                }
+                reads.add(readExecutor.submit(createImageRead(filename)));
+            }
+
+            if (reads.isEmpty()) {
+                continue;
             }
 
-            frameCounter++;
+            int completedReads = 0;
+            for (final Future<ImageRead> read : reads) {
+                if (read.isDone()) {
+                    completedReads++;
+                }
+            }
+            metrics.getReadQueue().record(completedReads);
+
+            final ImageRead image;
             try {
-                Thread.sleep(Duration.ofSeconds(1L).toMillis() / fps);
+                image = reads.poll().get();
             } catch (final InterruptedException e) {
-                log.error("Frame interval wait interrupted by Exception ", e);
+                log.error("Image read wait interrupted by Exception ", e);
+                break;
+            } catch (final ExecutionException e) {
+                log.error("Image read failed with Exception ", e.getCause());
+                continue;
+            }
+
+            if (image.failure != null && directoryWatcher != null) {
+                log.warn("Image " + image.fileName + " could not be read, skipping it", image.failure);
+                metrics.recordSkippedImage();
+                continue;
+            } else if (image.failure != null) {
+                cancelReads(reads);
+                waitForNextFile(image.failure);
+                queueFrame(new EncodedFrame(ByteBuffer.wrap(new byte[0]), null, false, image.fileName));
+                continue;
+            }
+
+            if (onFrameDataAvailable != null || onEncodedFrameAvailable != null) {
+//                onFrameDataAvailable.onFrameDataAvailable(createKinesisVideoFrameFromImage(frameCounter));
+                if (encoderSession != null && encoderMaxBitrate != maxBitrate) {
+                    restartEncoderSession();
+                }
+                if (encoderSession != null) {
+                    submitImage(image);
+                } else {
+                    notifyFrameFromImagePNG(image);
+                }
             }
+            recycleImageBuffer(image);
+        }
+
+        cancelReads(reads);
+    }
+
+    /**
+     * @param wait Whether to wait for the next image of a watched directory, for a bounded time
+     * @return Name of the next image file, or null if there is none yet in a watched directory
+     */
+    private String nextFileName(final boolean wait) throws InterruptedException {
+        final ImageDirectoryWatcher watcher = directoryWatcher;
+        if (watcher != null) {
+            return wait ? watcher.poll(EMIT_POLL_MS, TimeUnit.MILLISECONDS) : watcher.poll();
+        }
+
+        final String filename = String.format(configuration.getFilenameFormat(),
+                (configuration.getStartFileIndex() + frameCounter) % totalFiles);
+        frameCounter++;
+        return filename;
+    }
+
+    private Callable<ImageRead> createImageRead(final String filename) {
+        final ImageRead image = new ImageRead(filename, Paths.get(configuration.getDir() + filename));
+        return new Callable<ImageRead>() {
+            @Override
+            public ImageRead call() {
+                final long start = System.nanoTime();
+                try {
+                    if (encoderSession != null) {
+                        readImage(image);
+                    } else if (!Files.exists(image.path)) {
+                        // The one-shot converter reads the image itself
+                        throw new NoSuchFileException(image.path.toString());
+                    }
+                } catch (final IOException e) {
+                    image.failure = e;
+                }
+                metrics.getRead().record(System.nanoTime() - start);
+                return image;
+            }
+        };
+    }
+
+    private void readImage(final ImageRead image) throws IOException {
+        final FileChannel channel = FileChannel.open(image.path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Image " + image.path + " is too large");
+            }
+
+            byte[] buffer = imageBuffers.poll();
+            if (buffer == null || buffer.length < size) {
+                buffer = new byte[(int) size];
+            }
+
+            final ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) size);
+            while (target.hasRemaining() && channel.read(target) >= 0) {
+                // Keep reading until the buffer is full or the file ends
+            }
+
+            image.data = buffer;
+            image.length = target.position();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void recycleImageBuffer(final ImageRead image) {
+        if (image.data != null) {
+            imageBuffers.add(image.data);
+            image.data = null;
+        }
+    }
+
+    private void cancelReads(final ArrayDeque<Future<ImageRead>> reads) {
+        Future<ImageRead> read;
+        while ((read = reads.poll()) != null) {
+            read.cancel(false);
         }
     }
 
@@ -118,28 +454,214 @@ public class ImageFrameSource {
         return null;
     }
 
-    private ByteBuffer createKinesisVideoFrameFromImagePNG(final long index) {
-        final String filename = String.format(configuration.getFilenameFormat(),
-                (configuration.getStartFileIndex() + index) % totalFiles);
+    /**
+     * Closing the session flushes the frames of the images already submitted before the new session starts.
+     */
+    private void restartEncoderSession() {
+        final FFmpegEncoderSession session = encoderSession;
+        encoderSession = null;
+        session.close();
+        encodeStartTimes.clear();
+        log.info("Restarting the ffmpeg encoder session with a max bitrate of " + maxBitrate);
+        startEncoderSession();
+
+        // Stopped while restarting, the new session would be left running
+        final FFmpegEncoderSession restarted = encoderSession;
+        if (!isRunning && restarted != null) {
+            restarted.close();
+        }
+    }
+
+    private void submitImage(final ImageRead image) {
+        try {
+            encodeStartTimes.add(System.nanoTime());
+            encoderSession.submit(image.data, 0, image.length, image.fileName);
+        } catch (final IOException e) {
+            if (!isRunning) {
+                return;
+            }
+
+            log.warn("ffmpeg encoder session failed, encoding each image separately", e);
+            encoderSession.close();
+            encoderSession = null;
+            encodeStartTimes.clear();
+            notifyFrameFromImagePNG(image);
+        }
+    }
 
+    private void notifyFrameFromImagePNG(final ImageRead image) {
+        DirectBufferArena.Lease lease = null;
+        ByteBuffer frameData;
+        final long start = System.nanoTime();
         try {
-            converter.encodeToH264(configuration.getDir() + filename, "output.h264");
-            final Path path = Paths.get("output.h264");
-            final byte[] bytes = Files.readAllBytes(path);
-            return ByteBuffer.wrap(bytes);
+            final Path path = getOneShotOutput();
+            converter.encodeToH264(image.path.toString(), path.toString());
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                lease = bufferArena.tryLease((int) channel.size());
+                if (lease == null) {
+                    // Over the direct memory budget, the frame will be copied when it's put
+                    frameData = ByteBuffer.wrap(Files.readAllBytes(path));
+                } else {
+                    frameData = lease.getBuffer();
+                    while (frameData.hasRemaining() && channel.read(frameData) >= 0) {
+                        // Keep reading until the buffer is full or the file ends
+                    }
+                    frameData.flip();
+                }
+            } finally {
+                channel.close();
+            }
+            metrics.getEncode().record(System.nanoTime() - start);
         } catch (final Exception e) {
-            log.error("Read file failed with Exception, sleeping to wait for next file", e);
-            this.frameCounter = -1;
+            if (lease != null) {
+                lease.release();
+                lease = null;
+            }
+            waitForNextFile(e);
+            frameData = ByteBuffer.wrap(new byte[0]);
+        }
+
+        // Every image is encoded as a key frame of its own, flag one per second to keep the fragment duration
+        final boolean keyFrame = frameData.hasRemaining() && oneShotFrameCounter++ % fps == 0;
+        queueFrame(new EncodedFrame(frameData, lease, keyFrame, image.fileName));
+    }
+
+    private Path getOneShotOutput() throws IOException {
+        if (oneShotOutput == null) {
+            // Sources in the same process must not share the output file
+            oneShotOutput = Files.createTempFile("image-frame-source", ".h264");
+            oneShotOutput.toFile().deleteOnExit();
+        }
+
+        return oneShotOutput;
+    }
+
+    private void waitForNextFile(final Exception e) {
+        log.error("Read file failed with Exception, sleeping to wait for next file", e);
+        // Start over from the first file
+        this.frameCounter = 0;
+        try {
+            Thread.sleep(Duration.ofSeconds(1L).toMillis());
+        } catch (final InterruptedException ex) {
+            log.error("Frame wait interrupted by Exception ", ex);
+        }
+    }
+
+    private void queueEncodedFrame(final byte[] buffer, final int offset, final int length, final boolean keyFrame,
+                                   final String fileName) {
+        final DirectBufferArena.Lease lease = bufferArena.tryLease(length);
+        final ByteBuffer frameData;
+        if (lease == null) {
+            frameData = ByteBuffer.wrap(Arrays.copyOfRange(buffer, offset, offset + length));
+        } else {
+            frameData = lease.getBuffer();
+            frameData.put(buffer, offset, length);
+            frameData.flip();
+        }
+
+        queueFrame(new EncodedFrame(frameData, lease, keyFrame, fileName));
+    }
+
+    /**
+     * Hands the frame to the emit stage, waiting for room in the queue, which holds back the encoder.
+     */
+    private void queueFrame(final EncodedFrame frame) {
+        try {
+            while (isRunning) {
+                if (emitQueue.offer(frame, EMIT_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        frame.release();
+    }
+
+    /**
+     * Emits the encoded frames at the frame rate.
+     */
+    private void emitFrames() {
+        final FramePacer pacer = new FramePacer(TimeUnit.SECONDS.toNanos(1L) / fps,
+                configuration.getLateFramePolicy(), metrics);
+        while (isRunning) {
+            EncodedFrame frame = emitQueue.poll();
+            final boolean starved = frame == null;
+            if (starved) {
+                try {
+                    frame = emitQueue.poll(EMIT_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    break;
+                }
+
+                if (frame == null) {
+                    continue;
+                }
+            }
+            metrics.getEmitQueue().record(emitQueue.size() + 1);
+
+            if (starved && directoryWatcher != null) {
+                // Frames of a watched directory arrive at the pace of the writer
+                pacer.reset();
+            }
+
             try {
-                Thread.sleep(Duration.ofSeconds(1L).toMillis());
-            } catch (final InterruptedException ex) {
-                log.error("Frame wait interrupted by Exception ", ex);
+                if (!frame.data.hasRemaining()) {
+                    // An image was missing, the schedule starts over with the next one
+                    pacer.reset();
+                    notifyListener(frame);
+                    continue;
+                }
+
+                final long deadline = pacer.schedule(System.nanoTime(), frame.keyFrame);
+                if (deadline == FramePacer.DROP) {
+                    continue;
+                }
+
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+
+                metrics.getEmitWait().record(System.nanoTime() - frame.queuedNanos);
+                notifyListener(frame);
+                metrics.recordEmittedFrame();
+            } finally {
+                frame.release();
             }
         }
-        return ByteBuffer.wrap(new byte[0]);
+
+        EncodedFrame frame;
+        while ((frame = emitQueue.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    private void notifyListener(final EncodedFrame frame) {
+        if (onEncodedFrameAvailable != null) {
+            onEncodedFrameAvailable.onEncodedFrameAvailable(frame.data, frame.keyFrame, frame.fileName);
+        } else if (onFrameDataAvailable != null) {
+            onFrameDataAvailable.onFrameDataAvailable(frame.data);
+        }
     }
 
     private void stopFrameGenerator() {
+        final ImageDirectoryWatcher watcher = directoryWatcher;
+        if (watcher != null) {
+            watcher.close();
+        }
+
+        final FFmpegEncoderSession session = encoderSession;
+        if (session != null) {
+            session.close();
+        }
 
+        if (executor != null) {
+            executor.shutdownNow();
+            readExecutor.shutdownNow();
+            emitExecutor.shutdown();
+        }
     }
 }
@@ -0,0 +1,21 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+/**
+ * How {@link ImageFrameSource} finds the next image file.
+ */
+public enum ImageIngestionMode {
+    /**
+     * Format the file name pattern with an incrementing index, waiting and starting over when a file is missing.
+     */
+    INDEX_POLLING,
+
+    /**
+     * Watch the directory and take files as they are written, in the order of the index in their names.
+     */
+    WATCH_BY_INDEX,
+
+    /**
+     * Watch the directory and take files as they are written, in the order of their modification times.
+     */
+    WATCH_BY_TIMESTAMP
+}
@@ -0,0 +1,25 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+/**
+ * What the emit stage of {@link ImageFrameSource} does with a frame which is more than one frame interval behind
+ * its deadline.
+ */
+public enum LateFramePolicy {
+    /**
+     * Emit the frame and the following ones without waiting until the schedule is met again, so the average frame
+     * rate is kept at the cost of a burst.
+     */
+    CATCH_UP,
+
+    /**
+     * Emit the frame and restart the schedule from it, so frames are never emitted closer than the frame interval
+     * and the lost time is not made up.
+     */
+    RESYNC,
+
+    /**
+     * Drop the frame and every following one up to the next key frame, as frames depending on a dropped one can't
+     * be decoded, then restart the schedule from the key frame.
+     */
+    SKIP_TO_KEY_FRAME
+}
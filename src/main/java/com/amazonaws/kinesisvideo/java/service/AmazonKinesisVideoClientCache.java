@@ -0,0 +1,331 @@
+package com.amazonaws.kinesisvideo.java.service;
+
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentials;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.services.kinesisvideo.AmazonKinesisVideo;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of control plane clients, so that service calls reuse the connection pool of a client built for the same
+ * region, endpoint, timeout and credentials instead of building a new one with new connections every time.
+ * <p>
+ * The cache holds at most a given number of clients, evicting the least recently used one when full, and evicts
+ * clients which haven't been used for a while. Evicted clients are shut down once the calls still using them are done.
+ * <p>
+ * Clients are built outside of the lock of the cache, so that a slow build doesn't hold up the calls using other
+ * clients. Calls missing the cache for the same key at the same time wait for the same build.
+ */
+@ThreadSafe
+final class AmazonKinesisVideoClientCache {
+    static final int DEFAULT_MAX_CLIENTS = 16;
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Builds the client for a key on a cache miss.
+     */
+    interface ClientFactory {
+        @Nonnull
+        AmazonKinesisVideo create(@Nonnull Key key) throws KinesisVideoException;
+    }
+
+    /**
+     * Identifies the clients which can be shared. Credentials are compared by value, so that calls with equal
+     * credentials share a client whichever provider they came from.
+     */
+    static final class Key {
+        private final KinesisVideoCredentials mCredentials;
+        private final String mRegion;
+        private final String mEndpoint;
+        private final int mTimeoutInMillis;
+
+        Key(@Nullable final KinesisVideoCredentials credentials,
+            @Nonnull final String region,
+            @Nonnull final String endpoint,
+            final int timeoutInMillis) {
+            mCredentials = credentials;
+            mRegion = Preconditions.checkNotNull(region);
+            mEndpoint = Preconditions.checkNotNull(endpoint);
+            mTimeoutInMillis = timeoutInMillis;
+        }
+
+        @Nullable
+        KinesisVideoCredentials getCredentials() {
+            return mCredentials;
+        }
+
+        @Nonnull
+        String getRegion() {
+            return mRegion;
+        }
+
+        @Nonnull
+        String getEndpoint() {
+            return mEndpoint;
+        }
+
+        int getTimeoutInMillis() {
+            return mTimeoutInMillis;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) other;
+            return credentialsEqual(mCredentials, key.mCredentials)
+                    && mTimeoutInMillis == key.mTimeoutInMillis
+                    && mRegion.equals(key.mRegion)
+                    && mEndpoint.equals(key.mEndpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = mCredentials == null ? 0 : mCredentials.getAccessKey().hashCode();
+            hash = 31 * hash + mRegion.hashCode();
+            hash = 31 * hash + mEndpoint.hashCode();
+            return 31 * hash + mTimeoutInMillis;
+        }
+
+        private static boolean credentialsEqual(@Nullable final KinesisVideoCredentials credentials,
+                                                @Nullable final KinesisVideoCredentials other) {
+            if (credentials == null || other == null) {
+                return credentials == other;
+            }
+
+            return credentials.getAccessKey().equals(other.getAccessKey())
+                    && credentials.getSecretKey().equals(other.getSecretKey())
+                    && (credentials.getSessionToken() == null
+                        ? other.getSessionToken() == null
+                        : credentials.getSessionToken().equals(other.getSessionToken()));
+        }
+    }
+
+    /**
+     * Client handed out by {@link #acquire(Key)}. Must be handed back through {@link #release(CachedClient)}.
+     */
+    static final class CachedClient {
+        private final Key mKey;
+        private final AmazonKinesisVideo mClient;
+        private int mLeases;
+        private long mLastUsedNanos;
+        private boolean mEvicted;
+
+        private CachedClient(final Key key, final AmazonKinesisVideo client) {
+            mKey = key;
+            mClient = client;
+        }
+
+        @Nonnull
+        AmazonKinesisVideo getClient() {
+            return mClient;
+        }
+    }
+
+    private final ClientFactory mClientFactory;
+    private final int mMaxClients;
+    private final long mIdleTimeoutNanos;
+
+    // In access order, least recently used first
+    private final LinkedHashMap<Key, CachedClient> mClients;
+    private final Map<Key, FutureTask<CachedClient>> mBuilds;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    AmazonKinesisVideoClientCache(@Nonnull final ClientFactory clientFactory) {
+        this(clientFactory, DEFAULT_MAX_CLIENTS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    AmazonKinesisVideoClientCache(@Nonnull final ClientFactory clientFactory,
+                                  final int maxClients,
+                                  final long idleTimeoutMillis) {
+        Preconditions.checkArgument(maxClients > 0, "Max clients should be positive");
+        Preconditions.checkArgument(idleTimeoutMillis > 0, "Idle timeout should be positive");
+
+        mClientFactory = Preconditions.checkNotNull(clientFactory);
+        mMaxClients = maxClients;
+        mIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        mClients = new LinkedHashMap<Key, CachedClient>(16, 0.75f, true);
+        mBuilds = new HashMap<Key, FutureTask<CachedClient>>();
+    }
+
+    @Nonnull
+    CachedClient acquire(@Nonnull final Key key) throws KinesisVideoException {
+        while (true) {
+            FutureTask<CachedClient> build = null;
+            final FutureTask<CachedClient> pendingBuild;
+            synchronized (this) {
+                final long nowNanos = System.nanoTime();
+                evictIdle(nowNanos);
+
+                final CachedClient cachedClient = mClients.get(key);
+                if (cachedClient != null) {
+                    mHits++;
+                    lease(cachedClient, nowNanos);
+                    return cachedClient;
+                }
+
+                if (mBuilds.containsKey(key)) {
+                    mHits++;
+                    pendingBuild = mBuilds.get(key);
+                } else {
+                    mMisses++;
+                    build = newBuild(key);
+                    pendingBuild = build;
+                    mBuilds.put(key, build);
+                }
+            }
+
+            if (build != null) {
+                build.run();
+            }
+
+            final CachedClient cachedClient;
+            try {
+                cachedClient = awaitBuild(pendingBuild);
+            } catch (final KinesisVideoException | RuntimeException e) {
+                if (build != null) {
+                    // Lets the next call try again
+                    synchronized (this) {
+                        mBuilds.remove(key);
+                    }
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                if (build != null) {
+                    mBuilds.remove(key);
+                    mClients.put(key, cachedClient);
+                    if (mClients.size() > mMaxClients) {
+                        evict(mClients.entrySet().iterator());
+                    }
+                } else if (cachedClient.mEvicted && cachedClient.mLeases == 0) {
+                    // Shut down before this call got to it
+                    continue;
+                }
+
+                lease(cachedClient, System.nanoTime());
+                return cachedClient;
+            }
+        }
+    }
+
+    synchronized void release(@Nonnull final CachedClient cachedClient) {
+        Preconditions.checkState(cachedClient.mLeases > 0, "Client has not been acquired");
+
+        cachedClient.mLeases--;
+        cachedClient.mLastUsedNanos = System.nanoTime();
+        if (cachedClient.mEvicted) {
+            if (cachedClient.mLeases == 0) {
+                cachedClient.mClient.shutdown();
+            }
+        } else {
+            // Moves it behind the clients which have been idle for longer, as evicting the idle ones relies on it
+            mClients.get(cachedClient.mKey);
+        }
+    }
+
+    /**
+     * Evicts all the clients.
+     */
+    synchronized void clear() {
+        final Iterator<Map.Entry<Key, CachedClient>> clients = mClients.entrySet().iterator();
+        while (clients.hasNext()) {
+            evict(clients);
+        }
+    }
+
+    synchronized int size() {
+        return mClients.size();
+    }
+
+    synchronized long getHits() {
+        return mHits;
+    }
+
+    synchronized long getMisses() {
+        return mMisses;
+    }
+
+    synchronized long getEvictions() {
+        return mEvictions;
+    }
+
+    private static void lease(final CachedClient cachedClient, final long nowNanos) {
+        cachedClient.mLeases++;
+        cachedClient.mLastUsedNanos = nowNanos;
+    }
+
+    private FutureTask<CachedClient> newBuild(final Key key) {
+        return new FutureTask<CachedClient>(new Callable<CachedClient>() {
+            @Override
+            public CachedClient call() throws KinesisVideoException {
+                return new CachedClient(key, mClientFactory.create(key));
+            }
+        });
+    }
+
+    private static CachedClient awaitBuild(final FutureTask<CachedClient> build) throws KinesisVideoException {
+        try {
+            return build.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KinesisVideoException("Interrupted while waiting for the client to be built", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof KinesisVideoException) {
+                throw (KinesisVideoException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new KinesisVideoException(e.getCause());
+        }
+    }
+
+    private void evictIdle(final long nowNanos) {
+        final Iterator<Map.Entry<Key, CachedClient>> clients = mClients.entrySet().iterator();
+        while (clients.hasNext()) {
+            final CachedClient cachedClient = clients.next().getValue();
+            if (nowNanos - cachedClient.mLastUsedNanos < mIdleTimeoutNanos) {
+                // Access order means all the following ones have been used more recently
+                return;
+            }
+
+            if (cachedClient.mLeases == 0) {
+                retire(clients, cachedClient);
+            }
+        }
+    }
+
+    private void evict(final Iterator<Map.Entry<Key, CachedClient>> clients) {
+        retire(clients, clients.next().getValue());
+    }
+
+    private void retire(final Iterator<Map.Entry<Key, CachedClient>> clients, final CachedClient cachedClient) {
+        clients.remove();
+        mEvictions++;
+        cachedClient.mEvicted = true;
+        if (cachedClient.mLeases == 0) {
+            cachedClient.mClient.shutdown();
+        }
+    }
+}
@@ -16,6 +16,7 @@ import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.http.NioEventLoopGroup;
 import com.amazonaws.kinesisvideo.producer.StreamDescription;
 import com.amazonaws.kinesisvideo.producer.StreamStatus;
 import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
@@ -50,18 +51,9 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
     private static final String RELATIVE_TIMECODE = "RELATIVE";
 
     private final Log log;
+    private final AmazonKinesisVideoClientCache clientCache;
     private KinesisVideoClientConfiguration configuration;
-
-    private static AmazonKinesisVideo createAmazonKinesisVideoClient(
-            final KinesisVideoCredentialsProvider credentialsProvider,
-            final Region region,
-            final String endpoint,
-            final int timeoutInMillis)
-            throws KinesisVideoException {
-
-        final AWSCredentials credentials = createAwsCredentials(credentialsProvider);
-        return createAwsKinesisVideoClient(credentials, region, endpoint, timeoutInMillis);
-    }
+    private NioEventLoopGroup putMediaEventLoopGroup;
 
     private static AmazonKinesisVideo createAmazonKinesisVideoClient(
             final AWSCredentialsProvider awsCredentialsProvider,
@@ -80,10 +72,7 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final int timeoutInMillis)
             throws KinesisVideoException {
 
-        final ClientConfiguration clientConfiguration = createClientConfiguration(timeoutInMillis);
-        final AmazonKinesisVideo amazonKinesisVideoClient = AmazonKinesisVideoClient.builder()
-                .withClientConfiguration(clientConfiguration)
-                .withCredentials(new AWSCredentialsProvider() {
+        return createAwsKinesisVideoClient(new AWSCredentialsProvider() {
 
                     @Override
                     public void refresh() {
@@ -95,7 +84,23 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
                         // TODO Auto-generated method stub
                         return credentials;
                     }
-                })
+                },
+                region,
+                endpoint,
+                timeoutInMillis);
+    }
+
+    private static AmazonKinesisVideo createAwsKinesisVideoClient(
+            @Nonnull final AWSCredentialsProvider awsCredentialsProvider,
+            final Region region,
+            final String endpoint,
+            final int timeoutInMillis)
+            throws KinesisVideoException {
+
+        final ClientConfiguration clientConfiguration = createClientConfiguration(timeoutInMillis);
+        final AmazonKinesisVideo amazonKinesisVideoClient = AmazonKinesisVideoClient.builder()
+                .withClientConfiguration(clientConfiguration)
+                .withCredentials(awsCredentialsProvider)
                 // .withRegion(region.getName())
                 .withEndpointConfiguration(new EndpointConfiguration(endpoint, region.getName()))
                 .build();
@@ -103,36 +108,42 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         return amazonKinesisVideoClient;
     }
 
-    private static AWSCredentials createAwsCredentials(
-            @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
+    private static AWSCredentialsProvider createAwsCredentialsProvider(
+            @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
+            @Nonnull final Log log)
             throws KinesisVideoException {
+
         if (null == credentialsProvider) {
             return null;
         }
 
-        final KinesisVideoCredentials kinesisVideoCredentials = credentialsProvider.getCredentials();
-
-        AWSCredentials credentials = null;
-
-        if (kinesisVideoCredentials.getSessionToken() == null) {
-            credentials = new AWSCredentials() {
-                @Override
-                public String getAWSAccessKeyId() {
-                    return kinesisVideoCredentials.getAccessKey();
+        return new AWSCredentialsProvider() {
+            @Override
+            public AWSCredentials getCredentials() {
+                try {
+                    return toAwsCredentials(credentialsProvider.getCredentials());
+                } catch (final KinesisVideoException e) {
+                    // Fails the request instead of sending it unsigned
+                    throw new AmazonClientException("Getting credentials threw an exception.", e);
                 }
+            }
 
-                @Override
-                public String getAWSSecretKey() {
-                    return kinesisVideoCredentials.getSecretKey();
-                }
-            };
-        } else {
-            credentials = new AWSSessionCredentials() {
-                @Override
-                public String getSessionToken() {
-                    return kinesisVideoCredentials.getSessionToken();
+            @Override
+            public void refresh() {
+                try {
+                    credentialsProvider.getUpdatedCredentials();
+                } catch (final KinesisVideoException e) {
+                    // Do nothing
+                    log.exception(e, "Refreshing credentials threw and exception.");
                 }
+            }
+        };
+    }
 
+    @Nonnull
+    private static AWSCredentials toAwsCredentials(@Nonnull final KinesisVideoCredentials kinesisVideoCredentials) {
+        if (kinesisVideoCredentials.getSessionToken() == null) {
+            return new AWSCredentials() {
                 @Override
                 public String getAWSAccessKeyId() {
                     return kinesisVideoCredentials.getAccessKey();
@@ -145,71 +156,20 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             };
         }
 
-        return credentials;
-    }
-
-    private static AWSCredentialsProvider createAwsCredentialsProvider(
-            @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
-            @Nonnull final Log log)
-            throws KinesisVideoException {
-
-        if (null == credentialsProvider) {
-            return null;
-        }
-
-        return new AWSCredentialsProvider() {
+        return new AWSSessionCredentials() {
             @Override
-            public AWSCredentials getCredentials() {
-                AWSCredentials awsCredentials = null;
-                try {
-                    final KinesisVideoCredentials kinesisVideoCredentials = credentialsProvider.getCredentials();
-
-                    if (kinesisVideoCredentials.getSessionToken() == null) {
-                        awsCredentials = new AWSCredentials() {
-                            @Override
-                            public String getAWSAccessKeyId() {
-                                return kinesisVideoCredentials.getAccessKey();
-                            }
-
-                            @Override
-                            public String getAWSSecretKey() {
-                                return kinesisVideoCredentials.getSecretKey();
-                            }
-                        };
-                    } else {
-                        awsCredentials = new AWSSessionCredentials() {
-                            @Override
-                            public String getSessionToken() {
-                                return kinesisVideoCredentials.getSessionToken();
-                            }
-
-                            @Override
-                            public String getAWSAccessKeyId() {
-                                return kinesisVideoCredentials.getAccessKey();
-                            }
-
-                            @Override
-                            public String getAWSSecretKey() {
-                                return kinesisVideoCredentials.getSecretKey();
-                            }
-                        };
-                    }
-                } catch (final KinesisVideoException e) {
-                    log.exception(e, "Getting credentials threw an exception.");
-                    awsCredentials = null;
-                }
+            public String getSessionToken() {
+                return kinesisVideoCredentials.getSessionToken();
+            }
 
-                return awsCredentials;
+            @Override
+            public String getAWSAccessKeyId() {
+                return kinesisVideoCredentials.getAccessKey();
             }
 
             @Override
-            public void refresh() {
-                try {
-                    credentialsProvider.getUpdatedCredentials();
-                } catch (final KinesisVideoException e) {
-                    // Do nothing
-                    log.exception(e, "Refreshing credentials threw and exception.");
-                }
+            public String getAWSSecretKey() {
+                return kinesisVideoCredentials.getSecretKey();
             }
         };
     }
@@ -224,6 +184,41 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
 
     public JavaKinesisVideoServiceClient(@Nonnull final Log log) {
         this.log = Preconditions.checkNotNull(log);
+        this.clientCache = new AmazonKinesisVideoClientCache(new AmazonKinesisVideoClientCache.ClientFactory() {
+            @Nonnull
+            @Override
+            public AmazonKinesisVideo create(@Nonnull final AmazonKinesisVideoClientCache.Key key)
+                    throws KinesisVideoException {
+                return createCachedAmazonKinesisVideoClient(key);
+            }
+        });
+    }
+
+    /**
+     * Cached clients are keyed by their credentials, so they sign with the ones they have been built for. Refreshed
+     * credentials get a client of their own.
+     */
+    private static AmazonKinesisVideo createCachedAmazonKinesisVideoClient(
+            @Nonnull final AmazonKinesisVideoClientCache.Key key)
+            throws KinesisVideoException {
+        final KinesisVideoCredentials credentials = key.getCredentials();
+        return createAwsKinesisVideoClient(credentials == null ? null : toAwsCredentials(credentials),
+                Region.getRegion(Regions.fromName(key.getRegion())),
+                key.getEndpoint(),
+                key.getTimeoutInMillis());
+    }
+
+    @Nonnull
+    private AmazonKinesisVideoClientCache.CachedClient acquireServiceClient(
+            @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
+            final long timeoutInMillis)
+            throws KinesisVideoException {
+        final KinesisVideoCredentials credentials =
+                credentialsProvider == null ? null : credentialsProvider.getCredentials();
+        return clientCache.acquire(new AmazonKinesisVideoClientCache.Key(credentials,
+                configuration.getRegion(),
+                configuration.getEndpoint(),
+                (int) timeoutInMillis));
     }
 
     @Nonnull
@@ -243,6 +238,21 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             throws KinesisVideoException {
         // We already got the configuration
         this.configuration = Preconditions.checkNotNull(kinesisVideoClientConfiguration);
+
+        final int eventLoopThreads = configuration.getPutMediaEventLoopThreads();
+        if (eventLoopThreads > 0 && putMediaEventLoopGroup == null) {
+            putMediaEventLoopGroup = new NioEventLoopGroup(eventLoopThreads, log);
+        }
+    }
+
+    @Override
+    public void free() {
+        if (putMediaEventLoopGroup != null) {
+            putMediaEventLoopGroup.close();
+            putMediaEventLoopGroup = null;
+        }
+
+        clientCache.clear();
     }
 
     @Override
@@ -254,10 +264,6 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
 
         final CreateStreamRequest createStreamRequest = new CreateStreamRequest()
                 .withStreamName(streamName)
@@ -269,12 +275,16 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         log.debug("calling create stream: " + createStreamRequest.toString());
 
         final CreateStreamResult createStreamResult;
+        final AmazonKinesisVideoClientCache.CachedClient serviceClient =
+                acquireServiceClient(credentialsProvider, timeoutInMillis);
         try {
-            createStreamResult = serviceClient.createStream(createStreamRequest);
+            createStreamResult = serviceClient.getClient().createStream(createStreamRequest);
         } catch (final AmazonClientException e) {
             // Wrap into an KinesisVideoException object
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
+        } finally {
+            clientCache.release(serviceClient);
         }
 
         log.debug("create stream result: " + createStreamResult.toString());
@@ -287,10 +297,6 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
 
         final DescribeStreamRequest describeStreamRequest = new DescribeStreamRequest()
                 .withStreamName(streamName);
@@ -298,11 +304,15 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         log.debug("calling describe stream: " + describeStreamRequest.toString());
 
         final DescribeStreamResult describeStreamResult;
+        final AmazonKinesisVideoClientCache.CachedClient serviceClient =
+                acquireServiceClient(credentialsProvider, timeoutInMillis);
         try {
-            describeStreamResult = serviceClient.describeStream(describeStreamRequest);
+            describeStreamResult = serviceClient.getClient().describeStream(describeStreamRequest);
         } catch (final AmazonClientException e) {
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
+        } finally {
+            clientCache.release(serviceClient);
         }
 
         if (null == describeStreamResult) {
@@ -320,10 +330,6 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final Date creationTime,
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider) throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
 
         final StreamDescription streamDescription = describeStream(streamName, timeoutInMillis, credentialsProvider);
 
@@ -334,11 +340,15 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         log.debug("calling delete stream: " + deleteStreamRequest.toString());
 
         final DeleteStreamResult deleteStreamResult;
+        final AmazonKinesisVideoClientCache.CachedClient serviceClient =
+                acquireServiceClient(credentialsProvider, timeoutInMillis);
         try {
-            deleteStreamResult = serviceClient.deleteStream(deleteStreamRequest);
+            deleteStreamResult = serviceClient.getClient().deleteStream(deleteStreamRequest);
         } catch (final AmazonClientException e) {
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
+        } finally {
+            clientCache.release(serviceClient);
         }
 
         log.debug("delete stream result: " + deleteStreamResult.toString());
@@ -350,10 +360,6 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
 
         final TagStreamRequest tagStreamRequest = new TagStreamRequest()
                 .withStreamARN(streamArn)
@@ -362,11 +368,15 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         log.debug("calling tag resource: " + tagStreamRequest.toString());
 
         final TagStreamResult tagStreamResult;
+        final AmazonKinesisVideoClientCache.CachedClient serviceClient =
+                acquireServiceClient(credentialsProvider, timeoutInMillis);
         try {
-            tagStreamResult = serviceClient.tagStream(tagStreamRequest);
+            tagStreamResult = serviceClient.getClient().tagStream(tagStreamRequest);
         } catch (final AmazonClientException e) {
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
+        } finally {
+            clientCache.release(serviceClient);
         }
 
         log.debug("tag resource result: " + tagStreamResult.toString());
@@ -378,10 +388,6 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
 
         final GetDataEndpointRequest getDataEndpointRequest = new GetDataEndpointRequest()
                 .withStreamName(streamName)
@@ -391,11 +397,15 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
 
         final GetDataEndpointResult getDataEndpointResult;
 
+        final AmazonKinesisVideoClientCache.CachedClient serviceClient =
+                acquireServiceClient(credentialsProvider, timeoutInMillis);
         try {
-            getDataEndpointResult = serviceClient.getDataEndpoint(getDataEndpointRequest);
+            getDataEndpointResult = serviceClient.getClient().getDataEndpoint(getDataEndpointRequest);
         } catch (final AmazonClientException e) {
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
+        } finally {
+            clientCache.release(serviceClient);
         }
 
         log.debug("get data endpoint result: " + getDataEndpointResult.toString());
@@ -439,7 +449,9 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
                 .streamName(streamName)
                 .mkvStream(dataInputStream)
                 .fragmentTimecodeType(timecodeType)
-                .putMediaDestinationUri(putMediaUri);
+                .putMediaDestinationUri(putMediaUri)
+                .eventLoopGroup(putMediaEventLoopGroup)
+                .bandwidthScheduler(configuration.getBandwidthScheduler());
 
         final PutMediaClient putMediaClient = putMediaClientBuilder.build();
 
@@ -3,5 +3,8 @@ package com.amazonaws.kinesisvideo.mediasource;
 import java.nio.ByteBuffer;
 
 public interface OnFrameDataAvailable {
+    /**
+     * @param data Frame data, only valid for the duration of the call as the buffer may be reused afterwards
+     */
     void onFrameDataAvailable(final ByteBuffer data);
 }
@@ -1,7 +1,9 @@
 package com.amazonaws.kinesisvideo.mediasource;
 
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.metrics.FragmentLatencyTracker;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
 
@@ -24,14 +26,27 @@ import javax.annotation.Nullable;
  */
 public class ProducerStreamSink implements MediaSourceSink {
     private final KinesisVideoProducerStream producerStream;
+    private final FragmentLatencyTracker latencyTracker;
 
     public ProducerStreamSink(final KinesisVideoProducerStream producerStream) {
+        this(producerStream, null);
+    }
+
+    /**
+     * @param latencyTracker Tracker the key frames are recorded with before they are put, or null
+     */
+    public ProducerStreamSink(final KinesisVideoProducerStream producerStream,
+                              @Nullable final FragmentLatencyTracker latencyTracker) {
         this.producerStream = producerStream;
+        this.latencyTracker = latencyTracker;
     }
 
     @Override
     public void onFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws KinesisVideoException {
         checkNotNull(kinesisVideoFrame);
+        if (latencyTracker != null && FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags())) {
+            latencyTracker.recordKeyFrame(kinesisVideoFrame.getPresentationTs(), System.nanoTime());
+        }
         producerStream.putFrame(kinesisVideoFrame);
     }
 
@@ -1,5 +1,7 @@
 package com.amazonaws.kinesisvideo.mediasource.bytes;
 
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferArena;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
 import com.amazonaws.kinesisvideo.stream.throttling.DiscreteTimePeriodsThrottler;
 
@@ -15,7 +17,10 @@ public class BytesGenerator {
     private OnFrameDataAvailable onFrameDataAvailable;
 
     private final ExecutorService executor = Executors.newFixedThreadPool(1);
-    private final DiscreteTimePeriodsThrottler throttler;
+    private final int fps;
+    private volatile DiscreteTimePeriodsThrottler throttler;
+    private volatile int frameSize = MAX_FRAME_SIZE_BYTES_1024;
+    private final DirectBufferArena bufferArena;
     private final byte[][] framesData = new byte[][]{
             new byte[MAX_FRAME_SIZE_BYTES_1024],
             new byte[MAX_FRAME_SIZE_BYTES_1024],
@@ -29,14 +34,33 @@ public class BytesGenerator {
     private int frameCounter;
 
     public BytesGenerator(final int fps) {
+        this(fps, DirectBufferArena.getDefault());
+    }
+
+    public BytesGenerator(final int fps, final DirectBufferArena bufferArena) {
         frameCounter = 0;
+        this.fps = fps;
         throttler = new DiscreteTimePeriodsThrottler(fps, DISCRETENESS_10HZ);
+        this.bufferArena = Preconditions.checkNotNull(bufferArena);
     }
 
     public void onFrameDataAvailable(final OnFrameDataAvailable onFrameDataAvailable) {
         this.onFrameDataAvailable = onFrameDataAvailable;
     }
 
+    /**
+     * Generates the given share of the frame size and frame rate from the next frame on. The frame rate
+     * doesn't go below the discreteness of the throttler.
+     */
+    public void setTargetRate(final double bitrateFactor, final double frameRateFactor) {
+        Preconditions.checkArgument(bitrateFactor > 0 && bitrateFactor <= 1, "Bitrate factor should be within (0, 1]");
+        Preconditions.checkArgument(frameRateFactor > 0 && frameRateFactor <= 1,
+                "Frame rate factor should be within (0, 1]");
+        frameSize = Math.max(1, (int) (MAX_FRAME_SIZE_BYTES_1024 * bitrateFactor));
+        throttler = new DiscreteTimePeriodsThrottler(Math.max(DISCRETENESS_10HZ, (int) (fps * frameRateFactor)),
+                DISCRETENESS_10HZ);
+    }
+
     public synchronized void start() {
         if (isRunning) {
             throw new IllegalStateException("should stop previous generator before starting the new one");
@@ -62,11 +86,8 @@ public class BytesGenerator {
 
     private void generateBytesAndNotifyListener() {
         while (isRunning) {
-            fillArrayWithDigitsOfFramesCounter();
-
             if (onFrameDataAvailable != null) {
-                onFrameDataAvailable
-                        .onFrameDataAvailable(ByteBuffer.wrap(framesData[frameCounter % framesData.length]));
+                notifyListener();
             }
 
             frameCounter++;
@@ -75,13 +96,32 @@ public class BytesGenerator {
         }
     }
 
-    private void fillArrayWithDigitsOfFramesCounter() {
+    private void notifyListener() {
+        final int size = frameSize;
+        final DirectBufferArena.Lease lease = bufferArena.tryLease(size);
+        if (lease == null) {
+            // Over the direct memory budget, the frame will be copied when it's put
+            final ByteBuffer frameData = ByteBuffer.wrap(framesData[frameCounter % framesData.length], 0, size);
+            fillWithDigitsOfFramesCounter(frameData);
+            onFrameDataAvailable.onFrameDataAvailable(frameData);
+            return;
+        }
+
+        try {
+            fillWithDigitsOfFramesCounter(lease.getBuffer());
+            onFrameDataAvailable.onFrameDataAvailable(lease.getBuffer());
+        } finally {
+            lease.release();
+        }
+    }
+
+    private void fillWithDigitsOfFramesCounter(final ByteBuffer frameData) {
         final String counterString = String.valueOf(frameCounter) + "|";
         final byte[] counterBytes = counterString.getBytes(StandardCharsets.US_ASCII);
-        final byte[] frameData = this.framesData[frameCounter % this.framesData.length];
+        final int frameSize = frameData.remaining();
 
-        for (int i = 0; i < frameData.length; i++) {
-            frameData[i] = counterBytes[i % counterBytes.length];
+        for (int i = 0; i < frameSize; i++) {
+            frameData.put(i, counterBytes[i % counterBytes.length]);
         }
     }
 }
@@ -1,9 +1,10 @@
 package com.amazonaws.kinesisvideo.mediasource.bytes;
 
-import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource;
+import com.amazonaws.kinesisvideo.client.ratecontrol.RateTarget;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
@@ -11,7 +12,7 @@ import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 import javax.annotation.Nonnull;
 import java.nio.ByteBuffer;
 
-public class BytesMediaSource implements MediaSource {
+public class BytesMediaSource implements RateControlledMediaSource {
     private static final String TAG = "BytesMediaSource";
     private static final long HUNDREDS_OF_NANOS_IN_MS = 10 * 1000;
     private static final int KEY_FRAME_EVERY_60_FRAMES = 60;
@@ -22,7 +23,8 @@ public class BytesMediaSource implements MediaSource {
     private BytesMediaSourceConfiguration configuration;
     private MediaSourceState mediaSourceState;
     private MediaSourceSink mediaSourceSink;
-    private BytesGenerator bytesGenerator;
+    private volatile BytesGenerator bytesGenerator;
+    private volatile RateTarget rateTarget = RateTarget.NOMINAL;
     private int frameIndex;
     private long lastTimestampMillis;
 
@@ -37,6 +39,15 @@ public class BytesMediaSource implements MediaSource {
         return configuration;
     }
 
+    @Override
+    public void onTargetRateChanged(@Nonnull final RateTarget target) {
+        rateTarget = target;
+        final BytesGenerator generator = bytesGenerator;
+        if (generator != null) {
+            generator.setTargetRate(target.getBitrateFactor(), target.getFrameRateFactor());
+        }
+    }
+
     @Override
     public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
         this.mediaSourceSink = mediaSourceSink;
@@ -54,9 +65,11 @@ public class BytesMediaSource implements MediaSource {
     @Override
     public void start() throws KinesisVideoException {
         mediaSourceState = MediaSourceState.RUNNING;
-        bytesGenerator = new BytesGenerator(configuration.getFps());
-        bytesGenerator.onFrameDataAvailable(createFrameAndPushToProducer());
-        bytesGenerator.start();
+        final BytesGenerator generator = new BytesGenerator(configuration.getFps());
+        generator.setTargetRate(rateTarget.getBitrateFactor(), rateTarget.getFrameRateFactor());
+        generator.onFrameDataAvailable(createFrameAndPushToProducer());
+        bytesGenerator = generator;
+        generator.start();
     }
 
     private OnFrameDataAvailable createFrameAndPushToProducer() {
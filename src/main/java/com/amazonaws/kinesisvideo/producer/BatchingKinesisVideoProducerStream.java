@@ -0,0 +1,20 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * KinesisVideo stream which can also take frames in batches, for producers which have several frames at hand at once
+ */
+public interface BatchingKinesisVideoProducerStream extends KinesisVideoProducerStream {
+    /**
+     * Puts the first frames of the array into the stream in one go. A frame which fails to be put doesn't stop the
+     * following ones.
+     *
+     * @param kinesisVideoFrames Frames to put, in order
+     * @param count Number of frames to put
+     * @return Status of each frame, {@link ProducerException#STATUS_SUCCESS} if it was put
+     */
+    @Nonnull
+    int[] putFrames(final @Nonnull KinesisVideoFrame[] kinesisVideoFrames, final int count)
+            throws ProducerException;
+}
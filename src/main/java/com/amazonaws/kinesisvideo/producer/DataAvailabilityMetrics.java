@@ -0,0 +1,65 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the hand-off between the native data availability notifications and the thread reading the stream data.
+ * <p>
+ * Notifications arrive at frame rate. The reader only wakes up when it has run out of data, so with a reader keeping
+ * up with the producer the number of wakeups is well below the number of notifications.
+ */
+@ThreadSafe
+public class DataAvailabilityMetrics {
+    private final long mCreationNanos = System.nanoTime();
+    private final AtomicLong mNotifications = new AtomicLong();
+    private final AtomicLong mWakeups = new AtomicLong();
+    private final AtomicLong mParkedNanos = new AtomicLong();
+
+    public void onNotification() {
+        mNotifications.incrementAndGet();
+    }
+
+    public void onWakeup(final long parkedNanos) {
+        mWakeups.incrementAndGet();
+        mParkedNanos.addAndGet(parkedNanos);
+    }
+
+    /**
+     * @return Number of data availability notifications received
+     */
+    public long getNotifications() {
+        return mNotifications.get();
+    }
+
+    /**
+     * @return Number of times a reader has been woken up after waiting for data
+     */
+    public long getWakeups() {
+        return mWakeups.get();
+    }
+
+    /**
+     * @return Total time readers have spent waiting for data, in milliseconds
+     */
+    public long getParkedTimeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mParkedNanos.get());
+    }
+
+    /**
+     * @return Average number of reader wakeups per second since the metrics were created
+     */
+    public double getWakeupsPerSecond() {
+        final long elapsedNanos = Math.max(1, System.nanoTime() - mCreationNanos);
+        return mWakeups.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return Average number of notifications per reader wakeup
+     */
+    public double getNotificationsPerWakeup() {
+        final long wakeups = mWakeups.get();
+        return wakeups == 0 ? 0 : (double) mNotifications.get() / wakeups;
+    }
+}
@@ -78,6 +78,27 @@ public class KinesisVideoFrame {
         return mData.remaining();
     }
 
+    /**
+     * @return Whether the data can be handed to the native code without a copy
+     */
+    public boolean isDirect() {
+        return mData.isDirect();
+    }
+
+    /**
+     * @param directBuffer Buffer with at least {@link #getSize()} bytes remaining
+     * @return Frame with the same timestamps and flags, and the data copied into the buffer
+     */
+    @Nonnull
+    public KinesisVideoFrame copyTo(@Nonnull final ByteBuffer directBuffer) {
+        Preconditions.checkArgument(directBuffer.isDirect() && directBuffer.remaining() >= getSize());
+
+        final ByteBuffer data = directBuffer.slice();
+        data.put(mData.duplicate());
+        data.flip();
+        return new KinesisVideoFrame(mIndex, mFlags, mDecodingTs, mPresentationTs, mDuration, data);
+    }
+
     @Nonnull
     public ByteBuffer getData() {
         ByteBuffer byteBuffer = mData;
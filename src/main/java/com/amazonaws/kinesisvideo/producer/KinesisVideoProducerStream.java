@@ -1,6 +1,7 @@
 package com.amazonaws.kinesisvideo.producer;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -53,6 +54,19 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
     void getStreamData(final @Nonnull byte[] fillBuffer, int offset, int length, @Nonnull final ReadResult readResult)
             throws ProducerException;
 
+    /**
+     * Get stream data from the buffer into the remaining space of the given buffer, advancing its position by the
+     * number of bytes read. Direct buffers are filled without an intermediate heap copy when supported.
+     *
+     * @param fillBuffer
+     *         The buffer to fill
+     * @param readResult
+     *         The result of the read
+     * @throws ProducerException
+     */
+    void getStreamData(final @Nonnull ByteBuffer fillBuffer, @Nonnull final ReadResult readResult)
+            throws ProducerException;
+
     /**
      * Puts a frame into the stream.
      */
@@ -130,4 +130,10 @@ public interface KinesisVideoServiceClient {
                   @Nonnull final Consumer<InputStream> acksConsumer,
                   @Nullable final Consumer<Exception> completionCallback)
             throws KinesisVideoException;
+
+    /**
+     * Releases the resources set up by {@link #initialize(KinesisVideoClientConfiguration)}, terminating any upload
+     * still in progress.
+     */
+    void free();
 }
@@ -0,0 +1,121 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.DataAvailabilityMetrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free hand-off of data availability notifications from the native callbacks to a single reader.
+ * <p>
+ * Every notification bumps a sequence number. The reader consumes all notifications received since it last looked at
+ * once, so notifications arriving while the reader is busy are coalesced and the reader is only unparked when it is
+ * actually waiting. Only one thread may read at a time.
+ */
+@ThreadSafe
+final class DataAvailabilitySignal {
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicReference<Thread> mParkedReader = new AtomicReference<Thread>();
+    private final DataAvailabilityMetrics mMetrics;
+    private volatile long mAvailableSize;
+    private volatile Runnable mListener;
+
+    // Only accessed by the reader
+    private long mConsumedSequence;
+    private boolean mRearmed;
+
+    DataAvailabilitySignal(@Nonnull final DataAvailabilityMetrics metrics) {
+        mMetrics = Preconditions.checkNotNull(metrics);
+    }
+
+    /**
+     * Notifies the reader that data is available. Never blocks.
+     *
+     * @param availableSize Number of bytes available for reading
+     */
+    void signal(final long availableSize) {
+        mAvailableSize = availableSize;
+        mSequence.incrementAndGet();
+        mMetrics.onNotification();
+
+        final Thread reader = mParkedReader.get();
+        if (reader != null) {
+            LockSupport.unpark(reader);
+        }
+
+        final Runnable listener = mListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Sets the listener run on every notification, on the notifying thread, for readers which don't park.
+     */
+    void setListener(@Nullable final Runnable listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Consumes the pending notifications without blocking.
+     *
+     * @return Whether there was any
+     */
+    boolean tryAcquire() {
+        if (mRearmed) {
+            mRearmed = false;
+            return true;
+        }
+
+        final long sequence = mSequence.get();
+        if (sequence == mConsumedSequence) {
+            return false;
+        }
+
+        mConsumedSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Parks the reader until a notification is pending and consumes it.
+     */
+    void acquire() throws InterruptedException {
+        if (tryAcquire()) {
+            return;
+        }
+
+        final long parkStartNanos = System.nanoTime();
+        mParkedReader.set(Thread.currentThread());
+        try {
+            // Checking again after publishing the reader guarantees a concurrent signal either sees it or is seen
+            while (!tryAcquire()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            mParkedReader.set(null);
+            mMetrics.onWakeup(System.nanoTime() - parkStartNanos);
+        }
+    }
+
+    /**
+     * Lets the next acquire return immediately, for when the reader knows it has left data behind.
+     */
+    void rearm() {
+        mRearmed = true;
+    }
+
+    /**
+     * @return Number of available bytes reported by the latest notification
+     */
+    long getAvailableSize() {
+        return mAvailableSize;
+    }
+}
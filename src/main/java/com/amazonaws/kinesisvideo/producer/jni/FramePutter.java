@@ -0,0 +1,129 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferArena;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+
+import static com.amazonaws.kinesisvideo.producer.ProducerException.STATUS_SUCCESS;
+
+/**
+ * Puts frames into the native streams under the stream lock, copying heap frames into leased direct buffers so
+ * that the native code doesn't allocate one per frame.
+ * <p>
+ * A batch of frames takes the lock and leases a buffer once: the heap frames of the batch are packed back to back
+ * into a single direct buffer before they are handed to the native code one after the other.
+ */
+@ThreadSafe
+final class FramePutter {
+    /**
+     * The native put frame call
+     */
+    interface NativeFrameCall {
+        void putKinesisVideoFrame(long streamHandle, @Nonnull KinesisVideoFrame kinesisVideoFrame)
+                throws ProducerException;
+    }
+
+    private final NativeCallLock mNativeCallLock;
+    private final DirectBufferArena mBufferArena;
+    private final NativeFrameCall mNativeFrameCall;
+
+    FramePutter(@Nonnull final NativeCallLock nativeCallLock,
+                @Nonnull final DirectBufferArena bufferArena,
+                @Nonnull final NativeFrameCall nativeFrameCall) {
+        mNativeCallLock = Preconditions.checkNotNull(nativeCallLock);
+        mBufferArena = Preconditions.checkNotNull(bufferArena);
+        mNativeFrameCall = Preconditions.checkNotNull(nativeFrameCall);
+    }
+
+    void putFrame(final long streamHandle, @Nonnull final KinesisVideoFrame kinesisVideoFrame)
+            throws ProducerException {
+        KinesisVideoFrame frame = kinesisVideoFrame;
+        final DirectBufferArena.Lease lease = frame.isDirect() ? null : mBufferArena.tryLease(frame.getSize());
+        if (lease != null) {
+            frame = frame.copyTo(lease.getBuffer());
+        }
+
+        mNativeCallLock.lockStream(streamHandle);
+        try {
+            mNativeFrameCall.putKinesisVideoFrame(streamHandle, frame);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
+            if (lease != null) {
+                lease.release();
+            }
+        }
+    }
+
+    /**
+     * Puts the first frames of the array. A frame the native code fails on doesn't stop the following ones.
+     *
+     * @return Status of each frame, {@link ProducerException#STATUS_SUCCESS} or the status code of the failure
+     */
+    @Nonnull
+    int[] putFrames(final long streamHandle, @Nonnull final KinesisVideoFrame[] frames, final int count) {
+        Preconditions.checkNotNull(frames);
+        Preconditions.checkArgument(count >= 0 && count <= frames.length, "Invalid frame count");
+
+        final int[] statuses = new int[count];
+        final DirectBufferArena.Lease lease = leaseForHeapFrames(frames, count);
+        final KinesisVideoFrame[] packedFrames = lease == null ? frames : pack(frames, count, lease.getBuffer());
+        mNativeCallLock.lockStream(streamHandle);
+        try {
+            for (int i = 0; i < count; i++) {
+                try {
+                    mNativeFrameCall.putKinesisVideoFrame(streamHandle, packedFrames[i]);
+                    statuses[i] = STATUS_SUCCESS;
+                } catch (final ProducerException e) {
+                    statuses[i] = e.getStatusCode();
+                }
+            }
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
+            if (lease != null) {
+                lease.release();
+            }
+        }
+
+        return statuses;
+    }
+
+    @Nonnull
+    private static KinesisVideoFrame[] pack(@Nonnull final KinesisVideoFrame[] frames, final int count,
+                                            @Nonnull final ByteBuffer buffer) {
+        final KinesisVideoFrame[] packedFrames = new KinesisVideoFrame[count];
+        for (int i = 0; i < count; i++) {
+            final KinesisVideoFrame frame = frames[i];
+            if (frame.isDirect()) {
+                packedFrames[i] = frame;
+            } else {
+                packedFrames[i] = frame.copyTo(buffer);
+                buffer.position(buffer.position() + frame.getSize());
+            }
+        }
+
+        return packedFrames;
+    }
+
+    @Nullable
+    private DirectBufferArena.Lease leaseForHeapFrames(@Nonnull final KinesisVideoFrame[] frames, final int count) {
+        long heapBytes = 0;
+        for (int i = 0; i < count; i++) {
+            final KinesisVideoFrame frame = Preconditions.checkNotNull(frames[i]);
+            if (!frame.isDirect()) {
+                heapBytes += frame.getSize();
+            }
+        }
+
+        if (heapBytes == 0 || heapBytes > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        return mBufferArena.tryLease((int) heapBytes);
+    }
+}
@@ -0,0 +1,110 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locks guarding the calls into the native library according to a {@link NativeLockingMode}.
+ * <p>
+ * Calls are divided in three classes:
+ * <ul>
+ *     <li>client calls, which create or free the native client or create or stop all of its streams, and exclude
+ *     every other call</li>
+ *     <li>shared calls, which operate on the client as a whole</li>
+ *     <li>stream calls, which operate on a single stream</li>
+ * </ul>
+ * In {@link NativeLockingMode#GLOBAL} mode all of them take the same exclusive lock. In
+ * {@link NativeLockingMode#PER_STREAM} mode shared and stream calls hold the client lock in shared mode and stream
+ * calls additionally take the lock of the stripe the stream handle maps to.
+ */
+@ThreadSafe
+final class NativeCallLock {
+    /**
+     * Number of stripes in {@link NativeLockingMode#PER_STREAM} mode. Must be a power of two.
+     */
+    static final int DEFAULT_STRIPES = 64;
+
+    private final NativeLockingMode mMode;
+    private final ReentrantReadWriteLock mClientLock;
+    private final ReentrantLock[] mStreamLocks;
+
+    NativeCallLock(@Nonnull final NativeLockingMode mode) {
+        this(mode, DEFAULT_STRIPES);
+    }
+
+    NativeCallLock(@Nonnull final NativeLockingMode mode, final int stripes) {
+        Preconditions.checkNotNull(mode);
+        Preconditions.checkArgument(stripes > 0 && Integer.bitCount(stripes) == 1,
+                "Number of stripes should be a power of two");
+
+        mMode = mode;
+        mClientLock = new ReentrantReadWriteLock();
+        mStreamLocks = new ReentrantLock[mode == NativeLockingMode.GLOBAL ? 1 : stripes];
+        for (int i = 0; i < mStreamLocks.length; i++) {
+            mStreamLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Nonnull
+    NativeLockingMode getMode() {
+        return mMode;
+    }
+
+    /**
+     * @return Number of stripes. Per-stripe state can be guarded by the stream lock of the stripe.
+     */
+    int getStripeCount() {
+        return mStreamLocks.length;
+    }
+
+    /**
+     * @return Stripe the stream handle maps to
+     */
+    int stripe(final long streamHandle) {
+        // Stream handles are native pointers; spread the bits so that aligned addresses use all stripes
+        final long hash = (streamHandle ^ (streamHandle >>> 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (mStreamLocks.length - 1);
+    }
+
+    void lockClient() {
+        mClientLock.writeLock().lock();
+    }
+
+    void unlockClient() {
+        mClientLock.writeLock().unlock();
+    }
+
+    void lockShared() {
+        if (mMode == NativeLockingMode.GLOBAL) {
+            mClientLock.writeLock().lock();
+        } else {
+            mClientLock.readLock().lock();
+        }
+    }
+
+    void unlockShared() {
+        if (mMode == NativeLockingMode.GLOBAL) {
+            mClientLock.writeLock().unlock();
+        } else {
+            mClientLock.readLock().unlock();
+        }
+    }
+
+    void lockStream(final long streamHandle) {
+        lockShared();
+        if (mMode != NativeLockingMode.GLOBAL) {
+            mStreamLocks[stripe(streamHandle)].lock();
+        }
+    }
+
+    void unlockStream(final long streamHandle) {
+        if (mMode != NativeLockingMode.GLOBAL) {
+            mStreamLocks[stripe(streamHandle)].unlock();
+        }
+        unlockShared();
+    }
+}
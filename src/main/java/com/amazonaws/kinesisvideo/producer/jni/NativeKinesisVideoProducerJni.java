@@ -1,5 +1,6 @@
 package com.amazonaws.kinesisvideo.producer.jni;
 
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferArena;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
@@ -9,8 +10,9 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -48,7 +50,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     /**
      * The manifest handle will be set after call to parse()
      */
-    private long mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
+    private volatile long mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
 
     /**
      * Will store whether the library has been initialized
@@ -63,7 +65,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     /**
      * Used for synchronization of calls into the client
      */
-    private final Object mSyncObject = new Object();
+    private final NativeCallLock mNativeCallLock;
+
+    /**
+     * Puts frames under the stream locks
+     */
+    private final FramePutter mFramePutter;
 
     /**
      * Used for synchronization of the callback calls
@@ -73,12 +80,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     /**
      * Keeps the mapping between the stream handle and the Kinesis Video stream object
      */
-    private final Map<Long, KinesisVideoProducerStream> mKinesisVideoHandleMap = new HashMap<Long, KinesisVideoProducerStream>();
+    private final Map<Long, KinesisVideoProducerStream> mKinesisVideoHandleMap = new ConcurrentHashMap<Long, KinesisVideoProducerStream>();
 
     /**
      * Keeps the mapping between the stream name and the Kinesis Video stream object
      */
-    private final Map<String, KinesisVideoProducerStream> mStreamMap = new HashMap<String, KinesisVideoProducerStream>();
+    private final Map<String, KinesisVideoProducerStream> mStreamMap = new ConcurrentHashMap<String, KinesisVideoProducerStream>();
 
     /**
      * Callbacks for integration with the device auth subsystem.
@@ -115,6 +122,17 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      */
     private final KinesisVideoMetrics mKinesisVideoMetrics;
 
+    /**
+     * Whether the loaded native library can fill direct buffers. Cleared on the first failed attempt.
+     */
+    private volatile boolean mDirectStreamDataSupported = true;
+
+    /**
+     * Staging buffers used to fill direct buffers when the native library can't, one per lock stripe.
+     * Guarded by the stream lock of the stripe.
+     */
+    private final byte[][] mStagingBuffers;
+
     /**
      * Public constructor.
      * @param authCallbacks Authentication callbacks
@@ -165,6 +183,42 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
                                          final @Nonnull ServiceCallbacks serviceCallbacks,
                                          final @Nonnull Log log,
                                          final @Nonnull CountDownLatch readyLatch) throws ProducerException {
+        this(authCallbacks,
+                storageCallbacks,
+                serviceCallbacks,
+                log,
+                readyLatch,
+                NativeLockingMode.GLOBAL);
+    }
+
+    /**
+     * Public constructor
+     * @param authCallbacks Authentication callbacks
+     * @param storageCallbacks Storage callbacks
+     * @param serviceCallbacks Service call callbacks
+     * @param log Log objet to use for logging
+     * @param readyLatch Ready latch for synch creation
+     * @param lockingMode How the calls into the native library are serialized
+     * @throws ProducerException
+     */
+    public NativeKinesisVideoProducerJni(final @Nonnull AuthCallbacks authCallbacks,
+                                         final @Nonnull StorageCallbacks storageCallbacks,
+                                         final @Nonnull ServiceCallbacks serviceCallbacks,
+                                         final @Nonnull Log log,
+                                         final @Nonnull CountDownLatch readyLatch,
+                                         final @Nonnull NativeLockingMode lockingMode) throws ProducerException {
+        mNativeCallLock = new NativeCallLock(lockingMode);
+        mFramePutter = new FramePutter(mNativeCallLock, DirectBufferArena.getDefault(),
+                new FramePutter.NativeFrameCall() {
+                    @Override
+                    public void putKinesisVideoFrame(final long streamHandle,
+                                                     @Nonnull final KinesisVideoFrame kinesisVideoFrame)
+                            throws ProducerException {
+                        NativeKinesisVideoProducerJni.this.putKinesisVideoFrame(mClientHandle, streamHandle,
+                                kinesisVideoFrame);
+                    }
+                });
+        mStagingBuffers = new byte[mNativeCallLock.getStripeCount()][];
         mLog = Preconditions.checkNotNull(log);
         mAuthCallbacks = Preconditions.checkNotNull(authCallbacks);
         mStorageCallbacks = Preconditions.checkNotNull(storageCallbacks);
@@ -215,7 +269,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkNotNull(deviceInfo);
         Preconditions.checkState(!isInitialized());
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockClient();
+        try {
             if (!mLibraryInitialized) {
                 initializeLibrary(nativeLibraryPath);
 
@@ -224,6 +279,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             }
 
             mClientHandle = createKinesisVideoClient(deviceInfo);
+        } finally {
+            mNativeCallLock.unlockClient();
         }
     }
 
@@ -254,9 +311,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public boolean isInitialized()
     {
-        synchronized (mSyncObject) {
-            return mClientHandle != INVALID_CLIENT_HANDLE_VALUE;
-        }
+        return mClientHandle != INVALID_CLIENT_HANDLE_VALUE;
     }
 
     /**
@@ -266,9 +321,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public boolean isReady()
     {
-        synchronized (mSyncObject) {
-            return mIsReady;
-        }
+        return mIsReady;
     }
 
     @Override
@@ -276,10 +329,16 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     public KinesisVideoMetrics getMetrics() throws ProducerException
     {
         Preconditions.checkState(isInitialized());
-        synchronized (mSyncObject) {
-            getKinesisVideoMetrics(mClientHandle, mKinesisVideoMetrics);
+        mNativeCallLock.lockShared();
+        try {
+            // Shared calls may run concurrently
+            synchronized (mKinesisVideoMetrics) {
+                getKinesisVideoMetrics(mClientHandle, mKinesisVideoMetrics);
+            }
 
             return mKinesisVideoMetrics;
+        } finally {
+            mNativeCallLock.unlockShared();
         }
     }
 
@@ -292,9 +351,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     public void free() throws ProducerException
     {
         Preconditions.checkState(isInitialized());
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockClient();
+        try {
             freeKinesisVideoClient(mClientHandle);
             mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
+        } finally {
+            mNativeCallLock.unlockClient();
         }
     }
 
@@ -313,7 +375,9 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkNotNull(streamInfo);
         Preconditions.checkState(isInitialized());
 
-        synchronized (mSyncObject) {
+        // Adds to the streams of the native client, which the calls on other streams read
+        mNativeCallLock.lockClient();
+        try {
             // Create the native stream
             final long streamHandle = createKinesisVideoStream(mClientHandle, streamInfo);
             final KinesisVideoProducerStream kinesisVideoProducerStream = new NativeKinesisVideoProducerStream(this,
@@ -327,6 +391,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             mStreamMap.put(streamInfo.getName(), kinesisVideoProducerStream);
 
             return kinesisVideoProducerStream;
+        } finally {
+            mNativeCallLock.unlockClient();
         }
     }
 
@@ -362,9 +428,13 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             return;
         }
 
-        synchronized (mSyncObject) {
+        // Changes the state of every stream, so it can't run along with the calls on any of them
+        mNativeCallLock.lockClient();
+        try {
             // Stop the streams
             stopKinesisVideoStreams(mClientHandle);
+        } finally {
+            mNativeCallLock.unlockClient();
         }
     }
 
@@ -381,9 +451,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             return;
         }
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             // Stop the streams
             stopKinesisVideoStream(mClientHandle, streamHandle);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
         }
     }
 
@@ -401,9 +474,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             return;
         }
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             // Stop the streams
             kinesisVideoStreamTerminated(mClientHandle, streamHandle, uploadHandle, statusCode);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
         }
     }
 
@@ -418,8 +494,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     {
         Preconditions.checkState(isInitialized());
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             getKinesisVideoStreamMetrics(mClientHandle, streamHandle, streamMetrics);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
         }
     }
 
@@ -435,9 +514,24 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkState(isInitialized());
         Preconditions.checkNotNull(kinesisVideoFrameFrame);
 
-        synchronized (mSyncObject) {
-            putKinesisVideoFrame(mClientHandle, streamHandle, kinesisVideoFrameFrame);
-        }
+        mFramePutter.putFrame(streamHandle, kinesisVideoFrameFrame);
+    }
+
+    /**
+     * Put the first frames of an array with a single acquisition of the stream lock.
+     *
+     * @param streamHandle the handle of the stream
+     * @param kinesisVideoFrames frames to put
+     * @param count number of frames to put
+     * @return status of each frame, {@link ProducerException#STATUS_SUCCESS} if it was put
+     */
+    @Nonnull
+    public int[] putFrames(final long streamHandle, final @Nonnull KinesisVideoFrame[] kinesisVideoFrames,
+                           final int count)
+    {
+        Preconditions.checkState(isInitialized());
+
+        return mFramePutter.putFrames(streamHandle, kinesisVideoFrames, count);
     }
 
     /**
@@ -452,8 +546,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkState(isInitialized());
         Preconditions.checkNotNull(kinesisVideoFragmentAck);
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             kinesisVideoStreamFragmentAck(mClientHandle, streamHandle, uploadHandle, kinesisVideoFragmentAck);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
         }
     }
 
@@ -469,8 +566,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkState(isInitialized());
         Preconditions.checkNotNull(kinesisVideoFragmentAck);
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             kinesisVideoStreamParseFragmentAck(mClientHandle, streamHandle, uploadHandle, kinesisVideoFragmentAck);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
         }
     }
 
@@ -494,8 +594,76 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkNotNull(fillBuffer);
         Preconditions.checkNotNull(readResult);
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             getKinesisVideoStreamData(mClientHandle, streamHandle, fillBuffer, offset, length, readResult);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
+        }
+    }
+
+    /**
+     * Get stream data from the buffer into the remaining space of the given buffer, advancing its position
+     * by the number of bytes read.
+     * <p>
+     * Direct buffers are filled by the native code without going through the Java heap. Native libraries which
+     * don't export the direct variant are detected on the first call, after which the data is staged in a heap
+     * array instead.
+     *
+     * @param streamHandle     the handle of the stream
+     * @param fillBuffer    The buffer to fill
+     * @param readResult    The read result to fill in
+     * @throws ProducerException
+     */
+    public void getStreamData(final long streamHandle,
+                              final @Nonnull ByteBuffer fillBuffer,
+                              final @Nonnull ReadResult readResult) throws ProducerException
+    {
+        Preconditions.checkState(isInitialized());
+        Preconditions.checkNotNull(fillBuffer);
+        Preconditions.checkNotNull(readResult);
+
+        final int position = fillBuffer.position();
+        final int length = fillBuffer.remaining();
+
+        mNativeCallLock.lockStream(streamHandle);
+        try {
+            if (fillBuffer.hasArray()) {
+                getKinesisVideoStreamData(mClientHandle, streamHandle, fillBuffer.array(),
+                        fillBuffer.arrayOffset() + position, length, readResult);
+            } else if (!getStreamDataDirect(streamHandle, fillBuffer, position, length, readResult)) {
+                final int stripe = mNativeCallLock.stripe(streamHandle);
+                if (mStagingBuffers[stripe] == null || mStagingBuffers[stripe].length < length) {
+                    mStagingBuffers[stripe] = new byte[length];
+                }
+
+                getKinesisVideoStreamData(mClientHandle, streamHandle, mStagingBuffers[stripe], 0, length, readResult);
+                fillBuffer.put(mStagingBuffers[stripe], 0, readResult.getReadBytes());
+            }
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
+        }
+
+        fillBuffer.position(position + readResult.getReadBytes());
+    }
+
+    private boolean getStreamDataDirect(final long streamHandle,
+                                        final @Nonnull ByteBuffer fillBuffer,
+                                        final int offset,
+                                        final int length,
+                                        final @Nonnull ReadResult readResult) throws ProducerException
+    {
+        if (!mDirectStreamDataSupported) {
+            return false;
+        }
+
+        try {
+            getKinesisVideoStreamDataDirect(mClientHandle, streamHandle, fillBuffer, offset, length, readResult);
+            return true;
+        } catch (final UnsatisfiedLinkError e) {
+            mLog.warn("Native library doesn't support direct buffers. Falling back to heap copies.");
+            mDirectStreamDataSupported = false;
+            return false;
         }
     }
 
@@ -510,8 +678,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     {
         Preconditions.checkState(isInitialized());
 
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(streamHandle);
+        try {
             kinesisVideoStreamFormatChanged(mClientHandle, streamHandle, codecPrivateData);
+        } finally {
+            mNativeCallLock.unlockStream(streamHandle);
         }
     }
 
@@ -773,8 +944,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     public void createStreamResult(final long customData, final @Nullable String streamArn, final int httpStatusCode)
             throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(customData);
+        try {
             createStreamResultEvent(mClientHandle, customData, httpStatusCode, streamArn);
+        } finally {
+            mNativeCallLock.unlockStream(customData);
         }
     }
 
@@ -811,8 +985,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
                                       final @Nullable StreamDescription streamDescription,
                                       final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(customData);
+        try {
             describeStreamResultEvent(mClientHandle, customData, httpStatusCode, streamDescription);
+        } finally {
+            mNativeCallLock.unlockStream(customData);
         }
     }
 
@@ -848,8 +1025,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public void getStreamingEndpointResult(final long customData, final @Nullable String endpoint, final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(customData);
+        try {
             getStreamingEndpointResultEvent(mClientHandle, customData, httpStatusCode, endpoint);
+        } finally {
+            mNativeCallLock.unlockStream(customData);
         }
     }
 
@@ -883,10 +1063,13 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public void getStreamingTokenResult(final long customData, final @Nullable byte[] token, final long expiration, final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(customData);
+        try {
             final int tokenSize = token == null ? 0 : token.length;
 
             getStreamingTokenResultEvent(mClientHandle, customData, httpStatusCode, token, tokenSize, expiration);
+        } finally {
+            mNativeCallLock.unlockStream(customData);
         }
     }
 
@@ -940,8 +1123,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public void putStreamResult(final long customData, final long clientStreamHandle, final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockStream(customData);
+        try {
             putStreamResultEvent(mClientHandle, customData, httpStatusCode, clientStreamHandle);
+        } finally {
+            mNativeCallLock.unlockStream(customData);
         }
     }
 
@@ -977,8 +1163,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public void tagResourceResult(final long customData, final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockShared();
+        try {
             tagResourceResultEvent(mClientHandle, customData, httpStatusCode);
+        } finally {
+            mNativeCallLock.unlockShared();
         }
     }
 
@@ -1017,8 +1206,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public void createDeviceResult(final long customData, final @Nullable String deviceArm, final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockShared();
+        try {
             createDeviceResultEvent(mClientHandle, customData, httpStatusCode, deviceArm);
+        } finally {
+            mNativeCallLock.unlockShared();
         }
     }
 
@@ -1057,10 +1249,13 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public void deviceCertToTokenResult(final long customData, final @Nullable byte[] token, final long expiration, final int httpStatusCode) throws ProducerException
     {
-        synchronized (mSyncObject) {
+        mNativeCallLock.lockShared();
+        try {
             final int tokenSize = token == null ? 0 : token.length;
 
             deviceCertToTokenResultEvent(mClientHandle, customData, httpStatusCode, token, tokenSize, expiration);
+        } finally {
+            mNativeCallLock.unlockShared();
         }
     }
 
@@ -1294,6 +1489,20 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     private native void getKinesisVideoStreamData(long clientHandle, long streamHandle, final @Nonnull byte[] fillBuffer, int offset, int length, final @Nonnull ReadResult readResult)
             throws ProducerException;
 
+    /**
+     * Get MKV stream data from the frame buffer into a direct buffer.
+     *
+     * @param clientHandle the handle of the client
+     * @param streamHandle the handle of the stream
+     * @param fillBuffer the direct buffer to fill
+     * @param offset the offset into the buffer to fill
+     * @param length the length of the buffer to fill
+     * @param readResult the result of the read operation
+     * @throws ProducerException
+     */
+    private native void getKinesisVideoStreamDataDirect(long clientHandle, long streamHandle, final @Nonnull ByteBuffer fillBuffer, int offset, int length, final @Nonnull ReadResult readResult)
+            throws ProducerException;
+
     /**
      * Stream format has changed. Currently, only CPD is supported
      *
@@ -1,14 +1,17 @@
 package com.amazonaws.kinesisvideo.producer.jni;
 
+import com.amazonaws.kinesisvideo.common.collections.ConcurrentHandleMap;
+import com.amazonaws.kinesisvideo.common.io.NotifyingByteChannel;
 import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.common.tracing.ProducerEvents;
 import com.amazonaws.kinesisvideo.producer.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -17,24 +20,25 @@ import java.util.concurrent.TimeUnit;
  *
  *
  */
-public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStream
+public class NativeKinesisVideoProducerStream implements BatchingKinesisVideoProducerStream
 {
-    private class NativeDataInputStream extends InputStream {
+    private static final ProducerEvents EVENTS = ProducerEvents.getInstance();
+
+    private class NativeDataInputStream extends InputStream implements NotifyingByteChannel {
         /**
          * Whether the stream has been closed
          */
         private volatile boolean mStreamClosed = false;
 
         // Set the notification values
-        private final Object mMonitor = new Object();
-        private boolean mDataAvailable = false;
-        private long mAvailableDataSize = 0;
+        private final DataAvailabilitySignal mDataAvailable;
         private final ReadResult mReadResult;
         final long mUploadHandle;
 
         public NativeDataInputStream(final long uploadHandle) {
             mUploadHandle = uploadHandle;
             mReadResult = new ReadResult();
+            mDataAvailable = new DataAvailabilitySignal(mDataAvailabilityMetrics);
         }
 
         @Override
@@ -54,22 +58,26 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
 
             // Read from the KinesisVideo Producer
             // NOTE: This implementation is a blocking call and the blocking
-            // is handled by simply spin-locking until the data is available.
+            // is handled by parking until the data is available.
             int bytesRead = -1;
-
-            while (!mStreamClosed) {
-                synchronized (mMonitor) {
-                    while (!mDataAvailable) {
-                        try {
-                            mMonitor.wait();
-                        } catch (final InterruptedException e) {
-                            mLog.exception(e, "Waiting for the data availability with uploadHandle %d"
-                                    + "threw an interrupted exception. Continuing...", mUploadHandle);
+            final Object event = EVENTS.beginStreamRead();
+            long waitNanos = 0;
+
+            try {
+                while (!mStreamClosed) {
+                    final long waitStart = event == null ? 0 : System.nanoTime();
+                    try {
+                        mDataAvailable.acquire();
+                    } catch (final InterruptedException e) {
+                        mLog.exception(e, "Waiting for the data availability with uploadHandle %d"
+                                + "threw an interrupted exception. Continuing...", mUploadHandle);
+                        continue;
+                    } finally {
+                        if (event != null) {
+                            waitNanos += System.nanoTime() - waitStart;
                         }
                     }
 
-                    // Clear the availability indicator for now
-                    mDataAvailable = false;
                     if (mStreamClosed) {
                         // Indicate the EOS
                         bytesRead = -1;
@@ -77,51 +85,21 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
                                 mStreamInfo.getName(), mUploadHandle);
                         return bytesRead;
                     }
-                }
-
-                try {
-                    mKinesisVideoProducerJni.getStreamData(mStreamHandle, b, off, len, mReadResult);
-                    bytesRead = mReadResult.getReadBytes();
-
-                    if (mReadResult.isEndOfStream()) {
-                        if (mReadResult.getUploadHandle() == mUploadHandle) {
-                            // EOS for current session
-                            mLog.info("Received end-of-stream indicator for %s, uploadHandle %d",
-                                    mStreamInfo.getName(), mUploadHandle);
-
-                            // Set the flag so the stream is not valid any longer
-                            mStreamClosed = true;
-
-                            if (0 == bytesRead) {
-                                // Indicate the EOS
-                                bytesRead = -1;
-                            }
-                        } else {
-                            mLog.debug("Found end of stream for stream %s on uploadHandle %d for previous uploadHandle %d",
-                                    mStreamInfo.getName(), mUploadHandle, mReadResult.getUploadHandle());
-                            notifyEndOfStream(mReadResult.getUploadHandle());
-                        }
-                    }
 
-                    synchronized (mMonitor) {
-                        if (bytesRead != 0) {
-                            // Got some bytes - break from the loop.
-                            // Make sure we don't await again if we still have some data
-                            if (bytesRead != -1 && mAvailableDataSize - bytesRead > 0) {
-                                mDataAvailable = true;
-                            }
-
-                            break;
-                        }
+                    bytesRead = readStreamData(b, off, len);
+                    if (bytesRead != 0) {
+                        // Got some bytes - break from the loop.
+                        break;
                     }
-                } catch (final ProducerException e) {
-                    mLog.exception(e, "Reader threw an exception");
-                    throw new IOException(e);
                 }
+            } finally {
+                EVENTS.endStreamRead(event, mStreamInfo.getName(), mUploadHandle, bytesRead, waitNanos);
             }
 
-            mLog.debug("Streamed %d bytes for stream %s with uploadHandle %d", bytesRead, mStreamInfo.getName(),
-                    mUploadHandle);
+            if (mLog.isEnabled(LogLevel.DEBUG)) {
+                mLog.debug("Streamed %d bytes for stream %s with uploadHandle %d", bytesRead, mStreamInfo.getName(),
+                        mUploadHandle);
+            }
 
             if (-1 == bytesRead) {
                 mLog.debug("Closing stream %s with uploadHandle %d", mStreamInfo.getName(), mUploadHandle);
@@ -137,6 +115,100 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
             return read(b, 0, b.length);
         }
 
+        /**
+         * Non-blocking read which returns 0 if no data availability has been signalled since the last read.
+         */
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            if (mStreamClosed) {
+                return -1;
+            }
+
+            if (!mDataAvailable.tryAcquire()) {
+                return 0;
+            }
+
+            final Object event = EVENTS.beginStreamRead();
+            int bytesRead = -1;
+            try {
+                bytesRead = readStreamData(dst);
+            } finally {
+                EVENTS.endStreamRead(event, mStreamInfo.getName(), mUploadHandle, bytesRead, 0);
+            }
+
+            if (-1 == bytesRead) {
+                mLog.debug("Closing stream %s with uploadHandle %d", mStreamInfo.getName(), mUploadHandle);
+            }
+
+            return bytesRead;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !mStreamClosed;
+        }
+
+        @Override
+        public void setReadyListener(@Nullable final Runnable listener) {
+            mDataAvailable.setListener(listener);
+        }
+
+        private int readStreamData(final byte[] b, final int off, final int len) throws IOException {
+            try {
+                mKinesisVideoProducerJni.getStreamData(mStreamHandle, b, off, len, mReadResult);
+            } catch (final ProducerException e) {
+                mLog.exception(e, "Reader threw an exception");
+                throw new IOException(e);
+            }
+
+            return processReadResult();
+        }
+
+        /**
+         * Reads straight into the buffer, which doesn't involve a heap copy for direct buffers.
+         */
+        private int readStreamData(final ByteBuffer dst) throws IOException {
+            try {
+                mKinesisVideoProducerJni.getStreamData(mStreamHandle, dst, mReadResult);
+            } catch (final ProducerException e) {
+                mLog.exception(e, "Reader threw an exception");
+                throw new IOException(e);
+            }
+
+            return processReadResult();
+        }
+
+        private int processReadResult() {
+            int bytesRead = mReadResult.getReadBytes();
+
+            if (mReadResult.isEndOfStream()) {
+                if (mReadResult.getUploadHandle() == mUploadHandle) {
+                    // EOS for current session
+                    mLog.info("Received end-of-stream indicator for %s, uploadHandle %d",
+                            mStreamInfo.getName(), mUploadHandle);
+
+                    // Set the flag so the stream is not valid any longer
+                    mStreamClosed = true;
+
+                    if (0 == bytesRead) {
+                        // Indicate the EOS
+                        bytesRead = -1;
+                    }
+                } else {
+                    mLog.debug("Found end of stream for stream %s on uploadHandle %d for previous uploadHandle %d",
+                            mStreamInfo.getName(), mUploadHandle, mReadResult.getUploadHandle());
+                    notifyEndOfStream(mReadResult.getUploadHandle());
+                }
+            }
+
+            // Make sure we don't await again if we still have some data
+            if (bytesRead > 0 && mDataAvailable.getAvailableSize() - bytesRead > 0) {
+                mDataAvailable.rearm();
+            }
+
+            return bytesRead;
+        }
+
         @Override
         public void close()
             throws IOException
@@ -146,28 +218,25 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
 
             // Notify the awaiting thread
             notifyReaderThread(0, 0);
+
+            // No more notifications for this upload handle
+            mInputStreamMap.remove(mUploadHandle, this);
         }
 
         protected void notifyReaderThread(final long duration, final long availableSize) {
-            // Unblock the awaiting reading code block
-            synchronized (mMonitor) {
-                mAvailableDataSize = availableSize;
+            if (mLog.isEnabled(LogLevel.DEBUG)) {
                 mLog.debug("Data availability notification. Upload handle: %d, Size: %d, Duration %d ",
                         mUploadHandle, availableSize, duration);
-
-                mDataAvailable = true;
-
-                mMonitor.notify();
             }
+
+            // Unblock the awaiting reading code block
+            mDataAvailable.signal(availableSize);
         }
 
         protected void endOfReaderThread() {
             // Unblock the awaiting reading code block
-            synchronized (mMonitor) {
-                mDataAvailable = true;
-                mStreamClosed = true;
-                mMonitor.notify();
-            }
+            mStreamClosed = true;
+            mDataAvailable.signal(0);
         }
     }
 
@@ -179,7 +248,8 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     private final CountDownLatch mStoppedLatch;
     private final Log mLog;
     private final KinesisVideoStreamMetrics mStreamMetrics;
-    private final Map<Long, NativeDataInputStream> mInputStreamMap;
+    private final ConcurrentHandleMap<NativeDataInputStream> mInputStreamMap;
+    private final DataAvailabilityMetrics mDataAvailabilityMetrics;
 
     public NativeKinesisVideoProducerStream(final @Nonnull NativeKinesisVideoProducerJni kinesisVideoProducerJni,
                                             final @Nonnull StreamInfo streamInfo,
@@ -195,7 +265,8 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         mStoppedLatch = new CountDownLatch(1);
         mLog = Preconditions.checkNotNull(log);
         mStreamMetrics = new KinesisVideoStreamMetrics();
-        mInputStreamMap = new HashMap<Long, NativeDataInputStream>();
+        mInputStreamMap = new ConcurrentHandleMap<NativeDataInputStream>();
+        mDataAvailabilityMetrics = new DataAvailabilityMetrics();
     }
 
     @Override
@@ -213,50 +284,60 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         mKinesisVideoProducerJni.getStreamData(mStreamHandle, fillBuffer, offset, length, readResult);
     }
 
+    @Override
+    public void getStreamData(@Nonnull final ByteBuffer fillBuffer,
+                              @Nonnull final ReadResult readResult) throws ProducerException {
+        mKinesisVideoProducerJni.getStreamData(mStreamHandle, fillBuffer, readResult);
+    }
+
     @Override
     public void putFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws ProducerException {
         Preconditions.checkNotNull(kinesisVideoFrame);
 
-        mLog.debug("PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, flags: %s",
-                kinesisVideoFrame.getIndex(),
-                kinesisVideoFrame.getPresentationTs(),
-                kinesisVideoFrame.getDecodingTs(),
-                kinesisVideoFrame.getDuration(),
-                FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
-                kinesisVideoFrame.getFlags());
-
-        // Print out metrics on every key-frame
-        if (FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags())) {
-            final KinesisVideoMetrics kinesisVideoMetrics = mKinesisVideoProducerJni.getMetrics();
-            final KinesisVideoStreamMetrics streamMetrics = getMetrics();
-            mLog.debug("Kinesis Video client and stream metrics"
-                            + "\n\t>> Overall storage size: %s"
-                            + "\n\t>> Available storage size: %s"
-                            + "\n\t>> Allocated storage size: %s"
-                            + "\n\t>> Total view allocation size: %s"
-                            + "\n\t>> Total streams frame rate: %s"
-                            + "\n\t>> Total streams transfer rate: %s"
-                            + "\n\t>> Current view duration: %s"
-                            + "\n\t>> Overall view duration: %s"
-                            + "\n\t>> Current view size: %s"
-                            + "\n\t>> Overall view size: %s"
-                            + "\n\t>> Current frame rate: %s"
-                            + "\n\t>> Current transfer rate: %s",
-                    kinesisVideoMetrics.getContentStoreSize(),
-                    kinesisVideoMetrics.getContentStoreAvailableSize(),
-                    kinesisVideoMetrics.getContentStoreAllocatedSize(),
-                    kinesisVideoMetrics.getTotalContentViewSize(),
-                    kinesisVideoMetrics.getTotalFrameRate(),
-                    kinesisVideoMetrics.getTotalTransferRate(),
-                    streamMetrics.getCurrentViewDurationInTimeUnits(),
-                    streamMetrics.getOverallViewDurationInTimeUnits(),
-                    streamMetrics.getCurrentViewSize(),
-                    streamMetrics.getOverallViewSize(),
-                    streamMetrics.getCurrentFrameRate(),
-                    streamMetrics.getCurrentTransferRate());
-        }
-
-        mKinesisVideoProducerJni.putFrame(mStreamHandle, kinesisVideoFrame);
+        if (mLog.isEnabled(LogLevel.DEBUG)) {
+            mLog.debug("PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, flags: %s",
+                    kinesisVideoFrame.getIndex(),
+                    kinesisVideoFrame.getPresentationTs(),
+                    kinesisVideoFrame.getDecodingTs(),
+                    kinesisVideoFrame.getDuration(),
+                    FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
+                    kinesisVideoFrame.getFlags());
+        }
+
+        final Object event = EVENTS.beginPutFrame();
+        try {
+            mKinesisVideoProducerJni.putFrame(mStreamHandle, kinesisVideoFrame);
+        } finally {
+            EVENTS.endPutFrame(event, mStreamInfo.getName(), mStreamHandle, kinesisVideoFrame.getSize(),
+                    FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public int[] putFrames(@Nonnull final KinesisVideoFrame[] kinesisVideoFrames, final int count)
+            throws ProducerException {
+        Preconditions.checkNotNull(kinesisVideoFrames);
+
+        final Object event = EVENTS.beginPutFrame();
+        try {
+            return mKinesisVideoProducerJni.putFrames(mStreamHandle, kinesisVideoFrames, count);
+        } finally {
+            if (event != null) {
+                endPutFrames(event, kinesisVideoFrames, count);
+            }
+        }
+    }
+
+    private void endPutFrames(final Object event, final KinesisVideoFrame[] kinesisVideoFrames, final int count) {
+        int bytes = 0;
+        boolean keyFrame = false;
+        for (int i = 0; i < count; i++) {
+            bytes += kinesisVideoFrames[i].getSize();
+            keyFrame |= FrameFlags.isKeyFrame(kinesisVideoFrames[i].getFlags());
+        }
+
+        EVENTS.endPutFrames(event, mStreamInfo.getName(), mStreamHandle, count, bytes, keyFrame);
     }
 
     @Override
@@ -299,10 +380,21 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Nonnull
     @Override
     public KinesisVideoStreamMetrics getMetrics() throws ProducerException {
-        mKinesisVideoProducerJni.getStreamMetrics(mStreamHandle, mStreamMetrics);
+        // Readers copying the metrics hold the same lock, see StreamMetricsSnapshot
+        synchronized (mStreamMetrics) {
+            mKinesisVideoProducerJni.getStreamMetrics(mStreamHandle, mStreamMetrics);
+        }
         return mStreamMetrics;
     }
 
+    /**
+     * @return Counters of the data availability hand-off to the readers of the stream across all upload sessions
+     */
+    @Nonnull
+    public DataAvailabilityMetrics getDataAvailabilityMetrics() {
+        return mDataAvailabilityMetrics;
+    }
+
     @Override
     public String getStreamName() {
         return mStreamInfo.getName();
@@ -440,7 +532,7 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         if (inputStream != null) {
             inputStream.endOfReaderThread();
         } else {
-            mLog.error("NativeDataInputStream corresponding to upload handle %d is not found.", uploadHandle);
+            mLog.debug("NativeDataInputStream corresponding to upload handle %d has been closed already.", uploadHandle);
         }
     }
 }
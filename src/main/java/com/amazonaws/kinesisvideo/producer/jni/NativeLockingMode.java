@@ -0,0 +1,20 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+/**
+ * How {@link NativeKinesisVideoProducerJni} serializes the calls into the native library.
+ */
+public enum NativeLockingMode {
+    /**
+     * All calls are serialized on a single client-wide lock.
+     */
+    GLOBAL,
+
+    /**
+     * Calls for the same stream are serialized on a lock striped by stream handle while calls for different streams
+     * run in parallel, relying on the native client being thread safe. Creating and freeing the client, creating
+     * streams and stopping all of them exclude all other calls.
+     * <p>
+     * Stream callbacks invoked from within a native call must not synchronously call into another stream.
+     */
+    PER_STREAM
+}
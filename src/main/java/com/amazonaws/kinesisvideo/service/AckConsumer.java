@@ -1,28 +1,37 @@
 package com.amazonaws.kinesisvideo.service;
 
+import com.amazonaws.kinesisvideo.ack.AckEventData;
+import com.amazonaws.kinesisvideo.ack.FragmentAckParser;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.common.tracing.ProducerEvents;
+import com.amazonaws.kinesisvideo.http.HttpResponseListener;
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
 import com.amazonaws.kinesisvideo.producer.ProducerException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
-class AckConsumer implements Consumer<InputStream> {
+class AckConsumer implements Consumer<InputStream>, HttpResponseListener, FragmentAckParser.Listener {
     private static final long STOPPED_TIMEOUT_IN_MILLISECONDS = 15000;
     private static final int FOUR_KB = 4096;
+    private static final ProducerEvents EVENTS = ProducerEvents.getInstance();
     private final KinesisVideoProducerStream stream;
     private InputStream ackStream = null;
+    private volatile Closeable ackConnection = null;
     private final CountDownLatch stoppedLatch;
     private final Log log;
     private final long uploadHandle;
     private volatile boolean closed = false;
+    private FragmentAckParser ackParser;
 
     public AckConsumer(final long uploadHandle,
                        @Nonnull final KinesisVideoProducerStream stream,
@@ -37,6 +46,9 @@ class AckConsumer implements Consumer<InputStream> {
     public void accept(final @Nonnull InputStream inputStream) {
         ackStream = Preconditions.checkNotNull(inputStream);
 
+        // The blocking client hands over the body with the chunked encoding removed
+        ackParser = new FragmentAckParser(this, FragmentAckParser.Framing.RAW);
+
         // Start a long running operation
         processAckInputStream();
     }
@@ -46,6 +58,38 @@ class AckConsumer implements Consumer<InputStream> {
         return ackStream;
     }
 
+    @Override
+    public void onConnected(@Nonnull final Closeable connection) {
+        ackConnection = Preconditions.checkNotNull(connection);
+
+        // The non-blocking client hands over the body only
+        ackParser = new FragmentAckParser(this, FragmentAckParser.Framing.CHUNKED);
+        log.info("Starting ACK processing");
+    }
+
+    @Override
+    public void onResponseStatus(@Nonnull final ResponseStatus responseStatus) {
+        // The status is handled by the BlockingAckConsumer
+    }
+
+    @Override
+    public void onResponseBody(@Nonnull final byte[] buffer, final int offset, final int length) {
+        if (!closed && length != 0) {
+            processAckBytes(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void onResponseEnd(@Nullable final Exception exception) {
+        if (exception != null) {
+            log.exception(exception);
+        }
+
+        log.debug("Finished reading ACKs stream");
+        closed = true;
+        stoppedLatch.countDown();
+    }
+
     private void processAckInputStream() {
         Preconditions.checkNotNull(stream);
 
@@ -63,14 +107,7 @@ class AckConsumer implements Consumer<InputStream> {
                     log.debug("Received end-of-stream for ACKs.");
                     closed = true;
                 } else if (bytesRead != 0) {
-                    final String bytesString = new String(buffer, 0, bytesRead, StandardCharsets.UTF_8);
-                    log.debug("Received ACK bits: " + bytesString);
-                    try {
-                        stream.parseFragmentAck(uploadHandle, bytesString);
-                    } catch (final ProducerException e) {
-                        // Log the exception
-                        log.exception(e, "Processing ACK threw an exception. Logging and continuing. ");
-                    }
+                    processAckBytes(buffer, 0, bytesRead);
                 }
             }
 
@@ -83,15 +120,43 @@ class AckConsumer implements Consumer<InputStream> {
         }
     }
 
+    private void processAckBytes(final byte[] buffer, final int offset, final int length) {
+        final Object event = EVENTS.beginAckParse();
+        try {
+            ackParser.parse(buffer, offset, length);
+        } finally {
+            EVENTS.endAckParse(event, stream.getStreamName(), uploadHandle, length);
+        }
+    }
+
+    @Override
+    public void onFragmentAck(@Nonnull final AckEventData eventData,
+                              @Nonnull final KinesisVideoFragmentAck fragmentAck) {
+        final Object event = EVENTS.beginFragmentAck();
+        try {
+            stream.fragmentAck(uploadHandle, fragmentAck);
+        } catch (final ProducerException e) {
+            // Log the exception
+            log.exception(e, "Processing ACK threw an exception. Logging and continuing. ");
+        } finally {
+            EVENTS.endFragmentAck(event, stream.getStreamName(), uploadHandle,
+                    fragmentAck.getAckType().getIntType(), fragmentAck.getTimestamp());
+        }
+    }
+
     public void close() throws ProducerException {
         // Trigger stopping
         closed = true;
 
-        // Close the stream
+        // Close the stream or the non-blocking connection
         try {
             if (ackStream != null) {
                 ackStream.close();
             }
+
+            if (ackConnection != null) {
+                ackConnection.close();
+            }
         } catch (final IOException e) {
             throw new ProducerException(e);
         }
@@ -2,32 +2,43 @@ package com.amazonaws.kinesisvideo.service;
 
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
-import com.amazonaws.kinesisvideo.encoding.ChunkDecoder;
+import com.amazonaws.kinesisvideo.encoding.HttpResponseParser;
+import com.amazonaws.kinesisvideo.http.HttpResponseListener;
+import com.amazonaws.kinesisvideo.model.Response;
 import com.amazonaws.kinesisvideo.model.ResponseStatus;
 import com.amazonaws.kinesisvideo.service.exception.AccessDeniedException;
 import com.amazonaws.kinesisvideo.service.exception.AmazonServiceException;
 import com.amazonaws.kinesisvideo.service.exception.ResourceNotFoundException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
-class BlockingAckConsumer implements Consumer<InputStream> {
+class BlockingAckConsumer implements Consumer<InputStream>, HttpResponseListener {
     private static final long RESPONSE_TIMEOUT_IN_MILLISECONDS = 10000;
     private static final int HTTP_OK = 200;
     private static final int HTTP_BAD_REQUEST = 400;
     private static final int HTTP_NOT_FOUND = 404;
     private static final int HTTP_ACCESS_DENIED = 403;
     private final Consumer<InputStream> inputStreamConsumer;
+    private final HttpResponseListener responseListener;
     private final CountDownLatch responseLatch;
-    private Exception storedException;
+    private volatile Exception storedException;
+    private Closeable connection;
 
     public BlockingAckConsumer(@Nonnull final Consumer<InputStream> inputStreamConsumer) {
         this.inputStreamConsumer = checkNotNull(inputStreamConsumer);
+        this.responseListener = inputStreamConsumer instanceof HttpResponseListener
+                ? (HttpResponseListener) inputStreamConsumer
+                : null;
         this.responseLatch = new CountDownLatch(1);
     }
 
@@ -36,21 +47,11 @@ class BlockingAckConsumer implements Consumer<InputStream> {
         checkNotNull(inputStream);
 
         // Await for the header
+        InputStream responseBody = null;
         try {
-            final ResponseStatus responseStatus = ChunkDecoder.readStatusLine(inputStream);
-            final int responseCode = responseStatus.getStatusCode();
-            switch (responseCode) {
-                case HTTP_OK:
-                    break;
-                case HTTP_BAD_REQUEST:
-                    throw new AmazonServiceException("PutMedia call returned bad request status code");
-                case HTTP_NOT_FOUND:
-                    throw new ResourceNotFoundException("Resource not found");
-                case HTTP_ACCESS_DENIED:
-                    throw new AccessDeniedException("Access is denied");
-                default:
-                    throw new AmazonServiceException("PutMedia call returned status code " + responseCode);
-            }
+            final Response response = HttpResponseParser.readResponse(inputStream);
+            checkResponseStatus(response.getResponseStatus());
+            responseBody = response.getResponsePayload();
         } catch (final Exception e) {
             // Store the exception
             storedException = e;
@@ -61,7 +62,69 @@ class BlockingAckConsumer implements Consumer<InputStream> {
 
         // Forward to the origin if no exceptions have been thrown
         if (storedException == null) {
-            inputStreamConsumer.accept(inputStream);
+            inputStreamConsumer.accept(responseBody);
+        }
+    }
+
+    @Override
+    public void onConnected(@Nonnull final Closeable connection) {
+        checkState(responseListener != null, "Wrapped ACK consumer can't be driven by a non-blocking client");
+        this.connection = connection;
+        responseListener.onConnected(connection);
+    }
+
+    @Override
+    public void onResponseStatus(@Nonnull final ResponseStatus responseStatus) {
+        try {
+            checkResponseStatus(responseStatus);
+        } catch (final Exception e) {
+            storedException = e;
+        } finally {
+            responseLatch.countDown();
+        }
+
+        if (storedException != null) {
+            // Nothing will be forwarded, drop the connection like the blocking receiver would
+            try {
+                connection.close();
+            } catch (final IOException e) {
+                // Already reporting the status failure
+            }
+        }
+    }
+
+    @Override
+    public void onResponseBody(@Nonnull final byte[] buffer, final int offset, final int length) {
+        if (storedException == null) {
+            responseListener.onResponseBody(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void onResponseEnd(@Nullable final Exception exception) {
+        if (responseLatch.getCount() > 0) {
+            storedException = exception != null
+                    ? exception
+                    : new AmazonServiceException("PutMedia connection closed before the response was received");
+            responseLatch.countDown();
+        }
+
+        responseListener.onResponseEnd(exception);
+    }
+
+    private static void checkResponseStatus(@Nonnull final ResponseStatus responseStatus) {
+        final int responseCode = responseStatus.getStatusCode();
+        switch (responseCode) {
+            case HTTP_OK:
+                break;
+            case HTTP_BAD_REQUEST:
+                throw new AmazonServiceException("PutMedia call returned bad request status code");
+            case HTTP_NOT_FOUND:
+                throw new ResourceNotFoundException("Resource not found");
+            case HTTP_ACCESS_DENIED:
+                throw new AccessDeniedException("Access is denied");
+            default:
+                throw new AmazonServiceException("PutMedia call returned status code " + responseCode);
         }
     }
 
@@ -1,20 +1,30 @@
 package com.amazonaws.kinesisvideo.service;
 
+import com.amazonaws.kinesisvideo.common.io.NotifyingByteChannel;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Implementation of an {@link InputStream} which blocks read operations until triggered
+ * <p>
+ * Reads through the {@link NotifyingByteChannel} interface never block. They return 0 until triggered and
+ * afterwards only return the data which is immediately available. They require the underlying stream to be a
+ * {@link NotifyingByteChannel} too.
  */
-public class BlockingInputStream extends InputStream {
+public class BlockingInputStream extends InputStream implements NotifyingByteChannel {
     private final Object monitor;
     private final InputStream inputStream;
     private final Log log;
     private boolean unblocked;
+    private volatile boolean closed;
+    private volatile Runnable endOfStreamListener;
+    private volatile Runnable readyListener;
 
     public BlockingInputStream(@Nonnull final InputStream inputStream,
                                @Nonnull final Log log) {
@@ -28,7 +38,7 @@ public class BlockingInputStream extends InputStream {
     public int read() throws IOException {
         // Await until unblocked
         await();
-        return inputStream.read();
+        return notifyEndOfStream(inputStream.read());
     }
 
     @Override
@@ -37,19 +47,40 @@ public class BlockingInputStream extends InputStream {
                     int len)
             throws IOException {
         await();
-        return inputStream.read(b, off, len);
+        return notifyEndOfStream(inputStream.read(b, off, len));
     }
 
     @Override
     public int read(byte[] b)
             throws IOException {
         await();
-        return inputStream.read(b);
+        return notifyEndOfStream(inputStream.read(b));
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        synchronized (monitor) {
+            if (!unblocked) {
+                return 0;
+            }
+        }
+
+        if (!(inputStream instanceof NotifyingByteChannel)) {
+            throw new IOException("The underlying stream doesn't support non-blocking reads");
+        }
+
+        return notifyEndOfStream(((NotifyingByteChannel) inputStream).read(dst));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
     }
 
     @Override
     public void close()
             throws IOException {
+        closed = true;
         unblock();
         inputStream.close();
     }
@@ -60,6 +91,41 @@ public class BlockingInputStream extends InputStream {
             log.debug("Stream unblocked notification.");
             monitor.notify();
         }
+
+        final Runnable listener = readyListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Sets the listener run once unblocked and whenever the underlying stream has data again.
+     */
+    @Override
+    public void setReadyListener(@Nullable final Runnable listener) {
+        readyListener = listener;
+        if (inputStream instanceof NotifyingByteChannel) {
+            ((NotifyingByteChannel) inputStream).setReadyListener(listener);
+        }
+    }
+
+    /**
+     * Sets the listener run once the underlying stream has been read to its end, on the reading thread.
+     */
+    public void setEndOfStreamListener(@Nullable final Runnable listener) {
+        endOfStreamListener = listener;
+    }
+
+    private int notifyEndOfStream(final int bytesRead) {
+        if (bytesRead == -1) {
+            final Runnable listener = endOfStreamListener;
+            endOfStreamListener = null;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+
+        return bytesRead;
     }
 
     private void await() {
@@ -1,13 +1,16 @@
 package com.amazonaws.kinesisvideo.service;
 
+import com.amazonaws.kinesisvideo.auth.DecodedCredentialsCache;
 import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentials;
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsCodec;
 import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
-import com.amazonaws.kinesisvideo.auth.StaticCredentialsProvider;
 import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.common.collections.ConcurrentHandleMap;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.common.tracing.ProducerEvents;
 import com.amazonaws.kinesisvideo.producer.*;
 import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
 import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerJni;
@@ -15,12 +18,11 @@ import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerJni;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.*;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implementation of {@link ServiceCallbacks}
@@ -32,6 +34,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
     private static final int HTTP_RESOURCE_IN_USE = 10003;
     private static final int HTTP_ACCESS_DENIED = 403;
     private static final String RESOURCE_NOT_FOUND = "ResourceNotFoundException";
+    private static final ProducerEvents EVENTS = ProducerEvents.getInstance();
     private static final String RESOURCE_IN_USE = "ResourceInUseException";
     private static final String ACCESS_DENIED = "AccessDeniedException";
 
@@ -54,16 +57,16 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                 // The exception can be null indicating successful completion
                 final int statusCode = getStatusCodeFromException(object);
 
-                // Find in the list of streams
-                for (final OngoingStreamingInfo streamingInfo : mStreams) {
-                    if (streamingInfo.getStream().getStreamHandle() == streamHandle) {
-                        // Terminate this object
-                        streamingInfo.stopSession(this);
-                        break;
-                    }
+                final OngoingStreamingInfo streamingInfo = mStreams.get(streamHandle);
+                if (streamingInfo != null) {
+                    // Terminate this object
+                    streamingInfo.stopSession(uploadHandle, object);
                 }
 
                 if (statusCode != HTTP_OK) {
+                    // The endpoint might have moved
+                    serviceCallCache.invalidate(stream.getStreamName());
+
                     try {
                         stream.streamTerminated(uploadHandle, statusCode);
                     } catch (final ProducerException e) {
@@ -76,20 +79,21 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         }
     }
 
-    private class OngoingStream {
+    private class OngoingStream implements UploadSessionQueue.Session {
         private final BlockingInputStream dataStream;
         private final AckConsumer ackConsumer;
-        private final CompletionCallback completionCallback;
+        private final long uploadHandle;
 
         public OngoingStream(
                 @Nonnull final BlockingInputStream dataStream,
                 @Nonnull final AckConsumer ackConsumer,
-                @Nonnull final CompletionCallback completionCallback) {
+                final long uploadHandle) {
             this.dataStream = Preconditions.checkNotNull(dataStream);
             this.ackConsumer = Preconditions.checkNotNull(ackConsumer);
-            this.completionCallback = Preconditions.checkNotNull(completionCallback);
+            this.uploadHandle = uploadHandle;
         }
 
+        @Override
         public void stop() {
             try {
                 log.debug("Closing data stream");
@@ -106,38 +110,15 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         }
 
-        public void setActive() {
-            // Unblock the stream
-            dataStream.unblock();
+        @Override
+        public long getUploadHandle() {
+            return uploadHandle;
         }
 
         @Nonnull
-        public CompletionCallback getCompletionCallback() {
-            return completionCallback;
-        }
-    }
-
-    private static class OngoingStreamList extends ArrayList<OngoingStream> {
-        public OngoingStream stopActiveStream(final int index) throws IndexOutOfBoundsException {
-            final OngoingStream stream = super.remove(index);
-            stream.stop();
-
-            // Promote the next
-            if (index < size()) {
-                final OngoingStream nextActive = get(index);
-                nextActive.setActive();
-            }
-
-            return stream;
-        }
-
-        public boolean addStream(final OngoingStream stream) {
-            if (size() == 0) {
-                // Mark as active if no other streams are in progress
-                stream.setActive();
-            }
-
-            return super.add(stream);
+        @Override
+        public BlockingInputStream getDataStream() {
+            return dataStream;
         }
     }
 
@@ -145,14 +126,12 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
      * Internal class for storing the ongoing streams
      */
     private class OngoingStreamingInfo {
-        private final OngoingStreamList ongoingStreams;
+        private final UploadSessionQueue ongoingStreams;
         private final KinesisVideoProducerStream stream;
-        private final Object syncObj;
 
         public OngoingStreamingInfo(@Nonnull final KinesisVideoProducerStream stream) {
             this.stream = Preconditions.checkNotNull(stream);
-            ongoingStreams = new OngoingStreamList();
-            syncObj = new Object();
+            ongoingStreams = new UploadSessionQueue(configuration.isOverlappedUploadRotation(), log);
         }
 
         public void stop() {
@@ -163,20 +142,15 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                 log.exception(e, "Stopping stream threw an exception.");
             }
 
-            for (final OngoingStream ongoingStream : ongoingStreams) {
-                ongoingStream.stop();
-            }
+            stopSessions();
         }
 
-        public void stopSession(@Nonnull final CompletionCallback completionCallback) {
-            synchronized (syncObj) {
-                for (int index = 0; index < ongoingStreams.size(); index++) {
-                    if (completionCallback == ongoingStreams.get(index).getCompletionCallback()) {
-                        ongoingStreams.stopActiveStream(index);
-                        break;
-                    }
-                }
-            }
+        public void stopSessions() {
+            ongoingStreams.stopAll();
+        }
+
+        public void stopSession(final long uploadHandle, @Nullable final Exception exception) {
+            ongoingStreams.complete(uploadHandle, exception);
         }
 
         public KinesisVideoProducerStream getStream() {
@@ -185,17 +159,15 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
 
         public void appendOngoingStream(@Nonnull final BlockingInputStream dataStream,
                                         @Nonnull final AckConsumer ackConsumer,
-                                        @Nonnull final CompletionCallback completionCallback) {
-            synchronized (syncObj) {
-                ongoingStreams.addStream(new OngoingStream(dataStream, ackConsumer, completionCallback));
-            }
+                                        final long uploadHandle) {
+            ongoingStreams.add(new OngoingStream(dataStream, ackConsumer, uploadHandle));
         }
     }
 
     /**
      * Task executor to schedule long-running tasks in an async way.
      */
-    private final ScheduledExecutorService executor;
+    private final ServiceCallExecutor executor;
 
     /**
      * Kinesis video service client to make the service calls with.
@@ -212,32 +184,51 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
      */
     private final KinesisVideoClientConfiguration configuration;
 
+    /**
+     * Describe stream and get data endpoint results reused across stream restarts
+     */
+    private final ServiceCallCache serviceCallCache;
+
+    /**
+     * Credentials providers for the security tokens passed in by the service callbacks
+     */
+    private final DecodedCredentialsCache credentialsCache = new DecodedCredentialsCache();
+
     /**
      * Implementation of the {@link KinesisVideoProducer} object.
      */
     private KinesisVideoProducer kinesisVideoProducer = null;
 
     /**
-     * The list of streams for which the callbacks can be applied.
+     * The streams for which the callbacks can be applied, by stream handle.
      */
-    private final List<OngoingStreamingInfo> mStreams = new ArrayList<OngoingStreamingInfo>();
+    private final ConcurrentHandleMap<OngoingStreamingInfo> mStreams =
+            new ConcurrentHandleMap<OngoingStreamingInfo>();
 
     /**
      * A monotonically increasing value serving as an upload handle
      */
-    private long uploadHandle;
+    private final AtomicLong uploadHandle = new AtomicLong();
 
     public DefaultServiceCallbacksImpl(
             @Nonnull final Log log,
             @Nonnull final ScheduledExecutorService executor,
             @Nonnull final KinesisVideoClientConfiguration configuration,
             @Nonnull final KinesisVideoServiceClient kinesisVideoServiceClient) {
+        this(log, new ServiceCallExecutor(executor, log), configuration, kinesisVideoServiceClient);
+    }
+
+    public DefaultServiceCallbacksImpl(
+            @Nonnull final Log log,
+            @Nonnull final ServiceCallExecutor executor,
+            @Nonnull final KinesisVideoClientConfiguration configuration,
+            @Nonnull final KinesisVideoServiceClient kinesisVideoServiceClient) {
         this.executor = Preconditions.checkNotNull(executor);
         this.kinesisVideoServiceClient = Preconditions.checkNotNull(kinesisVideoServiceClient);
         this.log = Preconditions.checkNotNull(log);
         this.configuration = Preconditions.checkNotNull(configuration);
-
-        this.uploadHandle = 0;
+        this.serviceCallCache = new ServiceCallCache(configuration.getServiceCallCacheTtlInMillis(),
+                configuration.getServiceCallCacheNegativeTtlInMillis());
 
         try {
             this.kinesisVideoServiceClient.initialize(configuration);
@@ -262,6 +253,14 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         return kinesisVideoProducer != null;
     }
 
+    /**
+     * @return The cache of the describe stream and get data endpoint results
+     */
+    @Nonnull
+    public ServiceCallCache getServiceCallCache() {
+        return serviceCallCache;
+    }
+
     @Override
     public void createStream(@Nonnull final String deviceName,
                              @Nonnull final String streamName,
@@ -284,10 +283,14 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                 int statusCode;
                 String streamArn = null;
 
-                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData, log);
+                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData);
                 final long retentionInHours = retentionPeriod / Time.HUNDREDS_OF_NANOS_IN_AN_HOUR;
                 final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
 
+                // Whatever has been cached about the stream is about to change
+                serviceCallCache.invalidate(streamName);
+
+                final Object event = EVENTS.beginServiceCall();
                 try {
                     streamArn = kinesisVideoServiceClient.createStream(
                             streamName,
@@ -302,6 +305,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                     statusCode = getStatusCodeFromException(e);
                     log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
                 }
+                EVENTS.endServiceCall(event, "CreateStream", streamName, statusCode);
 
                 try {
                     kinesisVideoProducer.createStreamResult(customData, streamArn, statusCode);
@@ -333,17 +337,34 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                 int statusCode;
                 StreamDescription streamDescription = null;
 
-                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData, log);
-                final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+                final ServiceCallCache.Result<StreamDescription> cachedResult =
+                        serviceCallCache.getStreamDescription(streamName);
+                if (cachedResult != null) {
+                    streamDescription = cachedResult.getValue();
+                    statusCode = cachedResult.getStatusCode();
+                } else {
+                    final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData);
+                    final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
 
-                try {
-                    streamDescription = kinesisVideoServiceClient.describeStream(streamName,
-                            timeoutInMillis,
-                            credentialsProvider);
-                    statusCode = HTTP_OK;
-                } catch (final KinesisVideoException e) {
-                    statusCode = getStatusCodeFromException(e);
-                    log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
+                    final Object event = EVENTS.beginServiceCall();
+                    try {
+                        streamDescription = kinesisVideoServiceClient.describeStream(streamName,
+                                timeoutInMillis,
+                                credentialsProvider);
+                        statusCode = HTTP_OK;
+                    } catch (final KinesisVideoException e) {
+                        statusCode = getStatusCodeFromException(e);
+                        log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
+                    }
+                    EVENTS.endServiceCall(event, "DescribeStream", streamName, statusCode);
+
+                    // Streams which aren't active yet are polled until they are
+                    if (statusCode == HTTP_OK && streamDescription != null
+                            && streamDescription.getStreamStatus() == StreamStatus.ACTIVE.intValue()) {
+                        serviceCallCache.putStreamDescription(streamName, streamDescription, statusCode, true);
+                    } else if (isPersistentError(statusCode)) {
+                        serviceCallCache.putStreamDescription(streamName, null, statusCode, false);
+                    }
                 }
 
                 try {
@@ -373,23 +394,40 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         final Runnable task = new Runnable() {
             @Override
             public void run() {
-                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData, log);
-                final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
                 int statusCode = HTTP_OK;
                 String endpoint = "";
-                try {
-                    endpoint = kinesisVideoServiceClient.getDataEndpoint(streamName,
-                            apiName,
-                            timeoutInMillis,
-                            credentialsProvider);
-                } catch (final KinesisVideoException e) {
-                    log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
-                    statusCode = getStatusCodeFromException(e);
-                }
 
-                if (statusCode != HTTP_OK && isBlank(endpoint)) {
-                    // TODO: more URI validation
-                    statusCode = HTTP_NOT_FOUND;
+                final ServiceCallCache.Result<String> cachedResult =
+                        serviceCallCache.getDataEndpoint(streamName, apiName);
+                if (cachedResult != null) {
+                    endpoint = cachedResult.getValue();
+                    statusCode = cachedResult.getStatusCode();
+                } else {
+                    final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData);
+                    final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+                    final Object event = EVENTS.beginServiceCall();
+                    try {
+                        endpoint = kinesisVideoServiceClient.getDataEndpoint(streamName,
+                                apiName,
+                                timeoutInMillis,
+                                credentialsProvider);
+                    } catch (final KinesisVideoException e) {
+                        log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
+                        statusCode = getStatusCodeFromException(e);
+                    }
+                    EVENTS.endServiceCall(event, "GetDataEndpoint", streamName, statusCode);
+
+                    final boolean persistentError = isPersistentError(statusCode);
+                    if (statusCode != HTTP_OK && isBlank(endpoint)) {
+                        // TODO: more URI validation
+                        statusCode = HTTP_NOT_FOUND;
+                    }
+
+                    if (statusCode == HTTP_OK && !isBlank(endpoint)) {
+                        serviceCallCache.putDataEndpoint(streamName, apiName, endpoint, statusCode, true);
+                    } else if (persistentError) {
+                        serviceCallCache.putDataEndpoint(streamName, apiName, endpoint, statusCode, false);
+                    }
                 }
 
                 try {
@@ -426,32 +464,19 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                 byte[] serializedCredentials = null;
                 long expiration = 0;
 
-                final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                final Object event = EVENTS.beginServiceCall();
                 try {
                     final KinesisVideoCredentials credentials = credentialsProvider.getUpdatedCredentials();
 
-                    // Serialize the credentials
-                    expiration = credentials.getExpiration().getTime() * Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
-
                     // Serialize the credentials as streaming token
-                    final ObjectOutput outputStream = new ObjectOutputStream(byteArrayOutputStream);
-                    outputStream.writeObject(credentials);
-                    outputStream.flush();
-                    serializedCredentials = byteArrayOutputStream.toByteArray();
-                    outputStream.close();
-                } catch (final IOException e) {
-                    log.exception(e);
+                    expiration = credentials.getExpiration().getTime() * Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+                    serializedCredentials = KinesisVideoCredentialsCodec.encode(credentials);
                 } catch (final KinesisVideoException e) {
                     log.exception(e);
-                } finally {
-                    try {
-                        byteArrayOutputStream.close();
-                    } catch (final IOException ex) {
-                        // Do nothing
-                    }
                 }
 
                 final int statusCode = HTTP_OK;
+                EVENTS.endServiceCall(event, "GetStreamingToken", streamName, statusCode);
 
                 try {
                     kinesisVideoProducer.getStreamingTokenResult(
@@ -489,27 +514,23 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             @Override
             public void run() {
                 // find the right stream
-                KinesisVideoProducerStream kinesisVideoProducerStream = null;
-                for (final OngoingStreamingInfo streamingInfo : mStreams) {
-                    if (streamingInfo.getStream().getStreamHandle() == customData) {
-                        kinesisVideoProducerStream = streamingInfo.getStream();
-                        break;
-                    }
-                }
-
-                if (kinesisVideoProducerStream == null) {
+                final OngoingStreamingInfo streamingInfo = mStreams.get(customData);
+                if (streamingInfo == null) {
                     throw new IllegalStateException("Couldn't find the correct stream");
                 }
 
+                final KinesisVideoProducerStream kinesisVideoProducerStream = streamingInfo.getStream();
+
                 final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
                 final long streamStartTimeInMillis = streamStartTime / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
 
                 int statusCode = HTTP_OK;
 
-                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData, log);
+                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData);
 
                 final long clientUploadHandle = getUploadHandle();
 
+                final Object event = EVENTS.beginServiceCall();
                 try {
                     final BlockingInputStream dataStream = new BlockingInputStream(kinesisVideoProducerStream.getDataStream(clientUploadHandle), log);
                     final AckConsumer ackConsumer = new AckConsumer(clientUploadHandle, kinesisVideoProducerStream, log);
@@ -517,7 +538,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                     final CompletionCallback completionCallback = new CompletionCallback(kinesisVideoProducerStream, clientUploadHandle);
 
                     // Insert into the ongoing streams for book keeping
-                    addOngoingStreams(dataStream, ackConsumer, completionCallback, kinesisVideoProducerStream);
+                    addOngoingStreams(dataStream, ackConsumer, clientUploadHandle, kinesisVideoProducerStream);
 
                     // This will kick-off a long running operation
                     kinesisVideoServiceClient.putMedia(streamName,
@@ -537,7 +558,11 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                 } catch (final KinesisVideoException e) {
                     statusCode = getStatusCodeFromException(e);
                     log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
+
+                    // Look the endpoint up again on the next attempt
+                    serviceCallCache.invalidate(streamName);
                 }
+                EVENTS.endServiceCall(event, "PutMedia", streamName, statusCode);
 
                 try {
                     log.info("putStreamResult uploadHandle " + clientUploadHandle + " status " + statusCode);
@@ -548,7 +573,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        executor.scheduleUpload(task, delay, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -566,7 +591,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         final Runnable task = new Runnable() {
             @Override
             public void run() {
-                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData, log);
+                final KinesisVideoCredentialsProvider credentialsProvider = getCredentialsProvider(authData);
                 final long timeoutInMillis = timeout / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
                 int statusCode = HTTP_OK;
 
@@ -579,6 +604,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                         tagsMap.put(tag.getName(), tag.getValue());
                     }
                 }
+                final Object event = EVENTS.beginServiceCall();
                 try {
                     kinesisVideoServiceClient.tagStream(resourceArn,
                             tagsMap,
@@ -588,6 +614,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                     log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
                     statusCode = getStatusCodeFromException(e);
                 }
+                EVENTS.endServiceCall(event, "TagStream", resourceArn, statusCode);
 
                 if (statusCode != HTTP_OK) {
                     // TODO: more URI validation
@@ -651,16 +678,36 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
 
     @Override
     public void free() {
-        for (final OngoingStreamingInfo streamingInfo : mStreams) {
+        for (final OngoingStreamingInfo streamingInfo : mStreams.values()) {
             // Cancel the futures
             streamingInfo.stop();
         }
+        mStreams.clear();
 
         this.executor.shutdownNow();
     }
 
     public void addStream(@Nonnull final KinesisVideoProducerStream kinesisVideoProducerStream) {
-        mStreams.add(new OngoingStreamingInfo(kinesisVideoProducerStream));
+        mStreams.put(kinesisVideoProducerStream.getStreamHandle(),
+                new OngoingStreamingInfo(kinesisVideoProducerStream));
+    }
+
+    /**
+     * Forgets a stream which has been closed. Whatever is left of its uploads is stopped off the calling thread, as
+     * closing the ack streams waits for their readers.
+     *
+     * @param streamHandle Handle of the closed stream
+     */
+    public void removeStream(final long streamHandle) {
+        final OngoingStreamingInfo streamingInfo = mStreams.remove(streamHandle);
+        if (streamingInfo != null) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    streamingInfo.stopSessions();
+                }
+            });
+        }
     }
 
     private long calculateRelativeServiceCallAfter(final long absoluteCallAfter) {
@@ -669,7 +716,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
     }
 
     private long getUploadHandle() {
-        return uploadHandle++;
+        return uploadHandle.getAndIncrement();
     }
 
     /**
@@ -702,35 +749,19 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
     }
 
     @Nullable
-    private static KinesisVideoCredentialsProvider getCredentialsProvider(@Nullable final byte[] authData, @Nonnull final Log log) {
+    private KinesisVideoCredentialsProvider getCredentialsProvider(@Nullable final byte[] authData) {
         if (null == authData) {
             log.warn("NULL credentials have been returned by the credentials provider.");
             return null;
         }
 
-        // De-serialize the bytes into AWSCredentials object
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(authData);
-        KinesisVideoCredentials credentials = null;
+        // Decoded once per token and then reused for all the service calls
         try {
-            final ObjectInput objectInput = new ObjectInputStream(byteArrayInputStream);
-            credentials = (KinesisVideoCredentials) objectInput.readObject();
-            objectInput.close();
+            return credentialsCache.getCredentialsProvider(authData);
         } catch (final IOException e) {
             log.exception(e);
             return null;
-        } catch (final ClassNotFoundException e) {
-            log.exception(e);
-            return null;
-        } finally {
-            try {
-                byteArrayInputStream.close();
-            } catch (final IOException e) {
-                log.exception(e);
-            }
         }
-
-        // Create a static credentials provider
-        return new StaticCredentialsProvider(credentials);
     }
 
     /**
@@ -761,19 +792,24 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         }
     }
 
+    /**
+     * @return Whether an immediate retry of a failed service call is bound to fail the same way
+     */
+    private static boolean isPersistentError(final int statusCode) {
+        return statusCode == HTTP_NOT_FOUND || statusCode == HTTP_ACCESS_DENIED;
+    }
+
     private void addOngoingStreams(@Nonnull final BlockingInputStream dataStream,
                                    @Nonnull final AckConsumer ackConsumer,
-                                   @Nonnull final CompletionCallback completionCallback,
+                                   final long uploadHandle,
                                    @Nonnull final KinesisVideoProducerStream stream) {
 
         // Append to the running streams.
-        for(final OngoingStreamingInfo streamingInfo: mStreams) {
-            if (streamingInfo.getStream() == stream) {
-                streamingInfo.appendOngoingStream(dataStream, ackConsumer, completionCallback);
-                return;
-            }
+        final OngoingStreamingInfo streamingInfo = mStreams.get(stream.getStreamHandle());
+        if (streamingInfo == null || streamingInfo.getStream() != stream) {
+            throw new RuntimeException("Internal error - can't find the active stream");
         }
 
-        throw new RuntimeException("Internal error - can't find the active stream");
+        streamingInfo.appendOngoingStream(dataStream, ackConsumer, uploadHandle);
     }
 }
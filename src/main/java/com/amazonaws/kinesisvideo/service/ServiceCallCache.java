@@ -0,0 +1,182 @@
+package com.amazonaws.kinesisvideo.service;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of the describe stream and get data endpoint results, which seldom change over the life of a
+ * stream, so that stream restarts don't need to go through these service calls again.
+ * <p>
+ * Successful results are kept for the TTL and errors which won't go away by retrying right away, like a stream not
+ * existing, for the negative TTL. A TTL of zero disables the corresponding caching. Entries of a stream are
+ * invalidated explicitly when it is created or its upload runs into an error, as the endpoint might have moved.
+ */
+@ThreadSafe
+public class ServiceCallCache {
+    /**
+     * A cached service call result
+     *
+     * @param <T> Type of the result
+     */
+    public static final class Result<T> {
+        private final T mValue;
+        private final int mStatusCode;
+        private final long mExpirationNanos;
+
+        private Result(@Nullable final T value, final int statusCode, final long expirationNanos) {
+            mValue = value;
+            mStatusCode = statusCode;
+            mExpirationNanos = expirationNanos;
+        }
+
+        @Nullable
+        public T getValue() {
+            return mValue;
+        }
+
+        public int getStatusCode() {
+            return mStatusCode;
+        }
+    }
+
+    private static final char KEY_SEPARATOR = '\n';
+
+    private final long mTtlNanos;
+    private final long mNegativeTtlNanos;
+    private final ConcurrentMap<String, Result<StreamDescription>> mStreamDescriptions =
+            new ConcurrentHashMap<String, Result<StreamDescription>>();
+    private final ConcurrentMap<String, Result<String>> mDataEndpoints =
+            new ConcurrentHashMap<String, Result<String>>();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mInvalidations = new AtomicLong();
+
+    public ServiceCallCache(final long ttlInMillis, final long negativeTtlInMillis) {
+        Preconditions.checkArgument(ttlInMillis >= 0, "TTL should not be negative");
+        Preconditions.checkArgument(negativeTtlInMillis >= 0, "Negative TTL should not be negative");
+
+        mTtlNanos = TimeUnit.MILLISECONDS.toNanos(ttlInMillis);
+        mNegativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlInMillis);
+    }
+
+    /**
+     * @return The cached describe stream result or null if there is none
+     */
+    @Nullable
+    public Result<StreamDescription> getStreamDescription(@Nonnull final String streamName) {
+        return get(mStreamDescriptions, streamName);
+    }
+
+    public void putStreamDescription(@Nonnull final String streamName,
+                                     @Nullable final StreamDescription streamDescription,
+                                     final int statusCode,
+                                     final boolean success) {
+        put(mStreamDescriptions, streamName, streamDescription, statusCode, success);
+    }
+
+    /**
+     * @return The cached get data endpoint result or null if there is none
+     */
+    @Nullable
+    public Result<String> getDataEndpoint(@Nonnull final String streamName, @Nonnull final String apiName) {
+        return get(mDataEndpoints, dataEndpointKey(streamName, apiName));
+    }
+
+    public void putDataEndpoint(@Nonnull final String streamName,
+                                @Nonnull final String apiName,
+                                @Nullable final String dataEndpoint,
+                                final int statusCode,
+                                final boolean success) {
+        put(mDataEndpoints, dataEndpointKey(streamName, apiName), dataEndpoint, statusCode, success);
+    }
+
+    /**
+     * Drops all the cached results of a stream.
+     */
+    public void invalidate(@Nonnull final String streamName) {
+        boolean invalidated = mStreamDescriptions.remove(streamName) != null;
+
+        final String keyPrefix = streamName + KEY_SEPARATOR;
+        for (final String key : mDataEndpoints.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                invalidated |= mDataEndpoints.remove(key) != null;
+            }
+        }
+
+        if (invalidated) {
+            mInvalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops all the cached results.
+     */
+    public void invalidateAll() {
+        mStreamDescriptions.clear();
+        mDataEndpoints.clear();
+        mInvalidations.incrementAndGet();
+    }
+
+    /**
+     * @return Number of service calls answered from the cache
+     */
+    public long getHits() {
+        return mHits.get();
+    }
+
+    /**
+     * @return Number of service calls which had to go to the service
+     */
+    public long getMisses() {
+        return mMisses.get();
+    }
+
+    /**
+     * @return Number of invalidations which have dropped cached results
+     */
+    public long getInvalidations() {
+        return mInvalidations.get();
+    }
+
+    @Nullable
+    private <T> Result<T> get(@Nonnull final ConcurrentMap<String, Result<T>> results, @Nonnull final String key) {
+        final Result<T> result = results.get(key);
+        if (result != null && System.nanoTime() - result.mExpirationNanos < 0) {
+            mHits.incrementAndGet();
+            return result;
+        }
+
+        if (result != null) {
+            results.remove(key, result);
+        }
+
+        mMisses.incrementAndGet();
+        return null;
+    }
+
+    private <T> void put(@Nonnull final ConcurrentMap<String, Result<T>> results,
+                         @Nonnull final String key,
+                         @Nullable final T value,
+                         final int statusCode,
+                         final boolean success) {
+        final long ttlNanos = success ? mTtlNanos : mNegativeTtlNanos;
+        if (ttlNanos == 0) {
+            return;
+        }
+
+        results.put(key, new Result<T>(value, statusCode, System.nanoTime() + ttlNanos));
+    }
+
+    @Nonnull
+    private static String dataEndpointKey(@Nonnull final String streamName, @Nonnull final String apiName) {
+        return streamName + KEY_SEPARATOR + apiName;
+    }
+}
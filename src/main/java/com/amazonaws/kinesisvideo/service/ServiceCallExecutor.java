@@ -0,0 +1,253 @@
+package com.amazonaws.kinesisvideo.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the tasks of the service and auth callbacks.
+ * <p>
+ * The delays asked for by the producer wait on a small timer pool, and the calls themselves run on bounded pools
+ * once due. PutMedia connects block until the response headers arrive, so they have a pool of their own and can't
+ * hold up credential refreshes and endpoint lookups of the other streams. A call finding its pool's queue full is
+ * counted as rejected and dispatched again after {@value #REJECTED_RETRY_DELAY_IN_MILLIS} ms instead of being lost.
+ */
+public class ServiceCallExecutor {
+    /**
+     * Delay before dispatching a rejected call again
+     */
+    static final long REJECTED_RETRY_DELAY_IN_MILLIS = 100;
+
+    private static final long REJECTED_LOG_INTERVAL = 100;
+
+    private final ScheduledExecutorService mTimer;
+    private final ExecutorService mCallExecutor;
+    private final ExecutorService mUploadExecutor;
+    private final Log mLog;
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    /**
+     * Runs everything on the given executor, as the callbacks used to
+     */
+    public ServiceCallExecutor(@Nonnull final ScheduledExecutorService executor, @Nonnull final Log log) {
+        this(executor, executor, executor, log);
+    }
+
+    /**
+     * @param timer Pool waiting out the delays, not running any call
+     * @param callExecutor Pool running the service calls and credential refreshes
+     * @param uploadExecutor Pool running the PutMedia connects
+     */
+    public ServiceCallExecutor(@Nonnull final ScheduledExecutorService timer,
+                               @Nonnull final ExecutorService callExecutor,
+                               @Nonnull final ExecutorService uploadExecutor,
+                               @Nonnull final Log log) {
+        mTimer = Preconditions.checkNotNull(timer);
+        mCallExecutor = Preconditions.checkNotNull(callExecutor);
+        mUploadExecutor = Preconditions.checkNotNull(uploadExecutor);
+        mLog = Preconditions.checkNotNull(log);
+    }
+
+    /**
+     * Creates a pool of a fixed number of threads with a bounded queue, rejecting the tasks which don't fit.
+     *
+     * @param name Prefix of the thread names
+     * @param threads Number of threads
+     * @param queueCapacity Number of tasks waiting for a thread before rejecting
+     * @param virtualThreads Whether to run on virtual threads, if the JVM has them
+     */
+    @Nonnull
+    public static ThreadPoolExecutor newBoundedExecutor(@Nonnull final String name,
+                                                        final int threads,
+                                                        final int queueCapacity,
+                                                        final boolean virtualThreads,
+                                                        @Nonnull final Log log) {
+        Preconditions.checkArgument(threads > 0, "Thread count should be positive");
+        Preconditions.checkArgument(queueCapacity > 0, "Queue capacity should be positive");
+
+        ThreadFactory threadFactory = virtualThreads ? newVirtualThreadFactory(name) : null;
+        if (threadFactory == null) {
+            if (virtualThreads) {
+                log.warn("Virtual threads aren't available, %s runs on platform threads", name);
+            }
+            threadFactory = newThreadFactory(name);
+        }
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory);
+    }
+
+    /**
+     * Runs the service call after the delay
+     */
+    public void schedule(@Nonnull final Runnable task, final long delay, @Nonnull final TimeUnit unit) {
+        schedule(mCallExecutor, task, delay, unit);
+    }
+
+    /**
+     * Runs the PutMedia connect after the delay
+     */
+    public void scheduleUpload(@Nonnull final Runnable task, final long delay, @Nonnull final TimeUnit unit) {
+        schedule(mUploadExecutor, task, delay, unit);
+    }
+
+    /**
+     * Runs the service call now
+     *
+     * @return Future completing with the call
+     */
+    @Nonnull
+    public Future<?> submit(@Nonnull final Runnable task) {
+        final FutureTask<Void> future = new FutureTask<Void>(task, null);
+        dispatch(mCallExecutor, future);
+        return future;
+    }
+
+    @Nonnull
+    public ScheduledExecutorService getTimer() {
+        return mTimer;
+    }
+
+    /**
+     * @return Number of times a call found its pool's queue full
+     */
+    public long getRejectedCount() {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * @return Number of calls waiting for a thread
+     */
+    public int getQueuedCount() {
+        int queued = getQueuedCount(mCallExecutor);
+        if (mUploadExecutor != mCallExecutor) {
+            queued += getQueuedCount(mUploadExecutor);
+        }
+        return queued;
+    }
+
+    /**
+     * @return Number of calls running
+     */
+    public int getActiveCount() {
+        int active = getActiveCount(mCallExecutor);
+        if (mUploadExecutor != mCallExecutor) {
+            active += getActiveCount(mUploadExecutor);
+        }
+        return active;
+    }
+
+    /**
+     * Stops the pools, dropping the pending calls
+     */
+    public void shutdownNow() {
+        mTimer.shutdownNow();
+        mCallExecutor.shutdownNow();
+        mUploadExecutor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Service calls: %d running, %d queued, %d rejected",
+                getActiveCount(), getQueuedCount(), getRejectedCount());
+    }
+
+    private void schedule(final ExecutorService executor, final Runnable task, final long delay,
+                          final TimeUnit unit) {
+        Preconditions.checkNotNull(task);
+        if (executor == mTimer) {
+            mTimer.schedule(task, delay, unit);
+        } else if (delay <= 0) {
+            dispatch(executor, task);
+        } else {
+            mTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(executor, task);
+                }
+            }, delay, unit);
+        }
+    }
+
+    private void dispatch(final ExecutorService executor, final Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            if (executor.isShutdown() || mTimer.isShutdown()) {
+                // Freed meanwhile, nobody is waiting for the result anymore
+                return;
+            }
+
+            final long rejected = mRejectedCount.incrementAndGet();
+            if (rejected % REJECTED_LOG_INTERVAL == 1) {
+                mLog.warn("Service call queue is full, retrying in %d ms. %s", REJECTED_RETRY_DELAY_IN_MILLIS, this);
+            }
+
+            try {
+                mTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatch(executor, task);
+                    }
+                }, REJECTED_RETRY_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException timerShutdown) {
+                mLog.debug("Dropping a service call while shutting down");
+            }
+        }
+    }
+
+    private static int getQueuedCount(final ExecutorService executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    private static int getActiveCount(final ExecutorService executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getActiveCount() : 0;
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            }
+        };
+    }
+
+    /**
+     * @return Factory of virtual threads, looked up reflectively as they only exist from JDK 21, or null
+     */
+    @Nullable
+    private static ThreadFactory newVirtualThreadFactory(final String name) {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+        } catch (final ClassNotFoundException e) {
+            return null;
+        } catch (final NoSuchMethodException e) {
+            return null;
+        } catch (final IllegalAccessException e) {
+            return null;
+        } catch (final InvocationTargetException e) {
+            // Preview builds refuse to create virtual threads unless enabled
+            return null;
+        }
+    }
+}
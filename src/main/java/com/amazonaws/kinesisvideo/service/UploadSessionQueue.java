@@ -0,0 +1,154 @@
+package com.amazonaws.kinesisvideo.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upload sessions of a stream in the order the producer started them, of which only the active one reads the stream
+ * data. The sessions after it are connected and wait for their turn.
+ * <p>
+ * By default the next session becomes active once the active one has been stopped, which happens when its upload
+ * completes. With overlapped rotation, the next session becomes active as soon as the data of the active one has
+ * ended, which the producer does on a fragment boundary. The previous session then only receives the acks of its
+ * last fragments, until its response ends too or fails.
+ */
+@ThreadSafe
+class UploadSessionQueue {
+    /**
+     * Upload session as seen by the queue
+     */
+    interface Session {
+        long getUploadHandle();
+
+        @Nonnull
+        BlockingInputStream getDataStream();
+
+        /**
+         * Closes the data and ack streams
+         */
+        void stop();
+    }
+
+    private static final class Entry {
+        private final Session mSession;
+        private boolean mActive;
+        private boolean mDataEnded;
+        private boolean mCompletedOnce;
+
+        private Entry(final Session session) {
+            mSession = session;
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<Entry>();
+    private final boolean mOverlapped;
+    private final Log mLog;
+
+    UploadSessionQueue(final boolean overlapped, @Nonnull final Log log) {
+        mOverlapped = overlapped;
+        mLog = Preconditions.checkNotNull(log);
+    }
+
+    synchronized void add(@Nonnull final Session session) {
+        final Entry entry = new Entry(Preconditions.checkNotNull(session));
+        if (mOverlapped) {
+            session.getDataStream().setEndOfStreamListener(new Runnable() {
+                @Override
+                public void run() {
+                    dataEnded(entry);
+                }
+            });
+        }
+
+        mEntries.add(entry);
+        activateNext();
+    }
+
+    /**
+     * Handles a completion of the upload of the session, which the HTTP clients report once the data has been sent
+     * and once more when the response has ended. With overlapped rotation, the session is kept for its acks at the
+     * first successful completion after its data has ended, and stopped otherwise.
+     *
+     * @return Whether the session has been stopped
+     */
+    synchronized boolean complete(final long uploadHandle, @Nullable final Exception exception) {
+        final Entry entry = find(uploadHandle);
+        if (entry == null) {
+            return false;
+        }
+
+        if (mOverlapped && exception == null && entry.mDataEnded && !entry.mCompletedOnce) {
+            entry.mCompletedOnce = true;
+            return false;
+        }
+
+        stop(entry);
+        return true;
+    }
+
+    /**
+     * Stops every session
+     */
+    synchronized void stopAll() {
+        for (final Entry entry : mEntries) {
+            entry.mSession.stop();
+        }
+        mEntries.clear();
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    private synchronized void dataEnded(final Entry entry) {
+        if (!mEntries.contains(entry)) {
+            // Stopped already
+            return;
+        }
+
+        entry.mDataEnded = true;
+        activateNext();
+    }
+
+    private void stop(final Entry entry) {
+        mEntries.remove(entry);
+        entry.mSession.stop();
+        activateNext();
+    }
+
+    /**
+     * Unblocks the first session whose data hasn't ended
+     */
+    private void activateNext() {
+        for (final Entry entry : mEntries) {
+            if (!entry.mDataEnded) {
+                if (!entry.mActive) {
+                    entry.mActive = true;
+                    if (entry != mEntries.get(0)) {
+                        mLog.debug("Switching to upload handle %d while the previous one awaits its acks",
+                                entry.mSession.getUploadHandle());
+                    }
+                    entry.mSession.getDataStream().unblock();
+                }
+                return;
+            }
+        }
+    }
+
+    @Nullable
+    private Entry find(final long uploadHandle) {
+        for (final Entry entry : mEntries) {
+            if (entry.mSession.getUploadHandle() == uploadHandle) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+}
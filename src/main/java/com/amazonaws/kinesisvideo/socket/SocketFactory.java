@@ -2,10 +2,12 @@ package com.amazonaws.kinesisvideo.socket;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
 import java.security.SecureRandom;
@@ -24,6 +26,34 @@ public class SocketFactory {
         }
     }
 
+    /**
+     * Creates a client-mode {@link SSLEngine} for non-blocking connections to the given URI.
+     */
+    public SSLEngine createSslEngine(final URI uri) {
+        try {
+            final SSLEngine engine = createSslContext().createSSLEngine(getHost(uri), getPort(uri));
+            engine.setUseClientMode(true);
+            return engine;
+        } catch (final Throwable e) {
+            throw new RuntimeException("Exception while creating SSL engine ! ", e);
+        }
+    }
+
+    /**
+     * @return Address of the remote endpoint of the given URI
+     */
+    public InetSocketAddress getSocketAddress(final URI uri) {
+        try {
+            return new InetSocketAddress(toInetAddr(uri), getPort(uri));
+        } catch (final Throwable e) {
+            throw new RuntimeException("Exception while resolving address ! ", e);
+        }
+    }
+
+    public boolean isSecure(final URI uri) {
+        return isHttps(uri);
+    }
+
     private Socket openSocket(final URI uri) throws Exception {
         final InetAddress address = toInetAddr(uri);
         final int port = getPort(uri);
@@ -34,10 +64,13 @@ public class SocketFactory {
     }
 
     private Socket createSslSocket(final InetAddress address, final int port) throws Exception {
+        return createSslContext().getSocketFactory().createSocket(address, port);
+    }
+
+    private SSLContext createSslContext() throws Exception {
         final SSLContext context = SSLContext.getInstance("TLSv1.2");
         context.init(NO_KEY_MANAGERS, trustAllCertificates(), new SecureRandom());
-        return context.getSocketFactory().createSocket(address, port);
-
+        return context;
     }
 
     public TrustManager[] trustAllCertificates() {
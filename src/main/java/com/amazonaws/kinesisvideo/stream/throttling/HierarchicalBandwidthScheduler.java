@@ -0,0 +1,367 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Hierarchical token bucket sharing a host-wide upload limit between the PutMedia uploads of all streams.
+ * <p>
+ * Each upload draws from a bucket of its own, filled first at the guaranteed rate of its stream. What the host limit
+ * leaves after the guarantees is shared between the uploads which asked for bytes recently, in proportion to the
+ * weights of their streams, so that busy streams borrow the capacity of idle ones. An upload can also be capped with
+ * {@link BandwidthThrottler#setUpstreamKbps(long)}.
+ * <p>
+ * The buckets are refilled from {@link System#nanoTime()} on every request and bytes are granted in small quanta,
+ * which paces the uploads evenly instead of in bursts. As in {@link BandwidthThrottlerImpl}, a kilobit is 1024 bits.
+ */
+@ThreadSafe
+public final class HierarchicalBandwidthScheduler {
+    /**
+     * Bytes granted at least per request, unless fewer are asked for.
+     */
+    static final int QUANTUM_BYTES = 4 * 1024;
+
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+    private static final long BITS_IN_A_BYTE = 8L;
+    private static final double NANOS_IN_A_SECOND = 1e9;
+    private static final long SHARED_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long STREAM_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long ACTIVE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MIN_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final int DEFAULT_WEIGHT = 1;
+
+    private final long mMaxBytesPerSecond;
+    private final double mSharedCapacity;
+    private final double mStreamCapacity;
+    private final Map<String, StreamPolicy> mPolicies = new HashMap<String, StreamPolicy>();
+    private final List<StreamThrottler> mThrottlers = new ArrayList<StreamThrottler>();
+    private double mSharedTokens;
+    private long mLastRefillNanos;
+
+    private static final class StreamPolicy {
+        private final int mWeight;
+        private final long mMinBytesPerSecond;
+
+        private StreamPolicy(final int weight, final long minBytesPerSecond) {
+            mWeight = weight;
+            mMinBytesPerSecond = minBytesPerSecond;
+        }
+    }
+
+    /**
+     * Bucket of one upload. Closing it hands its share back to the other uploads.
+     */
+    public final class StreamThrottler implements BandwidthThrottler, Closeable {
+        private final String mStreamName;
+        private final int mWeight;
+        private final long mMinBytesPerSecond;
+        private long mCeilingBytesPerSecond;
+        private double mCeilingCapacity;
+        private double mTokens;
+        private double mCeilingTokens;
+        private long mLastRequestNanos;
+        private boolean mRequested;
+        private boolean mClosed;
+        private long mGrantedBytes;
+
+        private StreamThrottler(final String streamName, final StreamPolicy policy) {
+            mStreamName = streamName;
+            mWeight = policy.mWeight;
+            mMinBytesPerSecond = policy.mMinBytesPerSecond;
+        }
+
+        /**
+         * Caps the upload below the host limit.
+         */
+        @Override
+        public void setUpstreamKbps(final long kbps) {
+            checkArgument(kbps > 0, String.format("Given bandwidth value %d is not positive.", kbps));
+            synchronized (HierarchicalBandwidthScheduler.this) {
+                mCeilingBytesPerSecond = Math.min(toBytesPerSecond(kbps), mMaxBytesPerSecond);
+                mCeilingCapacity = Math.max(QUANTUM_BYTES, mCeilingBytesPerSecond * STREAM_BURST_NANOS
+                        / NANOS_IN_A_SECOND);
+                mCeilingTokens = Math.min(mCeilingTokens, mCeilingCapacity);
+            }
+        }
+
+        /**
+         * Waits until bytes can be sent.
+         *
+         * @return Bytes which can be sent, or 0 if the thread was interrupted while waiting
+         */
+        @Override
+        public int getAllowedBytes(final int len) {
+            return acquire(this, len);
+        }
+
+        /**
+         * Non-blocking counterpart of {@link #getAllowedBytes(int)}, for uploads driven by an event loop.
+         *
+         * @return Bytes which can be sent, 0 if the upload has to wait
+         */
+        public int tryGetAllowedBytes(final int len) {
+            return tryAcquire(this, len, System.nanoTime());
+        }
+
+        /**
+         * @return Nanoseconds after which {@link #tryGetAllowedBytes(int)} is worth retrying
+         */
+        public long getNanosUntilAvailable(final int len) {
+            return nanosUntilAvailable(this, len);
+        }
+
+        /**
+         * Hands back bytes which have been granted but not sent.
+         */
+        public void release(final int bytes) {
+            checkArgument(bytes >= 0, "Released bytes should not be negative");
+            synchronized (HierarchicalBandwidthScheduler.this) {
+                if (mClosed || bytes == 0) {
+                    return;
+                }
+
+                mTokens += bytes;
+                if (mCeilingBytesPerSecond > 0) {
+                    mCeilingTokens = Math.min(mCeilingTokens + bytes, mCeilingCapacity);
+                }
+                mGrantedBytes -= bytes;
+            }
+        }
+
+        @Nonnull
+        public String getStreamName() {
+            return mStreamName;
+        }
+
+        public long getGrantedBytes() {
+            synchronized (HierarchicalBandwidthScheduler.this) {
+                return mGrantedBytes;
+            }
+        }
+
+        @Override
+        public void close() {
+            unregister(this);
+        }
+    }
+
+    /**
+     * @param maxKbps Upload limit of the host
+     */
+    public HierarchicalBandwidthScheduler(final long maxKbps) {
+        this(maxKbps, System.nanoTime());
+    }
+
+    HierarchicalBandwidthScheduler(final long maxKbps, final long startNanos) {
+        checkArgument(maxKbps > 0, String.format("Given bandwidth value %d is not positive.", maxKbps));
+        mMaxBytesPerSecond = toBytesPerSecond(maxKbps);
+        mSharedCapacity = Math.max(QUANTUM_BYTES, mMaxBytesPerSecond * SHARED_BURST_NANOS / NANOS_IN_A_SECOND);
+        mStreamCapacity = Math.max(2 * QUANTUM_BYTES, mMaxBytesPerSecond * STREAM_BURST_NANOS / NANOS_IN_A_SECOND);
+        mLastRefillNanos = startNanos;
+    }
+
+    /**
+     * Sets the weight and guaranteed rate of the uploads of a stream registered from now on. Streams without a
+     * policy have a weight of 1 and no guarantee. Guarantees adding up to more than the host limit are scaled down.
+     *
+     * @param weight Share of the capacity left after the guarantees, relative to the other streams
+     * @param minKbps Guaranteed rate, 0 for none
+     */
+    public synchronized void setStreamPolicy(@Nonnull final String streamName, final int weight,
+                                             final long minKbps) {
+        checkNotNull(streamName);
+        checkArgument(weight > 0, "Weight should be positive");
+        checkArgument(minKbps >= 0, "Guaranteed bandwidth should not be negative");
+        mPolicies.put(streamName, new StreamPolicy(weight, Math.min(toBytesPerSecond(minKbps), mMaxBytesPerSecond)));
+    }
+
+    /**
+     * Creates the bucket of an upload of the stream, to be closed once the upload ends.
+     */
+    @Nonnull
+    public synchronized StreamThrottler register(@Nonnull final String streamName) {
+        checkNotNull(streamName);
+        StreamPolicy policy = mPolicies.get(streamName);
+        if (policy == null) {
+            policy = new StreamPolicy(DEFAULT_WEIGHT, 0);
+        }
+
+        final StreamThrottler throttler = new StreamThrottler(streamName, policy);
+        mThrottlers.add(throttler);
+        return throttler;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return mMaxBytesPerSecond;
+    }
+
+    /**
+     * Grants what the bucket of the upload holds, if it reaches a quantum or the length asked for.
+     *
+     * @return Bytes which can be sent, 0 if the upload has to wait
+     */
+    synchronized int tryAcquire(@Nonnull final StreamThrottler throttler, final int len, final long nowNanos) {
+        checkArgument(!throttler.mClosed, "Throttler has been closed");
+        checkArgument(len > 0, "Length should be positive");
+
+        throttler.mRequested = true;
+        throttler.mLastRequestNanos = nowNanos;
+        refill(nowNanos);
+
+        double available = throttler.mTokens;
+        if (throttler.mCeilingBytesPerSecond > 0) {
+            available = Math.min(available, throttler.mCeilingTokens);
+        }
+
+        if (available < Math.min(len, QUANTUM_BYTES)) {
+            return 0;
+        }
+
+        final int granted = (int) Math.min(len, (long) available);
+        throttler.mTokens -= granted;
+        if (throttler.mCeilingBytesPerSecond > 0) {
+            throttler.mCeilingTokens -= granted;
+        }
+        throttler.mGrantedBytes += granted;
+        return granted;
+    }
+
+    /**
+     * @return Estimate of the time until {@link #tryAcquire} can grant bytes to the upload
+     */
+    synchronized long nanosUntilAvailable(@Nonnull final StreamThrottler throttler, final int len) {
+        final double needed = Math.min(len, QUANTUM_BYTES);
+
+        long activeWeight = 0;
+        long guaranteed = 0;
+        for (final StreamThrottler other : mThrottlers) {
+            if (isActive(other, throttler.mLastRequestNanos)) {
+                activeWeight += other.mWeight;
+                guaranteed += other.mMinBytesPerSecond;
+            }
+        }
+
+        final double shared = Math.max(0, mMaxBytesPerSecond - guaranteed);
+        final double rate = throttler.mMinBytesPerSecond
+                + (activeWeight == 0 ? shared : shared * throttler.mWeight / activeWeight);
+        double waitNanos = rate <= 0 ? MAX_WAIT_NANOS : (needed - throttler.mTokens) * NANOS_IN_A_SECOND / rate;
+        if (throttler.mCeilingBytesPerSecond > 0) {
+            waitNanos = Math.max(waitNanos,
+                    (needed - throttler.mCeilingTokens) * NANOS_IN_A_SECOND / throttler.mCeilingBytesPerSecond);
+        }
+
+        return Math.max(MIN_WAIT_NANOS, Math.min(MAX_WAIT_NANOS, (long) waitNanos));
+    }
+
+    private synchronized int acquire(final StreamThrottler throttler, final int len) {
+        while (true) {
+            final int granted = tryAcquire(throttler, len, System.nanoTime());
+            if (granted > 0) {
+                return granted;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, nanosUntilAvailable(throttler, len));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+        }
+    }
+
+    private synchronized void unregister(final StreamThrottler throttler) {
+        if (throttler.mClosed) {
+            return;
+        }
+
+        throttler.mClosed = true;
+        mThrottlers.remove(throttler);
+        mSharedTokens = Math.min(mSharedTokens + throttler.mTokens, mSharedCapacity);
+        throttler.mTokens = 0;
+    }
+
+    private void refill(final long nowNanos) {
+        final long elapsedNanos = nowNanos - mLastRefillNanos;
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        mLastRefillNanos = nowNanos;
+
+        final double elapsedSeconds = elapsedNanos / NANOS_IN_A_SECOND;
+        double budget = mMaxBytesPerSecond * elapsedSeconds;
+
+        long activeWeight = 0;
+        long guaranteed = 0;
+        for (final StreamThrottler throttler : mThrottlers) {
+            if (throttler.mCeilingBytesPerSecond > 0) {
+                throttler.mCeilingTokens = Math.min(throttler.mCeilingCapacity,
+                        throttler.mCeilingTokens + throttler.mCeilingBytesPerSecond * elapsedSeconds);
+            }
+
+            if (isActive(throttler, nowNanos)) {
+                activeWeight += throttler.mWeight;
+                guaranteed += throttler.mMinBytesPerSecond;
+            } else {
+                // Idle uploads lend what they have saved
+                mSharedTokens += throttler.mTokens;
+                throttler.mTokens = 0;
+            }
+        }
+
+        if (activeWeight > 0) {
+            // Guarantees first, scaled down if they exceed the host limit
+            final double scale = guaranteed > mMaxBytesPerSecond ? (double) mMaxBytesPerSecond / guaranteed : 1.0;
+            for (final StreamThrottler throttler : mThrottlers) {
+                if (throttler.mMinBytesPerSecond > 0 && isActive(throttler, nowNanos)) {
+                    final double tokens = throttler.mMinBytesPerSecond * scale * elapsedSeconds;
+                    budget -= tokens;
+                    fill(throttler, tokens);
+                }
+            }
+        }
+
+        mSharedTokens += Math.max(0, budget);
+
+        if (activeWeight > 0 && mSharedTokens > 0) {
+            // The rest by weight; what full buckets can't take stays shared
+            final double shared = mSharedTokens;
+            mSharedTokens = 0;
+            for (final StreamThrottler throttler : mThrottlers) {
+                if (isActive(throttler, nowNanos)) {
+                    fill(throttler, shared * throttler.mWeight / activeWeight);
+                }
+            }
+        }
+
+        mSharedTokens = Math.min(mSharedTokens, mSharedCapacity);
+    }
+
+    private void fill(final StreamThrottler throttler, final double tokens) {
+        final double room = mStreamCapacity - throttler.mTokens;
+        if (tokens <= room) {
+            throttler.mTokens += tokens;
+        } else {
+            throttler.mTokens = Math.max(throttler.mTokens, mStreamCapacity);
+            mSharedTokens += tokens - Math.max(0, room);
+        }
+    }
+
+    private static boolean isActive(final StreamThrottler throttler, final long nowNanos) {
+        return throttler.mRequested && nowNanos - throttler.mLastRequestNanos < ACTIVE_NANOS;
+    }
+
+    private static long toBytesPerSecond(final long kbps) {
+        return kbps * BITS_IN_A_KILOBIT / BITS_IN_A_BYTE;
+    }
+}
@@ -0,0 +1,70 @@
+package com.amazonaws.kinesisvideo.streaming;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Stream callbacks handing every call to other callbacks, for the subclasses to observe some of them.
+ */
+public class ForwardingStreamCallbacks implements StreamCallbacks {
+    private final StreamCallbacks mDelegate;
+
+    public ForwardingStreamCallbacks(@Nonnull final StreamCallbacks delegate) {
+        mDelegate = Preconditions.checkNotNull(delegate);
+    }
+
+    @Override
+    public void streamUnderflowReport() throws ProducerException {
+        mDelegate.streamUnderflowReport();
+    }
+
+    @Override
+    public void streamLatencyPressure(final long duration) throws ProducerException {
+        mDelegate.streamLatencyPressure(duration);
+    }
+
+    @Override
+    public void streamConnectionStale(final long lastAckDuration) throws ProducerException {
+        mDelegate.streamConnectionStale(lastAckDuration);
+    }
+
+    @Override
+    public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck) throws ProducerException {
+        mDelegate.fragmentAckReceived(fragmentAck);
+    }
+
+    @Override
+    public void droppedFrameReport(final long frameTimecode) throws ProducerException {
+        mDelegate.droppedFrameReport(frameTimecode);
+    }
+
+    @Override
+    public void streamErrorReport(final long frameTimecode, final long statusCode) throws ProducerException {
+        mDelegate.streamErrorReport(frameTimecode, statusCode);
+    }
+
+    @Override
+    public void droppedFragmentReport(final long fragmentTimecode) throws ProducerException {
+        mDelegate.droppedFragmentReport(fragmentTimecode);
+    }
+
+    @Override
+    public void streamDataAvailable(final long uploadHandle, final long duration, final long availableSize)
+            throws ProducerException {
+        mDelegate.streamDataAvailable(uploadHandle, duration, availableSize);
+    }
+
+    @Override
+    public void streamReady() throws ProducerException {
+        mDelegate.streamReady();
+    }
+
+    @Override
+    public void streamClosed(final long uploadHandle) throws ProducerException {
+        mDelegate.streamClosed(uploadHandle);
+    }
+}
@@ -0,0 +1,28 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.amazonaws.kinesisvideo.AckParse")
+@Label("ACK Parse")
+@Category({ "Kinesis Video", "Upload" })
+@Description("Parsing of received ACK bytes, including the handling of the ACKs they complete")
+@StackTrace(false)
+@Threshold("1 ms")
+final class AckParseEvent extends Event {
+    @Label("Stream Name")
+    String streamName;
+
+    @Label("Upload Handle")
+    long uploadHandle;
+
+    @Label("Bytes Parsed")
+    @DataAmount
+    int bytes;
+}
@@ -0,0 +1,25 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.amazonaws.kinesisvideo.ChunkWrite")
+@Label("Chunk Write")
+@Category({ "Kinesis Video", "Upload" })
+@Description("Chunk of the PutMedia body written to the socket, including the bandwidth throttling of blocking uploads")
+@StackTrace(false)
+@Threshold("1 ms")
+final class ChunkWriteEvent extends Event {
+    @Label("Stream Name")
+    String streamName;
+
+    @Label("Bytes Written")
+    @DataAmount
+    int bytes;
+}
@@ -0,0 +1,30 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.amazonaws.kinesisvideo.FragmentAck")
+@Label("Fragment ACK")
+@Category({ "Kinesis Video", "Upload" })
+@Description("Fragment ACK handled by the native producer")
+@StackTrace(false)
+@Threshold("1 ms")
+final class FragmentAckEvent extends Event {
+    @Label("Stream Name")
+    String streamName;
+
+    @Label("Upload Handle")
+    long uploadHandle;
+
+    @Label("ACK Type")
+    int ackType;
+
+    @Label("Fragment Timestamp")
+    @Description("Timestamp of the fragment in hundreds of nanoseconds")
+    long timestamp;
+}
@@ -0,0 +1,209 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import javax.annotation.Nullable;
+
+import jdk.jfr.EventType;
+
+/**
+ * Producer events recorded with Java Flight Recorder. Loaded by {@link ProducerEvents#getInstance()} only.
+ * <p>
+ * The enabled check of the event type comes first, so that disabled events aren't allocated.
+ */
+final class JfrProducerEvents extends ProducerEvents {
+    private static final EventType PUT_FRAME = EventType.getEventType(PutFrameEvent.class);
+    private static final EventType STREAM_READ = EventType.getEventType(StreamReadEvent.class);
+    private static final EventType CHUNK_WRITE = EventType.getEventType(ChunkWriteEvent.class);
+    private static final EventType ACK_PARSE = EventType.getEventType(AckParseEvent.class);
+    private static final EventType FRAGMENT_ACK = EventType.getEventType(FragmentAckEvent.class);
+    private static final EventType SERVICE_CALL = EventType.getEventType(ServiceCallEvent.class);
+
+    JfrProducerEvents() {
+    }
+
+    @Override
+    public boolean isSupported() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Object beginPutFrame() {
+        if (!PUT_FRAME.isEnabled()) {
+            return null;
+        }
+
+        final PutFrameEvent event = new PutFrameEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPutFrame(@Nullable final Object event, final String streamName, final long streamHandle,
+                            final int bytes, final boolean keyFrame) {
+        endPutFrames(event, streamName, streamHandle, 1, bytes, keyFrame);
+    }
+
+    @Override
+    public void endPutFrames(@Nullable final Object event, final String streamName, final long streamHandle,
+                             final int frames, final int bytes, final boolean keyFrame) {
+        if (event == null) {
+            return;
+        }
+
+        final PutFrameEvent putFrameEvent = (PutFrameEvent) event;
+        putFrameEvent.end();
+        if (putFrameEvent.shouldCommit()) {
+            putFrameEvent.streamName = streamName;
+            putFrameEvent.streamHandle = streamHandle;
+            putFrameEvent.frames = frames;
+            putFrameEvent.bytes = bytes;
+            putFrameEvent.keyFrame = keyFrame;
+            putFrameEvent.commit();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object beginStreamRead() {
+        if (!STREAM_READ.isEnabled()) {
+            return null;
+        }
+
+        final StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endStreamRead(@Nullable final Object event, final String streamName, final long uploadHandle,
+                              final int bytes, final long waitNanos) {
+        if (event == null) {
+            return;
+        }
+
+        final StreamReadEvent streamReadEvent = (StreamReadEvent) event;
+        streamReadEvent.end();
+        if (streamReadEvent.shouldCommit()) {
+            streamReadEvent.streamName = streamName;
+            streamReadEvent.uploadHandle = uploadHandle;
+            streamReadEvent.bytes = bytes;
+            streamReadEvent.waitDuration = waitNanos;
+            streamReadEvent.commit();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object beginChunkWrite() {
+        if (!CHUNK_WRITE.isEnabled()) {
+            return null;
+        }
+
+        final ChunkWriteEvent event = new ChunkWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endChunkWrite(@Nullable final Object event, final String streamName, final int bytes) {
+        if (event == null) {
+            return;
+        }
+
+        final ChunkWriteEvent chunkWriteEvent = (ChunkWriteEvent) event;
+        chunkWriteEvent.end();
+        if (chunkWriteEvent.shouldCommit()) {
+            chunkWriteEvent.streamName = streamName;
+            chunkWriteEvent.bytes = bytes;
+            chunkWriteEvent.commit();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object beginAckParse() {
+        if (!ACK_PARSE.isEnabled()) {
+            return null;
+        }
+
+        final AckParseEvent event = new AckParseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAckParse(@Nullable final Object event, final String streamName, final long uploadHandle,
+                            final int bytes) {
+        if (event == null) {
+            return;
+        }
+
+        final AckParseEvent ackParseEvent = (AckParseEvent) event;
+        ackParseEvent.end();
+        if (ackParseEvent.shouldCommit()) {
+            ackParseEvent.streamName = streamName;
+            ackParseEvent.uploadHandle = uploadHandle;
+            ackParseEvent.bytes = bytes;
+            ackParseEvent.commit();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object beginFragmentAck() {
+        if (!FRAGMENT_ACK.isEnabled()) {
+            return null;
+        }
+
+        final FragmentAckEvent event = new FragmentAckEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFragmentAck(@Nullable final Object event, final String streamName, final long uploadHandle,
+                               final int ackType, final long timestamp) {
+        if (event == null) {
+            return;
+        }
+
+        final FragmentAckEvent fragmentAckEvent = (FragmentAckEvent) event;
+        fragmentAckEvent.end();
+        if (fragmentAckEvent.shouldCommit()) {
+            fragmentAckEvent.streamName = streamName;
+            fragmentAckEvent.uploadHandle = uploadHandle;
+            fragmentAckEvent.ackType = ackType;
+            fragmentAckEvent.timestamp = timestamp;
+            fragmentAckEvent.commit();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object beginServiceCall() {
+        if (!SERVICE_CALL.isEnabled()) {
+            return null;
+        }
+
+        final ServiceCallEvent event = new ServiceCallEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endServiceCall(@Nullable final Object event, final String operation, final String streamName,
+                               final int statusCode) {
+        if (event == null) {
+            return;
+        }
+
+        final ServiceCallEvent serviceCallEvent = (ServiceCallEvent) event;
+        serviceCallEvent.end();
+        if (serviceCallEvent.shouldCommit()) {
+            serviceCallEvent.operation = operation;
+            serviceCallEvent.streamName = streamName;
+            serviceCallEvent.statusCode = statusCode;
+            serviceCallEvent.commit();
+        }
+    }
+}
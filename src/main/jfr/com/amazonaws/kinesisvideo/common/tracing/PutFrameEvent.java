@@ -0,0 +1,34 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.amazonaws.kinesisvideo.PutFrame")
+@Label("Put Frame")
+@Category({ "Kinesis Video", "Producer" })
+@Description("Frames put into the native producer with one call, including the wait for the native lock")
+@StackTrace(false)
+@Threshold("1 ms")
+final class PutFrameEvent extends Event {
+    @Label("Stream Name")
+    String streamName;
+
+    @Label("Stream Handle")
+    long streamHandle;
+
+    @Label("Frames")
+    int frames;
+
+    @Label("Size")
+    @DataAmount
+    int bytes;
+
+    @Label("Key Frame")
+    boolean keyFrame;
+}
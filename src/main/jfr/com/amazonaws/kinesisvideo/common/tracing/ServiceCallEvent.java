@@ -0,0 +1,24 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.amazonaws.kinesisvideo.ServiceCall")
+@Label("Service Call")
+@Category({ "Kinesis Video", "Service" })
+@Description("Service call made for the native producer, up to the response headers for PutMedia")
+@StackTrace(false)
+final class ServiceCallEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Stream Name")
+    String streamName;
+
+    @Label("Status Code")
+    int statusCode;
+}
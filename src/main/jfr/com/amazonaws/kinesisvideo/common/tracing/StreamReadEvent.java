@@ -0,0 +1,33 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("com.amazonaws.kinesisvideo.StreamRead")
+@Label("Stream Read")
+@Category({ "Kinesis Video", "Upload" })
+@Description("Read of the upload data from the native producer, including the wait for the data availability")
+@StackTrace(false)
+@Threshold("1 ms")
+final class StreamReadEvent extends Event {
+    @Label("Stream Name")
+    String streamName;
+
+    @Label("Upload Handle")
+    long uploadHandle;
+
+    @Label("Bytes Read")
+    @DataAmount
+    int bytes;
+
+    @Label("Data Availability Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitDuration;
+}
@@ -0,0 +1,86 @@
+package com.amazonaws.kinesisvideo.ack;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+
+/**
+ * Time spent on one second worth of ACKs at 10k ACKs per second, received in 4 KB reads like the ACK consumer does,
+ * by {@link FragmentAckParser} and by the former conversion of every read to a string before handing it to the
+ * native parser. The native parsing itself is not part of the latter.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FragmentAckParserBenchmark {
+    private static final int ACKS_PER_SECOND = 10000;
+    private static final int READ_SIZE = 4096;
+    private static final String[] EVENT_TYPES = { "BUFFERING", "RECEIVED", "PERSISTED" };
+
+    private byte[] response;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < ACKS_PER_SECOND; i++) {
+            final String ack = "{\"EventType\":\"" + EVENT_TYPES[i % EVENT_TYPES.length] + "\","
+                    + "\"FragmentTimecode\":" + (1500000000000L + i / EVENT_TYPES.length * 2000) + ","
+                    + "\"FragmentNumber\":\"913438523331814323926820626" + (10000 + i / EVENT_TYPES.length) + "\"}";
+            builder.append(Integer.toHexString(ack.length())).append("\r\n").append(ack).append("\r\n");
+        }
+
+        response = builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public long parser(final Blackhole blackhole) {
+        final FragmentAckParser parser = new FragmentAckParser(new FragmentAckParser.Listener() {
+            @Override
+            public void onFragmentAck(@Nonnull final AckEventData eventData,
+                                      @Nonnull final KinesisVideoFragmentAck fragmentAck) {
+                blackhole.consume(fragmentAck);
+            }
+        }, FragmentAckParser.Framing.CHUNKED);
+
+        for (int offset = 0; offset < response.length; offset += READ_SIZE) {
+            parser.parse(response, offset, Math.min(READ_SIZE, response.length - offset));
+        }
+
+        return parser.getEventCount();
+    }
+
+    @Benchmark
+    public void stringPerRead(final Blackhole blackhole) {
+        for (int offset = 0; offset < response.length; offset += READ_SIZE) {
+            blackhole.consume(new String(response, offset, Math.min(READ_SIZE, response.length - offset),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FragmentAckParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.amazonaws.kinesisvideo.ack;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+
+/**
+ * FragmentAckParser tests
+ */
+public class FragmentAckParserTest {
+    private static final String HEADERS = "Content-Type: application/json\r\nTransfer-Encoding: chunked\r\n\r\n";
+    private static final String BUFFERING_ACK =
+            "{\"EventType\":\"BUFFERING\",\"FragmentTimecode\":1000,\"FragmentNumber\":\"91343852333181432392682062623\"}";
+    private static final String PERSISTED_ACK =
+            "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":3000,\"FragmentNumber\":\"91343852333181432392682062625\"}";
+    private static final String ERROR_ACK = "{\"EventType\":\"ERROR\",\"FragmentTimecode\":2000,"
+            + "\"FragmentNumber\":\"91343852333181432392682062624\",\"ErrorId\":4002,\"ErrorCode\":\"MAX_FRAGMENT_SIZE\"}";
+    private static final String IDLE_ACK = "{\"EventType\":\"IDLE\"}";
+
+    @Test
+    public void parsesChunkedAcksSplitAtEveryByte() {
+        final byte[] body = bytes(HEADERS + chunk(BUFFERING_ACK) + chunk(ERROR_ACK) + chunk(IDLE_ACK) + "0\r\n\r\n");
+
+        for (int split = 1; split < body.length; split++) {
+            final RecordingListener listener = new RecordingListener();
+            final FragmentAckParser parser = new FragmentAckParser(listener, FragmentAckParser.Framing.RESPONSE);
+            parser.parse(body, 0, split);
+            parser.parse(body, split, body.length - split);
+
+            assertEquals(3, listener.mAcks.size());
+            assertTrue(parser.isDone());
+            assertAck(listener.mAcks.get(0), FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, 1000,
+                    "91343852333181432392682062623", 0);
+            assertAck(listener.mAcks.get(1), FragmentAckType.FRAGMENT_ACK_TYPE_ERROR, 2000,
+                    "91343852333181432392682062624", 4002);
+            assertAck(listener.mAcks.get(2), FragmentAckType.FRAGMENT_ACK_TYPE_IDLE, 0, "", 0);
+        }
+    }
+
+    @Test
+    public void parsesByteAtATime() {
+        final byte[] body = bytes(chunk(BUFFERING_ACK + "\n" + PERSISTED_ACK));
+        final RecordingListener listener = new RecordingListener();
+        final FragmentAckParser parser = new FragmentAckParser(listener, FragmentAckParser.Framing.CHUNKED);
+        for (int i = 0; i < body.length; i++) {
+            parser.parse(body, i, 1);
+        }
+
+        assertEquals(2, listener.mAcks.size());
+        assertAck(listener.mAcks.get(1), FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 3000,
+                "91343852333181432392682062625", 0);
+        assertEquals(FragmentAckParser.EVENT_TYPE_PERSISTED, listener.mLastEventType);
+        assertEquals(3000, listener.mLastTimecode);
+    }
+
+    @Test
+    public void parsesEventSplitAcrossChunks() {
+        final int half = ERROR_ACK.length() / 2;
+        final byte[] body = bytes(chunk(ERROR_ACK.substring(0, half)) + chunk(ERROR_ACK.substring(half)));
+        final RecordingListener listener = new RecordingListener();
+        new FragmentAckParser(listener, FragmentAckParser.Framing.CHUNKED).parse(body, 0, body.length);
+
+        assertEquals(1, listener.mAcks.size());
+        assertAck(listener.mAcks.get(0), FragmentAckType.FRAGMENT_ACK_TYPE_ERROR, 2000,
+                "91343852333181432392682062624", 4002);
+    }
+
+    @Test
+    public void skipsUnknownKeysAndNestedValues() {
+        final byte[] body = bytes(chunk("{\"Extra\":{\"a\":[1,\"}\"],\"b\":null},\"EventType\":\"RECEIVED\","
+                + "\"Flag\":true,\"FragmentTimecode\":42,\"Escaped\":\"x\\\"}\",\"FragmentNumber\":\"7\"}"));
+        final RecordingListener listener = new RecordingListener();
+        new FragmentAckParser(listener, FragmentAckParser.Framing.CHUNKED).parse(body, 0, body.length);
+
+        assertEquals(1, listener.mAcks.size());
+        assertAck(listener.mAcks.get(0), FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, 42, "7", 0);
+    }
+
+    @Test
+    public void fallsBackToRawEventsWithoutChunking() {
+        final byte[] body = bytes(BUFFERING_ACK + IDLE_ACK);
+        final RecordingListener listener = new RecordingListener();
+        new FragmentAckParser(listener, FragmentAckParser.Framing.CHUNKED).parse(body, 0, body.length);
+
+        assertEquals(2, listener.mAcks.size());
+        assertEquals(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, listener.mAcks.get(0).getAckType().getIntType());
+    }
+
+    private static void assertAck(final KinesisVideoFragmentAck ack, final int type, final long timecode,
+                                  final String fragmentNumber, final int result) {
+        assertEquals(type, ack.getAckType().getIntType());
+        assertEquals(timecode, ack.getTimestamp());
+        assertEquals(fragmentNumber, ack.getSequenceNumber());
+        assertEquals(result, ack.getResult());
+    }
+
+    private static String chunk(final String data) {
+        return Integer.toHexString(data.length()) + "\r\n" + data + "\r\n";
+    }
+
+    private static byte[] bytes(final String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class RecordingListener implements FragmentAckParser.Listener {
+        private final List<KinesisVideoFragmentAck> mAcks = new ArrayList<KinesisVideoFragmentAck>();
+        private String mLastEventType;
+        private long mLastTimecode;
+
+        @Override
+        public void onFragmentAck(@Nonnull final AckEventData eventData,
+                                  @Nonnull final KinesisVideoFragmentAck fragmentAck) {
+            mAcks.add(fragmentAck);
+            mLastEventType = eventData.getType();
+            mLastTimecode = eventData.getFragmentTimecode();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.auth;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * KinesisVideoCredentialsCodec and DecodedCredentialsCache tests
+ */
+public class KinesisVideoCredentialsCodecTest {
+    private static final Date TEST_EXPIRATION = new Date(1500000000000L);
+
+    @Test
+    public void roundTripsSessionCredentials() throws IOException {
+        final KinesisVideoCredentials credentials =
+                new KinesisVideoCredentials("accessKey", "secret/K\u00e9y", "sessionToken", TEST_EXPIRATION);
+
+        final KinesisVideoCredentials decoded =
+                KinesisVideoCredentialsCodec.decode(KinesisVideoCredentialsCodec.encode(credentials));
+        assertEquals("accessKey", decoded.getAccessKey());
+        assertEquals("secret/K\u00e9y", decoded.getSecretKey());
+        assertEquals("sessionToken", decoded.getSessionToken());
+        assertEquals(TEST_EXPIRATION, decoded.getExpiration());
+    }
+
+    @Test
+    public void roundTripsCredentialsWithoutSessionToken() throws IOException {
+        final KinesisVideoCredentials decoded = KinesisVideoCredentialsCodec.decode(
+                KinesisVideoCredentialsCodec.encode(new KinesisVideoCredentials("accessKey", "secretKey")));
+        assertNull(decoded.getSessionToken());
+        assertEquals(KinesisVideoCredentials.CREDENTIALS_NEVER_EXPIRE, decoded.getExpiration());
+    }
+
+    @Test
+    public void rejectsMalformedTokens() {
+        final byte[] encoded = KinesisVideoCredentialsCodec.encode(
+                new KinesisVideoCredentials("accessKey", "secretKey", "sessionToken", TEST_EXPIRATION));
+
+        assertMalformed(Arrays.copyOf(encoded, encoded.length - 1));
+        assertMalformed(Arrays.copyOf(encoded, encoded.length + 1));
+        assertMalformed(new byte[0]);
+
+        final byte[] badLength = encoded.clone();
+        badLength[1] = (byte) 0x7f;
+        assertMalformed(badLength);
+
+        final byte[] badVersion = encoded.clone();
+        badVersion[0] = (byte) 0xac;
+        assertMalformed(badVersion);
+    }
+
+    @Test
+    public void cacheReturnsTheSameProviderForEqualTokens() throws Exception {
+        final DecodedCredentialsCache cache = new DecodedCredentialsCache();
+        final byte[] token = KinesisVideoCredentialsCodec.encode(new KinesisVideoCredentials("accessKey", "secretKey"));
+
+        final KinesisVideoCredentialsProvider provider = cache.getCredentialsProvider(token);
+        assertSame(provider, cache.getCredentialsProvider(token.clone()));
+        assertEquals("accessKey", provider.getCredentials().getAccessKey());
+
+        // Changing the caller's array doesn't affect the cached entry
+        token[token.length - 1]++;
+        assertNotSame(provider, cache.getCredentialsProvider(token));
+        assertEquals(2, cache.size());
+    }
+
+    private static void assertMalformed(final byte[] token) {
+        try {
+            KinesisVideoCredentialsCodec.decode(token);
+            fail("Decoding a malformed token should fail");
+        } catch (final IOException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.client.metrics.FragmentLatencyTracker.AckStage;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+
+/**
+ * FragmentLatencyTracker tests
+ */
+public class FragmentLatencyTrackerTest {
+    private static final long FRAGMENT_DURATION = 20000000L;
+
+    @Test
+    public void measuresEachAckStage() {
+        final FragmentLatencyTracker tracker = new FragmentLatencyTracker("stream");
+        final long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            final long timestamp = i * FRAGMENT_DURATION;
+            final long submitted = start + millis(2000 * i);
+            tracker.recordKeyFrame(timestamp, submitted);
+            tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, timestamp, submitted + millis(100));
+            tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, timestamp, submitted + millis(2100));
+            tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, timestamp, submitted + millis(2200 + i));
+        }
+
+        assertEquals(0, tracker.getPendingFragments());
+        assertEquals(100, tracker.getHistogram(AckStage.BUFFERING).getCount());
+        assertEquals(100000, tracker.getHistogram(AckStage.BUFFERING).getValueAtPercentile(50), 100000 * 0.04);
+        assertEquals(2100000, tracker.getHistogram(AckStage.RECEIVED).getValueAtPercentile(99), 2100000 * 0.04);
+
+        final LatencyHistogram persisted = tracker.getHistogram(AckStage.PERSISTED);
+        assertEquals(2299000, persisted.getMax());
+        assertEquals(2249000, persisted.getValueAtPercentile(50), 2249000 * 0.04);
+        assertTrue(tracker.toString().contains("PERSISTED: count 100"));
+    }
+
+    @Test
+    public void countsAcksWithoutKeyFrames() {
+        final FragmentLatencyTracker tracker = new FragmentLatencyTracker("stream");
+        final long now = System.nanoTime();
+        tracker.recordKeyFrame(0, now);
+        tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_ERROR, 0, now);
+        tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 0, now);
+        tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, FRAGMENT_DURATION, now);
+        tracker.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_IDLE, 0, now);
+
+        assertEquals(2, tracker.getUnmatchedAcks());
+        assertEquals(0, tracker.getHistogram(AckStage.PERSISTED).getCount());
+    }
+
+    @Test
+    public void expiresFragmentsWhichAreNeverPersisted() {
+        final FragmentLatencyTracker tracker = new FragmentLatencyTracker("stream");
+        final long start = System.nanoTime();
+        final long maxAge = TimeUnit.MINUTES.toNanos(FragmentLatencyTracker.MAX_AGE_MINUTES);
+        final int count = 3 * FragmentLatencyTracker.MAX_PENDING_FRAGMENTS;
+        for (int i = 0; i < count; i++) {
+            // Spread over twice the max age
+            tracker.recordKeyFrame(i * FRAGMENT_DURATION, start + 2 * maxAge / count * i);
+        }
+
+        assertTrue(tracker.getPendingFragments() <= 2 * FragmentLatencyTracker.MAX_PENDING_FRAGMENTS);
+        assertTrue(tracker.getExpiredFragments() > 0);
+        assertEquals(count, tracker.getPendingFragments() + tracker.getExpiredFragments());
+    }
+
+    private static long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,82 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogram tests
+ */
+public class LatencyHistogramTest {
+    private static final double PRECISION = 1.0 / LatencyHistogram.SUB_BUCKETS;
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        long previousUpperBound = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            final long upperBound = LatencyHistogram.upperBoundOf(i);
+            assertTrue(upperBound > previousUpperBound);
+            assertEquals(i, LatencyHistogram.indexOf(previousUpperBound + 1));
+            assertEquals(i, LatencyHistogram.indexOf(upperBound));
+            previousUpperBound = upperBound;
+        }
+        assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketPrecision() {
+        final Random random = new Random(7);
+        final long[] values = new long[100000];
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal around 200 ms
+            values[i] = (long) (200000 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (final double percentile : new double[] {50, 90, 99, 99.9, 100}) {
+            final long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals("p" + percentile, expected, histogram.getValueAtPercentile(percentile),
+                    expected * PRECISION);
+        }
+    }
+
+    @Test
+    public void recordsFromManyThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int values = 100000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= values; i++) {
+                        histogram.record(i);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals(threads * values, histogram.getCount());
+        assertEquals(values, histogram.getMax());
+        assertEquals((values + 1) / 2.0, histogram.getMean(), 0.001);
+        assertEquals(values / 2, histogram.getValueAtPercentile(50), values / 2 * PRECISION);
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+}
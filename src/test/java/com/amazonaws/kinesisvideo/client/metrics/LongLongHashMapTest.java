@@ -0,0 +1,71 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * LongLongHashMap tests against a HashMap
+ */
+public class LongLongHashMapTest {
+    private static final long NONE = -1;
+
+    @Test
+    public void behavesLikeAHashMap() {
+        final Random random = new Random(11);
+        final LongLongHashMap map = new LongLongHashMap(1024);
+        final Map<Long, Long> expected = new HashMap<Long, Long>();
+
+        for (int i = 0; i < 200000; i++) {
+            // Few distinct keys, spaced as fragment timestamps are, so that clusters form and get removed
+            final long key = random.nextInt(800) * 20000000L;
+            final int operation = random.nextInt(3);
+            if (operation == 0) {
+                assertTrue(map.put(key, i));
+                expected.put(key, (long) i);
+            } else if (operation == 1) {
+                final Long removed = expected.remove(key);
+                assertEquals(removed == null ? NONE : removed, map.remove(key, NONE));
+            } else {
+                final Long value = expected.get(key);
+                assertEquals(value == null ? NONE : value, map.get(key, NONE));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+    }
+
+    @Test
+    public void refusesPutsBeyondItsMaxSize() {
+        final LongLongHashMap map = new LongLongHashMap(100);
+        int stored = 0;
+        for (long key = 0; key < 1000; key++) {
+            if (map.put(key, key)) {
+                stored++;
+            }
+        }
+        assertTrue(stored >= 100);
+        assertTrue(stored < 1000);
+        assertEquals(stored, map.size());
+
+        // Existing keys can still be updated
+        assertTrue(map.put(0, 5));
+        assertEquals(5, map.get(0, NONE));
+    }
+
+    @Test
+    public void removesValuesBelowAThreshold() {
+        final LongLongHashMap map = new LongLongHashMap(100);
+        for (long key = 0; key < 50; key++) {
+            map.put(key * 7, key);
+        }
+
+        assertEquals(20, map.removeValuesBelow(20));
+        assertEquals(30, map.size());
+        assertEquals(NONE, map.get(19 * 7, NONE));
+        assertEquals(20, map.get(20 * 7, NONE));
+    }
+}
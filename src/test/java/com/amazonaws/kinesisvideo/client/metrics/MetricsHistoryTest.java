@@ -0,0 +1,33 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * MetricsHistory tests
+ */
+public class MetricsHistoryTest {
+    @Test
+    public void keepsTheLatestSnapshotsOldestFirst() {
+        final MetricsHistory<Integer> history = new MetricsHistory<Integer>(3);
+        assertNull(history.getLatest());
+        assertEquals(Collections.<Integer>emptyList(), history.getSnapshots());
+
+        history.add(1);
+        history.add(2);
+        assertEquals(Arrays.asList(1, 2), history.getSnapshots());
+
+        for (int i = 3; i <= 7; i++) {
+            history.add(i);
+        }
+        assertEquals(3, history.size());
+        assertEquals(Integer.valueOf(7), history.getLatest());
+        assertEquals(Arrays.asList(5, 6, 7), history.getSnapshots());
+        assertEquals(Arrays.asList(6, 7), history.getLatest(2));
+        assertEquals(Arrays.asList(5, 6, 7), history.getLatest(10));
+    }
+}
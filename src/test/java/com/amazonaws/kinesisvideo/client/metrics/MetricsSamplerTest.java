@@ -0,0 +1,106 @@
+package com.amazonaws.kinesisvideo.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoMetrics;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoProducer;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+/**
+ * MetricsSampler tests, with producer and stream proxies standing in for the native ones
+ */
+public class MetricsSamplerTest {
+    private final KinesisVideoMetrics clientMetrics = new KinesisVideoMetrics();
+    private final KinesisVideoStreamMetrics streamMetrics = new KinesisVideoStreamMetrics();
+    private final StringBuilder logged = new StringBuilder();
+    private final Log log = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, final String tag, final String message) {
+            logged.append(message).append('\n');
+        }
+    }, LogLevel.DEBUG, "MetricsSamplerTest");
+
+    @Test
+    public void samplesTheClientAndEachStream() {
+        final MetricsSampler sampler = new MetricsSampler(proxy(KinesisVideoProducer.class, "getMetrics",
+                clientMetrics), 2, log);
+        sampler.addStream(stream("b", streamMetrics));
+        sampler.addStream(stream("a", new ProducerException("Stream is gone", 1)));
+
+        for (int i = 1; i <= 3; i++) {
+            clientMetrics.setMetrics(1000, i, 1000 - i, 0, 25, 100 * i);
+            streamMetrics.setMetrics(0, i, 0, 20000000L * i, 25.0, 50 * i);
+            sampler.sample(i);
+        }
+
+        final List<ClientMetricsSnapshot> client = sampler.getClientMetrics().getSnapshots();
+        assertEquals(2, client.size());
+        assertEquals(2, client.get(0).getTimestampMillis());
+        assertEquals(300, client.get(1).getTotalTransferRate());
+
+        final StreamMetricsSnapshot latest = sampler.getStreamMetrics("b").getLatest();
+        assertEquals(3, latest.getTimestampMillis());
+        assertEquals(6000, latest.getCurrentViewDurationInMillis());
+        assertEquals(150, latest.getCurrentTransferRate());
+
+        assertNull(sampler.getStreamMetrics("a").getLatest());
+        assertEquals(Arrays.asList("a", "b"), sampler.getStreamNames());
+        assertTrue(logged.toString().contains("Could not sample the metrics of stream a"));
+        assertTrue(logged.toString().contains("Current transfer rate: 150"));
+
+        sampler.removeStream("b");
+        sampler.sample(4);
+        assertEquals(3, sampler.getStreamMetrics("b").getLatest().getTimestampMillis());
+    }
+
+    private static KinesisVideoProducerStream stream(final String name, final Object metrics) {
+        final KinesisVideoProducerStream stream = proxy(KinesisVideoProducerStream.class, "getMetrics", metrics);
+        return proxy(KinesisVideoProducerStream.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("getStreamName".equals(method.getName())) {
+                    return name;
+                }
+                try {
+                    return method.invoke(stream, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+
+    /**
+     * @param result Returned or thrown by the method, other methods aren't expected to be called
+     */
+    private static <T> T proxy(final Class<T> type, final String methodName, final Object result) {
+        return proxy(type, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                assertEquals(methodName, method.getName());
+                if (result instanceof Throwable) {
+                    throw (Throwable) result;
+                }
+                return result;
+            }
+        });
+    }
+
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+}
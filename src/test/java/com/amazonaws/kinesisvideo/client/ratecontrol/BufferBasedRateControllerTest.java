@@ -0,0 +1,102 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * BufferBasedRateController tests on a simulated uplink
+ */
+public class BufferBasedRateControllerTest {
+    private static final long NOMINAL_BPS = 2000000;
+    private static final long FAST_BPS = 4000000;
+    private static final long SLOW_BPS = 1000000;
+    private static final long CRAWL_BPS = 300000;
+    private static final long PHASE_MILLIS = 120000;
+
+    @Test
+    public void uncontrolledStreamDropsFragmentsOnASlowUplink() {
+        final SimulatedUplink uplink = new SimulatedUplink(NOMINAL_BPS, null);
+        uplink.run(PHASE_MILLIS, SLOW_BPS);
+
+        assertTrue(uplink.getDroppedFragments() > 0);
+        assertEquals(SimulatedUplink.BUFFER_CAPACITY_MILLIS, uplink.getMaxBufferMillis(), 1000);
+    }
+
+    @Test
+    public void keepsTheBacklogBoundedAndRecovers() {
+        final SimulatedUplink uplink = new SimulatedUplink(NOMINAL_BPS,
+                new BufferBasedRateController(BufferBasedRateController.DEFAULT_TARGET_BUFFER_MILLIS));
+
+        uplink.run(PHASE_MILLIS / 2, FAST_BPS);
+        assertEquals(RateTarget.NOMINAL, uplink.getTarget());
+        assertEquals(0, uplink.getTargetChanges());
+        assertTrue(uplink.getMaxBufferMillis() < 100);
+
+        // The uplink drops to half the nominal bitrate
+        uplink.run(PHASE_MILLIS / 2, SLOW_BPS);
+        uplink.takeProducedBitsPerSecond(PHASE_MILLIS);
+        uplink.run(PHASE_MILLIS / 2, SLOW_BPS);
+        final double producedBps = uplink.takeProducedBitsPerSecond(PHASE_MILLIS / 2);
+        assertTrue("Produced " + producedBps, producedBps <= SLOW_BPS);
+        assertTrue("Produced " + producedBps, producedBps > SLOW_BPS * 0.6);
+
+        // Then to below the lowest bitrate, where the frame rate gives way as well
+        uplink.run(PHASE_MILLIS, CRAWL_BPS);
+        assertTrue(uplink.getTarget().getFrameRateFactor() < 1.0);
+
+        // Then it comes back
+        uplink.run(PHASE_MILLIS, FAST_BPS);
+        assertEquals(RateTarget.NOMINAL, uplink.getTarget());
+        assertTrue(uplink.getBufferMillis() < 100);
+
+        assertEquals(0, uplink.getDroppedFragments());
+        assertTrue("Peak buffer " + uplink.getMaxBufferMillis(),
+                uplink.getMaxBufferMillis() < 3 * BufferBasedRateController.DEFAULT_TARGET_BUFFER_MILLIS);
+    }
+
+    @Test
+    public void tracksAnOscillatingUplink() {
+        final SimulatedUplink uplink = new SimulatedUplink(NOMINAL_BPS, new BufferBasedRateController());
+        for (int i = 0; i < 10; i++) {
+            uplink.run(PHASE_MILLIS / 4, i % 2 == 0 ? FAST_BPS : SLOW_BPS);
+        }
+
+        assertEquals(0, uplink.getDroppedFragments());
+        assertTrue("Peak buffer " + uplink.getMaxBufferMillis(),
+                uplink.getMaxBufferMillis() < 3 * BufferBasedRateController.DEFAULT_TARGET_BUFFER_MILLIS);
+    }
+
+    @Test
+    public void cutsOnLatencyPressureAndDroppedFragments() {
+        final BufferBasedRateController controller = new BufferBasedRateController(4000);
+        assertEquals(RateTarget.NOMINAL, controller.update(sample(0, false, 0)));
+
+        final RateTarget pressured = controller.update(sample(0, true, 0));
+        assertTrue(pressured.getBitrateFactor() < 1.0);
+        assertEquals(1.0, pressured.getFrameRateFactor(), 0);
+
+        final RateTarget dropped = controller.update(sample(0, false, 1));
+        assertTrue(dropped.getBitrateFactor() < pressured.getBitrateFactor());
+
+        // Held for a few samples before it goes up again
+        for (int i = 0; i < 3; i++) {
+            assertEquals(dropped, controller.update(sample(0, false, 0)));
+        }
+        assertTrue(controller.update(sample(0, false, 0)).getBitrateFactor() > dropped.getBitrateFactor());
+    }
+
+    @Test
+    public void lowersTheFrameRateOnlyBelowTheLowestBitrate() {
+        assertEquals(RateTarget.NOMINAL, BufferBasedRateController.toTarget(1.0));
+        assertEquals(new RateTarget(0.5, 1.0), BufferBasedRateController.toTarget(0.5));
+        assertEquals(new RateTarget(BufferBasedRateController.MIN_BITRATE_FACTOR, 0.4),
+                BufferBasedRateController.toTarget(0.1));
+    }
+
+    private static StreamRateSample sample(final long bufferMillis, final boolean latencyPressure,
+                                           final int droppedFragments) {
+        return new StreamRateSample(1000, bufferMillis, 40000, 0, StreamRateSample.NO_ACK_LATENCY,
+                latencyPressure, false, droppedFragments);
+    }
+}
@@ -0,0 +1,207 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
+
+/**
+ * Stream buffer drained by an uplink of varying capacity, on a virtual clock.
+ * <p>
+ * The media source produces a chunk of content every step at its nominal bitrate scaled by its rate target. The
+ * uplink sends the oldest content first. Content which has waited longer than the buffer capacity is dropped a
+ * fragment at a time, as the producer would. Fragments are acked as buffering when their first byte is sent and as
+ * received when the first byte of the next one is.
+ */
+final class SimulatedUplink {
+    static final long STEP_MILLIS = 10;
+    static final long SAMPLE_MILLIS = 1000;
+    static final long FRAGMENT_MILLIS = 2000;
+    static final long BUFFER_CAPACITY_MILLIS = 40000;
+
+    private static final OutputChannel SILENT = new OutputChannel() {
+        @Override
+        public void print(final int level, final String tag, final String message) {
+            // Quiet
+        }
+    };
+
+    private static final class Chunk {
+        private final long fragment;
+        private boolean firstOfFragment;
+        private double bytes;
+
+        private Chunk(final long fragment, final boolean firstOfFragment, final double bytes) {
+            this.fragment = fragment;
+            this.firstOfFragment = firstOfFragment;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Media source standing in for an encoder.
+     */
+    private static final class SimulatedMediaSource implements RateControlledMediaSource {
+        private RateTarget target = RateTarget.NOMINAL;
+        private int changes;
+
+        @Override
+        public void onTargetRateChanged(@Nonnull final RateTarget target) {
+            this.target = target;
+            changes++;
+        }
+
+        @Override
+        public MediaSourceState getMediaSourceState() {
+            return MediaSourceState.RUNNING;
+        }
+
+        @Override
+        public MediaSourceConfiguration getConfiguration() {
+            return null;
+        }
+
+        @Override
+        public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) {
+        }
+
+        @Override
+        public void configure(final MediaSourceConfiguration configuration) {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public boolean isStopped() {
+            return false;
+        }
+
+        @Override
+        public void free() {
+        }
+    }
+
+    private final double nominalBytesPerSecond;
+    private final SimulatedMediaSource mediaSource = new SimulatedMediaSource();
+    private final StreamRateMonitor monitor;
+    private final ArrayDeque<Chunk> buffer = new ArrayDeque<Chunk>();
+    private final long startNanos = System.nanoTime();
+    private long nowMillis;
+    private long droppedFragments;
+    private long maxBufferMillis;
+    private double producedBytes;
+
+    /**
+     * @param controller Controller of the stream, or null to produce at the nominal rate throughout
+     */
+    SimulatedUplink(final long nominalBitsPerSecond, final RateController controller) {
+        nominalBytesPerSecond = nominalBitsPerSecond / 8.0;
+        monitor = controller == null ? null : new StreamRateMonitor("simulated", new DefaultStreamCallbacks(),
+                controller, mediaSource, BUFFER_CAPACITY_MILLIS, new Log(SILENT));
+    }
+
+    /**
+     * Runs for the given time with the uplink sending the given bits per second.
+     */
+    void run(final long durationMillis, final long uplinkBitsPerSecond) {
+        final long end = nowMillis + durationMillis;
+        while (nowMillis < end) {
+            produce();
+            send(uplinkBitsPerSecond / 8.0 * STEP_MILLIS / 1000);
+            dropExpired();
+            nowMillis += STEP_MILLIS;
+            maxBufferMillis = Math.max(maxBufferMillis, getBufferMillis());
+
+            if (monitor != null && nowMillis % SAMPLE_MILLIS == 0) {
+                final long bufferMillis = getBufferMillis();
+                monitor.update(monitor.takeSample(bufferMillis, 0, nanos()));
+            }
+        }
+    }
+
+    long getBufferMillis() {
+        return buffer.size() * STEP_MILLIS;
+    }
+
+    long getMaxBufferMillis() {
+        return maxBufferMillis;
+    }
+
+    long getDroppedFragments() {
+        return droppedFragments;
+    }
+
+    RateTarget getTarget() {
+        return mediaSource.target;
+    }
+
+    int getTargetChanges() {
+        return mediaSource.changes;
+    }
+
+    /**
+     * @return Average bits per second produced since the previous call
+     */
+    double takeProducedBitsPerSecond(final long durationMillis) {
+        final double bits = producedBytes * 8;
+        producedBytes = 0;
+        return bits * 1000 / durationMillis;
+    }
+
+    private void produce() {
+        final RateTarget target = mediaSource.target;
+        final double bytes = nominalBytesPerSecond * STEP_MILLIS / 1000
+                * target.getBitrateFactor() * target.getFrameRateFactor();
+        producedBytes += bytes;
+        buffer.add(new Chunk(nowMillis / FRAGMENT_MILLIS, nowMillis % FRAGMENT_MILLIS == 0, bytes));
+    }
+
+    private void send(final double capacityBytes) {
+        double remaining = capacityBytes;
+        while (remaining > 0 && !buffer.isEmpty()) {
+            final Chunk chunk = buffer.peek();
+            if (chunk.firstOfFragment && monitor != null) {
+                // The first byte of a fragment is about to go out
+                chunk.firstOfFragment = false;
+                monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, chunk.fragment - 1, nanos());
+                monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, chunk.fragment, nanos());
+            }
+
+            final double sent = Math.min(remaining, chunk.bytes);
+            chunk.bytes -= sent;
+            remaining -= sent;
+            if (chunk.bytes <= 0) {
+                buffer.poll();
+            }
+        }
+    }
+
+    private void dropExpired() {
+        while (getBufferMillis() > BUFFER_CAPACITY_MILLIS) {
+            final long fragment = buffer.peek().fragment;
+            while (!buffer.isEmpty() && buffer.peek().fragment == fragment) {
+                buffer.poll();
+            }
+            droppedFragments++;
+        }
+    }
+
+    private long nanos() {
+        return startNanos + TimeUnit.MILLISECONDS.toNanos(nowMillis);
+    }
+}
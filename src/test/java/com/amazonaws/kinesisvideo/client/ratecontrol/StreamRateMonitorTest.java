@@ -0,0 +1,160 @@
+package com.amazonaws.kinesisvideo.client.ratecontrol;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.client.mediasource.RateControlledMediaSource;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
+
+/**
+ * StreamRateMonitor tests
+ */
+public class StreamRateMonitorTest {
+    private static final long BUFFER_CAPACITY_MILLIS = 40000;
+
+    private final List<StreamRateSample> samples = new ArrayList<StreamRateSample>();
+    private final List<RateTarget> targets = new ArrayList<RateTarget>();
+    private int droppedFragmentReports;
+    private RateTarget nextTarget = RateTarget.NOMINAL;
+
+    private final StreamRateMonitor monitor = new StreamRateMonitor("stream",
+            new DefaultStreamCallbacks() {
+                @Override
+                public void droppedFragmentReport(final long fragmentTimecode) {
+                    droppedFragmentReports++;
+                }
+            },
+            new RateController() {
+                @Nonnull
+                @Override
+                public RateTarget update(@Nonnull final StreamRateSample sample) {
+                    samples.add(sample);
+                    return nextTarget;
+                }
+            },
+            new TargetRecorder(),
+            BUFFER_CAPACITY_MILLIS,
+            new Log(new OutputChannel() {
+                @Override
+                public void print(final int level, final String tag, final String message) {
+                    // Quiet
+                }
+            }));
+
+    @Test
+    public void samplesWhatHappenedSinceThePreviousSample() throws ProducerException {
+        final long start = System.nanoTime();
+        monitor.streamLatencyPressure(1000);
+        monitor.droppedFragmentReport(1);
+        monitor.droppedFragmentReport(2);
+        monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, 10, start);
+        monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, 20, start + millis(1000));
+        monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, 10, start + millis(2500));
+        monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, 20, start + millis(3000));
+
+        final StreamRateSample first = monitor.takeSample(1500, 250000, start + millis(3000));
+        assertEquals(1500, first.getBufferDurationMillis());
+        assertEquals(BUFFER_CAPACITY_MILLIS, first.getBufferCapacityMillis());
+        assertEquals(250000, first.getTransferRateBytesPerSecond());
+        assertEquals(2500, first.getAckLatencyMillis());
+        assertTrue(first.isLatencyPressure());
+        assertFalse(first.isUnderflow());
+        assertEquals(2, first.getDroppedFragments());
+        assertEquals(2, droppedFragmentReports);
+
+        monitor.streamUnderflowReport();
+        // A received ack without a buffering one is ignored
+        monitor.recordAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, 30, start + millis(3500));
+        final StreamRateSample second = monitor.takeSample(0, 0, start + millis(4000));
+        assertEquals(1000, second.getElapsedMillis());
+        assertEquals(StreamRateSample.NO_ACK_LATENCY, second.getAckLatencyMillis());
+        assertFalse(second.isLatencyPressure());
+        assertTrue(second.isUnderflow());
+        assertEquals(0, second.getDroppedFragments());
+    }
+
+    @Test
+    public void passesOnlyChangedTargetsOn() {
+        final long start = System.nanoTime();
+        monitor.update(monitor.takeSample(0, 0, start));
+        assertTrue(targets.isEmpty());
+
+        nextTarget = new RateTarget(0.5, 1.0);
+        monitor.update(monitor.takeSample(0, 0, start + millis(1000)));
+        monitor.update(monitor.takeSample(0, 0, start + millis(2000)));
+        nextTarget = RateTarget.NOMINAL;
+        monitor.update(monitor.takeSample(0, 0, start + millis(3000)));
+
+        assertEquals(4, samples.size());
+        assertEquals(2, targets.size());
+        assertEquals(new RateTarget(0.5, 1.0), targets.get(0));
+        assertEquals(RateTarget.NOMINAL, targets.get(1));
+        assertEquals(RateTarget.NOMINAL, monitor.getTarget());
+    }
+
+    @Test
+    public void doesNothingUntilAttached() {
+        monitor.run();
+        assertTrue(samples.isEmpty());
+    }
+
+    private static long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private final class TargetRecorder implements RateControlledMediaSource {
+        @Override
+        public void onTargetRateChanged(@Nonnull final RateTarget target) {
+            targets.add(target);
+        }
+
+        @Override
+        public MediaSourceState getMediaSourceState() {
+            return MediaSourceState.RUNNING;
+        }
+
+        @Override
+        public MediaSourceConfiguration getConfiguration() {
+            return null;
+        }
+
+        @Override
+        public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) {
+        }
+
+        @Override
+        public void configure(final MediaSourceConfiguration configuration) {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public boolean isStopped() {
+            return false;
+        }
+
+        @Override
+        public void free() {
+        }
+    }
+}
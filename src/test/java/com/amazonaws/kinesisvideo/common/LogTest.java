@@ -2,6 +2,10 @@ package com.amazonaws.kinesisvideo.common;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.annotation.Nonnull;
 
 import org.junit.Before;
@@ -249,4 +253,87 @@ public class LogTest {
         assertEquals(TEST_DEFAULT_TAG_NAME + ".LogTest", mTag);
         assertEquals(LogLevel.INFO.getLogLevel(), mLogLevel);
     }
+
+    @Test
+    public void disabledLevelSkipsFormattingTest() {
+        final AtomicInteger formatted = new AtomicInteger();
+        final Object argument = new Object() {
+            @Override
+            public String toString() {
+                formatted.incrementAndGet();
+                return "argument";
+            }
+        };
+
+        mLog.debug("Not logged %s", argument);
+        mLog.setCurrentLogLevel(LogLevel.ASSERT);
+        mLog.error("Not logged %s", argument);
+        mLog.exception(new KinesisVideoException(TEST_LOG_MESSAGE), "Not logged %s", argument);
+        assertEquals(0, formatted.get());
+
+        mLog.assrt("Logged %s", argument);
+        assertEquals("Logged argument", mMessage);
+        assertEquals(1, formatted.get());
+    }
+
+    @Test
+    public void parameterizedExceptionTest() {
+        mLog.exception(new KinesisVideoException(TEST_LOG_MESSAGE), TEST_PARAMETERIZED_LOG_MESSAGE,
+                TEST_DEFAULT_TAG_NAME, 1);
+        assertTrue(mMessage, mMessage.endsWith("T" + Thread.currentThread().getId()
+                + ": EXCEPTION: KinesisVideoException: " + TEST_LOGGED_MESSAGE + 1 + ": " + TEST_LOG_MESSAGE));
+        assertEquals(LogLevel.ERROR.getLogLevel(), mLogLevel);
+    }
+
+    @Test
+    public void argumentLoggingWhileFormattedTest() {
+        final Object argument = new Object() {
+            @Override
+            public String toString() {
+                mLog.info("Nested %d", 1);
+                return "outer";
+            }
+        };
+
+        mLog.info("Message %s %d", argument, 2);
+        assertEquals("Message outer 2", mMessage);
+    }
+
+    @Test
+    public void concurrentFormattingTest() throws InterruptedException {
+        final int threadCount = 8;
+        final int messageCount = 10000;
+        final AtomicInteger mismatches = new AtomicInteger();
+        final Log log = new Log(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                final String[] parts = message.split(" ");
+                if (!parts[1].equals(parts[2])) {
+                    mismatches.incrementAndGet();
+                }
+            }
+        });
+
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messageCount; i++) {
+                        final String value = thread + "-" + i;
+                        log.info("Message %s %s", value, value);
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, mismatches.get());
+    }
 }
@@ -0,0 +1,71 @@
+package com.amazonaws.kinesisvideo.common.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+/**
+ * Compares copying a heap frame into a new direct buffer, as {@link KinesisVideoFrame#getData()} does, with copying
+ * it into a buffer leased from {@link DirectBufferArena}.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation rates. Direct memory doesn't show up there, only the buffer
+ * objects and the cleaners which free it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=256m")
+public class DirectBufferArenaBenchmark {
+    @Param({ "16384", "262144" })
+    private int frameSize;
+
+    private KinesisVideoFrame frame;
+    private DirectBufferArena arena;
+
+    @Setup
+    public void setup() {
+        frame = new KinesisVideoFrame(0, 0, 0, 0, 0, ByteBuffer.wrap(new byte[frameSize]));
+        arena = new DirectBufferArena(DirectBufferArena.DEFAULT_MAX_BYTES,
+                new Log(Log.SYSTEM_OUT, LogLevel.WARN, "DirectBufferArenaBenchmark"));
+    }
+
+    @Benchmark
+    public int allocateDirect() {
+        final KinesisVideoFrame directFrame = frame.copyTo(ByteBuffer.allocateDirect(frame.getSize()));
+        return directFrame.getSize();
+    }
+
+    @Benchmark
+    public int leaseFromArena() {
+        final DirectBufferArena.Lease lease = arena.tryLease(frame.getSize());
+        try {
+            return frame.copyTo(lease.getBuffer()).getSize();
+        } finally {
+            lease.release();
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DirectBufferArenaBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.amazonaws.kinesisvideo.common.buffer;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+
+/**
+ * DirectBufferArena tests
+ */
+public class DirectBufferArenaTest {
+    private static final int KB = 1024;
+    private static final Log LOG = new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "DirectBufferArenaTest");
+
+    @Test
+    public void reusesBuffersOfTheSameSizeClass() {
+        final DirectBufferArena arena = new DirectBufferArena(1024 * KB, LOG);
+
+        final DirectBufferArena.Lease lease = arena.tryLease(100 * KB);
+        final ByteBuffer buffer = lease.getBuffer();
+        assertTrue(buffer.isDirect());
+        assertEquals(0, buffer.position());
+        assertEquals(100 * KB, buffer.limit());
+        assertEquals(128 * KB, buffer.capacity());
+        buffer.put((byte) 1);
+        lease.release();
+
+        final DirectBufferArena.Lease sameClass = arena.tryLease(120 * KB);
+        assertSame(buffer, sameClass.getBuffer());
+        assertEquals(0, sameClass.getBuffer().position());
+        assertEquals(120 * KB, sameClass.getBuffer().remaining());
+
+        final DirectBufferArena.Lease smallerClass = arena.tryLease(10);
+        assertEquals(KB, smallerClass.getBuffer().capacity());
+
+        assertEquals(2, arena.getAllocationCount());
+        assertEquals(1, arena.getReuseCount());
+        assertEquals(129 * KB, arena.getAllocatedBytes());
+        assertEquals(2, arena.getOutstandingLeaseCount());
+    }
+
+    @Test
+    public void dropsFreeBuffersAndRefusesLeasesOverTheBudget() {
+        final DirectBufferArena arena = new DirectBufferArena(256 * KB, LOG);
+
+        arena.tryLease(128 * KB).release();
+        final DirectBufferArena.Lease lease = arena.tryLease(64 * KB);
+        assertEquals(192 * KB, arena.getAllocatedBytes());
+
+        // The free 128 KB buffer makes room for this one
+        final DirectBufferArena.Lease second = arena.tryLease(100 * KB);
+        assertNotNull(second);
+        assertEquals(192 * KB, arena.getAllocatedBytes());
+
+        assertNull(arena.tryLease(128 * KB));
+        assertEquals(1, arena.getRejectionCount());
+
+        second.release();
+        lease.release();
+        arena.trim();
+        assertEquals(0, arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void allocatesLargeBuffersWithoutPoolingThem() {
+        final DirectBufferArena arena = new DirectBufferArena(64 * 1024 * KB, LOG);
+
+        final int size = 16 * 1024 * KB + 1;
+        final DirectBufferArena.Lease lease = arena.tryLease(size);
+        assertEquals(size, lease.getBuffer().capacity());
+        lease.release();
+
+        assertEquals(0, arena.getAllocatedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsReleasingTwice() {
+        final DirectBufferArena.Lease lease = new DirectBufferArena(KB, LOG).tryLease(KB);
+        lease.release();
+        lease.release();
+    }
+
+    @Test
+    public void detectsLeakedLeases() throws InterruptedException {
+        final DirectBufferArena arena = new DirectBufferArena(1024 * KB, LOG);
+        leak(arena);
+        assertEquals(1, arena.getOutstandingLeaseCount());
+
+        for (int i = 0; i < 50 && arena.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, arena.getLeakCount());
+        assertEquals(0, arena.getOutstandingLeaseCount());
+        assertEquals(0, arena.getAllocatedBytes());
+    }
+
+    private static void leak(final DirectBufferArena arena) {
+        assertNotNull(arena.tryLease(KB));
+    }
+}
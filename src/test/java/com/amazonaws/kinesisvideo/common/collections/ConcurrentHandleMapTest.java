@@ -0,0 +1,189 @@
+package com.amazonaws.kinesisvideo.common.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * ConcurrentHandleMap tests against a HashMap, and with concurrent registrations, removals and lookups
+ */
+public class ConcurrentHandleMapTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int STREAMS_PER_WRITER = 2000;
+    private static final int ROUNDS = 20;
+    private static final long WAIT_SECONDS = 60;
+
+    /**
+     * Stream handles are pointers of the native producer
+     */
+    private static final long STREAM_HANDLE_BASE = 0x7f3a5c000000L;
+
+    @Test
+    public void behavesLikeAHashMap() {
+        final Random random = new Random(7);
+        final ConcurrentHandleMap<String> map = new ConcurrentHandleMap<String>();
+        final Map<Long, String> expected = new HashMap<Long, String>();
+
+        for (int i = 0; i < 200000; i++) {
+            // Upload handles are sequential, zero included
+            final long handle = random.nextInt(600);
+            final int operation = random.nextInt(3);
+            if (operation == 0) {
+                final String value = String.valueOf(i);
+                assertEquals(expected.put(handle, value), map.put(handle, value));
+            } else if (operation == 1) {
+                assertEquals(expected.remove(handle), map.remove(handle));
+            } else {
+                assertEquals(expected.get(handle), map.get(handle));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        assertEquals(new HashSet<String>(expected.values()), new HashSet<String>(map.values()));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    public void removesOnlyTheGivenValue() {
+        final ConcurrentHandleMap<String> map = new ConcurrentHandleMap<String>();
+        final String first = "first";
+        final String second = "second";
+        map.put(1, first);
+        map.put(1, second);
+
+        assertFalse(map.remove(1, first));
+        assertSame(second, map.get(1));
+        assertTrue(map.remove(1, second));
+        assertNull(map.get(1));
+        assertFalse(map.remove(1, second));
+    }
+
+    @Test
+    public void lookupsSeeEveryRegisteredHandleWhileOthersComeAndGo() throws Exception {
+        final ConcurrentHandleMap<Long> map = new ConcurrentHandleMap<Long>();
+
+        // Streams living throughout, which the native callbacks keep looking up
+        final long[] pinned = new long[STREAMS_PER_WRITER];
+        for (int i = 0; i < pinned.length; i++) {
+            pinned[i] = streamHandle(WRITERS, i);
+            map.put(pinned[i], pinned[i]);
+        }
+
+        final ExecutorService threads = Executors.newFixedThreadPool(WRITERS + READERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final List<Future<Long>> writers = new ArrayList<Future<Long>>();
+        final List<Future<Long>> readers = new ArrayList<Future<Long>>();
+        try {
+            for (int writer = 0; writer < WRITERS; writer++) {
+                writers.add(threads.submit(registerAndRemove(map, writer, start)));
+            }
+            for (int reader = 0; reader < READERS; reader++) {
+                readers.add(threads.submit(lookUp(map, pinned, start, writing)));
+            }
+
+            start.countDown();
+            for (final Future<Long> writer : writers) {
+                writer.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+
+            for (final Future<Long> reader : readers) {
+                assertTrue(reader.get(WAIT_SECONDS, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // Each writer leaves the odd streams of its last round
+        assertEquals(pinned.length + WRITERS * STREAMS_PER_WRITER / 2, map.size());
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int i = 0; i < STREAMS_PER_WRITER; i++) {
+                final long handle = streamHandle(writer, i);
+                assertEquals(i % 2 == 1 ? Long.valueOf(handle) : null, map.get(handle));
+            }
+        }
+        for (final long handle : pinned) {
+            assertEquals(Long.valueOf(handle), map.get(handle));
+        }
+    }
+
+    /**
+     * Registers streams of its own and removes them again, checking what it sees after each update
+     */
+    private static Callable<Long> registerAndRemove(final ConcurrentHandleMap<Long> map, final int writer,
+                                                    final CountDownLatch start) {
+        return new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                start.await();
+                long updates = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (int i = 0; i < STREAMS_PER_WRITER; i++) {
+                        final long handle = streamHandle(writer, i);
+                        map.put(handle, handle);
+                        assertEquals(Long.valueOf(handle), map.get(handle));
+                        updates++;
+                    }
+
+                    final boolean last = round == ROUNDS - 1;
+                    for (int i = 0; i < STREAMS_PER_WRITER; i++) {
+                        final long handle = streamHandle(writer, i);
+                        if (!last || i % 2 == 0) {
+                            assertEquals(Long.valueOf(handle), map.remove(handle));
+                            assertNull(map.get(handle));
+                            updates++;
+                        }
+                    }
+                }
+                return updates;
+            }
+        };
+    }
+
+    /**
+     * Looks up the pinned streams until the writers are done, failing on any miss
+     */
+    private static Callable<Long> lookUp(final ConcurrentHandleMap<Long> map, final long[] pinned,
+                                         final CountDownLatch start, final AtomicBoolean writing) {
+        return new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                start.await();
+                long lookups = 0;
+                do {
+                    for (final long handle : pinned) {
+                        final Long value = map.get(handle);
+                        if (value == null || value != handle) {
+                            throw new AssertionError("Lost stream handle " + handle + " after " + lookups);
+                        }
+                        lookups++;
+                    }
+                } while (writing.get());
+                return lookups;
+            }
+        };
+    }
+
+    private static long streamHandle(final int writer, final int index) {
+        // Aligned allocations of a few hundred bytes
+        return STREAM_HANDLE_BASE + ((long) writer * STREAMS_PER_WRITER + index) * 512;
+    }
+}
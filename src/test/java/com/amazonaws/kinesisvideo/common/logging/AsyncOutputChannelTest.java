@@ -0,0 +1,127 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * AsyncOutputChannel tests
+ */
+public class AsyncOutputChannelTest {
+    private static final String TAG = "AsyncOutputChannelTest";
+
+    /**
+     * Records the messages, optionally blocking until released
+     */
+    private static final class RecordingChannel implements OutputChannel {
+        private final List<String> mMessages = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch mRelease;
+        private volatile Thread mPrintingThread;
+
+        private RecordingChannel(final CountDownLatch release) {
+            mRelease = release;
+        }
+
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            mPrintingThread = Thread.currentThread();
+            try {
+                mRelease.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mMessages.add(message);
+        }
+    }
+
+    @Test
+    public void printsInOrderOnTheWriterThread() throws InterruptedException {
+        final RecordingChannel recording = new RecordingChannel(new CountDownLatch(0));
+        final AsyncOutputChannel channel = new AsyncOutputChannel(recording);
+        final Log log = new Log(channel, LogLevel.DEBUG, TAG);
+
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            log.debug("Message %d", i);
+            expected.add("Message " + i);
+        }
+        channel.flush();
+
+        assertEquals(expected, recording.mMessages);
+        assertNotSame(Thread.currentThread(), recording.mPrintingThread);
+        assertEquals(0, channel.getDroppedCount());
+        channel.close();
+    }
+
+    @Test
+    public void dropsNewestWhenFull() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingChannel recording = new RecordingChannel(release);
+        final AsyncOutputChannel channel =
+                new AsyncOutputChannel(recording, 4, AsyncOutputChannel.DropPolicy.DROP_NEWEST);
+
+        // The writer takes the first message and blocks printing it, the next four fill the buffer
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "0");
+        awaitPrinting(recording);
+        for (int i = 1; i < 10; i++) {
+            channel.print(LogLevel.INFO.getLogLevel(), TAG, String.valueOf(i));
+        }
+        assertEquals(5, channel.getDroppedCount());
+
+        release.countDown();
+        channel.close();
+        assertEquals("0", recording.mMessages.get(0));
+        assertTrue(recording.mMessages.get(1).startsWith("Dropped 5 log messages"));
+        assertEquals(Arrays.asList("1", "2", "3", "4"), recording.mMessages.subList(2, recording.mMessages.size()));
+    }
+
+    @Test
+    public void dropsOldestWhenFull() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingChannel recording = new RecordingChannel(release);
+        final AsyncOutputChannel channel =
+                new AsyncOutputChannel(recording, 4, AsyncOutputChannel.DropPolicy.DROP_OLDEST);
+
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "0");
+        awaitPrinting(recording);
+        for (int i = 1; i < 10; i++) {
+            channel.print(LogLevel.INFO.getLogLevel(), TAG, String.valueOf(i));
+        }
+        assertEquals(5, channel.getDroppedCount());
+
+        release.countDown();
+        channel.close();
+        assertTrue(recording.mMessages.get(1).startsWith("Dropped 5 log messages"));
+        assertEquals(Arrays.asList("6", "7", "8", "9"), recording.mMessages.subList(2, recording.mMessages.size()));
+    }
+
+    @Test
+    public void closePrintsTheBufferedMessages() {
+        final RecordingChannel recording = new RecordingChannel(new CountDownLatch(0));
+        final AsyncOutputChannel channel = new AsyncOutputChannel(recording);
+        for (int i = 0; i < 100; i++) {
+            channel.print(LogLevel.INFO.getLogLevel(), TAG, String.valueOf(i));
+        }
+        channel.close();
+        assertEquals(100, recording.mMessages.size());
+
+        // Printed on the calling thread once closed
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "late");
+        assertEquals("late", recording.mMessages.get(100));
+        assertSame(Thread.currentThread(), recording.mPrintingThread);
+    }
+
+    private static void awaitPrinting(final RecordingChannel recording) throws InterruptedException {
+        while (recording.mPrintingThread == null) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of the per-chunk debug message of the upload path, with the level disabled as in production, enabled on
+ * the calling thread and enabled through an {@link AsyncOutputChannel}. {@link #stringFormat()} is what every
+ * call used to cost before the level check moved ahead of the formatting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark {
+    private static final String TEMPLATE = "Streamed %d bytes for stream %s with uploadHandle %d";
+    private static final String STREAM_NAME = "benchmark-stream";
+
+    private final OutputChannel mNullChannel = new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            mLastMessage = message;
+        }
+    };
+
+    private volatile String mLastMessage;
+    private Log mDisabledLog;
+    private Log mEnabledLog;
+    private AsyncOutputChannel mAsyncChannel;
+    private Log mAsyncLog;
+    private int mBytes;
+
+    @Setup
+    public void setup() {
+        mDisabledLog = new Log(mNullChannel, LogLevel.INFO, "LogBenchmark");
+        mEnabledLog = new Log(mNullChannel, LogLevel.DEBUG, "LogBenchmark");
+        mAsyncChannel = new AsyncOutputChannel(mNullChannel);
+        mAsyncLog = new Log(mAsyncChannel, LogLevel.DEBUG, "LogBenchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mAsyncChannel.close();
+    }
+
+    @Benchmark
+    public void disabled() {
+        mDisabledLog.debug(TEMPLATE, mBytes++, STREAM_NAME, 1L);
+    }
+
+    @Benchmark
+    public void disabledGuarded() {
+        if (mDisabledLog.isEnabled(LogLevel.DEBUG)) {
+            mDisabledLog.debug(TEMPLATE, mBytes++, STREAM_NAME, 1L);
+        }
+    }
+
+    @Benchmark
+    public void enabled() {
+        mEnabledLog.debug(TEMPLATE, mBytes++, STREAM_NAME, 1L);
+    }
+
+    @Benchmark
+    public void enabledAsync() {
+        mAsyncLog.debug(TEMPLATE, mBytes++, STREAM_NAME, 1L);
+    }
+
+    @Benchmark
+    public void stringFormat(final Blackhole blackhole) {
+        blackhole.consume(String.format(TEMPLATE, mBytes++, STREAM_NAME, 1L));
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
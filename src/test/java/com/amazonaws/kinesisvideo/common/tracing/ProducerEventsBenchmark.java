@@ -0,0 +1,48 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of a put frame event which isn't recorded, with the Flight Recorder events loaded and with {@link
+ * ProducerEvents#NONE}. Run with {@code -jvmArgsAppend -XX:StartFlightRecording} to compare with a recording.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerEventsBenchmark {
+    private static final ProducerEvents EVENTS = ProducerEvents.getInstance();
+    private static final ProducerEvents NONE = ProducerEvents.NONE;
+    private static final String STREAM_NAME = "benchmark-stream";
+
+    private int mBytes;
+
+    @Benchmark
+    public void putFrame() {
+        EVENTS.endPutFrame(EVENTS.beginPutFrame(), STREAM_NAME, 1, mBytes++, false);
+    }
+
+    @Benchmark
+    public void putFrameWithoutEvents() {
+        NONE.endPutFrame(NONE.beginPutFrame(), STREAM_NAME, 1, mBytes++, false);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProducerEventsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
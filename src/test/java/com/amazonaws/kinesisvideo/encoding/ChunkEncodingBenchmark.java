@@ -0,0 +1,86 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the per-chunk cost of {@link ChunkEncoder} with {@link ChunkedOutputStream} on the PutMedia upload path.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation rate per chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkEncodingBenchmark {
+    @Param({ "1024", "16384" })
+    private int chunkSize;
+
+    private byte[] payload;
+    private BlackholeOutputStream sink;
+    private ChunkedOutputStream chunkedOutputStream;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        payload = new byte[chunkSize];
+        new Random(0).nextBytes(payload);
+        sink = new BlackholeOutputStream(blackhole);
+        chunkedOutputStream = new ChunkedOutputStream(sink, ChunkedOutputStream.DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public void chunkEncoder() throws IOException {
+        sink.write(ChunkEncoder.encode(payload, chunkSize));
+    }
+
+    @Benchmark
+    public void chunkedOutputStream() throws IOException {
+        chunkedOutputStream.write(payload, 0, chunkSize);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChunkEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Stands in for the socket stream, consuming written bytes without copying them.
+     */
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole mBlackhole;
+
+        BlackholeOutputStream(final Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void write(final int b) {
+            mBlackhole.consume(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            mBlackhole.consume(b);
+            mBlackhole.consume(len);
+        }
+    }
+}
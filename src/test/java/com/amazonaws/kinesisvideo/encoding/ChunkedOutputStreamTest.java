@@ -0,0 +1,76 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * ChunkedOutputStream tests
+ */
+public class ChunkedOutputStreamTest {
+    private static final int TEST_MAX_CHUNK_SIZE = 4096;
+    private static final int[] TEST_CHUNK_SIZES = { 1, 15, 16, 255, 256, 4095, 4096 };
+
+    @Test
+    public void chunksMatchChunkEncoder() throws IOException {
+        final Random random = new Random(0);
+        for (final int size : TEST_CHUNK_SIZES) {
+            final byte[] payload = new byte[size];
+            random.nextBytes(payload);
+
+            final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            final ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(actual, TEST_MAX_CHUNK_SIZE);
+            chunkedOutputStream.write(payload, 0, size);
+
+            assertArrayEquals(ChunkEncoder.encode(payload, size), actual.toByteArray());
+        }
+    }
+
+    @Test
+    public void largeWritesAreSplitIntoMaxSizedChunks() throws IOException {
+        final byte[] payload = new byte[TEST_MAX_CHUNK_SIZE * 2 + 10];
+        new Random(1).nextBytes(payload);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(ChunkEncoder.encode(payload, TEST_MAX_CHUNK_SIZE));
+        expected.write(ChunkEncoder.encode(slice(payload, TEST_MAX_CHUNK_SIZE, TEST_MAX_CHUNK_SIZE),
+                TEST_MAX_CHUNK_SIZE));
+        expected.write(ChunkEncoder.encode(slice(payload, TEST_MAX_CHUNK_SIZE * 2, 10), 10));
+        expected.write(ChunkEncoder.encode(payload, 0));
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(actual, TEST_MAX_CHUNK_SIZE);
+        chunkedOutputStream.write(payload);
+        chunkedOutputStream.finish();
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void singleByteWriteAndFinish() throws IOException {
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(actual);
+        chunkedOutputStream.write('x');
+        chunkedOutputStream.finish();
+        chunkedOutputStream.finish();
+
+        assertEquals("1\r\nx\r\n0\r\n\r\n", new String(actual.toByteArray(), "US-ASCII"));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterFinishThrows() throws IOException {
+        final ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(new ByteArrayOutputStream());
+        chunkedOutputStream.finish();
+        chunkedOutputStream.write(new byte[1]);
+    }
+
+    private static byte[] slice(final byte[] bytes, final int offset, final int length) {
+        final byte[] result = new byte[length];
+        System.arraycopy(bytes, offset, result, 0, length);
+        return result;
+    }
+}
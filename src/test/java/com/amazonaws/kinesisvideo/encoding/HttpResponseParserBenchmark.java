@@ -0,0 +1,104 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+
+/**
+ * Compares reading a PutMedia response with {@link ChunkDecoder}, one byte per read call, with
+ * {@link HttpResponseParser} and {@link ChunkedInputStream}, which read in bulk.
+ * <p>
+ * Every read call on the socket stream is a system call, so the number of calls matters more than shown here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpResponseParserBenchmark {
+    private static final int HEADER_COUNT = 15;
+    private static final int ACK_COUNT = 200;
+
+    private byte[] head;
+    private byte[] response;
+    private final byte[] readBuffer = new byte[4 * 1024];
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder("HTTP/1.1 200 OK\r\n");
+        for (int i = 0; i < HEADER_COUNT; i++) {
+            builder.append("x-amzn-header-").append(i).append(": 7b0a3d41-5a63-4f5e-b4c6-2d1f0c8e9a7").append(i)
+                    .append("\r\n");
+        }
+        builder.append("Transfer-Encoding: chunked\r\n\r\n");
+        head = builder.toString().getBytes(StandardCharsets.US_ASCII);
+
+        for (int i = 0; i < ACK_COUNT; i++) {
+            final String ack = "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":" + (1500000000000L + i * 2000L)
+                    + ",\"FragmentNumber\":\"91343852333181432392682062606794985617690924013\"}";
+            builder.append(Integer.toHexString(ack.length())).append("\r\n").append(ack).append("\r\n");
+        }
+        builder.append("0\r\n\r\n");
+        response = builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public Map<String, String> chunkDecoderHead() {
+        final InputStream inputStream = new ByteArrayInputStream(head);
+        ChunkDecoder.readStatusLine(inputStream);
+        return ChunkDecoder.decodeHeaders(inputStream);
+    }
+
+    @Benchmark
+    public Map<String, String> parserHead() throws IOException {
+        return HttpResponseParser.readResponse(new ByteArrayInputStream(head)).getResponseHeaders();
+    }
+
+    @Benchmark
+    public void chunkDecoderResponse(final Blackhole blackhole) {
+        ChunkDecoder.decodeAckInResponseBody(new ByteArrayInputStream(response), new Consumer<String>() {
+            @Override
+            public void accept(final String chunk) {
+                blackhole.consume(chunk);
+            }
+        });
+    }
+
+    @Benchmark
+    public int parserResponse() throws IOException {
+        final InputStream body = HttpResponseParser.readResponse(new ByteArrayInputStream(response))
+                .getResponsePayload();
+        int total = 0;
+        int bytesRead;
+        while ((bytesRead = body.read(readBuffer)) >= 0) {
+            total += bytesRead;
+        }
+
+        return total;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpResponseParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,286 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.model.Response;
+
+/**
+ * HttpResponseParser and ChunkedInputStream tests
+ */
+public class HttpResponseParserTest {
+    private static final int ITERATIONS = 500;
+    private static final int[] STATUS_CODES = { 200, 400, 403, 404, 500 };
+    private static final int ENCODING_CHUNKED = 0;
+    private static final int ENCODING_CONTENT_LENGTH = 1;
+    private static final int ENCODING_UNTIL_EOF = 2;
+
+    @Test
+    public void readsRandomResponsesWithRandomReadSizes() throws IOException {
+        final Random random = new Random(42);
+        for (int i = 0; i < ITERATIONS; i++) {
+            final TestResponse expected = TestResponse.random(random);
+            final Response response = HttpResponseParser.readResponse(
+                    new RandomReadInputStream(expected.bytes, random));
+
+            assertEquals(expected.statusCode, response.getResponseStatus().getStatusCode());
+            assertEquals("HTTP/1.1", response.getResponseStatus().getProtocol());
+            assertEquals(expected.reason, response.getResponseStatus().getReason());
+            assertEquals(expected.headers, response.getResponseHeaders());
+            assertArrayEquals(expected.body, readFully(response.getResponsePayload(), random));
+            assertEquals(-1, response.getResponsePayload().read());
+        }
+    }
+
+    @Test
+    public void parsesHeadSplitAnywhere() throws IOException {
+        final Random random = new Random(7);
+        for (int i = 0; i < ITERATIONS; i++) {
+            final TestResponse expected = TestResponse.random(random);
+            final HttpResponseParser parser = new HttpResponseParser();
+
+            int offset = 0;
+            while (!parser.isComplete()) {
+                final int length = Math.min(1 + random.nextInt(64), expected.bytes.length - offset);
+                offset += parser.parse(expected.bytes, offset, length);
+            }
+
+            assertEquals(expected.headLength, offset);
+            assertEquals(expected.statusCode, parser.getResponseStatus().getStatusCode());
+            assertEquals(expected.headers, parser.getHeaders());
+            assertEquals(expected.encoding == ENCODING_CHUNKED, parser.isChunked());
+        }
+    }
+
+    @Test
+    public void corruptedResponsesOnlyFailWithIOException() {
+        final Random random = new Random(1234);
+        int failures = 0;
+        for (int i = 0; i < ITERATIONS * 4; i++) {
+            final byte[] bytes = TestResponse.random(random).bytes;
+            final byte[] corrupted = random.nextInt(4) == 0
+                    ? Arrays.copyOf(bytes, random.nextInt(bytes.length))
+                    : bytes.clone();
+            final int corruptions = 1 + random.nextInt(4);
+            for (int j = 0; j < corruptions && corrupted.length > 0; j++) {
+                corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt(256);
+            }
+
+            try {
+                final Response response = HttpResponseParser.readResponse(
+                        new RandomReadInputStream(corrupted, random), 1024);
+                readFully(response.getResponsePayload(), random);
+            } catch (final IOException e) {
+                failures++;
+            }
+        }
+
+        // Most of the corruptions hit the framing or the head
+        assertTrue(failures > 0);
+    }
+
+    @Test
+    public void rejectsMalformedHeads() {
+        assertMalformed("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n");
+        assertMalformed("ICY 200 OK\r\n\r\n");
+        assertMalformed("HTTP/1.1 2x0 OK\r\n\r\n");
+        assertMalformed("HTTP/1.1 2000 OK\r\n\r\n");
+        assertMalformed("HTTP/1.1 200 OK\r\nNo colon\r\n\r\n");
+        assertMalformed("HTTP/1.1 200 OK\r\nBad name: value\r\n\r\n");
+        assertMalformed("HTTP/1.1 200 OK\r\nContent-Length: -1\r\n\r\n");
+        assertMalformed("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nshort");
+        assertMalformed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n");
+        assertMalformed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nabcdeX\r\n0\r\n\r\n");
+        assertMalformed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nabc");
+
+        final StringBuilder longHeader = new StringBuilder("HTTP/1.1 200 OK\r\nX-Long: ");
+        for (int i = 0; i < HttpResponseParser.DEFAULT_MAX_HEAD_SIZE; i++) {
+            longHeader.append('a');
+        }
+        assertMalformed(longHeader.append("\r\n\r\n").toString());
+    }
+
+    @Test
+    public void positionsBodyStreamAfterTheHead() throws IOException {
+        final byte[] bytes = ("\r\nHTTP/1.1 200 OK\nx-amz-id: 1\r\nx-amz-id: 2\r\nTransfer-Encoding: gzip, Chunked\r\n\r\n"
+                + "3;ext=1\r\n{\"a\r\n2\r\n\"}\r\n0\r\nTrailer: t\r\n\r\nNEXT").getBytes(StandardCharsets.US_ASCII);
+        final InputStream inputStream = new ByteArrayInputStream(bytes);
+
+        final Response response = HttpResponseParser.readResponse(inputStream);
+        assertEquals("OK", response.getResponseStatus().getReason());
+        assertEquals("1, 2", response.getResponseHeaders().get("x-amz-id"));
+
+        final ChunkedInputStream body = (ChunkedInputStream) response.getResponsePayload();
+        assertEquals("{\"a\"}", new String(readFully(body, new Random(0)), StandardCharsets.US_ASCII));
+        assertTrue(body.isDone());
+    }
+
+    private static void assertMalformed(final String response) {
+        try {
+            final Response parsed =
+                    HttpResponseParser.readResponse(new ByteArrayInputStream(response.getBytes(StandardCharsets.ISO_8859_1)));
+            readFully(parsed.getResponsePayload(), new Random(0));
+            fail("Parsing a malformed response should fail: " + response);
+        } catch (final IOException e) {
+            // Expected
+        }
+    }
+
+    private static byte[] readFully(final InputStream inputStream, final Random random) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8 * 1024];
+        while (true) {
+            if (random.nextInt(16) == 0) {
+                final int b = inputStream.read();
+                if (b < 0) {
+                    break;
+                }
+                outputStream.write(b);
+                continue;
+            }
+
+            final int bytesRead = inputStream.read(buffer, 0, 1 + random.nextInt(buffer.length));
+            if (bytesRead < 0) {
+                break;
+            }
+            outputStream.write(buffer, 0, bytesRead);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Stream which returns fewer bytes than asked for, like a socket
+     */
+    private static final class RandomReadInputStream extends InputStream {
+        private final byte[] mBytes;
+        private final Random mRandom;
+        private int mPosition;
+
+        private RandomReadInputStream(final byte[] bytes, final Random random) {
+            mBytes = bytes;
+            mRandom = random;
+        }
+
+        @Override
+        public int read() {
+            return mPosition < mBytes.length ? mBytes[mPosition++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (mPosition == mBytes.length) {
+                return -1;
+            }
+
+            final int count = Math.min(Math.min(len, 1 + mRandom.nextInt(512)), mBytes.length - mPosition);
+            System.arraycopy(mBytes, mPosition, b, off, count);
+            mPosition += count;
+            return count;
+        }
+    }
+
+    private static final class TestResponse {
+        private int statusCode;
+        private String reason;
+        private int encoding;
+        private final Map<String, String> headers = new LinkedHashMap<String, String>();
+        private byte[] body;
+        private int headLength;
+        private byte[] bytes;
+
+        private static TestResponse random(final Random random) {
+            final TestResponse response = new TestResponse();
+            response.statusCode = STATUS_CODES[random.nextInt(STATUS_CODES.length)];
+            response.reason = random.nextBoolean() ? "Some Reason" : "";
+            response.encoding = random.nextInt(3);
+            response.body = new byte[random.nextInt(3) == 0 ? random.nextInt(20000) : random.nextInt(200)];
+            random.nextBytes(response.body);
+
+            final int headerCount = random.nextInt(20);
+            for (int i = 0; i < headerCount; i++) {
+                response.headers.put("x-amz-header-" + i, randomToken(random));
+            }
+
+            if (response.encoding == ENCODING_CHUNKED) {
+                response.headers.put("Transfer-Encoding", "chunked");
+            } else if (response.encoding == ENCODING_CONTENT_LENGTH) {
+                response.headers.put("Content-Length", Integer.toString(response.body.length));
+            }
+
+            final StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response.statusCode);
+            if (!response.reason.isEmpty() || random.nextBoolean()) {
+                head.append(' ').append(response.reason);
+            }
+            head.append("\r\n");
+            for (final Map.Entry<String, String> header : response.headers.entrySet()) {
+                head.append(header.getKey()).append(':').append(random.nextBoolean() ? " " : "")
+                        .append(header.getValue()).append("\r\n");
+            }
+            head.append("\r\n");
+
+            final byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+            response.headLength = headBytes.length;
+
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputStream.write(headBytes, 0, headBytes.length);
+            if (response.encoding == ENCODING_CHUNKED) {
+                writeChunked(outputStream, response.body, random);
+            } else {
+                outputStream.write(response.body, 0, response.body.length);
+            }
+
+            response.bytes = outputStream.toByteArray();
+            return response;
+        }
+
+        private static void writeChunked(final ByteArrayOutputStream outputStream, final byte[] body,
+                                         final Random random) {
+            int offset = 0;
+            final StringBuilder framing = new StringBuilder();
+            while (offset < body.length) {
+                final int chunkSize = Math.min(1 + random.nextInt(3000), body.length - offset);
+                framing.setLength(0);
+                framing.append(random.nextBoolean() ? Integer.toHexString(chunkSize)
+                        : Integer.toHexString(chunkSize).toUpperCase());
+                if (random.nextInt(8) == 0) {
+                    framing.append(";name=value");
+                }
+                writeAscii(outputStream, framing.append("\r\n").toString());
+                outputStream.write(body, offset, chunkSize);
+                writeAscii(outputStream, "\r\n");
+                offset += chunkSize;
+            }
+
+            writeAscii(outputStream, random.nextInt(4) == 0 ? "0\r\nx-trailer: 1\r\n\r\n" : "0\r\n\r\n");
+        }
+
+        private static void writeAscii(final ByteArrayOutputStream outputStream, final String string) {
+            final byte[] bytes = string.getBytes(StandardCharsets.US_ASCII);
+            outputStream.write(bytes, 0, bytes.length);
+        }
+
+        private static String randomToken(final Random random) {
+            final char[] token = new char[1 + random.nextInt(40)];
+            for (int i = 0; i < token.length; i++) {
+                token[i] = (char) ('!' + random.nextInt('~' - '!' + 1));
+            }
+            return new String(token);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.amazonaws.kinesisvideo.http;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.io.NotifyingByteChannel;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+import com.amazonaws.kinesisvideo.stream.throttling.HierarchicalBandwidthScheduler;
+
+/**
+ * NioPutMediaHttpClient tests against a local loopback server
+ */
+public class NioPutMediaHttpClientTest {
+    private static final String EVENT_LOOP_THREAD_PREFIX = "kinesis-video-event-loop-";
+    private static final String SERVER_THREAD_PREFIX = "loopback-server-";
+    private static final int TEST_EVENT_LOOP_THREADS = 2;
+    private static final int TEST_SESSIONS = 64;
+    private static final int TEST_BYTES_PER_SESSION = 512 * 1024;
+    private static final int TEST_MAX_SLICE = 8 * 1024;
+    private static final long TEST_TIMEOUT_SECONDS = 60;
+    private static final int TEST_THROTTLED_SESSIONS = 4;
+    private static final int TEST_THROTTLED_BYTES_PER_SESSION = 128 * 1024;
+    private static final long TEST_HOST_KBPS = 4 * 1024;
+    private static final byte[] ACK = "{\"EventType\":\"RECEIVED\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Log mLog = new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "NioPutMediaHttpClientTest");
+    private LoopbackServer mServer;
+    private NioEventLoopGroup mEventLoopGroup;
+    private ExecutorService mProducer;
+
+    @Before
+    public void setup() throws IOException {
+        mServer = new LoopbackServer(200);
+        mEventLoopGroup = new NioEventLoopGroup(TEST_EVENT_LOOP_THREADS, mLog);
+        mProducer = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mEventLoopGroup.close();
+        mProducer.shutdownNow();
+        mServer.close();
+    }
+
+    @Test
+    public void multiplexesUploadsOnEventLoopThreads() throws Exception {
+        final int threadsBefore = countClientThreads();
+        final List<RecordingListener> listeners = new ArrayList<RecordingListener>();
+        final CountDownLatch completions = new CountDownLatch(TEST_SESSIONS * 2);
+        final AtomicInteger failures = new AtomicInteger();
+        final Consumer<Exception> completion = new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception exception) {
+                if (exception != null) {
+                    failures.incrementAndGet();
+                }
+                completions.countDown();
+            }
+        };
+
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < TEST_SESSIONS; i++) {
+            final RecordingListener listener = new RecordingListener();
+            listeners.add(listener);
+            newClient(new TestPayload(TEST_BYTES_PER_SESSION), listener, completion).connectAndProcessInBackground();
+        }
+
+        final int threadsDuringUpload = countClientThreads();
+        assertTrue(completions.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        assertEquals(0, failures.get());
+        assertEquals((long) TEST_SESSIONS * TEST_BYTES_PER_SESSION, mServer.getBytesReceived());
+        for (final RecordingListener listener : listeners) {
+            assertEquals(200, listener.mStatusCode);
+            assertTrue(listener.mBodyBytes.get() > 0);
+            assertTrue(listener.mEnded.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertNull(listener.mException);
+        }
+
+        // Only the event loop threads are added on the client side, regardless of the number of uploads
+        assertTrue(threadsDuringUpload - threadsBefore <= TEST_EVENT_LOOP_THREADS);
+
+        // The event loops wait for the payloads to signal data rather than spinning, so together they stay well
+        // under one busy thread
+        assertTrue(eventLoopCpuNanos() < elapsedNanos);
+    }
+
+    @Test
+    public void throttlesUploadsWithoutHoldingUpTheEventLoop() throws Exception {
+        final HierarchicalBandwidthScheduler scheduler = new HierarchicalBandwidthScheduler(TEST_HOST_KBPS);
+        final CountDownLatch throttledCompletions = new CountDownLatch(TEST_THROTTLED_SESSIONS * 2);
+        final Consumer<Exception> throttledCompletion = new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception exception) {
+                throttledCompletions.countDown();
+            }
+        };
+
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < TEST_THROTTLED_SESSIONS; i++) {
+            newClientBuilder(new TestPayload(TEST_THROTTLED_BYTES_PER_SESSION), new RecordingListener(),
+                    throttledCompletion)
+                    .throttler(scheduler.register("stream-" + i))
+                    .build()
+                    .connectAndProcessInBackground();
+        }
+
+        // An upload without a limit goes through while the throttled ones wait for their bytes
+        final RecordingListener unthrottledListener = new RecordingListener();
+        newClient(new TestPayload(TEST_BYTES_PER_SESSION), unthrottledListener, null).connectAndProcessInBackground();
+        assertTrue(unthrottledListener.mEnded.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final long unthrottledNanos = System.nanoTime() - startNanos;
+
+        assertTrue(throttledCompletions.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final long throttledNanos = System.nanoTime() - startNanos;
+
+        final long throttledBytes = (long) TEST_THROTTLED_SESSIONS * TEST_THROTTLED_BYTES_PER_SESSION;
+        final long expectedNanos = (long) (throttledBytes * 1e9 / scheduler.getMaxBytesPerSecond());
+        assertEquals(throttledBytes + TEST_BYTES_PER_SESSION, mServer.getBytesReceived());
+        // Less the bursts the buckets start with
+        assertTrue(throttledNanos > expectedNanos * 8 / 10);
+        assertTrue(unthrottledNanos < expectedNanos / 2);
+    }
+
+    @Test
+    public void reportsErrorStatusAndEndsResponse() throws Exception {
+        mServer.close();
+        mServer = new LoopbackServer(403);
+
+        final RecordingListener listener = new RecordingListener();
+        newClient(new TestPayload(TEST_BYTES_PER_SESSION), listener, null).connectAndProcessInBackground();
+
+        assertTrue(listener.mEnded.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(403, listener.mStatusCode);
+    }
+
+    private NioPutMediaHttpClient newClient(final NotifyingByteChannel payload,
+                                            final HttpResponseListener listener,
+                                            final Consumer<Exception> completion) {
+        return newClientBuilder(payload, listener, completion).build();
+    }
+
+    private NioPutMediaHttpClient.Builder newClientBuilder(final NotifyingByteChannel payload,
+                                                           final HttpResponseListener listener,
+                                                           final Consumer<Exception> completion) {
+        return NioPutMediaHttpClient.builder()
+                .uri(URI.create("http://127.0.0.1:" + mServer.getPort() + "/putMedia"))
+                .method(HttpMethodName.POST)
+                .header("Transfer-Encoding", "chunked")
+                .payload(payload)
+                .responseListener(listener)
+                .completionCallback(completion)
+                .setTimeout((int) TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS))
+                .eventLoopGroup(mEventLoopGroup)
+                .log(mLog);
+    }
+
+    private static int countClientThreads() {
+        int count = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().startsWith(SERVER_THREAD_PREFIX)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static long eventLoopCpuNanos() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long cpuNanos = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(EVENT_LOOP_THREAD_PREFIX)) {
+                cpuNanos += Math.max(0, threadMXBean.getThreadCpuTime(thread.getId()));
+            }
+        }
+
+        return cpuNanos;
+    }
+
+    /**
+     * Payload which only has data for every other read, like a producer stream waiting for frames. The next frame
+     * is signalled from the producer thread.
+     */
+    private final class TestPayload implements NotifyingByteChannel {
+        private volatile Runnable mReadyListener;
+        private int mRemaining;
+        private boolean mStarved;
+
+        TestPayload(final int size) {
+            mRemaining = size;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) {
+            if (mRemaining == 0) {
+                return -1;
+            }
+
+            mStarved = !mStarved;
+            if (mStarved) {
+                mProducer.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Runnable listener = mReadyListener;
+                        if (listener != null) {
+                            listener.run();
+                        }
+                    }
+                });
+                return 0;
+            }
+
+            final int count = Math.min(Math.min(mRemaining, TEST_MAX_SLICE), dst.remaining());
+            for (int i = 0; i < count; i++) {
+                dst.put((byte) i);
+            }
+
+            mRemaining -= count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void setReadyListener(@Nullable final Runnable listener) {
+            mReadyListener = listener;
+        }
+    }
+
+    private static final class RecordingListener implements HttpResponseListener {
+        private final CountDownLatch mEnded = new CountDownLatch(1);
+        private final AtomicLong mBodyBytes = new AtomicLong();
+        private volatile int mStatusCode;
+        private volatile Exception mException;
+
+        @Override
+        public void onConnected(@Nonnull final Closeable connection) {
+        }
+
+        @Override
+        public void onResponseStatus(@Nonnull final ResponseStatus responseStatus) {
+            mStatusCode = responseStatus.getStatusCode();
+        }
+
+        @Override
+        public void onResponseBody(@Nonnull final byte[] buffer, final int offset, final int length) {
+            mBodyBytes.addAndGet(length);
+        }
+
+        @Override
+        public void onResponseEnd(@Nullable final Exception exception) {
+            mException = exception;
+            mEnded.countDown();
+        }
+    }
+
+    /**
+     * Minimal PutMedia endpoint which decodes the chunked upload and answers every chunk with an ACK chunk.
+     */
+    private static final class LoopbackServer implements Closeable {
+        private final ServerSocket mServerSocket;
+        private final int mStatusCode;
+        private final AtomicLong mBytesReceived = new AtomicLong();
+        private final AtomicInteger mConnections = new AtomicInteger();
+
+        LoopbackServer(final int statusCode) throws IOException {
+            mStatusCode = statusCode;
+            mServerSocket = new ServerSocket(0, TEST_SESSIONS, InetAddress.getLoopbackAddress());
+            final Thread acceptor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    acceptConnections();
+                }
+            }, SERVER_THREAD_PREFIX + "acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return mServerSocket.getLocalPort();
+        }
+
+        long getBytesReceived() {
+            return mBytesReceived.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mServerSocket.close();
+        }
+
+        private void acceptConnections() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    final Socket socket = mServerSocket.accept();
+                    final Thread handler = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            handleConnection(socket);
+                        }
+                    }, SERVER_THREAD_PREFIX + mConnections.incrementAndGet());
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (final IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handleConnection(final Socket socket) {
+            try {
+                final InputStream in = new BufferedInputStream(socket.getInputStream());
+                final OutputStream out = socket.getOutputStream();
+                while (!readLine(in).isEmpty()) {
+                    // Skip the request line and headers
+                }
+
+                final boolean ok = mStatusCode == 200;
+                out.write((ok
+                        ? "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        : "HTTP/1.1 " + mStatusCode + " Error\r\nContent-Length: 0\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                final byte[] payload = new byte[TEST_MAX_SLICE * 4];
+                int chunkSize;
+                while ((chunkSize = Integer.parseInt(readLine(in), 16)) > 0) {
+                    int remaining = chunkSize;
+                    while (remaining > 0) {
+                        final int bytesRead = in.read(payload, 0, Math.min(remaining, payload.length));
+                        if (bytesRead < 0) {
+                            return;
+                        }
+                        remaining -= bytesRead;
+                    }
+                    readLine(in);
+                    mBytesReceived.addAndGet(chunkSize);
+                    if (!ok) {
+                        continue;
+                    }
+
+                    out.write((Integer.toHexString(ACK.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(ACK);
+                    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+
+                readLine(in);
+                if (ok) {
+                    out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            } catch (final IOException e) {
+                // Client went away
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        private static String readLine(final InputStream in) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * AnnexBAccessUnitParser and FFmpegEncoderSession tests
+ */
+public class AnnexBAccessUnitParserTest {
+    private static final int ITERATIONS = 200;
+    private static final int NAL_AUD = 0x09;
+    private static final int NAL_SPS = 0x67;
+    private static final int NAL_PPS = 0x68;
+    private static final int NAL_SEI = 0x06;
+    private static final int NAL_IDR = 0x65;
+    private static final int NAL_SLICE = 0x41;
+    private static final int FIRST_SLICE = 0x88;
+    private static final int OTHER_SLICE = 0x12;
+
+    @Test
+    public void splitsRandomStreamsFedInRandomPieces() {
+        final Random random = new Random(42);
+        for (int i = 0; i < ITERATIONS; i++) {
+            final TestStream stream = TestStream.random(random);
+            final List<byte[]> accessUnits = new ArrayList<byte[]>();
+            final List<Boolean> keyFrames = new ArrayList<Boolean>();
+            final AnnexBAccessUnitParser parser = new AnnexBAccessUnitParser(collect(accessUnits, keyFrames));
+
+            int offset = 0;
+            while (offset < stream.bytes.length) {
+                final int length = Math.min(1 + random.nextInt(random.nextBoolean() ? 8 : 4096),
+                        stream.bytes.length - offset);
+                parser.parse(stream.bytes, offset, length);
+                offset += length;
+            }
+            parser.finish();
+
+            assertEquals(stream.accessUnits.size(), accessUnits.size());
+            for (int j = 0; j < accessUnits.size(); j++) {
+                assertArrayEquals(stream.accessUnits.get(j), accessUnits.get(j));
+                assertEquals(stream.keyFrames.get(j), keyFrames.get(j));
+            }
+            assertEquals(stream.accessUnits.size(), parser.getAccessUnitCount());
+        }
+    }
+
+    @Test
+    public void reportsAccessUnitOnlyOnceTheNextOneStarts() {
+        final List<byte[]> accessUnits = new ArrayList<byte[]>();
+        final List<Boolean> keyFrames = new ArrayList<Boolean>();
+        final AnnexBAccessUnitParser parser = new AnnexBAccessUnitParser(collect(accessUnits, keyFrames));
+
+        final byte[] idr = { 0, 0, 0, 1, NAL_SPS, 1, 2, 0, 0, 1, NAL_PPS, 3, 0, 0, 1, NAL_IDR, (byte) FIRST_SLICE, 4 };
+        final byte[] slice = { 0, 0, 1, NAL_SLICE, (byte) FIRST_SLICE, 5, 6 };
+        parser.parse(idr, 0, idr.length);
+        assertTrue(accessUnits.isEmpty());
+
+        parser.parse(slice, 0, slice.length);
+        assertEquals(1, accessUnits.size());
+        assertArrayEquals(idr, accessUnits.get(0));
+        assertTrue(keyFrames.get(0));
+
+        parser.finish();
+        assertEquals(2, accessUnits.size());
+        assertArrayEquals(slice, accessUnits.get(1));
+        assertFalse(keyFrames.get(1));
+    }
+
+    @Test
+    public void sessionMatchesAccessUnitsWithTheirSources() throws IOException, InterruptedException {
+        // cat stands in for ffmpeg, so each submitted file comes out as is
+        Assume.assumeTrue(new File("/bin/cat").canExecute());
+
+        final Random random = new Random(3);
+        final TestStream stream = TestStream.random(random);
+        final List<String> sources = new ArrayList<String>();
+        final List<byte[]> accessUnits = new ArrayList<byte[]>();
+        final FFmpegEncoderSession session = new FFmpegEncoderSession(Arrays.asList("/bin/cat"));
+        session.start(new FFmpegEncoderSession.Listener() {
+            @Override
+            public void onEncodedFrame(final byte[] buffer, final int offset, final int length,
+                                       final boolean keyFrame, final String sourceName) {
+                synchronized (accessUnits) {
+                    accessUnits.add(Arrays.copyOfRange(buffer, offset, offset + length));
+                    sources.add(sourceName);
+                }
+            }
+        });
+
+        final Path directory = Files.createTempDirectory("annexb");
+        try {
+            for (int i = 0; i < stream.accessUnits.size(); i++) {
+                final Path image = directory.resolve("frame-" + i);
+                Files.write(image, stream.accessUnits.get(i));
+                session.submit(image, "frame-" + i);
+            }
+
+            try {
+                session.submit(directory.resolve("missing"), "missing");
+                fail("Submitting a missing file should fail");
+            } catch (final java.nio.file.NoSuchFileException e) {
+                assertTrue(session.isUsable());
+            }
+        } finally {
+            session.close();
+            for (int i = 0; i < stream.accessUnits.size(); i++) {
+                Files.deleteIfExists(directory.resolve("frame-" + i));
+            }
+            Files.delete(directory);
+        }
+
+        assertFalse(session.isUsable());
+        assertEquals(stream.accessUnits.size(), session.getSubmittedCount());
+        assertEquals(stream.accessUnits.size(), session.getEncodedCount());
+        for (int i = 0; i < stream.accessUnits.size(); i++) {
+            assertArrayEquals(stream.accessUnits.get(i), accessUnits.get(i));
+            assertEquals("frame-" + i, sources.get(i));
+        }
+    }
+
+    private static AnnexBAccessUnitParser.Listener collect(final List<byte[]> accessUnits,
+                                                           final List<Boolean> keyFrames) {
+        return new AnnexBAccessUnitParser.Listener() {
+            @Override
+            public void onAccessUnit(final byte[] buffer, final int offset, final int length, final boolean keyFrame) {
+                accessUnits.add(Arrays.copyOfRange(buffer, offset, offset + length));
+                keyFrames.add(keyFrame);
+            }
+        };
+    }
+
+    /**
+     * Stream of access units made of NAL units with random payloads, as an encoder would write them
+     */
+    private static final class TestStream {
+        private final List<byte[]> accessUnits = new ArrayList<byte[]>();
+        private final List<Boolean> keyFrames = new ArrayList<Boolean>();
+        private byte[] bytes;
+
+        private static TestStream random(final Random random) {
+            final TestStream stream = new TestStream();
+            final boolean delimiters = random.nextBoolean();
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            final int count = 1 + random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                final boolean keyFrame = i == 0 || random.nextInt(8) == 0;
+                final ByteArrayOutputStream accessUnit = new ByteArrayOutputStream();
+                if (delimiters) {
+                    writeNal(accessUnit, NAL_AUD, 0xf0, 0, random);
+                }
+                if (keyFrame) {
+                    writeNal(accessUnit, NAL_SPS, 0x64, 1 + random.nextInt(20), random);
+                    writeNal(accessUnit, NAL_PPS, 0xee, 1 + random.nextInt(5), random);
+                }
+                if (random.nextInt(4) == 0) {
+                    writeNal(accessUnit, NAL_SEI, 0x05, 1 + random.nextInt(30), random);
+                }
+
+                final int slices = 1 + random.nextInt(3);
+                for (int j = 0; j < slices; j++) {
+                    writeNal(accessUnit, keyFrame ? NAL_IDR : NAL_SLICE, j == 0 ? FIRST_SLICE : OTHER_SLICE,
+                            random.nextInt(3) == 0 ? random.nextInt(20000) : random.nextInt(500), random);
+                }
+
+                final byte[] bytes = accessUnit.toByteArray();
+                stream.accessUnits.add(bytes);
+                stream.keyFrames.add(keyFrame);
+                all.write(bytes, 0, bytes.length);
+            }
+
+            stream.bytes = all.toByteArray();
+            return stream;
+        }
+
+        private static void writeNal(final ByteArrayOutputStream outputStream, final int header,
+                                     final int firstPayloadByte, final int payloadLength, final Random random) {
+            if (random.nextBoolean()) {
+                outputStream.write(0);
+            }
+            outputStream.write(0);
+            outputStream.write(0);
+            outputStream.write(1);
+            outputStream.write(header);
+            outputStream.write(firstPayloadByte);
+
+            // Emulation prevention keeps start codes out of the payload, zeros are only allowed alone
+            int previous = firstPayloadByte;
+            for (int i = 0; i < payloadLength; i++) {
+                final int b = previous == 0 ? 1 + random.nextInt(255) : random.nextInt(256);
+                outputStream.write(b);
+                previous = b;
+            }
+            if (previous == 0) {
+                outputStream.write(0x80);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.kinesisvideo.demoapp.FFmpegConverter;
+
+/**
+ * Compares the throughput of encoding a local image set with an ffmpeg process per image, as
+ * {@link FFmpegConverter} does, and with a single {@link FFmpegEncoderSession}.
+ * <p>
+ * Needs ffmpeg and a directory of images, for example frames extracted with
+ * {@code ffmpeg -i video.mp4 -vf fps=10 frames/%05d.png}:
+ * <pre>
+ * java -Dkvs.benchmark.imageDir=frames -Dkvs.benchmark.ffmpegPath=/usr/bin/ffmpeg ... FFmpegEncoderSessionBenchmark
+ * </pre>
+ * Session throughput is bounded by the encoder: once the pipe is full, submitting blocks until ffmpeg catches up. The
+ * frames encoded by the end of each iteration are reported next to it, as the session may lag behind the submissions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class FFmpegEncoderSessionBenchmark {
+    private static final String IMAGE_DIR_PROPERTY = "kvs.benchmark.imageDir";
+    private static final String FFMPEG_PATH_PROPERTY = "kvs.benchmark.ffmpegPath";
+    private static final String FFPROBE_PATH_PROPERTY = "kvs.benchmark.ffprobePath";
+    private static final int FPS = 25;
+
+    @Param({ "oneShot", "session" })
+    private String encoder;
+
+    private final List<Path> images = new ArrayList<Path>();
+    private int nextImage;
+    private FFmpegConverter converter;
+    private Path output;
+    private FFmpegEncoderSession session;
+    private long encodedBeforeIteration;
+
+    /**
+     * Frames encoded during the iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedFrames {
+        public long encodedFrames;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            encodedFrames = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        final String imageDir = System.getProperty(IMAGE_DIR_PROPERTY);
+        if (imageDir == null) {
+            throw new IllegalStateException("Set " + IMAGE_DIR_PROPERTY + " to a directory of images");
+        }
+
+        final DirectoryStream<Path> directory = Files.newDirectoryStream(Paths.get(imageDir));
+        try {
+            for (final Path image : directory) {
+                images.add(image);
+            }
+        } finally {
+            directory.close();
+        }
+        if (images.isEmpty()) {
+            throw new IllegalStateException("No images in " + imageDir);
+        }
+        Collections.sort(images);
+
+        final String ffmpegPath = System.getProperty(FFMPEG_PATH_PROPERTY, "ffmpeg");
+        if ("oneShot".equals(encoder)) {
+            converter = new FFmpegConverter(ffmpegPath, System.getProperty(FFPROBE_PATH_PROPERTY, "ffprobe"));
+            output = Files.createTempFile("encoder-benchmark", ".h264");
+        } else {
+            session = new FFmpegEncoderSession(ffmpegPath, FPS, 1280, 720);
+            session.start(new FFmpegEncoderSession.Listener() {
+                @Override
+                public void onEncodedFrame(final byte[] buffer, final int offset, final int length,
+                                           final boolean keyFrame, final String sourceName) {
+                    // Only the encoded count matters
+                }
+            });
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        if (session != null) {
+            encodedBeforeIteration = session.getEncodedCount();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (session != null) {
+            session.close();
+        }
+        if (output != null) {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Benchmark
+    public void encode(final EncodedFrames encodedFrames) throws IOException {
+        final Path image = images.get(nextImage);
+        nextImage = (nextImage + 1) % images.size();
+        if (session != null) {
+            session.submit(image, null);
+            encodedFrames.encodedFrames = session.getEncodedCount() - encodedBeforeIteration;
+        } else {
+            converter.encodeToH264(image.toString(), output.toString());
+            encodedFrames.encodedFrames++;
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final List<String> properties = new ArrayList<String>();
+        for (final String property : new String[] { IMAGE_DIR_PROPERTY, FFMPEG_PATH_PROPERTY, FFPROBE_PATH_PROPERTY }) {
+            if (System.getProperty(property) != null) {
+                properties.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(FFmpegEncoderSessionBenchmark.class.getSimpleName())
+                .jvmArgsAppend(properties.toArray(new String[0]))
+                .build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * FrameHousekeeper and FrameCheckpoint tests
+ */
+public class FrameHousekeeperTest {
+    private static final long COMMIT_INTERVAL_MS = 20;
+    private static final long WAIT_MS = 5000;
+    private static final long FRAME_DURATION = 400000;
+
+    private Path directory;
+    private Path checkpointFile;
+    private FrameHousekeeper housekeeper;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("frame-housekeeper");
+        checkpointFile = directory.resolve("checkpoint");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (housekeeper != null) {
+            housekeeper.close();
+        }
+
+        final File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void deletesFramesOfPersistedFragmentsOnly() throws Exception {
+        housekeeper = new FrameHousekeeper(directory, new FrameCheckpoint(checkpointFile), COMMIT_INTERVAL_MS);
+        assertNull(housekeeper.start());
+
+        // Two fragments of three frames, and the key frame of a third one
+        for (int i = 0; i < 7; i++) {
+            final String name = "frame" + i + ".png";
+            Files.createFile(directory.resolve(name));
+            housekeeper.recordFrame(i * FRAME_DURATION, i % 3 == 0, name);
+        }
+
+        Thread.sleep(5 * COMMIT_INTERVAL_MS);
+        assertEquals(0, housekeeper.getDeletedCount());
+        assertTrue(Files.exists(directory.resolve("frame0.png")));
+
+        housekeeper.onFragmentPersisted(0);
+        awaitDeleted(3);
+        assertFalse(Files.exists(directory.resolve("frame2.png")));
+        assertTrue(Files.exists(directory.resolve("frame3.png")));
+        assertEquals("frame2.png", housekeeper.getDurableFileName());
+        assertEquals(Arrays.asList("frame2.png", "frame0.png", "frame1.png", "frame2.png"),
+                new FrameCheckpoint(checkpointFile).load());
+
+        // An older ack arriving late changes nothing
+        housekeeper.onFragmentPersisted(3 * FRAME_DURATION);
+        housekeeper.onFragmentPersisted(0);
+        awaitDeleted(6);
+        assertTrue(Files.exists(directory.resolve("frame6.png")));
+        assertEquals("frame5.png", new FrameCheckpoint(checkpointFile).load().get(0));
+
+        housekeeper.close();
+        assertTrue(Files.exists(directory.resolve("frame6.png")));
+        assertFalse(Files.exists(directory.resolve("checkpoint.tmp")));
+    }
+
+    @Test
+    public void finishesTheLastBatchOnRestart() throws Exception {
+        Files.createFile(directory.resolve("frame4.png"));
+        Files.createFile(directory.resolve("frame5.png"));
+        Files.createFile(directory.resolve("frame6.png"));
+        new FrameCheckpoint(checkpointFile).commit(Arrays.asList("frame5.png", "frame4.png", "frame5.png"));
+
+        housekeeper = new FrameHousekeeper(directory, new FrameCheckpoint(checkpointFile), COMMIT_INTERVAL_MS);
+        assertEquals("frame5.png", housekeeper.start());
+        assertEquals(2, housekeeper.getDeletedCount());
+        assertFalse(Files.exists(directory.resolve("frame4.png")));
+        assertTrue(Files.exists(directory.resolve("frame6.png")));
+    }
+
+    @Test
+    public void replacesTheCheckpoint() throws Exception {
+        final FrameCheckpoint checkpoint = new FrameCheckpoint(checkpointFile);
+        assertTrue(checkpoint.load().isEmpty());
+
+        checkpoint.commit(Arrays.asList("a", "b"));
+        checkpoint.commit(Collections.singletonList("c"));
+        assertEquals(Collections.singletonList("c"), checkpoint.load());
+        assertFalse(Files.exists(directory.resolve("checkpoint.tmp")));
+    }
+
+    private void awaitDeleted(final long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (housekeeper.getDeletedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, housekeeper.getDeletedCount());
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * FramePacer tests
+ */
+public class FramePacerTest {
+    private static final long INTERVAL = 40;
+    private static final long START = 1000;
+
+    @Test
+    public void deadlinesDoNotDriftWithProcessingTime() {
+        final FramePipelineMetrics metrics = new FramePipelineMetrics(1, 1);
+        final FramePacer pacer = new FramePacer(INTERVAL, LateFramePolicy.CATCH_UP, metrics);
+
+        assertEquals(START, pacer.schedule(START, true));
+        // Frames arrive slightly late or early, deadlines stay on the grid
+        assertEquals(START + INTERVAL, pacer.schedule(START + INTERVAL + 15, false));
+        assertEquals(START + 2 * INTERVAL, pacer.schedule(START + INTERVAL + 20, false));
+        assertEquals(START + 3 * INTERVAL, pacer.schedule(START + 3 * INTERVAL + INTERVAL, false));
+        assertEquals(0, metrics.getLateFrameCount());
+    }
+
+    @Test
+    public void catchUpKeepsTheSchedule() {
+        final FramePipelineMetrics metrics = new FramePipelineMetrics(1, 1);
+        final FramePacer pacer = new FramePacer(INTERVAL, LateFramePolicy.CATCH_UP, metrics);
+
+        pacer.schedule(START, true);
+        final long stalled = START + 5 * INTERVAL;
+        assertEquals(START + INTERVAL, pacer.schedule(stalled, false));
+        assertEquals(START + 2 * INTERVAL, pacer.schedule(stalled, false));
+        assertEquals(2, metrics.getLateFrameCount());
+        assertEquals(0, metrics.getDroppedFrameCount());
+    }
+
+    @Test
+    public void resyncRestartsTheScheduleFromTheLateFrame() {
+        final FramePipelineMetrics metrics = new FramePipelineMetrics(1, 1);
+        final FramePacer pacer = new FramePacer(INTERVAL, LateFramePolicy.RESYNC, metrics);
+
+        pacer.schedule(START, true);
+        final long stalled = START + 5 * INTERVAL;
+        assertEquals(stalled, pacer.schedule(stalled, false));
+        assertEquals(stalled + INTERVAL, pacer.schedule(stalled + 1, false));
+        assertEquals(1, metrics.getLateFrameCount());
+    }
+
+    @Test
+    public void skipToKeyFrameDropsUntilTheNextKeyFrame() {
+        final FramePipelineMetrics metrics = new FramePipelineMetrics(1, 1);
+        final FramePacer pacer = new FramePacer(INTERVAL, LateFramePolicy.SKIP_TO_KEY_FRAME, metrics);
+
+        pacer.schedule(START, true);
+        assertEquals(FramePacer.DROP, pacer.schedule(START + 100, false));
+        // No longer late, but depends on the dropped frame
+        assertEquals(FramePacer.DROP, pacer.schedule(START + 110, false));
+        assertEquals(START + 3 * INTERVAL, pacer.schedule(START + 130, true));
+        assertEquals(1, metrics.getLateFrameCount());
+        assertEquals(2, metrics.getDroppedFrameCount());
+    }
+
+    @Test
+    public void lateKeyFrameRestartsTheScheduleWhenSkipping() {
+        final FramePipelineMetrics metrics = new FramePipelineMetrics(1, 1);
+        final FramePacer pacer = new FramePacer(INTERVAL, LateFramePolicy.SKIP_TO_KEY_FRAME, metrics);
+
+        pacer.schedule(START, true);
+        final long stalled = START + 5 * INTERVAL;
+        assertEquals(stalled, pacer.schedule(stalled, true));
+        assertEquals(stalled + INTERVAL, pacer.schedule(stalled + 1, false));
+        assertEquals(0, metrics.getDroppedFrameCount());
+    }
+
+    @Test
+    public void resetStartsANewSchedule() {
+        final FramePipelineMetrics metrics = new FramePipelineMetrics(1, 1);
+        final FramePacer pacer = new FramePacer(INTERVAL, LateFramePolicy.CATCH_UP, metrics);
+
+        pacer.schedule(START, true);
+        pacer.reset();
+        final long restart = START + 100 * INTERVAL;
+        assertEquals(restart, pacer.schedule(restart, true));
+        assertEquals(restart + INTERVAL, pacer.schedule(restart, false));
+        assertEquals(0, metrics.getLateFrameCount());
+    }
+}
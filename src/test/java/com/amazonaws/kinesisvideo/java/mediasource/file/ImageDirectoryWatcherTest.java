@@ -0,0 +1,138 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ImageDirectoryWatcher tests
+ */
+public class ImageDirectoryWatcherTest {
+    private static final String FORMAT = "frame-%05d.png";
+    private static final long SETTLE_MS = 20;
+    private static final long GAP_TIMEOUT_MS = 300;
+    private static final long WAIT_MS = 5000;
+
+    private Path directory;
+    private FramePipelineMetrics metrics;
+    private ImageDirectoryWatcher watcher;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("image-directory-watcher");
+        metrics = new FramePipelineMetrics(1, 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+
+        final File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void matchesFileNamesOfTheFormat() {
+        final Matcher matcher = ImageDirectoryWatcher.toPattern(FORMAT, true).matcher("frame-00012.png");
+        assertTrue(matcher.matches());
+        assertEquals("00012", matcher.group(1));
+        assertFalse(ImageDirectoryWatcher.toPattern(FORMAT, true).matcher("frame-00012.png.tmp").matches());
+        assertFalse(ImageDirectoryWatcher.toPattern("image.$%d.png", false).matcher("image.x1.png").matches());
+        assertTrue(ImageDirectoryWatcher.toPattern("image.$%d.png", false).matcher("image.$1.png").matches());
+
+        try {
+            ImageDirectoryWatcher.toPattern("image.png", true);
+            fail("Index order needs an index in the file names");
+        } catch (final IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void releasesFilesInIndexOrder() throws Exception {
+        write(0);
+        startWatcher(true, 16);
+        assertEquals(name(0), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        final long start = System.nanoTime();
+        write(2);
+        write(1);
+        assertEquals(name(1), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(name(2), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+        // Released as soon as the gap was filled
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(GAP_TIMEOUT_MS));
+    }
+
+    @Test
+    public void givesUpOnAMissingIndex() throws Exception {
+        startWatcher(true, 16);
+        write(0);
+        assertEquals(name(0), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        final long start = System.nanoTime();
+        write(2);
+        assertEquals(name(2), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(GAP_TIMEOUT_MS));
+
+        // Too late once a later index has been released
+        write(1);
+        assertNull(watcher.poll(GAP_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(1, metrics.getSkippedImageCount());
+    }
+
+    @Test
+    public void skipsTheOldestFilesWhenTheBacklogIsFull() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            write(i);
+        }
+        startWatcher(true, 3);
+
+        assertEquals(name(3), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(name(4), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(name(5), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(3, metrics.getSkippedImageCount());
+    }
+
+    @Test
+    public void takesADeletedNameAgain() throws Exception {
+        startWatcher(false, 16);
+        write(7);
+        assertEquals(name(7), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        Files.delete(directory.resolve(name(7)));
+        // Let the deletion be seen before the name is written again
+        Thread.sleep(GAP_TIMEOUT_MS);
+        write(7);
+        assertEquals(name(7), watcher.poll(WAIT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private void startWatcher(final boolean indexOrder, final int backlog) throws IOException {
+        watcher = new ImageDirectoryWatcher(directory, FORMAT, indexOrder, backlog, SETTLE_MS, GAP_TIMEOUT_MS,
+                metrics);
+        watcher.start();
+    }
+
+    private void write(final int index) throws IOException {
+        Files.write(directory.resolve(name(index)), new byte[] { (byte) index });
+    }
+
+    private static String name(final int index) {
+        return String.format(FORMAT, index);
+    }
+}
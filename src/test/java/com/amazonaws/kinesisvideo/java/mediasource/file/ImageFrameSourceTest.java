@@ -0,0 +1,173 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ImageFrameSource pipeline tests, with a script which passes the images through in place of ffmpeg
+ */
+public class ImageFrameSourceTest {
+    private static final int FPS = 50;
+    private static final int FRAME_COUNT = 20;
+    private static final int KEY_FRAME_INTERVAL = 5;
+
+    private Path directory;
+    private Path ffmpeg;
+
+    @Before
+    public void setup() throws IOException {
+        Assume.assumeTrue(new File("/bin/sh").canExecute());
+
+        directory = Files.createTempDirectory("image-frame-source");
+        ffmpeg = directory.resolve("fake-ffmpeg");
+        Files.write(ffmpeg, ("#!/bin/sh\n"
+                + "if [ \"$1\" = \"-version\" ]; then echo \"ffmpeg version 0.0\"; exit 0; fi\n"
+                + "exec cat\n").getBytes(StandardCharsets.US_ASCII));
+        assertTrue(ffmpeg.toFile().setExecutable(true));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (directory == null) {
+            return;
+        }
+
+        final File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void emitsFramesInOrderAtTheFrameRate() throws Exception {
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            writeFrame(i);
+        }
+
+        final ImageFileMediaSourceConfiguration configuration = configure()
+                .readerThreads(3)
+                .readQueueDepth(4)
+                .emitQueueDepth(2)
+                .build();
+
+        final List<String> fileNames = new ArrayList<String>();
+        final List<Boolean> keyFrames = new ArrayList<Boolean>();
+        final List<Long> emitTimes = new ArrayList<Long>();
+        final CountDownLatch emitted = new CountDownLatch(FRAME_COUNT);
+        final ImageFrameSource source = new ImageFrameSource(configuration);
+        source.onEncodedFrameAvailable(new ImageFrameSource.OnEncodedFrameAvailable() {
+            @Override
+            public void onEncodedFrameAvailable(final ByteBuffer data, final boolean keyFrame, final String fileName) {
+                if (emitted.getCount() == 0) {
+                    return;
+                }
+
+                emitTimes.add(System.nanoTime());
+                fileNames.add(fileName);
+                keyFrames.add(keyFrame);
+                assertEquals(8, data.remaining());
+                emitted.countDown();
+            }
+        });
+
+        source.start();
+        try {
+            assertTrue(source.isUsingEncoderSession());
+            assertTrue(emitted.await(10, TimeUnit.SECONDS));
+        } finally {
+            source.stop();
+        }
+
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            assertEquals(String.format("frame-%03d", i), fileNames.get(i));
+            assertEquals(i % KEY_FRAME_INTERVAL == 0, keyFrames.get(i));
+        }
+
+        // Frames are paced at the frame rate, give or take scheduling noise
+        final long elapsed = emitTimes.get(FRAME_COUNT - 1) - emitTimes.get(0);
+        assertTrue(elapsed >= (FRAME_COUNT - 1) * TimeUnit.SECONDS.toNanos(1) / FPS);
+
+        final FramePipelineMetrics metrics = source.getPipelineMetrics();
+        assertTrue(metrics.getRead().getCount() >= FRAME_COUNT);
+        assertTrue(metrics.getEncode().getCount() >= FRAME_COUNT - 1);
+        assertTrue(metrics.getEmittedFrameCount() >= FRAME_COUNT);
+        assertTrue(metrics.getEmitQueue().getAverage() > 0);
+    }
+
+    @Test
+    public void emitsFramesOfAWatchedDirectoryAsTheyAreWritten() throws Exception {
+        final ImageFileMediaSourceConfiguration configuration = configure()
+                .ingestionMode(ImageIngestionMode.WATCH_BY_INDEX)
+                .build();
+
+        final List<String> fileNames = new ArrayList<String>();
+        final List<Long> emitTimes = new ArrayList<Long>();
+        final CountDownLatch emitted = new CountDownLatch(FRAME_COUNT - 1);
+        final ImageFrameSource source = new ImageFrameSource(configuration);
+        source.onEncodedFrameAvailable(new ImageFrameSource.OnEncodedFrameAvailable() {
+            @Override
+            public void onEncodedFrameAvailable(final ByteBuffer data, final boolean keyFrame, final String fileName) {
+                emitTimes.add(System.nanoTime());
+                fileNames.add(fileName);
+                emitted.countDown();
+            }
+        });
+
+        final long[] writeTimes = new long[FRAME_COUNT];
+        source.start();
+        try {
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                writeTimes[i] = System.nanoTime();
+                writeFrame(i);
+                Thread.sleep(TimeUnit.SECONDS.toMillis(1) / FPS);
+            }
+            assertTrue(emitted.await(10, TimeUnit.SECONDS));
+        } finally {
+            source.stop();
+        }
+
+        // The last frame is only complete once the encoder has been given the next image
+        long maxLatency = 0;
+        for (int i = 0; i < FRAME_COUNT - 1; i++) {
+            assertEquals(String.format("frame-%03d", i), fileNames.get(i));
+            maxLatency = Math.max(maxLatency, emitTimes.get(i) - writeTimes[i]);
+        }
+        assertTrue("Latency " + maxLatency, maxLatency < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, source.getPipelineMetrics().getSkippedImageCount());
+    }
+
+    private ImageFileMediaSourceConfiguration.Builder configure() {
+        return new ImageFileMediaSourceConfiguration.Builder()
+                .fps(FPS)
+                .dir(directory.toString() + File.separator)
+                .filenameFormat("frame-%03d")
+                .maxIndex(FRAME_COUNT)
+                .ffmpegPath(ffmpeg.toString())
+                .ffprobePath(ffmpeg.toString());
+    }
+
+    private void writeFrame(final int index) throws IOException {
+        // Each image is already an access unit, which the script passes through
+        final boolean keyFrame = index % KEY_FRAME_INTERVAL == 0;
+        Files.write(directory.resolve(String.format("frame-%03d", index)), new byte[] {
+                0, 0, 0, 1, (byte) (keyFrame ? 0x65 : 0x41), (byte) 0x88, (byte) index, 0x55 });
+    }
+}
@@ -0,0 +1,387 @@
+package com.amazonaws.kinesisvideo.java.service;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentials;
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
+import com.amazonaws.kinesisvideo.auth.StaticCredentialsProvider;
+import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+import com.amazonaws.services.kinesisvideo.AbstractAmazonKinesisVideo;
+import com.amazonaws.services.kinesisvideo.AmazonKinesisVideo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * AmazonKinesisVideoClientCache tests, including service calls against a local stub endpoint
+ */
+public class AmazonKinesisVideoClientCacheTest {
+    private static final String TEST_REGION = "us-west-2";
+    private static final String TEST_ENDPOINT = "https://kinesisvideo.us-west-2.amazonaws.com";
+    private static final String TEST_STREAM_NAME = "test-stream";
+    private static final int TEST_TIMEOUT_MILLIS = 5000;
+    private static final int TEST_SERVICE_CALLS = 50;
+    private static final int TEST_WAITING_CALLS = 4;
+    private static final long TEST_WAIT_SECONDS = 10;
+    private static final long TEST_IDLE_TIMEOUT_MILLIS = 50;
+    private static final byte[] DESCRIBE_STREAM_RESPONSE = ("{\"StreamInfo\":{"
+            + "\"StreamName\":\"" + TEST_STREAM_NAME + "\","
+            + "\"StreamARN\":\"arn:aws:kinesisvideo:us-west-2:123456789012:stream/" + TEST_STREAM_NAME + "/1\","
+            + "\"DeviceName\":\"test-device\","
+            + "\"MediaType\":\"video/h264\","
+            + "\"Version\":\"1\","
+            + "\"Status\":\"ACTIVE\","
+            + "\"CreationTime\":1500000000}}").getBytes(StandardCharsets.UTF_8);
+
+    private final Log mLog = new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "AmazonKinesisVideoClientCacheTest");
+    private final Set<Integer> mRemotePorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private HttpServer mServer;
+
+    @Before
+    public void setup() throws IOException {
+        // Otherwise delayed acknowledgements dominate the timings of small requests
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/describeStream", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                mRemotePorts.add(exchange.getRemoteAddress().getPort());
+                final InputStream requestBody = exchange.getRequestBody();
+                while (requestBody.read() != -1) {
+                    // Drain the request so that the connection can be kept alive
+                }
+
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, DESCRIBE_STREAM_RESPONSE.length);
+                final OutputStream responseBody = exchange.getResponseBody();
+                responseBody.write(DESCRIBE_STREAM_RESPONSE);
+                responseBody.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void reusesConnectionsAcrossServiceCalls() throws Exception {
+        final String endpoint = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        final StaticCredentialsProvider credentialsProvider =
+                new StaticCredentialsProvider(new KinesisVideoCredentials("accessKey", "secretKey"));
+        final JavaKinesisVideoServiceClient serviceClient = new JavaKinesisVideoServiceClient(mLog);
+        serviceClient.initialize(KinesisVideoClientConfiguration.builder()
+                .withRegion(TEST_REGION)
+                .withEndpoint(endpoint)
+                .build());
+
+        final long firstCallStartNanos = System.nanoTime();
+        final StreamDescription description =
+                serviceClient.describeStream(TEST_STREAM_NAME, TEST_TIMEOUT_MILLIS, credentialsProvider);
+        final long firstCallNanos = System.nanoTime() - firstCallStartNanos;
+        assertEquals(TEST_STREAM_NAME, description.getStreamName());
+
+        final long startNanos = System.nanoTime();
+        for (int i = 1; i < TEST_SERVICE_CALLS; i++) {
+            serviceClient.describeStream(TEST_STREAM_NAME, TEST_TIMEOUT_MILLIS, credentialsProvider);
+        }
+        final long averageNanos = (System.nanoTime() - startNanos) / (TEST_SERVICE_CALLS - 1);
+
+        // The following calls skip building the client and connecting
+        assertTrue(averageNanos < firstCallNanos);
+        assertEquals(1, mRemotePorts.size());
+    }
+
+    @Test
+    public void failsServiceCallsWhenCredentialsCantBeRetrieved() throws Exception {
+        final KinesisVideoException credentialsFailure = new KinesisVideoException("No credentials");
+        final KinesisVideoCredentialsProvider credentialsProvider = new KinesisVideoCredentialsProvider() {
+            @Override
+            public KinesisVideoCredentials getCredentials() throws KinesisVideoException {
+                throw credentialsFailure;
+            }
+
+            @Override
+            public KinesisVideoCredentials getUpdatedCredentials() throws KinesisVideoException {
+                throw credentialsFailure;
+            }
+        };
+        final JavaKinesisVideoServiceClient serviceClient = new JavaKinesisVideoServiceClient(mLog);
+        serviceClient.initialize(KinesisVideoClientConfiguration.builder()
+                .withRegion(TEST_REGION)
+                .withEndpoint("http://127.0.0.1:" + mServer.getAddress().getPort())
+                .build());
+
+        try {
+            serviceClient.describeStream(TEST_STREAM_NAME, TEST_TIMEOUT_MILLIS, credentialsProvider);
+            fail("Service call succeeded without credentials");
+        } catch (final KinesisVideoException e) {
+            Throwable cause = e;
+            while (cause != null && cause != credentialsFailure) {
+                cause = cause.getCause();
+            }
+            assertSame(credentialsFailure, cause);
+        }
+
+        // Not sent unsigned
+        assertTrue(mRemotePorts.isEmpty());
+    }
+
+    @Test
+    public void sharesClientsForTheSameKey() throws Exception {
+        final CountingClientFactory factory = new CountingClientFactory();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(factory);
+        final StaticCredentialsProvider credentialsProvider =
+                new StaticCredentialsProvider(new KinesisVideoCredentials("accessKey", "secretKey"));
+
+        final AmazonKinesisVideoClientCache.CachedClient first = cache.acquire(key(credentialsProvider));
+        final AmazonKinesisVideoClientCache.CachedClient second = cache.acquire(key(credentialsProvider));
+        final AmazonKinesisVideoClientCache.CachedClient sameCredentials = cache.acquire(key(
+                new StaticCredentialsProvider(new KinesisVideoCredentials("accessKey", "secretKey"))));
+        final AmazonKinesisVideoClientCache.CachedClient other = cache.acquire(key(
+                new StaticCredentialsProvider(new KinesisVideoCredentials("accessKey", "otherSecretKey"))));
+        cache.release(first);
+        cache.release(second);
+        cache.release(sameCredentials);
+        cache.release(other);
+
+        assertSame(first.getClient(), second.getClient());
+        assertSame(first.getClient(), sameCredentials.getClient());
+        assertNotSame(first.getClient(), other.getClient());
+        assertEquals(2, factory.mCreated);
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedClientWhenFull() throws Exception {
+        final CountingClientFactory factory = new CountingClientFactory();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(factory, 2,
+                AmazonKinesisVideoClientCache.DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+        final AmazonKinesisVideoClientCache.CachedClient first = cache.acquire(key(1));
+        cache.release(first);
+        cache.release(cache.acquire(key(2)));
+        cache.release(cache.acquire(key(1)));
+        cache.release(cache.acquire(key(3)));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, factory.mShutdown);
+        assertFalse(((FakeAmazonKinesisVideo) first.getClient()).mShutdown);
+
+        // The evicted client has been the least recently used one
+        cache.release(cache.acquire(key(1)));
+        assertEquals(3, factory.mCreated);
+    }
+
+    @Test
+    public void evictsIdleClients() throws Exception {
+        final CountingClientFactory factory = new CountingClientFactory();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(factory,
+                AmazonKinesisVideoClientCache.DEFAULT_MAX_CLIENTS, 1);
+
+        cache.release(cache.acquire(key(1)));
+        Thread.sleep(10);
+        cache.release(cache.acquire(key(2)));
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, factory.mShutdown);
+    }
+
+    @Test
+    public void evictsIdleClientsBehindRecentlyReleasedOne() throws Exception {
+        final CountingClientFactory factory = new CountingClientFactory();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(factory,
+                AmazonKinesisVideoClientCache.DEFAULT_MAX_CLIENTS, TEST_IDLE_TIMEOUT_MILLIS);
+
+        // Acquired before the idle one but released long after it
+        final AmazonKinesisVideoClientCache.CachedClient longCall = cache.acquire(key(1));
+        final AmazonKinesisVideoClientCache.CachedClient idle = cache.acquire(key(2));
+        cache.release(idle);
+        Thread.sleep(2 * TEST_IDLE_TIMEOUT_MILLIS);
+        cache.release(longCall);
+        cache.release(cache.acquire(key(3)));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(((FakeAmazonKinesisVideo) idle.getClient()).mShutdown);
+        assertFalse(((FakeAmazonKinesisVideo) longCall.getClient()).mShutdown);
+    }
+
+    @Test
+    public void shutsEvictedClientDownOnceReleased() throws Exception {
+        final CountingClientFactory factory = new CountingClientFactory();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(factory);
+
+        final AmazonKinesisVideoClientCache.CachedClient inUse = cache.acquire(key(1));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(((FakeAmazonKinesisVideo) inUse.getClient()).mShutdown);
+
+        cache.release(inUse);
+        assertTrue(((FakeAmazonKinesisVideo) inUse.getClient()).mShutdown);
+    }
+
+    @Test
+    public void buildsClientsOutsideOfTheLock() throws Exception {
+        final int slowTimeoutInMillis = 1;
+        final CountDownLatch slowBuildStarted = new CountDownLatch(1);
+        final CountDownLatch slowBuildReleased = new CountDownLatch(1);
+        final AtomicInteger slowBuilds = new AtomicInteger();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(
+                new AmazonKinesisVideoClientCache.ClientFactory() {
+                    @Nonnull
+                    @Override
+                    public AmazonKinesisVideo create(@Nonnull final AmazonKinesisVideoClientCache.Key key)
+                            throws KinesisVideoException {
+                        if (key.getTimeoutInMillis() == slowTimeoutInMillis) {
+                            slowBuilds.incrementAndGet();
+                            slowBuildStarted.countDown();
+                            try {
+                                slowBuildReleased.await();
+                            } catch (final InterruptedException e) {
+                                throw new KinesisVideoException(e);
+                            }
+                        }
+                        return new FakeAmazonKinesisVideo(new CountingClientFactory());
+                    }
+                });
+
+        final ExecutorService threads = Executors.newFixedThreadPool(TEST_WAITING_CALLS);
+        try {
+            final List<Future<AmazonKinesisVideoClientCache.CachedClient>> slowCalls =
+                    new ArrayList<Future<AmazonKinesisVideoClientCache.CachedClient>>();
+            for (int i = 0; i < TEST_WAITING_CALLS; i++) {
+                slowCalls.add(threads.submit(new Callable<AmazonKinesisVideoClientCache.CachedClient>() {
+                    @Override
+                    public AmazonKinesisVideoClientCache.CachedClient call() throws Exception {
+                        return cache.acquire(key(slowTimeoutInMillis));
+                    }
+                }));
+            }
+            assertTrue(slowBuildStarted.await(TEST_WAIT_SECONDS, TimeUnit.SECONDS));
+
+            // Other keys are served while the slow build is going on
+            cache.release(cache.acquire(key(TEST_TIMEOUT_MILLIS)));
+            for (final Future<AmazonKinesisVideoClientCache.CachedClient> slowCall : slowCalls) {
+                assertFalse(slowCall.isDone());
+            }
+
+            slowBuildReleased.countDown();
+            final AmazonKinesisVideoClientCache.CachedClient first =
+                    slowCalls.get(0).get(TEST_WAIT_SECONDS, TimeUnit.SECONDS);
+            for (final Future<AmazonKinesisVideoClientCache.CachedClient> slowCall : slowCalls) {
+                final AmazonKinesisVideoClientCache.CachedClient cachedClient =
+                        slowCall.get(TEST_WAIT_SECONDS, TimeUnit.SECONDS);
+                assertSame(first, cachedClient);
+                cache.release(cachedClient);
+            }
+        } finally {
+            slowBuildReleased.countDown();
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, slowBuilds.get());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void retriesFailedBuilds() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final AmazonKinesisVideoClientCache cache = new AmazonKinesisVideoClientCache(
+                new AmazonKinesisVideoClientCache.ClientFactory() {
+                    @Nonnull
+                    @Override
+                    public AmazonKinesisVideo create(@Nonnull final AmazonKinesisVideoClientCache.Key key)
+                            throws KinesisVideoException {
+                        if (attempts.incrementAndGet() == 1) {
+                            throw new KinesisVideoException("Unknown region");
+                        }
+                        return new FakeAmazonKinesisVideo(new CountingClientFactory());
+                    }
+                });
+
+        try {
+            cache.acquire(key(1));
+            fail("Failed build handed out a client");
+        } catch (final KinesisVideoException e) {
+            assertEquals("Unknown region", e.getMessage());
+        }
+
+        cache.release(cache.acquire(key(1)));
+        assertEquals(2, attempts.get());
+        assertEquals(1, cache.size());
+    }
+
+    private static AmazonKinesisVideoClientCache.Key key(final StaticCredentialsProvider credentialsProvider)
+            throws KinesisVideoException {
+        return new AmazonKinesisVideoClientCache.Key(credentialsProvider.getCredentials(), TEST_REGION, TEST_ENDPOINT,
+                TEST_TIMEOUT_MILLIS);
+    }
+
+    private static AmazonKinesisVideoClientCache.Key key(final int timeoutInMillis) {
+        return new AmazonKinesisVideoClientCache.Key(null, TEST_REGION, TEST_ENDPOINT, timeoutInMillis);
+    }
+
+    private static final class CountingClientFactory implements AmazonKinesisVideoClientCache.ClientFactory {
+        private int mCreated;
+        private int mShutdown;
+
+        @Nonnull
+        @Override
+        public AmazonKinesisVideo create(@Nonnull final AmazonKinesisVideoClientCache.Key key) {
+            mCreated++;
+            return new FakeAmazonKinesisVideo(this);
+        }
+    }
+
+    private static final class FakeAmazonKinesisVideo extends AbstractAmazonKinesisVideo {
+        private final CountingClientFactory mFactory;
+        private boolean mShutdown;
+
+        private FakeAmazonKinesisVideo(final CountingClientFactory factory) {
+            mFactory = factory;
+        }
+
+        @Override
+        public void shutdown() {
+            assertFalse(mShutdown);
+            mShutdown = true;
+            mFactory.mShutdown++;
+        }
+    }
+}
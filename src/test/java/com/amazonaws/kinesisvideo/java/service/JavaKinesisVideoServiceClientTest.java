@@ -0,0 +1,46 @@
+package com.amazonaws.kinesisvideo.java.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+
+/**
+ * JavaKinesisVideoServiceClient lifecycle tests
+ */
+public class JavaKinesisVideoServiceClientTest {
+    private static final String EVENT_LOOP_THREAD_PREFIX = "kinesis-video-event-loop-";
+    private static final int TEST_EVENT_LOOP_THREADS = 2;
+
+    @Test
+    public void freeStopsThePutMediaEventLoops() throws Exception {
+        final int threadsBefore = countEventLoopThreads();
+        final JavaKinesisVideoServiceClient serviceClient =
+                new JavaKinesisVideoServiceClient(new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "ServiceClientTest"));
+        serviceClient.initialize(KinesisVideoClientConfiguration.builder()
+                .withRegion("us-west-2")
+                .withPutMediaEventLoopThreads(TEST_EVENT_LOOP_THREADS)
+                .build());
+        assertEquals(threadsBefore + TEST_EVENT_LOOP_THREADS, countEventLoopThreads());
+
+        serviceClient.free();
+        assertEquals(threadsBefore, countEventLoopThreads());
+
+        // Freeing twice is harmless
+        serviceClient.free();
+    }
+
+    private static int countEventLoopThreads() {
+        int count = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(EVENT_LOOP_THREAD_PREFIX)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * In-memory stand-in for the native producer, creating {@link FakeKinesisVideoProducerStream}s.
+ * <p>
+ * Service call results are accepted and ignored.
+ */
+public class FakeKinesisVideoProducer implements KinesisVideoProducer {
+    private final Map<String, FakeKinesisVideoProducerStream> mStreams =
+            new ConcurrentHashMap<String, FakeKinesisVideoProducerStream>();
+    private final AtomicLong mNextStreamHandle = new AtomicLong(1);
+    private volatile boolean mReady;
+
+    @Override
+    public boolean isInitialized() {
+        return mReady;
+    }
+
+    @Override
+    public boolean isReady() {
+        return mReady;
+    }
+
+    @Override
+    public void create(@Nonnull final DeviceInfo deviceInfo) throws ProducerException {
+        mReady = true;
+    }
+
+    @Override
+    public void createSync(@Nonnull final DeviceInfo deviceInfo) throws ProducerException {
+        mReady = true;
+    }
+
+    @Override
+    public void free() throws ProducerException {
+        stopStreams();
+        mStreams.clear();
+        mReady = false;
+    }
+
+    @Override
+    public void stopStreams() throws ProducerException {
+        for (final FakeKinesisVideoProducerStream stream : mStreams.values()) {
+            stream.stopStream();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public FakeKinesisVideoProducerStream createStream(@Nonnull final StreamInfo streamInfo,
+                                                       @Nullable final StreamCallbacks streamCallbacks)
+            throws ProducerException {
+        final FakeKinesisVideoProducerStream stream =
+                new FakeKinesisVideoProducerStream(mNextStreamHandle.getAndIncrement(), streamInfo.getName());
+        mStreams.put(streamInfo.getName(), stream);
+        return stream;
+    }
+
+    @Nonnull
+    @Override
+    public FakeKinesisVideoProducerStream createStreamSync(@Nonnull final StreamInfo streamInfo,
+                                                           @Nullable final StreamCallbacks streamCallbacks)
+            throws ProducerException {
+        return createStream(streamInfo, streamCallbacks);
+    }
+
+    @Override
+    public void createStreamResult(final long customData, @Nullable final String streamArn, final int httpStatusCode)
+            throws ProducerException {
+    }
+
+    @Override
+    public void describeStreamResult(final long customData,
+                                     @Nullable final StreamDescription streamDescription,
+                                     final int httpStatusCode) throws ProducerException {
+    }
+
+    @Override
+    public void getStreamingEndpointResult(final long customData, @Nullable final String endpoint,
+                                           final int httpStatusCode) throws ProducerException {
+    }
+
+    @Override
+    public void getStreamingTokenResult(final long customData, @Nullable final byte[] token, final long expiration,
+                                        final int httpStatusCode) throws ProducerException {
+    }
+
+    @Override
+    public void putStreamResult(final long customData, final long clientStreamHandle, final int httpStatusCode)
+            throws ProducerException {
+    }
+
+    @Override
+    public void tagResourceResult(final long customData, final int httpStatusCode) throws ProducerException {
+    }
+
+    @Override
+    public void createDeviceResult(final long customData, @Nullable final String deviceArn, final int httpStatusCode)
+            throws ProducerException {
+    }
+
+    @Override
+    public void deviceCertToTokenResult(final long customData, @Nullable final byte[] token, final long expiration,
+                                        final int httpStatusCode) throws ProducerException {
+    }
+
+    @Nonnull
+    @Override
+    public KinesisVideoMetrics getMetrics() throws ProducerException {
+        return new KinesisVideoMetrics();
+    }
+}
@@ -0,0 +1,242 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.amazonaws.kinesisvideo.common.io.NotifyingByteChannel;
+
+/**
+ * In-memory stand-in for the native producer stream.
+ * <p>
+ * The stream always has data: reads are served from a block of synthetic bytes, wrapping around as if the
+ * content store held an endless stream, until the stream is stopped. This allows the Java side of the upload path
+ * to be exercised and benchmarked without the native library.
+ */
+public class FakeKinesisVideoProducerStream implements KinesisVideoProducerStream {
+    private static final int CONTENT_SIZE = 1024 * 1024;
+
+    private final long mStreamHandle;
+    private final String mStreamName;
+    private final byte[] mContent;
+    private final ByteBuffer mContentBuffer;
+    private final AtomicLong mFramesPut = new AtomicLong();
+    private final AtomicLong mFrameBytesPut = new AtomicLong();
+    private final AtomicLong mUploadHandle = new AtomicLong(ReadResult.INVALID_UPLOAD_HANDLE_VALUE);
+    private int mContentPosition;
+    private volatile boolean mStopped;
+    private volatile Runnable mReadyListener;
+
+    public FakeKinesisVideoProducerStream(final long streamHandle, @Nullable final String streamName) {
+        mStreamHandle = streamHandle;
+        mStreamName = streamName;
+        mContent = new byte[CONTENT_SIZE];
+        new Random(streamHandle).nextBytes(mContent);
+        mContentBuffer = ByteBuffer.wrap(mContent);
+    }
+
+    /**
+     * @return Number of frames put into the stream
+     */
+    public long getFramesPut() {
+        return mFramesPut.get();
+    }
+
+    /**
+     * @return Total size of the frames put into the stream
+     */
+    public long getFrameBytesPut() {
+        return mFrameBytesPut.get();
+    }
+
+    @Override
+    public InputStream getDataStream(final long uploadHandle) throws ProducerException {
+        mUploadHandle.set(uploadHandle);
+        return new FakeDataStream();
+    }
+
+    @Override
+    public synchronized void getStreamData(@Nonnull final byte[] fillBuffer,
+                                           final int offset,
+                                           final int length,
+                                           @Nonnull final ReadResult readResult) throws ProducerException {
+        if (mStopped) {
+            readResult.setReadResult(mUploadHandle.get(), 0, true);
+            return;
+        }
+
+        final int count = Math.min(length, CONTENT_SIZE - mContentPosition);
+        System.arraycopy(mContent, mContentPosition, fillBuffer, offset, count);
+        advance(count);
+        readResult.setReadResult(mUploadHandle.get(), count, false);
+    }
+
+    @Override
+    public synchronized void getStreamData(@Nonnull final ByteBuffer fillBuffer,
+                                           @Nonnull final ReadResult readResult) throws ProducerException {
+        if (mStopped) {
+            readResult.setReadResult(mUploadHandle.get(), 0, true);
+            return;
+        }
+
+        final int count = Math.min(fillBuffer.remaining(), CONTENT_SIZE - mContentPosition);
+        mContentBuffer.limit(mContentPosition + count).position(mContentPosition);
+        fillBuffer.put(mContentBuffer);
+        advance(count);
+        readResult.setReadResult(mUploadHandle.get(), count, false);
+    }
+
+    @Override
+    public void putFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws ProducerException {
+        mFramesPut.incrementAndGet();
+        mFrameBytesPut.addAndGet(kinesisVideoFrame.getSize());
+    }
+
+    @Override
+    public void fragmentAck(final long uploadHandle, @Nonnull final KinesisVideoFragmentAck kinesisVideoFragmentAck)
+            throws ProducerException {
+    }
+
+    @Override
+    public void parseFragmentAck(final long uploadHandle, @Nonnull final String kinesisVideoFragmentAck)
+            throws ProducerException {
+    }
+
+    @Override
+    public void streamFormatChanged(@Nullable final byte[] codecPrivateData) throws ProducerException {
+    }
+
+    @Override
+    public long getStreamHandle() {
+        return mStreamHandle;
+    }
+
+    @Override
+    public String getStreamName() {
+        return mStreamName;
+    }
+
+    @Override
+    public void stopStream() throws ProducerException {
+        mStopped = true;
+    }
+
+    @Override
+    public void streamTerminated(final long uploadHandle, final int statusCode) throws ProducerException {
+        mStopped = true;
+    }
+
+    @Override
+    public KinesisVideoStreamMetrics getMetrics() throws ProducerException {
+        return new KinesisVideoStreamMetrics();
+    }
+
+    @Override
+    public void streamUnderflowReport() throws ProducerException {
+    }
+
+    @Override
+    public void streamLatencyPressure(final long duration) throws ProducerException {
+    }
+
+    @Override
+    public void streamConnectionStale(final long lastAckDuration) throws ProducerException {
+    }
+
+    @Override
+    public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck) throws ProducerException {
+    }
+
+    @Override
+    public void droppedFrameReport(final long frameTimecode) throws ProducerException {
+    }
+
+    @Override
+    public void droppedFragmentReport(final long fragmentTimecode) throws ProducerException {
+    }
+
+    @Override
+    public void streamErrorReport(final long fragmentTimecode, final long statusCode) throws ProducerException {
+    }
+
+    @Override
+    public void streamDataAvailable(final long uploadHandle, final long duration, final long availableSize)
+            throws ProducerException {
+    }
+
+    @Override
+    public void streamReady() throws ProducerException {
+    }
+
+    @Override
+    public void streamClosed(final long uploadHandle) throws ProducerException {
+        mStopped = true;
+        final Runnable listener = mReadyListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private void advance(final int count) {
+        mContentPosition += count;
+        if (mContentPosition == CONTENT_SIZE) {
+            mContentPosition = 0;
+        }
+    }
+
+    /**
+     * Data stream which, like the native one, can be read both as a stream and as a channel.
+     */
+    private final class FakeDataStream extends InputStream implements NotifyingByteChannel {
+        private final ReadResult mReadResult = new ReadResult();
+
+        @Override
+        public int read() throws IOException {
+            throw new IOException("Can't call byte-by-byte");
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            try {
+                getStreamData(b, off, len, mReadResult);
+            } catch (final ProducerException e) {
+                throw new IOException(e);
+            }
+
+            return toBytesRead(mReadResult);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            try {
+                getStreamData(dst, mReadResult);
+            } catch (final ProducerException e) {
+                throw new IOException(e);
+            }
+
+            return toBytesRead(mReadResult);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !mStopped;
+        }
+
+        /**
+         * Only run once the stream is stopped, as there is always data until then.
+         */
+        @Override
+        public void setReadyListener(@Nullable final Runnable listener) {
+            mReadyListener = listener;
+        }
+
+        private int toBytesRead(final ReadResult readResult) {
+            return readResult.isEndOfStream() && readResult.getReadBytes() == 0 ? -1 : readResult.getReadBytes();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.encoding.ChunkedOutputStream;
+
+/**
+ * Compares the ways stream data can be moved from the producer stream to a channel as chunks:
+ * <ul>
+ *     <li>heap array, chunk-encoded into a fresh array, copied into a temporary direct buffer by the channel</li>
+ *     <li>heap array, chunk-encoded in place by {@link ChunkedOutputStream}, copied by the channel</li>
+ *     <li>direct buffer filled in place and written as is</li>
+ * </ul>
+ * The stream is a {@link FakeKinesisVideoProducerStream} and the channel writes to the null device, so only the
+ * Java side of the hand-off is measured. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamDataBenchmark {
+    private static final String NULL_DEVICE = "/dev/null";
+
+    @Param({ "1024", "16384" })
+    private int chunkSize;
+
+    private FakeKinesisVideoProducerStream stream;
+    private ReadResult readResult;
+    private FileChannel sink;
+    private byte[] heapBuffer;
+    private ChunkedOutputStream chunkedOutputStream;
+    private ByteBuffer directBuffer;
+
+    @Setup
+    public void setup() throws IOException, ProducerException {
+        stream = new FakeKinesisVideoProducerStream(1, "benchmark-stream");
+        stream.getDataStream(1);
+        readResult = new ReadResult();
+        sink = FileChannel.open(Paths.get(NULL_DEVICE), StandardOpenOption.WRITE);
+        heapBuffer = new byte[chunkSize];
+        chunkedOutputStream = new ChunkedOutputStream(Channels.newOutputStream(sink), chunkSize);
+        directBuffer = ByteBuffer.allocateDirect(ChunkEncoder.MAX_CHUNK_HEADER_SIZE + chunkSize
+                + ChunkEncoder.CHUNK_TRAILER_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.close();
+    }
+
+    @Benchmark
+    public void heapArrayWithChunkEncoder() throws Exception {
+        stream.getStreamData(heapBuffer, 0, chunkSize, readResult);
+        sink.write(ByteBuffer.wrap(ChunkEncoder.encode(heapBuffer, readResult.getReadBytes())));
+    }
+
+    @Benchmark
+    public void heapArrayWithChunkedOutputStream() throws Exception {
+        stream.getStreamData(heapBuffer, 0, chunkSize, readResult);
+        chunkedOutputStream.write(heapBuffer, 0, readResult.getReadBytes());
+    }
+
+    @Benchmark
+    public void directBuffer() throws Exception {
+        directBuffer.clear();
+        directBuffer.position(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+        directBuffer.limit(ChunkEncoder.MAX_CHUNK_HEADER_SIZE + chunkSize);
+        stream.getStreamData(directBuffer, readResult);
+
+        final int payloadEnd = ChunkEncoder.MAX_CHUNK_HEADER_SIZE + readResult.getReadBytes();
+        final int start = ChunkEncoder.writeChunkHeader(directBuffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE,
+                readResult.getReadBytes());
+        directBuffer.limit(ChunkEncoder.writeChunkTrailer(directBuffer, payloadEnd));
+        directBuffer.position(start);
+        while (directBuffer.hasRemaining()) {
+            sink.write(directBuffer);
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StreamDataBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.producer.DataAvailabilityMetrics;
+
+/**
+ * DataAvailabilitySignal tests
+ */
+public class DataAvailabilitySignalTest {
+    private static final long TEST_TIMEOUT_SECONDS = 10;
+    private static final int TEST_NOTIFICATIONS = 1000;
+
+    @Test
+    public void coalescesNotificationsReceivedWhileReaderIsBusy() throws Exception {
+        final DataAvailabilityMetrics metrics = new DataAvailabilityMetrics();
+        final DataAvailabilitySignal signal = new DataAvailabilitySignal(metrics);
+        for (int i = 0; i < TEST_NOTIFICATIONS; i++) {
+            signal.signal(i);
+        }
+
+        signal.acquire();
+        assertFalse(signal.tryAcquire());
+        assertEquals(TEST_NOTIFICATIONS - 1, signal.getAvailableSize());
+        assertEquals(TEST_NOTIFICATIONS, metrics.getNotifications());
+        assertEquals(0, metrics.getWakeups());
+    }
+
+    @Test
+    public void rearmLetsTheNextAcquireReturn() throws Exception {
+        final DataAvailabilitySignal signal = new DataAvailabilitySignal(new DataAvailabilityMetrics());
+        assertFalse(signal.tryAcquire());
+
+        signal.rearm();
+        assertTrue(signal.tryAcquire());
+        assertFalse(signal.tryAcquire());
+    }
+
+    @Test
+    public void runsListenerAfterEachNotificationIsPending() throws Exception {
+        final DataAvailabilitySignal signal = new DataAvailabilitySignal(new DataAvailabilityMetrics());
+        final AtomicInteger pendingWhenNotified = new AtomicInteger();
+        signal.setListener(new Runnable() {
+            @Override
+            public void run() {
+                if (signal.tryAcquire()) {
+                    pendingWhenNotified.incrementAndGet();
+                }
+            }
+        });
+
+        for (int i = 0; i < TEST_NOTIFICATIONS; i++) {
+            signal.signal(i);
+        }
+
+        signal.setListener(null);
+        signal.signal(TEST_NOTIFICATIONS);
+        assertEquals(TEST_NOTIFICATIONS, pendingWhenNotified.get());
+    }
+
+    @Test
+    public void wakesParkedReaderOncePerBatch() throws Exception {
+        final DataAvailabilityMetrics metrics = new DataAvailabilityMetrics();
+        final DataAvailabilitySignal signal = new DataAvailabilitySignal(metrics);
+        final AtomicInteger acquired = new AtomicInteger();
+        final CountDownLatch readerDone = new CountDownLatch(1);
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    signal.acquire();
+                    acquired.incrementAndGet();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    readerDone.countDown();
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+
+        awaitParked(reader);
+        for (int i = 0; i < TEST_NOTIFICATIONS; i++) {
+            signal.signal(i);
+        }
+
+        assertTrue(readerDone.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, acquired.get());
+        assertEquals(1, metrics.getWakeups());
+        assertEquals(TEST_NOTIFICATIONS, metrics.getNotifications());
+    }
+
+    @Test
+    public void interruptsParkedReader() throws Exception {
+        final DataAvailabilitySignal signal = new DataAvailabilitySignal(new DataAvailabilityMetrics());
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    signal.acquire();
+                } catch (final InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+
+        reader.interrupt();
+        assertTrue(interrupted.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static void awaitParked(final Thread thread) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(TEST_TIMEOUT_SECONDS);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadlineNanos);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferArena;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+/**
+ * Measures the cost per frame of putting heap frames from a high frame rate source through a stub of the native
+ * call, which copies the frame data into a content store like the native code does:
+ * <ul>
+ *     <li>the way frames used to be put: the stream lock per frame and a new direct buffer from
+ *     {@link KinesisVideoFrame#getData()}</li>
+ *     <li>{@link FramePutter#putFrame}: the stream lock and a leased buffer per frame</li>
+ *     <li>{@link FramePutter#putFrames}: the stream lock and a leased buffer per batch</li>
+ * </ul>
+ * Run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramePutterBenchmark {
+    private static final int BATCH_SIZE = 32;
+    private static final int CONTENT_STORE_SIZE = 4 * 1024 * 1024;
+    private static final long STREAM_HANDLE = 0x7f0000001000L;
+
+    @Param({ "256", "16384" })
+    private int frameSize;
+
+    private NativeCallLock lock;
+    private StubStream stream;
+    private FramePutter framePutter;
+    private byte[][] payloads;
+    private KinesisVideoFrame[] frames;
+
+    @Setup
+    public void setup() {
+        lock = new NativeCallLock(NativeLockingMode.PER_STREAM);
+        stream = new StubStream();
+        framePutter = new FramePutter(lock, new DirectBufferArena(DirectBufferArena.DEFAULT_MAX_BYTES,
+                new Log(Log.SYSTEM_OUT, LogLevel.WARN, "FramePutterBenchmark")), stream);
+        payloads = new byte[BATCH_SIZE][frameSize];
+        frames = new KinesisVideoFrame[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            frames[i] = new KinesisVideoFrame(i, 0, i, i, 1, ByteBuffer.wrap(payloads[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void directBufferPerFrame() throws ProducerException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            // getData consumes the heap buffer, so wrap the payload again like a media source would
+            final KinesisVideoFrame frame = new KinesisVideoFrame(i, 0, i, i, 1, ByteBuffer.wrap(payloads[i]));
+            lock.lockStream(STREAM_HANDLE);
+            try {
+                stream.putKinesisVideoFrame(STREAM_HANDLE, frame);
+            } finally {
+                lock.unlockStream(STREAM_HANDLE);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void putFrame() throws ProducerException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            framePutter.putFrame(STREAM_HANDLE, frames[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] putFrames() {
+        return framePutter.putFrames(STREAM_HANDLE, frames, BATCH_SIZE);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FramePutterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Stand-in for the native stream, copying the frame data into its content store.
+     */
+    private static final class StubStream implements FramePutter.NativeFrameCall {
+        private final ByteBuffer contentStore = ByteBuffer.allocateDirect(CONTENT_STORE_SIZE);
+
+        @Override
+        public void putKinesisVideoFrame(final long streamHandle, @Nonnull final KinesisVideoFrame kinesisVideoFrame) {
+            final ByteBuffer data = kinesisVideoFrame.getData();
+            if (contentStore.remaining() < data.remaining()) {
+                contentStore.clear();
+            }
+
+            contentStore.put(data.duplicate());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.buffer.DirectBufferArena;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+/**
+ * FramePutter tests
+ */
+public class FramePutterTest {
+    private static final long STREAM_HANDLE = 1;
+    private static final int STATUS_INVALID_FRAME = 0x32000010;
+
+    private final DirectBufferArena arena = new DirectBufferArena(1024 * 1024,
+            new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "FramePutterTest"));
+    private final List<byte[]> putPayloads = new ArrayList<byte[]>();
+    private final FramePutter framePutter = new FramePutter(new NativeCallLock(NativeLockingMode.PER_STREAM), arena,
+            new FramePutter.NativeFrameCall() {
+                @Override
+                public void putKinesisVideoFrame(final long streamHandle,
+                                                 @Nonnull final KinesisVideoFrame kinesisVideoFrame)
+                        throws ProducerException {
+                    assertTrue(kinesisVideoFrame.isDirect());
+                    if (kinesisVideoFrame.getIndex() == 2) {
+                        throw new ProducerException("Invalid frame", STATUS_INVALID_FRAME);
+                    }
+
+                    final byte[] payload = new byte[kinesisVideoFrame.getSize()];
+                    kinesisVideoFrame.getData().duplicate().get(payload);
+                    putPayloads.add(payload);
+                }
+            });
+
+    @Test
+    public void putsBatchWithPerFrameStatus() {
+        final KinesisVideoFrame[] frames = {
+                heapFrame(0, 100),
+                directFrame(1, 200),
+                heapFrame(2, 300),
+                heapFrame(3, 5000),
+                heapFrame(4, 1)
+        };
+
+        final int[] statuses = framePutter.putFrames(STREAM_HANDLE, frames, 4);
+
+        assertArrayEquals(new int[] { ProducerException.STATUS_SUCCESS, ProducerException.STATUS_SUCCESS,
+                STATUS_INVALID_FRAME, ProducerException.STATUS_SUCCESS }, statuses);
+        assertEquals(3, putPayloads.size());
+        assertPayload(0, 100, putPayloads.get(0));
+        assertPayload(1, 200, putPayloads.get(1));
+        assertPayload(3, 5000, putPayloads.get(2));
+
+        // All heap frames shared a single buffer, which went back to the arena
+        assertEquals(1, arena.getAllocationCount());
+        assertEquals(0, arena.getOutstandingLeaseCount());
+
+        // The caller's frames are left as they were
+        assertEquals(100, frames[0].getSize());
+    }
+
+    @Test
+    public void putsSingleFrames() throws ProducerException {
+        framePutter.putFrame(STREAM_HANDLE, heapFrame(0, 100));
+        framePutter.putFrame(STREAM_HANDLE, heapFrame(1, 100));
+
+        try {
+            framePutter.putFrame(STREAM_HANDLE, heapFrame(2, 100));
+            fail("The stub fails frame 2");
+        } catch (final ProducerException e) {
+            assertEquals(STATUS_INVALID_FRAME, e.getStatusCode());
+        }
+
+        assertEquals(2, putPayloads.size());
+        assertEquals(1, arena.getAllocationCount());
+        assertEquals(0, arena.getOutstandingLeaseCount());
+    }
+
+    private static KinesisVideoFrame heapFrame(final int index, final int size) {
+        return new KinesisVideoFrame(index, 0, index, index, 1, ByteBuffer.wrap(payload(index, size)));
+    }
+
+    private static KinesisVideoFrame directFrame(final int index, final int size) {
+        final ByteBuffer data = ByteBuffer.allocateDirect(size);
+        data.put(payload(index, size)).flip();
+        return new KinesisVideoFrame(index, 0, index, index, 1, data);
+    }
+
+    private static byte[] payload(final int index, final int size) {
+        final byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) (index * 31 + i);
+        }
+        return payload;
+    }
+
+    private static void assertPayload(final int index, final int size, final byte[] actual) {
+        assertArrayEquals(payload(index, size), actual);
+    }
+}
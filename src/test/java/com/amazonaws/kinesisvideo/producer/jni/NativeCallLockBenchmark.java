@@ -0,0 +1,117 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@code putFrame} throughput of eight encoder threads spread over a growing number of streams, with the
+ * locking the JNI wrapper does around a stub of the native call.
+ * <p>
+ * The stub copies the frame into a per-stream content store, which is what the native call spends most of its time
+ * on. With {@link NativeLockingMode#GLOBAL} the throughput stays flat regardless of the stream count, with
+ * {@link NativeLockingMode#PER_STREAM} it scales with the number of streams up to the number of cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class NativeCallLockBenchmark {
+    private static final int FRAME_SIZE = 16 * 1024;
+    private static final int CONTENT_STORE_SIZE = 4 * 1024 * 1024;
+
+    // Stream handles are native pointers, so model them as aligned addresses
+    private static final long FIRST_STREAM_HANDLE = 0x7f0000001000L;
+    private static final long STREAM_HANDLE_ALIGNMENT = 0x1000L;
+
+    @State(Scope.Benchmark)
+    public static class Client {
+        @Param({ "GLOBAL", "PER_STREAM" })
+        private NativeLockingMode mode;
+
+        @Param({ "1", "2", "4", "8" })
+        private int streams;
+
+        private NativeCallLock lock;
+        private StubStream[] stubStreams;
+        private final AtomicInteger nextThread = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            lock = new NativeCallLock(mode);
+            stubStreams = new StubStream[streams];
+            for (int i = 0; i < streams; i++) {
+                stubStreams[i] = new StubStream(FIRST_STREAM_HANDLE + i * STREAM_HANDLE_ALIGNMENT);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EncoderThread {
+        private StubStream stream;
+        private byte[] frame;
+
+        @Setup
+        public void setup(final Client client) {
+            stream = client.stubStreams[client.nextThread.getAndIncrement() % client.streams];
+            frame = new byte[FRAME_SIZE];
+            new Random(0).nextBytes(frame);
+        }
+    }
+
+    @Benchmark
+    public int putFrame(final Client client, final EncoderThread thread) {
+        final StubStream stream = thread.stream;
+        client.lock.lockStream(stream.handle);
+        try {
+            return stream.putKinesisVideoFrame(thread.frame);
+        } finally {
+            client.lock.unlockStream(stream.handle);
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NativeCallLockBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Stand-in for the native stream, which is not thread safe on its own.
+     */
+    private static final class StubStream {
+        private final long handle;
+        private final byte[] contentStore = new byte[CONTENT_STORE_SIZE];
+        private int position;
+
+        StubStream(final long handle) {
+            this.handle = handle;
+        }
+
+        int putKinesisVideoFrame(final byte[] frame) {
+            if (position + frame.length > contentStore.length) {
+                position = 0;
+            }
+
+            System.arraycopy(frame, 0, contentStore, position, frame.length);
+            position += frame.length;
+            return position;
+        }
+    }
+}
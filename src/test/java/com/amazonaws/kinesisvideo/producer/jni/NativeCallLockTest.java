@@ -0,0 +1,123 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * NativeCallLock tests
+ */
+public class NativeCallLockTest {
+    private static final long BLOCKED_WAIT_MILLIS = 500;
+    private static final long FIRST_STREAM_HANDLE = 0x7f0000001000L;
+    private static final long STREAM_HANDLE_ALIGNMENT = 0x1000L;
+
+    @Test
+    public void perStreamModeRunsDifferentStreamsInParallel() throws Exception {
+        final NativeCallLock lock = new NativeCallLock(NativeLockingMode.PER_STREAM);
+        final long[] handles = handlesOnDifferentStripes(lock, 2);
+
+        lock.lockStream(handles[0]);
+        try {
+            assertTrue(runsWhileHeld(new Runnable() {
+                @Override
+                public void run() {
+                    lock.lockStream(handles[1]);
+                    lock.unlockStream(handles[1]);
+                }
+            }));
+        } finally {
+            lock.unlockStream(handles[0]);
+        }
+    }
+
+    @Test
+    public void globalModeSerializesAllStreams() throws Exception {
+        final NativeCallLock lock = new NativeCallLock(NativeLockingMode.GLOBAL);
+        assertEquals(1, lock.getStripeCount());
+
+        lock.lockStream(FIRST_STREAM_HANDLE);
+        try {
+            assertFalse(runsWhileHeld(new Runnable() {
+                @Override
+                public void run() {
+                    lock.lockStream(FIRST_STREAM_HANDLE + STREAM_HANDLE_ALIGNMENT);
+                    lock.unlockStream(FIRST_STREAM_HANDLE + STREAM_HANDLE_ALIGNMENT);
+                }
+            }));
+        } finally {
+            lock.unlockStream(FIRST_STREAM_HANDLE);
+        }
+    }
+
+    @Test
+    public void clientLockExcludesStreamCalls() throws Exception {
+        final NativeCallLock lock = new NativeCallLock(NativeLockingMode.PER_STREAM);
+
+        lock.lockClient();
+        try {
+            assertFalse(runsWhileHeld(new Runnable() {
+                @Override
+                public void run() {
+                    lock.lockStream(FIRST_STREAM_HANDLE);
+                    lock.unlockStream(FIRST_STREAM_HANDLE);
+                }
+            }));
+        } finally {
+            lock.unlockClient();
+        }
+    }
+
+    @Test
+    public void alignedHandlesSpreadOverStripes() {
+        final NativeCallLock lock = new NativeCallLock(NativeLockingMode.PER_STREAM);
+        final Set<Integer> stripes = new HashSet<Integer>();
+        for (int i = 0; i < lock.getStripeCount(); i++) {
+            stripes.add(lock.stripe(FIRST_STREAM_HANDLE + i * STREAM_HANDLE_ALIGNMENT));
+        }
+
+        // Far from all handles colliding on a handful of stripes
+        assertTrue(stripes.size() > lock.getStripeCount() / 2);
+    }
+
+    private static long[] handlesOnDifferentStripes(final NativeCallLock lock, final int count) {
+        final long[] handles = new long[count];
+        final Set<Integer> stripes = new HashSet<Integer>();
+        long handle = FIRST_STREAM_HANDLE;
+        for (int i = 0; i < count; handle += STREAM_HANDLE_ALIGNMENT) {
+            if (stripes.add(lock.stripe(handle))) {
+                handles[i++] = handle;
+            }
+        }
+
+        return handles;
+    }
+
+    /**
+     * @return Whether the action completes on another thread while the caller holds its lock
+     */
+    private static boolean runsWhileHeld(final Runnable action) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean completed = new AtomicBoolean();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                action.run();
+                completed.set(true);
+                done.countDown();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+
+        // A blocked action is left waiting; it completes once the caller releases its lock
+        done.await(BLOCKED_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        return completed.get();
+    }
+}
@@ -0,0 +1,77 @@
+package com.amazonaws.kinesisvideo.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+import com.amazonaws.kinesisvideo.producer.StreamStatus;
+
+/**
+ * ServiceCallCache tests
+ */
+public class ServiceCallCacheTest {
+    private static final long TEST_TTL_MILLIS = 60 * 1000;
+    private static final long TEST_NEGATIVE_TTL_MILLIS = 1;
+    private static final String TEST_STREAM_NAME = "test-stream";
+    private static final String TEST_API_NAME = "PUT_MEDIA";
+    private static final String TEST_ENDPOINT = "https://s-1234abcd.kinesisvideo.us-west-2.amazonaws.com";
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_FOUND = 404;
+
+    @Test
+    public void answersFromCacheUntilInvalidated() {
+        final ServiceCallCache cache = new ServiceCallCache(TEST_TTL_MILLIS, TEST_NEGATIVE_TTL_MILLIS);
+        final StreamDescription description = new StreamDescription(
+                StreamDescription.STREAM_DESCRIPTION_CURRENT_VERSION, "test-device", TEST_STREAM_NAME, "video/h264",
+                "1", "arn", StreamStatus.ACTIVE, 0);
+
+        assertNull(cache.getStreamDescription(TEST_STREAM_NAME));
+        assertNull(cache.getDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME));
+        cache.putStreamDescription(TEST_STREAM_NAME, description, HTTP_OK, true);
+        cache.putDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME, TEST_ENDPOINT, HTTP_OK, true);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(description, cache.getStreamDescription(TEST_STREAM_NAME).getValue());
+            assertEquals(TEST_ENDPOINT, cache.getDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME).getValue());
+        }
+
+        cache.invalidate(TEST_STREAM_NAME);
+        assertNull(cache.getStreamDescription(TEST_STREAM_NAME));
+        assertNull(cache.getDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME));
+
+        assertEquals(20, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void invalidationOnlyAffectsTheGivenStream() {
+        final ServiceCallCache cache = new ServiceCallCache(TEST_TTL_MILLIS, TEST_NEGATIVE_TTL_MILLIS);
+        cache.putDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME, TEST_ENDPOINT, HTTP_OK, true);
+        cache.putDataEndpoint(TEST_STREAM_NAME + "-other", TEST_API_NAME, TEST_ENDPOINT, HTTP_OK, true);
+
+        cache.invalidate(TEST_STREAM_NAME);
+        assertNull(cache.getDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME));
+        assertNotNull(cache.getDataEndpoint(TEST_STREAM_NAME + "-other", TEST_API_NAME));
+    }
+
+    @Test
+    public void errorsExpireAfterNegativeTtl() throws Exception {
+        final ServiceCallCache cache = new ServiceCallCache(TEST_TTL_MILLIS, TEST_NEGATIVE_TTL_MILLIS);
+        cache.putStreamDescription(TEST_STREAM_NAME, null, HTTP_NOT_FOUND, false);
+
+        Thread.sleep(TEST_NEGATIVE_TTL_MILLIS * 10);
+        assertNull(cache.getStreamDescription(TEST_STREAM_NAME));
+    }
+
+    @Test
+    public void zeroTtlDisablesCaching() {
+        final ServiceCallCache cache = new ServiceCallCache(0, TEST_TTL_MILLIS);
+        cache.putDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME, TEST_ENDPOINT, HTTP_OK, true);
+        cache.putStreamDescription(TEST_STREAM_NAME, null, HTTP_NOT_FOUND, false);
+
+        assertNull(cache.getDataEndpoint(TEST_STREAM_NAME, TEST_API_NAME));
+        assertEquals(HTTP_NOT_FOUND, cache.getStreamDescription(TEST_STREAM_NAME).getStatusCode());
+    }
+}
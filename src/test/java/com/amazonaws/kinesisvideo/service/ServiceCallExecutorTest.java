@@ -0,0 +1,187 @@
+package com.amazonaws.kinesisvideo.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+
+/**
+ * ServiceCallExecutor tests, with PutMedia connects blocking as they do until the response headers arrive
+ */
+public class ServiceCallExecutorTest {
+    private static final Log LOG = new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "ServiceCallExecutorTest");
+    private static final int STREAMS = 50;
+    private static final long WAIT_MS = 5000;
+
+    private final CountDownLatch mResponseHeaders = new CountDownLatch(1);
+    private ServiceCallExecutor mExecutor;
+
+    @After
+    public void tearDown() {
+        mResponseHeaders.countDown();
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void slowConnectsStarveCredentialRefreshesOnASharedPool() throws Exception {
+        // The pool the client factory used to share between every callback
+        mExecutor = new ServiceCallExecutor(Executors.newScheduledThreadPool(2), LOG);
+        final CountDownLatch connecting = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            mExecutor.scheduleUpload(blockingConnect(connecting), 0, TimeUnit.NANOSECONDS);
+        }
+        assertTrue(connecting.await(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        final Future<?> refresh = mExecutor.submit(noop());
+        try {
+            refresh.get(200, TimeUnit.MILLISECONDS);
+            fail("The credentials refresh shouldn't get a thread while the connects block");
+        } catch (final TimeoutException e) {
+            // Starved
+        }
+
+        mResponseHeaders.countDown();
+        refresh.get(WAIT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void serviceCallsKeepRunningWhileConnectsBlock() throws Exception {
+        final ScheduledExecutorService timer = Executors.newScheduledThreadPool(1);
+        mExecutor = new ServiceCallExecutor(timer,
+                ServiceCallExecutor.newBoundedExecutor("call", 2, 256, false, LOG),
+                ServiceCallExecutor.newBoundedExecutor("connect", 8, 256, false, LOG),
+                LOG);
+
+        // Every stream connects at once, 8 block and the others wait for a thread
+        final CountDownLatch connecting = new CountDownLatch(8);
+        for (int i = 0; i < STREAMS; i++) {
+            mExecutor.scheduleUpload(blockingConnect(connecting), 0, TimeUnit.NANOSECONDS);
+        }
+        assertTrue(connecting.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(8, mExecutor.getActiveCount());
+        assertEquals(STREAMS - 8, mExecutor.getQueuedCount());
+
+        // Credential refreshes and delayed endpoint lookups of every stream meanwhile
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(2 * STREAMS);
+        final List<Future<?>> refreshes = new ArrayList<Future<?>>();
+        for (int i = 0; i < STREAMS; i++) {
+            refreshes.add(mExecutor.submit(timedCall(System.nanoTime(), maxLatencyNanos, done)));
+            mExecutor.schedule(timedCall(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20),
+                    maxLatencyNanos, done), 20, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        for (final Future<?> refresh : refreshes) {
+            assertTrue(refresh.isDone());
+        }
+        assertTrue("Max latency " + maxLatencyNanos.get() + " ns",
+                maxLatencyNanos.get() < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(0, mExecutor.getRejectedCount());
+
+        // The connects are all still held up, once the call threads are back from their last calls
+        assertEquals(8, awaitActiveCount(8));
+        assertEquals(STREAMS - 8, mExecutor.getQueuedCount());
+    }
+
+    @Test
+    public void rejectedCallsAreRetried() throws Exception {
+        mExecutor = new ServiceCallExecutor(Executors.newScheduledThreadPool(1),
+                ServiceCallExecutor.newBoundedExecutor("call", 1, 1, false, LOG),
+                ServiceCallExecutor.newBoundedExecutor("connect", 1, 1, false, LOG),
+                LOG);
+
+        final CountDownLatch connected = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            mExecutor.scheduleUpload(new Runnable() {
+                @Override
+                public void run() {
+                    awaitResponseHeaders();
+                    connected.countDown();
+                }
+            }, 0, TimeUnit.NANOSECONDS);
+        }
+        assertEquals(3, mExecutor.getRejectedCount());
+
+        mResponseHeaders.countDown();
+        assertTrue(connected.await(WAIT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void fallsBackToPlatformThreadsWithoutVirtualThreads() throws Exception {
+        mExecutor = new ServiceCallExecutor(Executors.newScheduledThreadPool(1),
+                ServiceCallExecutor.newBoundedExecutor("call", 1, 1, true, LOG),
+                ServiceCallExecutor.newBoundedExecutor("connect", 1, 1, true, LOG),
+                LOG);
+
+        mExecutor.submit(noop()).get(WAIT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private Runnable blockingConnect(final CountDownLatch connecting) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                connecting.countDown();
+                awaitResponseHeaders();
+            }
+        };
+    }
+
+    /**
+     * @return Number of calls running once it has dropped to the expected one, or at the deadline
+     */
+    private int awaitActiveCount(final int expected) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+        int active;
+        while ((active = mExecutor.getActiveCount()) > expected && System.nanoTime() < deadlineNanos) {
+            Thread.sleep(1);
+        }
+        return active;
+    }
+
+    private void awaitResponseHeaders() {
+        try {
+            mResponseHeaders.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Runnable timedCall(final long dueNanos, final AtomicLong maxLatencyNanos,
+                                      final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                final long latency = System.nanoTime() - dueNanos;
+                long max;
+                do {
+                    max = maxLatencyNanos.get();
+                } while (latency > max && !maxLatencyNanos.compareAndSet(max, latency));
+                done.countDown();
+            }
+        };
+    }
+
+    private static Runnable noop() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+}
@@ -0,0 +1,441 @@
+package com.amazonaws.kinesisvideo.service;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.client.PutMediaClient;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+
+/**
+ * UploadSessionQueue tests rotating between two PutMedia uploads against a local stand-in endpoint, which answers
+ * the headers right away and the end of each upload with the ack of its last fragment after a while.
+ */
+public class UploadSessionQueueTest {
+    private static final Log LOG = new Log(Log.SYSTEM_OUT, LogLevel.ERROR, "UploadSessionQueueTest");
+    private static final int FRAME_SIZE = 4096;
+    private static final long FRAME_INTERVAL_MS = 5;
+    private static final long LAST_ACK_DELAY_MS = 300;
+    // Well short of the last ack, so a rotation which waited for it fails
+    private static final long MAX_ROTATION_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(LAST_ACK_DELAY_MS / 3);
+    private static final long WAIT_MS = 10000;
+    private static final byte[] LAST_ACK =
+            "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":0}".getBytes(StandardCharsets.UTF_8);
+
+    private StandInEndpoint mEndpoint;
+
+    @Before
+    public void setup() throws IOException {
+        mEndpoint = new StandInEndpoint();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mEndpoint.close();
+    }
+
+    @Test
+    public void nextSessionWaitsForThePreviousUploadToComplete() throws Exception {
+        final Rotation rotation = rotate(false);
+
+        // Closed as soon as its data ended, before the ack of its last fragment came
+        assertTrue(rotation.mGapNanos < MAX_ROTATION_GAP_NANOS);
+        assertFalse(rotation.mPrevious.mAcks.mLastAckReceived);
+    }
+
+    @Test
+    public void overlappedRotationSwitchesAtTheEndOfTheData() throws Exception {
+        final Rotation rotation = rotate(true);
+
+        // Switched long before the previous upload has completed, which still got its last ack
+        assertTrue(rotation.mGapNanos < MAX_ROTATION_GAP_NANOS);
+        assertTrue(rotation.mPrevious.mAcks.mLastAckReceived);
+    }
+
+    @Test
+    public void nextSessionAddedAfterTheDataEndedStartsRightAway() throws Exception {
+        final UploadSessionQueue queue = new UploadSessionQueue(true, LOG);
+        final TestSession previous = new TestSession(1, queue);
+        previous.start();
+        previous.mMedia.end();
+        assertTrue(previous.mMedia.mEndOfStream.await(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        final TestSession next = new TestSession(2, queue);
+        next.start();
+        assertTrue(mEndpoint.awaitFirstData(1));
+        next.mMedia.end();
+        assertTrue(awaitEmpty(queue));
+    }
+
+    @Test
+    public void failedUploadIsStoppedWithoutWaitingForItsAcks() {
+        final UploadSessionQueue queue = new UploadSessionQueue(true, LOG);
+        final TestMediaStream media = new TestMediaStream();
+        final RecordingSession first = new RecordingSession(1, media);
+        final RecordingSession second = new RecordingSession(2, new TestMediaStream());
+        queue.add(first);
+        queue.add(second);
+
+        assertTrue(queue.complete(1, new IOException("Connection reset")));
+        assertTrue(first.mStopped);
+        assertEquals(1, queue.size());
+        assertFalse(queue.complete(7, null));
+    }
+
+    /**
+     * Streams through a first session, connects a second one and ends the data of the first. The gap is measured from
+     * the end of the data of the first session to the arrival of the data of the second one.
+     */
+    private Rotation rotate(final boolean overlapped) throws Exception {
+        final UploadSessionQueue queue = new UploadSessionQueue(overlapped, LOG);
+        final TestSession previous = new TestSession(1, queue);
+        previous.start();
+        assertTrue(mEndpoint.awaitFirstData(0));
+
+        // Connected and answered while the previous session keeps streaming
+        final TestSession next = new TestSession(2, queue);
+        next.start();
+        Thread.sleep(10 * FRAME_INTERVAL_MS);
+        assertEquals(0, mEndpoint.mFirstDataNanos.get(1));
+
+        previous.mMedia.end();
+        assertTrue(mEndpoint.awaitFirstData(1));
+        final Rotation rotation = new Rotation(previous,
+                mEndpoint.mFirstDataNanos.get(1) - previous.mMedia.mEndOfStreamNanos);
+
+        next.mMedia.end();
+        assertTrue(awaitEmpty(queue));
+        return rotation;
+    }
+
+    private static boolean awaitEmpty(final UploadSessionQueue queue) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (queue.size() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+
+        return true;
+    }
+
+    private static final class Rotation {
+        private final TestSession mPrevious;
+        private final long mGapNanos;
+
+        private Rotation(final TestSession previous, final long gapNanos) {
+            mPrevious = previous;
+            mGapNanos = gapNanos;
+        }
+    }
+
+    /**
+     * Media of a session, a frame at a time until ended as the producer does on a fragment boundary
+     */
+    private static final class TestMediaStream extends InputStream {
+        private final CountDownLatch mEnded = new CountDownLatch(1);
+        private final CountDownLatch mEndOfStream = new CountDownLatch(1);
+        private volatile long mEndOfStreamNanos;
+        private long mFramesRead;
+
+        void end() {
+            mEnded.countDown();
+        }
+
+        @Override
+        public int read() throws IOException {
+            throw new IOException("Can't call byte-by-byte");
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            try {
+                // The frames which have queued up while the session waited are read right away
+                if (mFramesRead > 0) {
+                    mEnded.await(FRAME_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+
+            if (mEnded.getCount() == 0) {
+                if (mEndOfStreamNanos == 0) {
+                    mEndOfStreamNanos = System.nanoTime();
+                }
+                mEndOfStream.countDown();
+                return -1;
+            }
+
+            final int count = Math.min(len, FRAME_SIZE);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) i;
+            }
+            mFramesRead++;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            end();
+        }
+    }
+
+    /**
+     * Reads the acks until the response ends or the session closes them, as the AckConsumer does
+     */
+    private static final class TestAckReader implements Consumer<InputStream> {
+        private final CountDownLatch mStopped = new CountDownLatch(1);
+        private volatile InputStream mAckStream;
+        private volatile boolean mLastAckReceived;
+
+        @Override
+        public void accept(final InputStream inputStream) {
+            mAckStream = inputStream;
+            final byte[] buffer = new byte[1024];
+            final StringBuilder acks = new StringBuilder();
+            try {
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    acks.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+                    if (acks.indexOf("PERSISTED") >= 0) {
+                        mLastAckReceived = true;
+                    }
+                }
+            } catch (final IOException e) {
+                // Closed by the session
+            } finally {
+                mStopped.countDown();
+            }
+        }
+
+        void close() {
+            try {
+                final InputStream ackStream = mAckStream;
+                if (ackStream != null) {
+                    ackStream.close();
+                }
+                mStopped.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (final IOException e) {
+                // Stopping anyway
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class RecordingSession implements UploadSessionQueue.Session {
+        final long mUploadHandle;
+        final TestMediaStream mMedia;
+        final BlockingInputStream mDataStream;
+        volatile boolean mStopped;
+
+        RecordingSession(final long uploadHandle, final TestMediaStream media) {
+            mUploadHandle = uploadHandle;
+            mMedia = media;
+            mDataStream = new BlockingInputStream(media, LOG);
+        }
+
+        @Override
+        public long getUploadHandle() {
+            return mUploadHandle;
+        }
+
+        @Nonnull
+        @Override
+        public BlockingInputStream getDataStream() {
+            return mDataStream;
+        }
+
+        @Override
+        public void stop() {
+            mStopped = true;
+            try {
+                mDataStream.close();
+            } catch (final IOException e) {
+                fail(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Session uploading through a PutMedia client to the stand-in endpoint
+     */
+    private final class TestSession extends RecordingSession {
+        private final UploadSessionQueue mQueue;
+        private final TestAckReader mAcks = new TestAckReader();
+
+        TestSession(final long uploadHandle, final UploadSessionQueue queue) {
+            super(uploadHandle, new TestMediaStream());
+            mQueue = queue;
+        }
+
+        /**
+         * Queues the session and connects it, returning once the response headers have been received
+         */
+        void start() throws Exception {
+            mQueue.add(this);
+            final BlockingAckConsumer ackConsumer = new BlockingAckConsumer(mAcks);
+            PutMediaClient.builder()
+                    .putMediaDestinationUri(URI.create("http://127.0.0.1:" + mEndpoint.getPort() + "/putMedia"))
+                    .streamName("test-stream")
+                    .fragmentTimecodeType("RELATIVE")
+                    .mkvStream(mDataStream)
+                    .receiveAcks(ackConsumer)
+                    .receiveCompletion(new Consumer<Exception>() {
+                        @Override
+                        public void accept(@Nullable final Exception exception) {
+                            mQueue.complete(mUploadHandle, exception);
+                        }
+                    })
+                    .receiveTimeout((int) WAIT_MS)
+                    .log(LOG)
+                    .build()
+                    .putMediaInBackground();
+            ackConsumer.awaitResponse();
+        }
+
+        @Override
+        public void stop() {
+            super.stop();
+            mAcks.close();
+        }
+    }
+
+    /**
+     * PutMedia endpoint recording when each connection sends its first data, in the order they connect
+     */
+    private static final class StandInEndpoint implements Closeable {
+        private final ServerSocket mServerSocket;
+        private final AtomicLongArray mFirstDataNanos = new AtomicLongArray(2);
+        private final AtomicLong mConnections = new AtomicLong();
+
+        StandInEndpoint() throws IOException {
+            mServerSocket = new ServerSocket(0, 2, InetAddress.getLoopbackAddress());
+            final Thread acceptor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    acceptConnections();
+                }
+            }, "stand-in-endpoint-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return mServerSocket.getLocalPort();
+        }
+
+        boolean awaitFirstData(final int connection) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (mFirstDataNanos.get(connection) == 0) {
+                if (System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mServerSocket.close();
+        }
+
+        private void acceptConnections() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    final Socket socket = mServerSocket.accept();
+                    final int connection = (int) mConnections.getAndIncrement();
+                    final Thread handler = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            handleConnection(socket, connection);
+                        }
+                    }, "stand-in-endpoint-" + connection);
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (final IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handleConnection(final Socket socket, final int connection) {
+            try {
+                final InputStream in = new BufferedInputStream(socket.getInputStream());
+                final OutputStream out = socket.getOutputStream();
+                while (!readLine(in).isEmpty()) {
+                    // Skip the request line and headers
+                }
+
+                out.write("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                int chunkSize;
+                while ((chunkSize = Integer.parseInt(readLine(in), 16)) > 0) {
+                    mFirstDataNanos.compareAndSet(connection, 0, System.nanoTime());
+                    for (int i = 0; i < chunkSize; i++) {
+                        if (in.read() < 0) {
+                            return;
+                        }
+                    }
+                    readLine(in);
+                }
+                readLine(in);
+
+                // Persisting the last fragment
+                Thread.sleep(LAST_ACK_DELAY_MS);
+                out.write((Integer.toHexString(LAST_ACK.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(LAST_ACK);
+                out.write("\r\n0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            } catch (final IOException e) {
+                // Client went away
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        private static String readLine(final InputStream in) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+
+            return line.toString();
+        }
+    }
+}
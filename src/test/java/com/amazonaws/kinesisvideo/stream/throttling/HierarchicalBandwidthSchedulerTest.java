@@ -0,0 +1,243 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * HierarchicalBandwidthScheduler tests, simulating 50 uploads on a virtual clock
+ */
+public class HierarchicalBandwidthSchedulerTest {
+    private static final int STREAMS = 50;
+    private static final long HOST_KBPS = 100000;
+    private static final int CHUNK_BYTES = 16 * 1024;
+    private static final long STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int STEPS_PER_WINDOW = 100;
+    private static final int WINDOWS = 50;
+
+    /**
+     * Bytes granted to each stream, per window of {@link #STEPS_PER_WINDOW} steps.
+     */
+    private static final class Simulation {
+        private final HierarchicalBandwidthScheduler scheduler = new HierarchicalBandwidthScheduler(HOST_KBPS, 0);
+        private final HierarchicalBandwidthScheduler.StreamThrottler[] throttlers =
+                new HierarchicalBandwidthScheduler.StreamThrottler[STREAMS];
+        private final long[][] windows = new long[STREAMS][WINDOWS];
+        private final long[] totals = new long[STREAMS];
+
+        private void register() {
+            for (int i = 0; i < STREAMS; i++) {
+                throttlers[i] = scheduler.register("stream-" + i);
+            }
+        }
+
+        private void run(final int busyStreams) {
+            for (int step = 0; step < WINDOWS * STEPS_PER_WINDOW; step++) {
+                final long now = (step + 1) * STEP_NANOS;
+                for (int j = 0; j < busyStreams; j++) {
+                    // Rotate who asks first, as threads would
+                    final int stream = (j + step) % busyStreams;
+                    int granted;
+                    while ((granted = scheduler.tryAcquire(throttlers[stream], CHUNK_BYTES, now)) > 0) {
+                        windows[stream][step / STEPS_PER_WINDOW] += granted;
+                        totals[stream] += granted;
+                    }
+                }
+            }
+        }
+
+        private double expectedPerWindow(final double share) {
+            return scheduler.getMaxBytesPerSecond() * share * STEPS_PER_WINDOW * STEP_NANOS / 1e9;
+        }
+
+        private long total() {
+            long total = 0;
+            for (final long bytes : totals) {
+                total += bytes;
+            }
+            return total;
+        }
+    }
+
+    @Test
+    public void sharesEquallyAndSmoothlyBetweenFiftyStreams() {
+        final Simulation simulation = new Simulation();
+        simulation.register();
+        simulation.run(STREAMS);
+
+        final double seconds = WINDOWS * STEPS_PER_WINDOW * STEP_NANOS / 1e9;
+        final double hostBytes = simulation.scheduler.getMaxBytesPerSecond() * seconds;
+        assertTrue(simulation.total() <= hostBytes);
+        assertTrue(simulation.total() > hostBytes * 0.98);
+
+        // Jain's fairness index over the whole run
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (final long bytes : simulation.totals) {
+            sum += bytes;
+            sumOfSquares += (double) bytes * bytes;
+        }
+        assertTrue(sum * sum / (STREAMS * sumOfSquares) > 0.999);
+
+        // Every stream gets its share in every window, within a quantum
+        final double expected = simulation.expectedPerWindow(1.0 / STREAMS);
+        for (int i = 0; i < STREAMS; i++) {
+            for (int w = 1; w < WINDOWS; w++) {
+                assertEquals("Stream " + i + " window " + w, expected, simulation.windows[i][w],
+                        HierarchicalBandwidthScheduler.QUANTUM_BYTES);
+            }
+        }
+
+        // Uploads keep up with the host limit without ever getting ahead of it
+        long sent = 0;
+        for (int w = 0; w < WINDOWS; w++) {
+            for (int i = 0; i < STREAMS; i++) {
+                sent += simulation.windows[i][w];
+            }
+            final double limit = simulation.expectedPerWindow(1.0) * (w + 1);
+            assertTrue(sent <= limit);
+            assertTrue(sent >= limit - STREAMS * HierarchicalBandwidthScheduler.QUANTUM_BYTES);
+        }
+    }
+
+    @Test
+    public void sharesByWeightOnTopOfGuarantees() {
+        final Simulation simulation = new Simulation();
+        // Stream 0 is guaranteed a tenth, streams 1 to 9 weigh three times as much as the others
+        simulation.scheduler.setStreamPolicy("stream-0", 1, HOST_KBPS / 10);
+        for (int i = 1; i < 10; i++) {
+            simulation.scheduler.setStreamPolicy("stream-" + i, 3, 0);
+        }
+        simulation.register();
+        simulation.run(STREAMS);
+
+        final double totalWeight = 1 + 9 * 3 + 40;
+        final double seconds = WINDOWS * STEPS_PER_WINDOW * STEP_NANOS / 1e9;
+        final double shared = simulation.scheduler.getMaxBytesPerSecond() * 0.9 * seconds;
+        assertEquals(simulation.scheduler.getMaxBytesPerSecond() * 0.1 * seconds + shared / totalWeight,
+                simulation.totals[0], simulation.totals[0] * 0.02);
+        for (int i = 1; i < STREAMS; i++) {
+            final double expected = shared * (i < 10 ? 3 : 1) / totalWeight;
+            assertEquals("Stream " + i, expected, simulation.totals[i], expected * 0.02);
+        }
+    }
+
+    @Test
+    public void busyStreamsBorrowFromIdleOnes() {
+        final Simulation simulation = new Simulation();
+        simulation.scheduler.setStreamPolicy("stream-" + (STREAMS - 1), 1, HOST_KBPS / 5);
+        simulation.register();
+        // The second half, including the guaranteed stream, sends nothing
+        simulation.run(STREAMS / 2);
+
+        final double expected = simulation.expectedPerWindow(2.0 / STREAMS);
+        for (int i = 0; i < STREAMS / 2; i++) {
+            for (int w = 1; w < WINDOWS; w++) {
+                assertEquals(expected, simulation.windows[i][w], HierarchicalBandwidthScheduler.QUANTUM_BYTES);
+            }
+        }
+        for (int i = STREAMS / 2; i < STREAMS; i++) {
+            assertEquals(0, simulation.totals[i]);
+        }
+    }
+
+    @Test
+    public void capsAStreamBelowTheHostLimit() {
+        final HierarchicalBandwidthScheduler scheduler = new HierarchicalBandwidthScheduler(HOST_KBPS, 0);
+        final HierarchicalBandwidthScheduler.StreamThrottler capped = scheduler.register("capped");
+        final HierarchicalBandwidthScheduler.StreamThrottler other = scheduler.register("other");
+        capped.setUpstreamKbps(HOST_KBPS / 10);
+
+        final int steps = 5000;
+        for (int step = 1; step <= steps; step++) {
+            final long now = step * STEP_NANOS;
+            while (scheduler.tryAcquire(capped, CHUNK_BYTES, now) > 0) {
+                // Keep sending
+            }
+            while (scheduler.tryAcquire(other, CHUNK_BYTES, now) > 0) {
+                // Keep sending
+            }
+        }
+
+        final double seconds = steps * STEP_NANOS / 1e9;
+        final double hostBytes = scheduler.getMaxBytesPerSecond() * seconds;
+        assertEquals(hostBytes / 10, capped.getGrantedBytes(), hostBytes / 10 * 0.02);
+        assertEquals(hostBytes * 0.9, other.getGrantedBytes(), hostBytes * 0.9 * 0.02);
+    }
+
+    @Test
+    public void capSetAfterSendingUncappedStartsWithoutDebt() {
+        final HierarchicalBandwidthScheduler scheduler = new HierarchicalBandwidthScheduler(HOST_KBPS, 0);
+        final HierarchicalBandwidthScheduler.StreamThrottler throttler = scheduler.register("stream");
+
+        final int steps = 1000;
+        for (int step = 1; step <= steps; step++) {
+            while (scheduler.tryAcquire(throttler, CHUNK_BYTES, step * STEP_NANOS) > 0) {
+                // Keep sending
+            }
+        }
+
+        throttler.setUpstreamKbps(HOST_KBPS / 10);
+        final long uncappedBytes = throttler.getGrantedBytes();
+        for (int step = steps + 1; step <= 2 * steps; step++) {
+            while (scheduler.tryAcquire(throttler, CHUNK_BYTES, step * STEP_NANOS) > 0) {
+                // Keep sending
+            }
+        }
+
+        final double cappedBytes = scheduler.getMaxBytesPerSecond() / 10 * (steps * STEP_NANOS / 1e9);
+        assertEquals(cappedBytes, throttler.getGrantedBytes() - uncappedBytes, cappedBytes * 0.05);
+    }
+
+    @Test
+    public void throttledOutputStreamWritesEverything() throws IOException {
+        final HierarchicalBandwidthScheduler scheduler = new HierarchicalBandwidthScheduler(HOST_KBPS, 0);
+        final HierarchicalBandwidthScheduler.StreamThrottler throttler = scheduler.register("stream");
+        final VirtualClockThrottler clockThrottler = new VirtualClockThrottler(scheduler, throttler);
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        final BandwidthThrottledOutputStream outputStream = new BandwidthThrottledOutputStream(sink, clockThrottler);
+
+        final byte[] data = new byte[1024 * 1024];
+        outputStream.write(data);
+        throttler.close();
+
+        assertEquals(data.length, sink.size());
+        assertEquals(data.length, throttler.getGrantedBytes());
+        // The buckets start empty, so it takes as long as the host limit allows, give or take the waits overshooting
+        final double expectedNanos = data.length * 1e9 / scheduler.getMaxBytesPerSecond();
+        assertEquals(expectedNanos, clockThrottler.mNowNanos, expectedNanos * 0.02);
+    }
+
+    /**
+     * Waits on a virtual clock, moving it ahead by the estimated wait whenever no bytes are granted
+     */
+    private static final class VirtualClockThrottler implements BandwidthThrottler {
+        private final HierarchicalBandwidthScheduler mScheduler;
+        private final HierarchicalBandwidthScheduler.StreamThrottler mThrottler;
+        private long mNowNanos;
+
+        private VirtualClockThrottler(final HierarchicalBandwidthScheduler scheduler,
+                                      final HierarchicalBandwidthScheduler.StreamThrottler throttler) {
+            mScheduler = scheduler;
+            mThrottler = throttler;
+        }
+
+        @Override
+        public void setUpstreamKbps(final long kbps) {
+            mThrottler.setUpstreamKbps(kbps);
+        }
+
+        @Override
+        public int getAllowedBytes(final int len) {
+            int granted;
+            while ((granted = mScheduler.tryAcquire(mThrottler, len, mNowNanos)) == 0) {
+                mNowNanos += mScheduler.nanosUntilAvailable(mThrottler, len);
+            }
+            return granted;
+        }
+    }
+}
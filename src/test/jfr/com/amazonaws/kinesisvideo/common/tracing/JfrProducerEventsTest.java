@@ -0,0 +1,94 @@
+package com.amazonaws.kinesisvideo.common.tracing;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * JfrProducerEvents tests, recording the events in a Flight Recorder file
+ */
+public class JfrProducerEventsTest {
+    private static final String STREAM_NAME = "test-stream";
+    private static final String BATCH_STREAM_NAME = "test-batch-stream";
+
+    @Test
+    public void recordsNothingWithoutRecording() {
+        final ProducerEvents events = ProducerEvents.getInstance();
+        assertTrue(events.isSupported());
+        assertNull(events.beginPutFrame());
+        assertNull(events.beginStreamRead());
+        assertNull(events.beginServiceCall());
+    }
+
+    @Test
+    public void recordsTheEventsWithTheirDetails() throws IOException {
+        final ProducerEvents events = ProducerEvents.getInstance();
+        final Path file = Files.createTempFile("producer-events", ".jfr");
+        final Recording recording = new Recording();
+        try {
+            for (final String name : new String[] { "PutFrame", "StreamRead", "ChunkWrite", "AckParse",
+                    "FragmentAck", "ServiceCall" }) {
+                recording.enable("com.amazonaws.kinesisvideo." + name).withThreshold(java.time.Duration.ZERO);
+            }
+            recording.start();
+
+            events.endPutFrame(events.beginPutFrame(), STREAM_NAME, 1, 1000, true);
+            events.endPutFrames(events.beginPutFrame(), BATCH_STREAM_NAME, 1, 8, 16000, false);
+            events.endStreamRead(events.beginStreamRead(), STREAM_NAME, 2, 2000, 3000);
+            events.endChunkWrite(events.beginChunkWrite(), STREAM_NAME, 4000);
+            events.endAckParse(events.beginAckParse(), STREAM_NAME, 2, 100);
+            events.endFragmentAck(events.beginFragmentAck(), STREAM_NAME, 2, 3, 5000);
+            events.endServiceCall(events.beginServiceCall(), "PutMedia", STREAM_NAME, 200);
+
+            recording.stop();
+            recording.dump(file);
+
+            final Map<String, RecordedEvent> recorded = new HashMap<String, RecordedEvent>();
+            final List<RecordedEvent> recordedEvents = RecordingFile.readAllEvents(file);
+            for (final RecordedEvent event : recordedEvents) {
+                final String name = event.getEventType().getName().substring("com.amazonaws.kinesisvideo.".length());
+                final boolean batch = event.hasField("streamName")
+                        && BATCH_STREAM_NAME.equals(event.getString("streamName"));
+                recorded.put(batch ? name + "Batch" : name, event);
+            }
+            assertEquals(7, recorded.size());
+
+            final RecordedEvent putFrame = recorded.get("PutFrame");
+            assertEquals(STREAM_NAME, putFrame.getString("streamName"));
+            assertEquals(1, putFrame.getLong("streamHandle"));
+            assertEquals(1, putFrame.getInt("frames"));
+            assertEquals(1000, putFrame.getInt("bytes"));
+            assertTrue(putFrame.getBoolean("keyFrame"));
+            assertNull(putFrame.getStackTrace());
+
+            final RecordedEvent putFrames = recorded.get("PutFrameBatch");
+            assertEquals(8, putFrames.getInt("frames"));
+            assertEquals(16000, putFrames.getInt("bytes"));
+            assertFalse(putFrames.getBoolean("keyFrame"));
+
+            final RecordedEvent streamRead = recorded.get("StreamRead");
+            assertEquals(2, streamRead.getLong("uploadHandle"));
+            assertEquals(3000, streamRead.getDuration("waitDuration").toNanos());
+
+            assertEquals(4000, recorded.get("ChunkWrite").getInt("bytes"));
+            assertEquals(100, recorded.get("AckParse").getInt("bytes"));
+            assertEquals(5000, recorded.get("FragmentAck").getLong("timestamp"));
+            assertEquals("PutMedia", recorded.get("ServiceCall").getString("operation"));
+            assertEquals(200, recorded.get("ServiceCall").getInt("statusCode"));
+        } finally {
+            recording.close();
+            Files.delete(file);
+        }
+    }
+}